@@ -112,6 +112,7 @@ import com.eucalyptus.compute.common.Filter;
 import com.eucalyptus.compute.common.ImageDetails;
 import com.eucalyptus.compute.common.InstanceNetworkInterfaceSetItemRequestType;
 import com.eucalyptus.compute.common.InstanceStatusItemType;
+import com.eucalyptus.compute.common.InstanceStatusSetType;
 import com.eucalyptus.compute.common.ResourceTag;
 import com.eucalyptus.compute.common.RunningInstancesItemType;
 import com.eucalyptus.compute.common.SecurityGroupItemType;
@@ -170,10 +171,14 @@ import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
@@ -202,6 +207,18 @@ public class ActivityManager {
       MetricCollectionType.GroupTerminatingInstances,
       MetricCollectionType.GroupTotalInstances );
 
+  /**
+   * Maximum instance identifiers in a batched instance status request
+   */
+  private static final int MAX_INSTANCE_STATUS_BATCH = 1000;
+
+  /**
+   * Maximum metric data in a request for a system (AWS/) namespace
+   */
+  private static final int MAX_METRIC_DATA_BATCH = 50;
+
+  private static final Pattern INSTANCE_ID_PATTERN = Pattern.compile( "i-[0-9A-Fa-f]{8}" );
+
   private static final String INSTANCE_PROFILE_RESOURCE =
       PolicySpec.qualifiedName( PolicySpec.VENDOR_IAM, PolicySpec.IAM_RESOURCE_INSTANCE_PROFILE );
 
@@ -413,17 +430,34 @@ public class ActivityManager {
    */
   private void runningInstanceChecks() {
     final Map<String,AutoScalingGroupCoreView> autoScalingAccounts = Maps.newHashMap( );
+    final InstanceStatusRequests instanceStatusRequests = new InstanceStatusRequests( );
+    final InstanceHealthRequests instanceHealthRequests = new InstanceHealthRequests( );
     try {
-      for ( final AutoScalingGroupCoreView group : autoScalingGroups.listRequiringMonitoring( 10000L, TypeMappers.lookup( AutoScalingGroup.class, AutoScalingGroupCoreView.class ) ) ) {
+      final List<AutoScalingGroupCoreView> groups =
+          autoScalingGroups.listRequiringMonitoring( 10000L, TypeMappers.lookup( AutoScalingGroup.class, AutoScalingGroupCoreView.class ) );
+      final ListMultimap<String,String> instancesPending = groups.isEmpty() ?
+          ImmutableListMultimap.<String,String>of() :
+          autoScalingInstances.listByGroups( groups, LifecycleState.Pending, instanceId() );
+      final ListMultimap<String,String> instancesInService = groups.isEmpty() ?
+          ImmutableListMultimap.<String,String>of() :
+          autoScalingInstances.listByGroups( groups, LifecycleState.InService, instanceId() );
+      for ( final AutoScalingGroupCoreView group : groups ) {
         autoScalingAccounts.put( group.getOwnerAccountNumber(), group );
-        final List<String> groupInstancesPending = autoScalingInstances.listByGroup( group, LifecycleState.Pending, instanceId() );
-        final List<String> groupInstancesInService = autoScalingInstances.listByGroup( group, LifecycleState.InService, instanceId() );
+        final List<String> groupInstancesPending = instancesPending.get( group.getArn() );
+        final List<String> groupInstancesInService = instancesInService.get( group.getArn() );
         if ( !groupInstancesPending.isEmpty() || !groupInstancesInService.isEmpty() ) {
-          runTask( new MonitoringScalingProcessTask( group, groupInstancesPending, groupInstancesInService ) );
+          runTask( new MonitoringScalingProcessTask(
+              group,
+              groupInstancesPending,
+              groupInstancesInService,
+              instanceStatusRequests,
+              instanceHealthRequests ) );
         }
       }
     } catch ( Exception e ) {
       logger.error( e, e );
+    } finally {
+      instanceStatusRequests.dispatch( );
     }
 
     // Terminate rogue instances
@@ -453,15 +487,32 @@ public class ActivityManager {
    */
   private void submitMetrics() {
     try {
+      final List<AutoScalingGroupMetricsView> groups = Lists.newArrayList( );
+      final List<AutoScalingGroupMetricsView> instanceMetricsGroups = Lists.newArrayList( );
       for ( final AutoScalingGroupMetricsView group : autoScalingGroups.listRequiringMonitoring( 10000L, TypeMappers.lookup( AutoScalingGroup.class, AutoScalingGroupMetricsView.class ) ) ) {
         if ( !group.getEnabledMetrics().isEmpty() ) {
-          final List<AutoScalingInstanceCoreView> groupInstances = Sets.intersection( group.getEnabledMetrics(), instanceMetrics ).isEmpty() ?
-              Collections.<AutoScalingInstanceCoreView>emptyList() :
-              autoScalingInstances.listByGroup( group, Predicates.alwaysTrue(), TypeMappers.lookup( AutoScalingInstance.class, AutoScalingInstanceCoreView.class ) );
+          groups.add( group );
+          if ( !Sets.intersection( group.getEnabledMetrics(), instanceMetrics ).isEmpty() ) {
+            instanceMetricsGroups.add( group );
+          }
+        }
+      }
+      final ListMultimap<String,AutoScalingInstanceCoreView> instances = instanceMetricsGroups.isEmpty() ?
+          ImmutableListMultimap.<String,AutoScalingInstanceCoreView>of() :
+          autoScalingInstances.listByGroups(
+              instanceMetricsGroups,
+              Predicates.alwaysTrue(),
+              TypeMappers.lookup( AutoScalingInstance.class, AutoScalingInstanceCoreView.class ) );
+      final MetricDataRequests metricDataRequests = new MetricDataRequests( );
+      try {
+        for ( final AutoScalingGroupMetricsView group : groups ) {
           runTask( new MetricsSubmissionScalingProcessTask(
               group,
-              groupInstances ) );
+              instances.get( group.getArn() ),
+              metricDataRequests ) );
         }
+      } finally {
+        metricDataRequests.dispatch( );
       }
     } catch ( Exception e ) {
       logger.error( e, e );
@@ -959,6 +1010,18 @@ public class ActivityManager {
     return describeInstanceStatusType;
   }
 
+  /**
+   * Instance identifiers named in an error message.
+   */
+  private static List<String> instanceIds( final String message ) {
+    final List<String> instanceIds = Lists.newArrayList( );
+    final Matcher matcher = INSTANCE_ID_PATTERN.matcher( Strings.nullToEmpty( message ) );
+    while ( matcher.find( ) ) {
+      instanceIds.add( matcher.group( ) );
+    }
+    return instanceIds;
+  }
+
   private DescribeTagsType describeTags() {
     final DescribeTagsType describeTagsType = new DescribeTagsType();
     describeTagsType.getFilterSet().add( filter( "key", "aws:autoscaling:groupName" ) );
@@ -2285,6 +2348,7 @@ public class ActivityManager {
 
   private class MonitoringScalingActivityTask extends ScalingActivityTask<AutoScalingGroupCoreView,DescribeInstanceStatusResponseType> {
     private final List<String> instanceIds;
+    private final InstanceStatusRequests instanceStatusRequests;
     private final AtomicReference<List<String>> healthyInstanceIds = new AtomicReference<>(
         Collections.<String>emptyList()
     );
@@ -2294,16 +2358,17 @@ public class ActivityManager {
 
     private MonitoringScalingActivityTask( final AutoScalingGroupCoreView group,
                                            final ScalingActivity activity,
-                                           final List<String> instanceIds ) {
+                                           final List<String> instanceIds,
+                                           final InstanceStatusRequests instanceStatusRequests ) {
       super( group, activity, false );
       this.instanceIds = instanceIds;
+      this.instanceStatusRequests = instanceStatusRequests;
     }
 
     @Override
     void dispatchInternal( final ActivityContext context,
                            final Callback.Checked<DescribeInstanceStatusResponseType> callback ) {
-      final ComputeClient client = context.getComputeClient();
-      client.dispatch( monitorInstances( instanceIds ), callback );
+      instanceStatusRequests.add( getGroup().getOwnerAccountNumber(), instanceIds, callback );
     }
 
     @Override
@@ -2335,10 +2400,7 @@ public class ActivityManager {
       final Optional<AsyncWebServiceError> errorOptional = AsyncExceptions.asWebServiceError( throwable );
       if ( errorOptional.isPresent( ) && "InvalidInstanceID.NotFound".equals( errorOptional.get( ).getCode( ) ) ) {
         final List<String> healthyInstanceIds = Lists.newArrayList( instanceIds );
-        final Matcher matcher = Pattern.compile( "i-[0-9A-Fa-f]{8}").matcher( errorOptional.get( ).getMessage( ) );
-        while ( matcher.find( ) ) {
-          healthyInstanceIds.remove( matcher.group( ) );
-        }
+        healthyInstanceIds.removeAll( instanceIds( errorOptional.get( ).getMessage( ) ) );
         this.knownInstanceIds.set( ImmutableList.copyOf( instanceIds ) );
         this.healthyInstanceIds.set( ImmutableList.copyOf( healthyInstanceIds ) );
 
@@ -2361,12 +2423,18 @@ public class ActivityManager {
   private class MonitoringScalingProcessTask extends ScalingProcessTask<AutoScalingGroupCoreView,MonitoringScalingActivityTask> {
     private final List<String> pendingInstanceIds;
     private final List<String> expectedRunningInstanceIds;
+    private final InstanceStatusRequests instanceStatusRequests;
+    private final InstanceHealthRequests instanceHealthRequests;
 
     MonitoringScalingProcessTask( final AutoScalingGroupCoreView group,
                                   final List<String> pendingInstanceIds,
-                                  final List<String> expectedRunningInstanceIds ) {
+                                  final List<String> expectedRunningInstanceIds,
+                                  final InstanceStatusRequests instanceStatusRequests,
+                                  final InstanceHealthRequests instanceHealthRequests ) {
       super( group, "Monitor" );
       this.pendingInstanceIds = pendingInstanceIds;
+      this.instanceStatusRequests = instanceStatusRequests;
+      this.instanceHealthRequests = instanceHealthRequests;
       this.expectedRunningInstanceIds = scalingProcessEnabled( ScalingProcessType.HealthCheck, group ) ?
           expectedRunningInstanceIds :
           Collections.<String>emptyList();
@@ -2384,7 +2452,8 @@ public class ActivityManager {
           new ElbMonitoringScalingProcessTask(
               getGroup(),
               getGroup().getLoadBalancerNames(),
-              expectedRunningInstanceIds );
+              expectedRunningInstanceIds,
+              instanceHealthRequests );
     }
 
     @Override
@@ -2400,7 +2469,7 @@ public class ActivityManager {
           pendingInstanceIds,
           expectedRunningInstanceIds
       ) );
-      return Collections.singletonList( new MonitoringScalingActivityTask( getGroup(), newActivity(), instanceIds ) );
+      return Collections.singletonList( new MonitoringScalingActivityTask( getGroup(), newActivity(), instanceIds, instanceStatusRequests ) );
     }
 
     @Override
@@ -2459,18 +2528,20 @@ public class ActivityManager {
 
   private class MetricsSubmissionScalingActivityTask extends ScalingActivityTask<AutoScalingGroupMetricsView,PutMetricDataResponseType> {
     private final List<AutoScalingInstanceCoreView> autoScalingInstances;
+    private final MetricDataRequests metricDataRequests;
 
     private MetricsSubmissionScalingActivityTask( final AutoScalingGroupMetricsView group,
                                                   final ScalingActivity activity,
-                                                  final List<AutoScalingInstanceCoreView> autoScalingInstances ) {
+                                                  final List<AutoScalingInstanceCoreView> autoScalingInstances,
+                                                  final MetricDataRequests metricDataRequests ) {
       super( group, activity, false );
       this.autoScalingInstances = autoScalingInstances;
+      this.metricDataRequests = metricDataRequests;
     }
 
     @Override
     void dispatchInternal( final ActivityContext context,
                            final Callback.Checked<PutMetricDataResponseType> callback ) {
-      final CloudWatchClient client = context.getCloudWatchClient();
       final Date date = new Date();
       final MetricData metricData = new MetricData();
       for ( final MetricCollectionType metricCollectionType : getGroup().getEnabledMetrics() ) {
@@ -2484,10 +2555,7 @@ public class ActivityManager {
         metricDatum.setValue( metricCollectionType.getValue( getGroup(), autoScalingInstances ) );
         metricData.getMember().add( metricDatum );
       }
-      final PutMetricDataType putMetricData = new PutMetricDataType();
-      putMetricData.setNamespace( "AWS/AutoScaling" );
-      putMetricData.setMetricData( metricData );
-      client.dispatch( putMetricData, callback );
+      metricDataRequests.add( getGroup().getOwnerAccountNumber(), metricData.getMember(), callback );
     }
 
     @Override
@@ -2499,11 +2567,14 @@ public class ActivityManager {
 
   private class MetricsSubmissionScalingProcessTask extends ScalingProcessTask<AutoScalingGroupMetricsView,MetricsSubmissionScalingActivityTask> {
     private final List<AutoScalingInstanceCoreView> autoScalingInstances;
+    private final MetricDataRequests metricDataRequests;
 
     MetricsSubmissionScalingProcessTask( final AutoScalingGroupMetricsView group,
-                                         final List<AutoScalingInstanceCoreView> autoScalingInstances ) {
+                                         final List<AutoScalingInstanceCoreView> autoScalingInstances,
+                                         final MetricDataRequests metricDataRequests ) {
       super( group.getArn() + ":Metrics", group, "MetricsSubmission" );
       this.autoScalingInstances = autoScalingInstances;
+      this.metricDataRequests = metricDataRequests;
     }
 
     @Override
@@ -2516,28 +2587,30 @@ public class ActivityManager {
       if ( logger.isTraceEnabled() ) {
         logger.trace( "Putting metrics for group: " + getGroup().getArn() );
       }
-      return Collections.singletonList( new MetricsSubmissionScalingActivityTask( getGroup(), newActivity(), autoScalingInstances ) );
+      return Collections.singletonList( new MetricsSubmissionScalingActivityTask( getGroup(), newActivity(), autoScalingInstances, metricDataRequests ) );
     }
   }
 
   private class ElbMonitoringScalingActivityTask extends ScalingActivityTask<AutoScalingGroupCoreView,DescribeInstanceHealthResponseType> {
     private final String loadBalancerName;
+    private final InstanceHealthRequests instanceHealthRequests;
     private final AtomicReference<List<String>> unhealthyInstanceIds = new AtomicReference<>(
         Collections.<String>emptyList()
     );
 
     private ElbMonitoringScalingActivityTask( final AutoScalingGroupCoreView group,
                                               final ScalingActivity activity,
-                                              final String loadBalancerName ) {
+                                              final String loadBalancerName,
+                                              final InstanceHealthRequests instanceHealthRequests ) {
       super( group, activity, false );
       this.loadBalancerName = loadBalancerName;
+      this.instanceHealthRequests = instanceHealthRequests;
     }
 
     @Override
     void dispatchInternal( final ActivityContext context,
                            final Callback.Checked<DescribeInstanceHealthResponseType> callback ) {
-      final ElbClient client = context.getElbClient();
-      client.dispatch( describeInstanceHealth( loadBalancerName ), callback );
+      instanceHealthRequests.dispatch( context, getGroup().getOwnerAccountNumber(), loadBalancerName, callback );
     }
 
     @Override
@@ -2567,13 +2640,16 @@ public class ActivityManager {
   private class ElbMonitoringScalingProcessTask extends ScalingProcessTask<AutoScalingGroupCoreView,ElbMonitoringScalingActivityTask> {
     private final List<String> loadBalancerNames;
     private final List<String> expectedInstanceIds;
+    private final InstanceHealthRequests instanceHealthRequests;
 
     ElbMonitoringScalingProcessTask( final AutoScalingGroupCoreView group,
                                      final List<String> loadBalancerNames,
-                                     final List<String> expectedInstanceIds ) {
+                                     final List<String> expectedInstanceIds,
+                                     final InstanceHealthRequests instanceHealthRequests ) {
       super( group, "ElbMonitor" );
       this.loadBalancerNames = loadBalancerNames;
       this.expectedInstanceIds = expectedInstanceIds;
+      this.instanceHealthRequests = instanceHealthRequests;
     }
 
     @Override
@@ -2591,7 +2667,7 @@ public class ActivityManager {
       }
       final List<ElbMonitoringScalingActivityTask> activities = Lists.newArrayList();
       for ( final String loadBalancerName : loadBalancerNames ) {
-        activities.add( new ElbMonitoringScalingActivityTask( getGroup(), newActivity(), loadBalancerName ) );
+        activities.add( new ElbMonitoringScalingActivityTask( getGroup(), newActivity(), loadBalancerName, instanceHealthRequests ) );
       }
       return activities;
     }
@@ -2616,6 +2692,238 @@ public class ActivityManager {
     }
   }
 
+  /**
+   * Requests from multiple groups in a cycle, dispatched together per account.
+   *
+   * Requests for a group are never split across batches, results are fanned
+   * back out to each group's callback.
+   */
+  private abstract class BatchedRequests<I,RES extends BaseMessage> {
+    private final int maxItems;
+    private final ListMultimap<String,BatchedRequest<I,RES>> requestsByAccount =
+        Multimaps.synchronizedListMultimap( ArrayListMultimap.<String,BatchedRequest<I,RES>>create( ) );
+
+    BatchedRequests( final int maxItems ) {
+      this.maxItems = maxItems;
+    }
+
+    void add( final String accountNumber,
+              final List<I> items,
+              final Callback.Checked<RES> callback ) {
+      requestsByAccount.put( accountNumber, new BatchedRequest<>( items, callback ) );
+    }
+
+    void dispatch( ) {
+      final ListMultimap<String,BatchedRequest<I,RES>> requests;
+      synchronized ( requestsByAccount ) {
+        requests = ArrayListMultimap.create( requestsByAccount );
+        requestsByAccount.clear( );
+      }
+      for ( final String accountNumber : requests.keySet( ) ) {
+        final List<BatchedRequest<I,RES>> batch = Lists.newArrayList( );
+        int batchItems = 0;
+        for ( final BatchedRequest<I,RES> request : requests.get( accountNumber ) ) {
+          if ( !batch.isEmpty( ) && batchItems + request.items.size( ) > maxItems ) {
+            dispatch( accountNumber, ImmutableList.copyOf( batch ) );
+            batch.clear( );
+            batchItems = 0;
+          }
+          batch.add( request );
+          batchItems += request.items.size( );
+        }
+        if ( !batch.isEmpty( ) ) {
+          dispatch( accountNumber, ImmutableList.copyOf( batch ) );
+        }
+      }
+    }
+
+    private void dispatch( final String accountNumber,
+                           final List<BatchedRequest<I,RES>> batch ) {
+      final List<I> items = Lists.newArrayList( );
+      for ( final BatchedRequest<I,RES> request : batch ) {
+        items.addAll( request.items );
+      }
+      final Callback.Checked<RES> callback = new Callback.Checked<RES>( ) {
+        @Override
+        public void fire( final RES response ) {
+          for ( final BatchedRequest<I,RES> request : batch ) try {
+            request.callback.fire( select( response, request.items ) );
+          } catch ( final Exception e ) {
+            logger.error( e, e );
+          }
+        }
+
+        @Override
+        public void fireException( final Throwable throwable ) {
+          final Optional<Set<I>> failedItems = batch.size( ) > 1 ?
+              failedItems( throwable ) :
+              Optional.<Set<I>>absent( );
+          final List<BatchedRequest<I,RES>> retryBatch = Lists.newArrayList( );
+          for ( final BatchedRequest<I,RES> request : batch ) try {
+            if ( failedItems.isPresent( ) && Collections.disjoint( request.items, failedItems.get( ) ) ) {
+              retryBatch.add( request );
+            } else {
+              request.callback.fireException( throwable );
+            }
+          } catch ( final Exception e ) {
+            logger.error( e, e );
+          }
+          if ( retryBatch.size( ) == batch.size( ) ) {
+            // failed items not identified, retry each request separately
+            for ( final BatchedRequest<I,RES> request : batch ) {
+              dispatch( accountNumber, ImmutableList.of( request ) );
+            }
+          } else if ( !retryBatch.isEmpty( ) ) {
+            dispatch( accountNumber, ImmutableList.copyOf( retryBatch ) );
+          }
+        }
+      };
+      try {
+        dispatch( AccountFullName.getInstance( accountNumber ), items, callback );
+      } catch ( final Exception e ) {
+        callback.fireException( e );
+      }
+    }
+
+    abstract void dispatch( AccountFullName accountFullName, List<I> items, Callback.Checked<RES> callback );
+
+    /**
+     * Items that caused the given failure, requests without these items are retried.
+     *
+     * @return The failed items (possibly unknown/empty) or absent if the failure is not item specific
+     */
+    Optional<Set<I>> failedItems( final Throwable throwable ) {
+      return Optional.absent( );
+    }
+
+    /**
+     * Select the part of the batched response for the given request items.
+     */
+    abstract RES select( RES response, List<I> items );
+  }
+
+  private static final class BatchedRequest<I,RES extends BaseMessage> {
+    private final List<I> items;
+    private final Callback.Checked<RES> callback;
+
+    private BatchedRequest( final List<I> items,
+                            final Callback.Checked<RES> callback ) {
+      this.items = items;
+      this.callback = callback;
+    }
+  }
+
+  private final class InstanceStatusRequests extends BatchedRequests<String,DescribeInstanceStatusResponseType> {
+    InstanceStatusRequests( ) {
+      super( MAX_INSTANCE_STATUS_BATCH );
+    }
+
+    @Override
+    void dispatch( final AccountFullName accountFullName,
+                   final List<String> instanceIds,
+                   final Callback.Checked<DescribeInstanceStatusResponseType> callback ) {
+      createComputeClientForUser( accountFullName ).dispatch( monitorInstances( instanceIds ), callback );
+    }
+
+    @Override
+    Optional<Set<String>> failedItems( final Throwable throwable ) {
+      final Optional<AsyncWebServiceError> errorOptional = AsyncExceptions.asWebServiceError( throwable );
+      if ( errorOptional.isPresent( ) && "InvalidInstanceID.NotFound".equals( errorOptional.get( ).getCode( ) ) ) {
+        return Optional.<Set<String>>of( Sets.newHashSet( instanceIds( errorOptional.get( ).getMessage( ) ) ) );
+      } else {
+        return Optional.absent( );
+      }
+    }
+
+    @Override
+    DescribeInstanceStatusResponseType select( final DescribeInstanceStatusResponseType response,
+                                               final List<String> instanceIds ) {
+      final DescribeInstanceStatusResponseType selected = new DescribeInstanceStatusResponseType( );
+      if ( response.getInstanceStatusSet( ) != null &&
+          response.getInstanceStatusSet( ).getItem( ) != null ) {
+        final Set<String> instanceIdSet = Sets.newHashSet( instanceIds );
+        final InstanceStatusSetType instanceStatusSet = new InstanceStatusSetType( );
+        for ( final InstanceStatusItemType instanceStatus : response.getInstanceStatusSet( ).getItem( ) ) {
+          if ( instanceIdSet.contains( instanceStatus.getInstanceId( ) ) ) {
+            instanceStatusSet.getItem( ).add( instanceStatus );
+          }
+        }
+        selected.setInstanceStatusSet( instanceStatusSet );
+      }
+      return selected;
+    }
+  }
+
+  private final class MetricDataRequests extends BatchedRequests<MetricDatum,PutMetricDataResponseType> {
+    MetricDataRequests( ) {
+      super( MAX_METRIC_DATA_BATCH );
+    }
+
+    @Override
+    void dispatch( final AccountFullName accountFullName,
+                   final List<MetricDatum> metricDatums,
+                   final Callback.Checked<PutMetricDataResponseType> callback ) {
+      final MetricData metricData = new MetricData( );
+      metricData.getMember( ).addAll( metricDatums );
+      final PutMetricDataType putMetricData = new PutMetricDataType( );
+      putMetricData.setNamespace( "AWS/AutoScaling" );
+      putMetricData.setMetricData( metricData );
+      createCloudWatchClientForUser( accountFullName ).dispatch( putMetricData, callback );
+    }
+
+    @Override
+    PutMetricDataResponseType select( final PutMetricDataResponseType response,
+                                      final List<MetricDatum> metricDatums ) {
+      return response;
+    }
+  }
+
+  /**
+   * Instance health requests for a cycle, shared by groups using the same load balancer.
+   */
+  private final class InstanceHealthRequests {
+    private final ConcurrentMap<String,CheckedListenableFuture<DescribeInstanceHealthResponseType>> responses =
+        Maps.newConcurrentMap( );
+
+    void dispatch( final ActivityContext context,
+                   final String accountNumber,
+                   final String loadBalancerName,
+                   final Callback.Checked<DescribeInstanceHealthResponseType> callback ) {
+      final CheckedListenableFuture<DescribeInstanceHealthResponseType> future = Futures.newGenericeFuture( );
+      final CheckedListenableFuture<DescribeInstanceHealthResponseType> existingFuture =
+          responses.putIfAbsent( accountNumber + ":" + loadBalancerName, future );
+      if ( existingFuture == null ) try {
+        context.getElbClient( ).dispatch( describeInstanceHealth( loadBalancerName ), new Callback.Checked<DescribeInstanceHealthResponseType>( ) {
+          @Override
+          public void fire( final DescribeInstanceHealthResponseType response ) {
+            future.set( response );
+          }
+
+          @Override
+          public void fireException( final Throwable throwable ) {
+            future.setException( throwable );
+          }
+        } );
+      } catch ( final Exception e ) {
+        future.setException( e );
+      }
+      final CheckedListenableFuture<DescribeInstanceHealthResponseType> responseFuture =
+          existingFuture == null ? future : existingFuture;
+      responseFuture.addListener( new Runnable( ) {
+        @Override
+        public void run( ) {
+          try {
+            callback.fire( responseFuture.get( ) );
+          } catch ( final ExecutionException e ) {
+            callback.fireException( e.getCause( ) );
+          } catch ( final InterruptedException e ) {
+            callback.fireException( e );
+          }
+        }
+      } );
+    }
+  }
+
   private abstract class ValidationScalingActivityTask<RES extends BaseMessage> extends ScalingActivityTask<AutoScalingGroupCoreView,RES> {
     private final String description;
     private final AtomicReference<List<String>> validationErrors = new AtomicReference<>(
@@ -34,6 +34,8 @@ import com.eucalyptus.util.Strings;
 import com.eucalyptus.util.TypeMapper;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
 
 /**
  *
@@ -51,6 +53,21 @@ public abstract class AutoScalingInstances {
                                             Predicate<? super AutoScalingInstance> filter,
                                             Function<? super AutoScalingInstance,T> transform ) throws AutoScalingMetadataException;
 
+  /**
+   * List instances for multiple groups, results are keyed by group ARN.
+   *
+   * <p>Implementations should override to avoid a query per group.</p>
+   */
+  public <T> ListMultimap<String,T> listByGroups( final Collection<? extends AutoScalingGroupMetadata> groups,
+                                                  final Predicate<? super AutoScalingInstance> filter,
+                                                  final Function<? super AutoScalingInstance,T> transform ) throws AutoScalingMetadataException {
+    final ListMultimap<String,T> instancesByGroupArn = ArrayListMultimap.create( );
+    for ( final AutoScalingGroupMetadata group : groups ) {
+      instancesByGroupArn.putAll( group.getArn( ), listByGroup( group, filter, transform ) );
+    }
+    return instancesByGroupArn;
+  }
+
   public abstract <T> List<T>  listByState( LifecycleState lifecycleState,
                                             ConfigurationState configurationState,
                                             Function<? super AutoScalingInstance,T> transform ) throws AutoScalingMetadataException;
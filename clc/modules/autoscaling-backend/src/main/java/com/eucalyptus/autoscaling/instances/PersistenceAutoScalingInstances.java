@@ -40,7 +40,9 @@ import com.google.common.base.Function;
 import com.google.common.base.Functions;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
@@ -78,6 +80,47 @@ public class PersistenceAutoScalingInstances extends AutoScalingInstances {
     return persistenceSupport.listByExample( example, filter, transform );
   }
 
+  @Override
+  public <T> ListMultimap<String,T> listByGroups( final Collection<? extends AutoScalingGroupMetadata> groups,
+                                                  final Predicate<? super AutoScalingInstance> filter,
+                                                  final Function<? super AutoScalingInstance,T> transform ) throws AutoScalingMetadataException {
+    final Map<String,String> groupArnsByName = Maps.newHashMap( );
+    for ( final AutoScalingGroupMetadata group : groups ) {
+      groupArnsByName.put( groupKey( group.getOwner( ).getAccountNumber( ), group.getDisplayName( ) ), group.getArn( ) );
+    }
+    final Predicate<AutoScalingInstance> groupFilter = new Predicate<AutoScalingInstance>( ) {
+      @Override
+      public boolean apply( final AutoScalingInstance instance ) {
+        return groupArnsByName.containsKey( groupKey( instance.getOwnerAccountNumber( ), instance.getAutoScalingGroupName( ) ) ) &&
+            filter.apply( instance );
+      }
+    };
+    final Function<AutoScalingInstance,Map.Entry<String,T>> groupTransform = new Function<AutoScalingInstance,Map.Entry<String,T>>( ) {
+      @Override
+      public Map.Entry<String,T> apply( final AutoScalingInstance instance ) {
+        return Maps.immutableEntry(
+            groupArnsByName.get( groupKey( instance.getOwnerAccountNumber( ), instance.getAutoScalingGroupName( ) ) ),
+            transform.apply( instance ) );
+      }
+    };
+    final Set<String> groupNames = Sets.newTreeSet( );
+    for ( final AutoScalingGroupMetadata group : groups ) {
+      groupNames.add( group.getDisplayName( ) );
+    }
+    final ListMultimap<String,T> instancesByGroupArn = ArrayListMultimap.create( );
+    for ( final List<String> groupNamesBatch : Iterables.partition( groupNames, 1000 ) ) {
+      for ( final Map.Entry<String,T> entry : persistenceSupport.listByExample(
+          AutoScalingInstance.withOwner( (String) null ),
+          groupFilter,
+          Property.forName( "autoScalingGroupName" ).in( groupNamesBatch ),
+          Collections.<String,String>emptyMap( ),
+          groupTransform ) ) {
+        instancesByGroupArn.put( entry.getKey( ), entry.getValue( ) );
+      }
+    }
+    return instancesByGroupArn;
+  }
+
   @Override
   public <T> List<T> listByState( final LifecycleState lifecycleState,
                                   final ConfigurationState configurationState,
@@ -270,6 +313,10 @@ public class PersistenceAutoScalingInstances extends AutoScalingInstances {
     return persistenceSupport.save( autoScalingInstance );
   }
 
+  private static String groupKey( final String accountNumber, final String groupName ) {
+    return accountNumber + ":" + groupName;
+  }
+
   private AutoScalingInstance exampleForGroup( final AutoScalingGroupMetadata group ) {
     final AutoScalingInstance example = AutoScalingInstance.withOwner( group.getOwner() );
     example.clearUserIdentity();
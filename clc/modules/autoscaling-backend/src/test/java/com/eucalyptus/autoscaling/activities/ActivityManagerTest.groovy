@@ -69,12 +69,16 @@ import com.eucalyptus.loadbalancing.common.msgs.RegisterInstancesWithLoadBalance
 import com.eucalyptus.util.Callback
 import com.eucalyptus.auth.principal.OwnerFullName
 import com.eucalyptus.util.TypeMappers
+import com.eucalyptus.ws.EucalyptusWebServiceException
+import com.eucalyptus.ws.Role
 import com.eucalyptus.ws.WebServicesException
 import com.google.common.base.Function
 import com.google.common.base.Functions
 import com.google.common.base.Predicate
 import com.google.common.base.Predicates
 import com.google.common.base.Strings
+import com.google.common.collect.ArrayListMultimap
+import com.google.common.collect.ListMultimap
 import com.google.common.collect.Sets
 import static org.junit.Assert.*
 
@@ -1076,6 +1080,117 @@ class ActivityManagerTest {
     }
   }
 
+  @Test
+  void testMonitoringManyGroups() {
+    Accounts.setIdentityProvider( identityProvider( ) )
+
+    List<AutoScalingGroup> groups = (1..5000).collect { int index ->
+      new AutoScalingGroup(
+          id: String.valueOf( index ),
+          naturalId: String.valueOf( index ),
+          availabilityZones: [ "Zone1" ],
+          healthCheckType: HealthCheckType.EC2,
+          displayName: "Group" + index,
+          launchConfiguration: new LaunchConfiguration(
+              id: "1",
+              naturalId: "1",
+              ownerAccountNumber: "000000000000",
+              displayName: "Config1",
+              imageId: "emi-00000001",
+              instanceType: "m1.small",
+          ),
+          scalingRequired: false,
+          desiredCapacity: 1,
+          capacity:  1,
+          minSize: 1,
+          maxSize: 1,
+          ownerAccountNumber: "000000000000",
+          version: 1,
+      )
+    }
+    List<AutoScalingInstance> instances = groups.collect { AutoScalingGroup group ->
+      AutoScalingInstance instance = instance( Integer.valueOf( group.naturalId ), group, "Zone1" )
+      instance.creationTimestamp = timestamp( "2000-01-01T00:00:00.000" )
+      instance
+    }
+    Map<String,Integer> queryCounts = [:]
+    Map<String,Integer> requestCounts = [:]
+    List<ScalingActivity> scalingActivities = []
+    ActivityManager manager = activityManager(
+        groups,
+        scalingActivities,
+        autoScalingInstanceStore( instances, queryCounts ),
+        true,
+        [ "i-00004321" ],
+        [],
+        [],
+        requestCounts )
+
+    manager.doScaling()
+
+    assertEquals( "Per group instance queries", 0, queryCounts.listByGroup ?: 0 )
+    assertEquals( "Multiple group instance queries", 2, queryCounts.listByGroups ?: 0 )
+    assertEquals( "Instance status requests", 5, requestCounts.DescribeInstanceStatusType ?: 0 )
+    assertEquals( "Unhealthy instance id", "i-00004321", instances.get( 4320 ).instanceId )
+    assertEquals( "Unhealthy instance health status", HealthStatus.Unhealthy, instances.get( 4320 ).healthStatus )
+    assertEquals( "Healthy instance health status", HealthStatus.Healthy, instances.get( 4319 ).healthStatus )
+    assertEquals( "Scaling activity count", 0, scalingActivities.size() )
+  }
+
+  @Test
+  void testMonitoringBatchWithMissingInstance() {
+    Accounts.setIdentityProvider( identityProvider( ) )
+
+    List<AutoScalingGroup> groups = (1..3).collect { int index ->
+      new AutoScalingGroup(
+          id: String.valueOf( index ),
+          naturalId: String.valueOf( index ),
+          availabilityZones: [ "Zone1" ],
+          healthCheckType: HealthCheckType.EC2,
+          displayName: "Group" + index,
+          launchConfiguration: new LaunchConfiguration(
+              id: "1",
+              naturalId: "1",
+              ownerAccountNumber: "000000000000",
+              displayName: "Config1",
+              imageId: "emi-00000001",
+              instanceType: "m1.small",
+          ),
+          scalingRequired: false,
+          desiredCapacity: 1,
+          capacity:  1,
+          minSize: 1,
+          maxSize: 1,
+          ownerAccountNumber: "000000000000",
+          version: 1,
+      )
+    }
+    List<AutoScalingInstance> instances = groups.collect { AutoScalingGroup group ->
+      AutoScalingInstance instance = instance( Integer.valueOf( group.naturalId ), group, "Zone1" )
+      instance.creationTimestamp = timestamp( "2000-01-01T00:00:00.000" )
+      instance
+    }
+    Map<String,Integer> requestCounts = [:]
+    List<ScalingActivity> scalingActivities = []
+    ActivityManager manager = activityManager(
+        groups,
+        scalingActivities,
+        autoScalingInstanceStore( instances ),
+        true,
+        [ "i-00000002" ],
+        [],
+        [],
+        requestCounts,
+        [ "i-00000001" ] )
+
+    manager.doScaling()
+
+    assertEquals( "Instance status requests", 2, requestCounts.DescribeInstanceStatusType ?: 0 )
+    assertEquals( "Missing instance health status", HealthStatus.Unhealthy, instances.get( 0 ).healthStatus )
+    assertEquals( "Impaired instance health status", HealthStatus.Unhealthy, instances.get( 1 ).healthStatus )
+    assertEquals( "Healthy instance health status", HealthStatus.Healthy, instances.get( 2 ).healthStatus )
+  }
+
   Date timestamp( String text ) {
     Timestamps.parseIso8601Timestamp( text )
   }
@@ -1123,10 +1238,29 @@ class ActivityManagerTest {
                                            List<String> unhealthyInstanceIds = [],
                                            List<String> unhealthyElbInstanceIds = [],
                                            List<String> unavailableZones = [] ) {
+    activityManager(
+        [group],
+        scalingActivities,
+        autoScalingInstanceStore(instances),
+        healthChecks,
+        unhealthyInstanceIds,
+        unhealthyElbInstanceIds,
+        unavailableZones )
+  }
+
+  private ActivityManager activityManager( List<AutoScalingGroup> groups,
+                                           List<ScalingActivity> scalingActivities,
+                                           AutoScalingInstances instanceStore,
+                                           boolean healthChecks,
+                                           List<String> unhealthyInstanceIds,
+                                           List<String> unhealthyElbInstanceIds,
+                                           List<String> unavailableZones,
+                                           Map<String,Integer> requestCounts = [:],
+                                           List<String> missingInstanceIds = [] ) {
     ActivityManager manager = new ActivityManager(
         autoScalingActivitiesStore(scalingActivities),
-        autoScalingGroupStore([group],healthChecks),
-        autoScalingInstanceStore(instances),
+        autoScalingGroupStore(groups,healthChecks),
+        instanceStore,
         zoneAvailabilityMarkers(),
         zoneMonitor(unavailableZones)
     ) {
@@ -1167,7 +1301,11 @@ class ActivityManagerTest {
       @Override
       def ComputeClient createComputeClientForUser(final AccountFullName accountFullName) {
         new TestClients.TestComputeClient( accountFullName, { request ->
+          requestCounts[ request.class.simpleName ] = ( requestCounts[ request.class.simpleName ] ?: 0 ) + 1
           if ( request instanceof DescribeInstanceStatusType ) {
+            List<String> missing = request.instancesSet.findAll { instanceId -> missingInstanceIds.contains( instanceId ) }
+            if ( missing ) throw new EucalyptusWebServiceException(
+                "InvalidInstanceID.NotFound", Role.Sender, "The instance ID '" + missing.join( ", " ) + "' does not exist" )
             new DescribeInstanceStatusResponseType(
                 instanceStatusSet: new InstanceStatusSetType(
                     item: request.instancesSet.collect { instanceId ->
@@ -1404,7 +1542,8 @@ class ActivityManagerTest {
     }
   }
 
-  AutoScalingInstances autoScalingInstanceStore( List<AutoScalingInstance> instances = [] ) {
+  AutoScalingInstances autoScalingInstanceStore( List<AutoScalingInstance> instances = [],
+                                                Map<String,Integer> queryCounts = [:] ) {
     new AutoScalingInstances(){
       long timestamp = System.currentTimeMillis() - 1000
 
@@ -1430,6 +1569,7 @@ class ActivityManagerTest {
       <T> List<T> listByGroup(AutoScalingMetadata.AutoScalingGroupMetadata group,
                               Predicate<? super AutoScalingInstance> filter,
                               Function<? super AutoScalingInstance, T> transform) {
+        queryCounts.listByGroup = ( queryCounts.listByGroup ?: 0 ) + 1
         group == null ?
           list( null, filter, transform ) :
           listByGroup(
@@ -1440,6 +1580,22 @@ class ActivityManagerTest {
               .collect{ AutoScalingInstance instance -> transform.apply( instance ) }
       }
 
+      @Override
+      <T> ListMultimap<String,T> listByGroups(Collection<? extends AutoScalingMetadata.AutoScalingGroupMetadata> groups,
+                                              Predicate<? super AutoScalingInstance> filter,
+                                              Function<? super AutoScalingInstance, T> transform) {
+        queryCounts.listByGroups = ( queryCounts.listByGroups ?: 0 ) + 1
+        Map<String,String> groupArns = groups.collectEntries { group -> [ group.ownerAccountNumber + ":" + group.displayName, group.arn ] }
+        ListMultimap<String,T> instancesByGroupArn = ArrayListMultimap.create( )
+        instances.each { instance ->
+          String groupArn = groupArns.get( instance.ownerAccountNumber + ":" + instance.autoScalingGroupName )
+          if ( groupArn != null && filter.apply( instance ) ) {
+            instancesByGroupArn.put( groupArn, transform.apply( instance ) )
+          }
+        }
+        instancesByGroupArn
+      }
+
       @Override
       <T> List<T> listByState(LifecycleState lifecycleState,
                               ConfigurationState configurationState,
@@ -140,6 +140,23 @@ public class CephRbdInputStream extends InputStream {
     return read(b, 0, b.length);
   }
 
+  /**
+   * Moves the read position forward without reading the skipped bytes from the image. Skipping past the end of the image is allowed, subsequent
+   * reads return -1
+   */
+  @Override
+  public long skip(long n) throws IOException {
+    if (isOpen) {
+      if (n <= 0) {
+        return 0;
+      }
+      position += n;
+      return n;
+    } else {
+      throw new IOException("Stream is not open/initialized");
+    }
+  }
+
   @Override
   public void close() {
     if (isOpen) {
@@ -0,0 +1,283 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+
+package com.eucalyptus.blockstorage.entities;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nullable;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Table;
+
+import org.hibernate.criterion.Restrictions;
+
+import com.eucalyptus.blockstorage.util.StorageProperties;
+import com.eucalyptus.entities.AbstractPersistent;
+import com.eucalyptus.entities.Entities;
+import com.eucalyptus.entities.TransactionResource;
+import com.eucalyptus.util.EucalyptusCloudException;
+
+/**
+ * Block manifest of a snapshot uploaded to objectstorage. Incremental snapshots only upload the blocks that changed since the parent snapshot, the
+ * manifest object records the snapshot in the chain holding each block. Records are not scoped to a storage controller so that any partition can
+ * restore the chain
+ */
+@PersistenceContext(name = "eucalyptus_storage")
+@Table(name = "snapshot_manifest")
+@Entity
+public class SnapshotManifestInfo extends AbstractPersistent {
+
+  public static enum SnapshotManifestState {
+    creating, available, deleted, purged
+  }
+
+  @Column(name = "sc_name")
+  private String scName;
+
+  @Column(name = "snapshot_id", unique = true)
+  private String snapshotId;
+
+  @Column(name = "volume_id")
+  private String volumeId;
+
+  @Column(name = "parent_snapshot_id")
+  private String parentSnapshotId;
+
+  @Column(name = "chain_depth")
+  private Integer chainDepth;
+
+  @Column(name = "block_size")
+  private Integer blockSize;
+
+  @Column(name = "volume_size")
+  private Long volumeSize;
+
+  @Column(name = "bucket_name")
+  private String bucketName;
+
+  @Column(name = "key_name")
+  private String keyName;
+
+  @Column(name = "manifest_key_name")
+  private String manifestKeyName;
+
+  @Column(name = "state")
+  @Enumerated(EnumType.STRING)
+  private SnapshotManifestState state;
+
+  public SnapshotManifestInfo() {}
+
+  public SnapshotManifestInfo(String snapshotId) {
+    this.snapshotId = snapshotId;
+  }
+
+  public SnapshotManifestInfo(String snapshotId, String volumeId, String parentSnapshotId, Integer chainDepth, Integer blockSize, Long volumeSize,
+      String bucketName, String keyName, String manifestKeyName) {
+    this.scName = StorageProperties.NAME;
+    this.snapshotId = snapshotId;
+    this.volumeId = volumeId;
+    this.parentSnapshotId = parentSnapshotId;
+    this.chainDepth = chainDepth;
+    this.blockSize = blockSize;
+    this.volumeSize = volumeSize;
+    this.bucketName = bucketName;
+    this.keyName = keyName;
+    this.manifestKeyName = manifestKeyName;
+    this.state = SnapshotManifestState.creating;
+  }
+
+  public String getScName() {
+    return scName;
+  }
+
+  public void setScName(String scName) {
+    this.scName = scName;
+  }
+
+  public String getSnapshotId() {
+    return snapshotId;
+  }
+
+  public void setSnapshotId(String snapshotId) {
+    this.snapshotId = snapshotId;
+  }
+
+  public String getVolumeId() {
+    return volumeId;
+  }
+
+  public void setVolumeId(String volumeId) {
+    this.volumeId = volumeId;
+  }
+
+  public String getParentSnapshotId() {
+    return parentSnapshotId;
+  }
+
+  public void setParentSnapshotId(String parentSnapshotId) {
+    this.parentSnapshotId = parentSnapshotId;
+  }
+
+  public Integer getChainDepth() {
+    return chainDepth;
+  }
+
+  public void setChainDepth(Integer chainDepth) {
+    this.chainDepth = chainDepth;
+  }
+
+  public Integer getBlockSize() {
+    return blockSize;
+  }
+
+  public void setBlockSize(Integer blockSize) {
+    this.blockSize = blockSize;
+  }
+
+  public Long getVolumeSize() {
+    return volumeSize;
+  }
+
+  public void setVolumeSize(Long volumeSize) {
+    this.volumeSize = volumeSize;
+  }
+
+  public String getBucketName() {
+    return bucketName;
+  }
+
+  public void setBucketName(String bucketName) {
+    this.bucketName = bucketName;
+  }
+
+  public String getKeyName() {
+    return keyName;
+  }
+
+  public void setKeyName(String keyName) {
+    this.keyName = keyName;
+  }
+
+  public String getManifestKeyName() {
+    return manifestKeyName;
+  }
+
+  public void setManifestKeyName(String manifestKeyName) {
+    this.manifestKeyName = manifestKeyName;
+  }
+
+  public SnapshotManifestState getState() {
+    return state;
+  }
+
+  public void setState(SnapshotManifestState state) {
+    this.state = state;
+  }
+
+  @Override
+  public String toString() {
+    return "SnapshotManifestInfo [snapshotId=" + snapshotId + ", parentSnapshotId=" + parentSnapshotId + ", chainDepth=" + chainDepth
+        + ", bucketName=" + bucketName + ", keyName=" + keyName + ", state=" + state + "]";
+  }
+
+  public static SnapshotManifestInfo create(SnapshotManifestInfo manifestInfo) throws EucalyptusCloudException {
+    try (TransactionResource transaction = Entities.transactionFor(SnapshotManifestInfo.class)) {
+      // A previous attempt for the same snapshot is replaced
+      List<SnapshotManifestInfo> existing = Entities.query(new SnapshotManifestInfo(manifestInfo.getSnapshotId()));
+      for (SnapshotManifestInfo info : existing) {
+        Entities.delete(info);
+      }
+      SnapshotManifestInfo created = Entities.persist(manifestInfo);
+      transaction.commit();
+      return created;
+    } catch (Exception ex) {
+      throw new EucalyptusCloudException("Failed to create snapshot manifest entity " + manifestInfo, ex);
+    }
+  }
+
+  /**
+   * @return manifest record for the snapshot or null if the snapshot was uploaded without a manifest
+   */
+  @Nullable
+  public static SnapshotManifestInfo lookup(String snapshotId) throws EucalyptusCloudException {
+    try (TransactionResource transaction = Entities.transactionFor(SnapshotManifestInfo.class)) {
+      List<SnapshotManifestInfo> found = Entities.query(new SnapshotManifestInfo(snapshotId), Boolean.TRUE);
+      transaction.commit();
+      return found.isEmpty() ? null : found.get(0);
+    } catch (Exception ex) {
+      throw new EucalyptusCloudException("Failed to look up snapshot manifest entity for " + snapshotId, ex);
+    }
+  }
+
+  /**
+   * @return most recently created available manifest of a snapshot of the volume on this storage controller, null if there is none
+   */
+  @Nullable
+  public static SnapshotManifestInfo lookupLatest(String volumeId) throws EucalyptusCloudException {
+    SnapshotManifestInfo example = new SnapshotManifestInfo();
+    example.setScName(StorageProperties.NAME);
+    example.setVolumeId(volumeId);
+    example.setState(SnapshotManifestState.available);
+    try (TransactionResource transaction = Entities.transactionFor(SnapshotManifestInfo.class)) {
+      SnapshotManifestInfo latest = null;
+      for (SnapshotManifestInfo info : Entities.query(example, Boolean.TRUE)) {
+        if (latest == null || info.getCreationTimestamp().after(latest.getCreationTimestamp())) {
+          latest = info;
+        }
+      }
+      transaction.commit();
+      return latest;
+    } catch (Exception ex) {
+      throw new EucalyptusCloudException("Failed to look up snapshot manifest entities for " + volumeId, ex);
+    }
+  }
+
+  /**
+   * @return true if an incremental snapshot that has not been purged was uploaded against the snapshot
+   */
+  public static boolean isParent(String snapshotId) throws EucalyptusCloudException {
+    try (TransactionResource transaction = Entities.transactionFor(SnapshotManifestInfo.class)) {
+      List<SnapshotManifestInfo> children =
+          Entities.query(new SnapshotManifestInfo(), Boolean.TRUE,
+              Restrictions.and(Restrictions.eq("parentSnapshotId", snapshotId), Restrictions.ne("state", SnapshotManifestState.purged)),
+              Collections.<String, String>emptyMap());
+      transaction.commit();
+      return !children.isEmpty();
+    } catch (Exception ex) {
+      throw new EucalyptusCloudException("Failed to look up incremental snapshots of " + snapshotId, ex);
+    }
+  }
+
+  public SnapshotManifestInfo updateState(SnapshotManifestState state) throws EucalyptusCloudException {
+    try (TransactionResource transaction = Entities.transactionFor(SnapshotManifestInfo.class)) {
+      SnapshotManifestInfo manifestInfo = Entities.uniqueResult(new SnapshotManifestInfo(this.snapshotId));
+      manifestInfo.setState(state);
+      transaction.commit();
+      return manifestInfo;
+    } catch (Exception ex) {
+      throw new EucalyptusCloudException("Failed to update state for snapshot manifest entity " + this + " to " + state, ex);
+    }
+  }
+}
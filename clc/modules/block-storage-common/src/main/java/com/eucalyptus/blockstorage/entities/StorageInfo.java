@@ -112,6 +112,9 @@ public class StorageInfo extends AbstractPersistent {
   private static final Integer DEFAULT_SNAPSHOT_TRANSFER_TIMEOUT = 48;
   private static final Integer DEFAULT_READ_BUFFER_SIZE_IN_MB = 1;
   private static final Integer DEFAULT_WRITE_BUFFER_SIZE_IN_MB = 100;
+  private static final Integer DEFAULT_SNAPSHOT_UPLOAD_BUFFER_SIZE_IN_MB = 300;
+  private static final Integer DEFAULT_MAX_CONCURRENT_SNAPSHOT_PART_UPLOADS = 6;
+  private static final Integer DEFAULT_MAX_SNAPSHOT_DELTAS = 0;
   private static final Integer DEFAULT_DELETED_VOL_EXPIRATION_TIME = 1440;// minutes
   private static final Integer DEFAULT_DELETED_SNAP_EXPIRATION_TIME = 60;// minutes
   private static final Integer MIN_RESOURCE_EXPIRATION_TIME = 10;// minutes
@@ -184,6 +187,23 @@ public class StorageInfo extends AbstractPersistent {
   @Column(name = "write_buffer_size_mb")
   private Integer writeBufferSizeInMB;
 
+  @ConfigurableField(
+      description = "Maximum memory in MB used by each snapshot upload for holding compressed snapshot parts. Raised to at least twice the snapshot part size",
+      displayName = "Snapshot Upload Buffer Size", initial = "300", changeListener = PositiveIntegerChangeListener.class)
+  @Column(name = "snapshot_upload_buffer_size_mb")
+  private Integer snapshotUploadBufferSizeInMB;
+
+  @ConfigurableField(description = "Maximum number of snapshot parts that can be uploaded to objectstorage gateway at a given time",
+      displayName = "Maximum Concurrent Snapshot Part Uploads", initial = "6", changeListener = PositiveIntegerChangeListener.class)
+  @Column(name = "max_concurrent_snapshot_part_uploads")
+  private Integer maxConcurrentSnapshotPartUploads;
+
+  @ConfigurableField(
+      description = "Maximum number of incremental snapshots uploaded against a full snapshot of a volume before the next full snapshot. 0 disables incremental snapshots",
+      displayName = "Maximum Incremental Snapshots", initial = "0", changeListener = NonNegativeIntegerChangeListener.class)
+  @Column(name = "max_snapshot_deltas")
+  private Integer maxSnapshotDeltas;
+
   @ConfigurableField(description = "Maximum number of volumes processed on the block storage backend at a given time",
       displayName = "Maximum Concurrent Volumes", initial = DEFAULT_MAX_CONCURRENT_VOLUMES, changeListener = PositiveIntegerChangeListener.class)
   @Column(name = "max_concurrent_volumes_processed")
@@ -306,6 +326,30 @@ public class StorageInfo extends AbstractPersistent {
     this.writeBufferSizeInMB = writeBufferSizeInMB;
   }
 
+  public Integer getSnapshotUploadBufferSizeInMB() {
+    return snapshotUploadBufferSizeInMB;
+  }
+
+  public void setSnapshotUploadBufferSizeInMB(Integer snapshotUploadBufferSizeInMB) {
+    this.snapshotUploadBufferSizeInMB = snapshotUploadBufferSizeInMB;
+  }
+
+  public Integer getMaxConcurrentSnapshotPartUploads() {
+    return maxConcurrentSnapshotPartUploads;
+  }
+
+  public void setMaxConcurrentSnapshotPartUploads(Integer maxConcurrentSnapshotPartUploads) {
+    this.maxConcurrentSnapshotPartUploads = maxConcurrentSnapshotPartUploads;
+  }
+
+  public Integer getMaxSnapshotDeltas() {
+    return maxSnapshotDeltas;
+  }
+
+  public void setMaxSnapshotDeltas(Integer maxSnapshotDeltas) {
+    this.maxSnapshotDeltas = maxSnapshotDeltas;
+  }
+
   public Integer getMaxConcurrentVolumes() {
     return maxConcurrentVolumes;
   }
@@ -391,6 +435,15 @@ public class StorageInfo extends AbstractPersistent {
     if (writeBufferSizeInMB == null) {
       writeBufferSizeInMB = DEFAULT_WRITE_BUFFER_SIZE_IN_MB;
     }
+    if (snapshotUploadBufferSizeInMB == null) {
+      snapshotUploadBufferSizeInMB = DEFAULT_SNAPSHOT_UPLOAD_BUFFER_SIZE_IN_MB;
+    }
+    if (maxConcurrentSnapshotPartUploads == null) {
+      maxConcurrentSnapshotPartUploads = DEFAULT_MAX_CONCURRENT_SNAPSHOT_PART_UPLOADS;
+    }
+    if (maxSnapshotDeltas == null) {
+      maxSnapshotDeltas = DEFAULT_MAX_SNAPSHOT_DELTAS;
+    }
     if (maxConcurrentVolumes == null) {
       maxConcurrentVolumes = Integer.valueOf(DEFAULT_MAX_CONCURRENT_VOLUMES);
     }
@@ -413,6 +466,9 @@ public class StorageInfo extends AbstractPersistent {
     info.setSnapshotTransferTimeoutInHours(DEFAULT_SNAPSHOT_TRANSFER_TIMEOUT);
     info.setReadBufferSizeInMB(DEFAULT_READ_BUFFER_SIZE_IN_MB);
     info.setWriteBufferSizeInMB(DEFAULT_WRITE_BUFFER_SIZE_IN_MB);
+    info.setSnapshotUploadBufferSizeInMB(DEFAULT_SNAPSHOT_UPLOAD_BUFFER_SIZE_IN_MB);
+    info.setMaxConcurrentSnapshotPartUploads(DEFAULT_MAX_CONCURRENT_SNAPSHOT_PART_UPLOADS);
+    info.setMaxSnapshotDeltas(DEFAULT_MAX_SNAPSHOT_DELTAS);
     info.setMaxConcurrentVolumes(Integer.valueOf(DEFAULT_MAX_CONCURRENT_VOLUMES));
     info.setMaxConcurrentSnapshots(Integer.valueOf(DEFAULT_MAX_CONCURRENT_SNAPSHOTS));
     return info;
@@ -476,6 +532,21 @@ public class StorageInfo extends AbstractPersistent {
     }
   }
 
+  public static class NonNegativeIntegerChangeListener implements PropertyChangeListener<Integer> {
+
+    @Override
+    public void fireChange(ConfigurableProperty t, Integer newValue) throws ConfigurablePropertyException {
+      if (newValue == null) {
+        LOG.error("Invalid value for " + t.getFieldName());
+        throw new ConfigurablePropertyException("Invalid value for " + t.getFieldName());
+      } else if (newValue.intValue() < 0) {
+        LOG.error(t.getFieldName() + " cannot be modified to " + newValue + ". It must be an integer greater than or equal to 0");
+        throw new ConfigurablePropertyException(t.getFieldName() + " cannot be modified to " + newValue
+            + ". It must be an integer greater than or equal to 0");
+      }
+    }
+  }
+
   public static class MinimumExpirationTimeChangeListener implements PropertyChangeListener<Integer> {
 
     @Override
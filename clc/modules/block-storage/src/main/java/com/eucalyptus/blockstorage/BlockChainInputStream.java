@@ -0,0 +1,164 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+
+package com.eucalyptus.blockstorage;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Reassembles a volume from a chain of incremental snapshots. Every block is read from the snapshot recorded as its source in the manifest of the
+ * last snapshot in the chain. Snapshot objects are opened on first use and read sequentially, blocks that were superseded by later snapshots are
+ * skipped
+ */
+public class BlockChainInputStream extends InputStream {
+
+  private static final Logger LOG = Logger.getLogger(BlockChainInputStream.class);
+
+  /**
+   * Opens the compressed object of a snapshot in the chain
+   */
+  public interface SnapshotObjectOpener {
+    InputStream open(String snapshotId) throws IOException;
+  }
+
+  private final BlockManifest manifest;
+  private final List<BlockManifest> chainManifests;
+  private final SnapshotObjectOpener opener;
+  private final int bufferSize;
+  private final InputStream[] streams;
+  private final int[] cursors;
+  private int block;
+  private int blockPosition;
+  private byte[] single;
+
+  /**
+   * @param chainManifests manifests of the snapshots in the chain of the given manifest, in chain order. The last one is the manifest itself
+   */
+  public BlockChainInputStream(BlockManifest manifest, List<BlockManifest> chainManifests, SnapshotObjectOpener opener, int bufferSize)
+      throws IOException {
+    if (chainManifests.size() != manifest.getChain().size()) {
+      throw new IOException("Expected " + manifest.getChain().size() + " manifests for snapshot chain of " + manifest.getSnapshotId() + " but got "
+          + chainManifests.size());
+    }
+    for (int i = 0; i < chainManifests.size(); i++) {
+      BlockManifest chainManifest = chainManifests.get(i);
+      if (!chainManifest.getSnapshotId().equals(manifest.getChain().get(i))
+          || !chainManifest.isCompatible(manifest.getVolumeSize(), manifest.getBlockSize())) {
+        throw new IOException("Manifest of " + chainManifest.getSnapshotId() + " does not belong to the snapshot chain of " + manifest.getSnapshotId());
+      }
+    }
+    this.manifest = manifest;
+    this.chainManifests = chainManifests;
+    this.opener = opener;
+    this.bufferSize = bufferSize;
+    this.streams = new InputStream[chainManifests.size()];
+    this.cursors = new int[chainManifests.size()];
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (single == null) {
+      single = new byte[1];
+    }
+    return read(single, 0, 1) > 0 ? single[0] & 0xff : -1;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (block >= manifest.getBlockCount()) {
+      return -1;
+    }
+
+    InputStream stream = seek(manifest.getSource(block));
+    int count = stream.read(b, off, Math.min(len, manifest.getBlockLength(block) - blockPosition));
+    if (count < 0) {
+      throw new EOFException("Unexpected end of snapshot " + manifest.getChain().get(manifest.getSource(block)) + " reading block " + block);
+    }
+    blockPosition += count;
+    if (blockPosition == manifest.getBlockLength(block)) {
+      cursors[manifest.getSource(block)] = block + 1;
+      block++;
+      blockPosition = 0;
+    }
+    return count;
+  }
+
+  /**
+   * Positions the stream of the source snapshot at the current block, skipping its blocks that precede the current block
+   */
+  private InputStream seek(int source) throws IOException {
+    if (streams[source] == null) {
+      String snapshotId = manifest.getChain().get(source);
+      LOG.debug("Opening snapshot " + snapshotId + " in the chain of " + manifest.getSnapshotId());
+      streams[source] = new GZIPInputStream(new BufferedInputStream(opener.open(snapshotId), bufferSize), bufferSize);
+    }
+    if (blockPosition == 0) {
+      BlockManifest sourceManifest = chainManifests.get(source);
+      for (int skipBlock = cursors[source]; skipBlock < block; skipBlock++) {
+        if (sourceManifest.isStored(skipBlock)) {
+          skipFully(streams[source], sourceManifest.getBlockLength(skipBlock));
+        }
+      }
+      cursors[source] = block;
+    }
+    return streams[source];
+  }
+
+  private static void skipFully(InputStream stream, long length) throws IOException {
+    while (length > 0) {
+      long skipped = stream.skip(length);
+      if (skipped <= 0) {
+        if (stream.read() < 0) {
+          throw new EOFException("Unexpected end of snapshot skipping superseded blocks");
+        }
+        skipped = 1;
+      }
+      length -= skipped;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    IOException error = null;
+    for (int i = 0; i < streams.length; i++) {
+      if (streams[i] != null) {
+        try {
+          streams[i].close();
+        } catch (IOException e) {
+          error = e;
+        }
+        streams[i] = null;
+      }
+    }
+    if (error != null) {
+      throw error;
+    }
+  }
+}
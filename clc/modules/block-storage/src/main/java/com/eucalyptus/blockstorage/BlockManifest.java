@@ -0,0 +1,229 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+
+package com.eucalyptus.blockstorage;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.Nullable;
+
+/**
+ * Fixed size block map of a snapshot. Records the SHA-256 hash of every block of the volume and the snapshot in the chain that holds the block.
+ * The chain lists the snapshot ids starting with the full snapshot and ending with the snapshot the manifest describes. The snapshot object only
+ * contains the blocks whose source is the last snapshot in the chain, in block order, each block compressed as part of a gzip member
+ */
+public class BlockManifest {
+
+  public static final int DEFAULT_BLOCK_SIZE = 4 * 1024 * 1024;
+
+  private static final int MAGIC = 0x45424d46; // EBMF
+  private static final int VERSION = 1;
+  private static final int HASH_LENGTH = 32;
+
+  private final long volumeSize;
+  private final int blockSize;
+  private final List<String> chain;
+  private final byte[] hashes;
+  private final short[] sources;
+
+  private BlockManifest(long volumeSize, int blockSize, List<String> chain, byte[] hashes, short[] sources) {
+    this.volumeSize = volumeSize;
+    this.blockSize = blockSize;
+    this.chain = chain;
+    this.hashes = hashes;
+    this.sources = sources;
+  }
+
+  /**
+   * Creates the manifest for a new snapshot. Blocks default to the hashes and sources of the parent manifest so that only blocks recorded as changed
+   * are stored in the new snapshot
+   * 
+   * @param parent manifest of the previous snapshot of the volume, null for a full snapshot
+   */
+  public static BlockManifest create(String snapshotId, long volumeSize, int blockSize, @Nullable BlockManifest parent) {
+    if (blockSize <= 0 || volumeSize < 0) {
+      throw new IllegalArgumentException("Invalid block size " + blockSize + " or volume size " + volumeSize);
+    }
+    int blocks = (int) ((volumeSize + blockSize - 1) / blockSize);
+    List<String> chain = new ArrayList<String>();
+    byte[] hashes;
+    short[] sources;
+    if (parent != null && parent.isCompatible(volumeSize, blockSize)) {
+      if (parent.chain.size() >= Short.MAX_VALUE) {
+        throw new IllegalArgumentException("Snapshot chain of " + parent.getSnapshotId() + " is too long");
+      }
+      chain.addAll(parent.chain);
+      hashes = parent.hashes.clone();
+      sources = parent.sources.clone();
+    } else {
+      hashes = new byte[blocks * HASH_LENGTH];
+      sources = new short[blocks];
+      Arrays.fill(sources, (short) -1);
+    }
+    chain.add(snapshotId);
+    return new BlockManifest(volumeSize, blockSize, chain, hashes, sources);
+  }
+
+  public boolean isCompatible(long volumeSize, int blockSize) {
+    return this.volumeSize == volumeSize && this.blockSize == blockSize;
+  }
+
+  public String getSnapshotId() {
+    return chain.get(chain.size() - 1);
+  }
+
+  public List<String> getChain() {
+    return Collections.unmodifiableList(chain);
+  }
+
+  public long getVolumeSize() {
+    return volumeSize;
+  }
+
+  public int getBlockSize() {
+    return blockSize;
+  }
+
+  public int getBlockCount() {
+    return sources.length;
+  }
+
+  public int getBlockLength(int block) {
+    return (int) Math.min(blockSize, volumeSize - (long) block * blockSize);
+  }
+
+  /**
+   * @return index in the chain of the snapshot holding the block, -1 if the block has not been recorded
+   */
+  public int getSource(int block) {
+    return sources[block];
+  }
+
+  /**
+   * @return true if the block is held by the snapshot this manifest describes
+   */
+  public boolean isStored(int block) {
+    return sources[block] == chain.size() - 1;
+  }
+
+  /**
+   * @return true if the block was recorded with the given hash by an earlier snapshot in the chain
+   */
+  public boolean matches(int block, byte[] hash) {
+    if (sources[block] < 0 || sources[block] == chain.size() - 1) {
+      return false;
+    }
+    for (int i = 0; i < HASH_LENGTH; i++) {
+      if (hashes[block * HASH_LENGTH + i] != hash[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Records the hash of a block. Blocks that are stored are sourced from the snapshot this manifest describes, others keep their current source.
+   * Distinct blocks may be recorded concurrently
+   */
+  public void recordBlock(int block, byte[] hash, boolean stored) {
+    System.arraycopy(hash, 0, hashes, block * HASH_LENGTH, HASH_LENGTH);
+    if (stored) {
+      sources[block] = (short) (chain.size() - 1);
+    }
+  }
+
+  /**
+   * @return number of blocks held by the snapshot this manifest describes
+   */
+  public int getStoredBlockCount() {
+    int count = 0;
+    for (int block = 0; block < sources.length; block++) {
+      if (isStored(block)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  public void write(OutputStream outputStream) throws IOException {
+    GZIPOutputStream gzipStream = new GZIPOutputStream(outputStream);
+    DataOutputStream dataStream = new DataOutputStream(gzipStream);
+    dataStream.writeInt(MAGIC);
+    dataStream.writeInt(VERSION);
+    dataStream.writeLong(volumeSize);
+    dataStream.writeInt(blockSize);
+    dataStream.writeInt(chain.size());
+    for (String snapshotId : chain) {
+      dataStream.writeUTF(snapshotId);
+    }
+    dataStream.writeInt(sources.length);
+    dataStream.write(hashes);
+    for (short source : sources) {
+      dataStream.writeShort(source);
+    }
+    dataStream.flush();
+    gzipStream.finish();
+  }
+
+  public static BlockManifest read(InputStream inputStream) throws IOException {
+    DataInputStream dataStream = new DataInputStream(new GZIPInputStream(inputStream));
+    if (dataStream.readInt() != MAGIC) {
+      throw new IOException("Invalid snapshot block manifest");
+    }
+    int version = dataStream.readInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported snapshot block manifest version " + version);
+    }
+    long volumeSize = dataStream.readLong();
+    int blockSize = dataStream.readInt();
+    int chainLength = dataStream.readInt();
+    if (blockSize <= 0 || volumeSize < 0 || chainLength <= 0 || chainLength > Short.MAX_VALUE) {
+      throw new IOException("Invalid snapshot block manifest header");
+    }
+    List<String> chain = new ArrayList<String>(chainLength);
+    for (int i = 0; i < chainLength; i++) {
+      chain.add(dataStream.readUTF());
+    }
+    int blocks = dataStream.readInt();
+    if (blocks != (int) ((volumeSize + blockSize - 1) / blockSize)) {
+      throw new IOException("Block count " + blocks + " does not match volume size " + volumeSize + " and block size " + blockSize);
+    }
+    byte[] hashes = new byte[blocks * HASH_LENGTH];
+    dataStream.readFully(hashes);
+    short[] sources = new short[blocks];
+    for (int block = 0; block < blocks; block++) {
+      sources[block] = dataStream.readShort();
+      if (sources[block] < 0 || sources[block] >= chainLength) {
+        throw new IOException("Invalid source for block " + block + " in snapshot block manifest");
+      }
+    }
+    return new BlockManifest(volumeSize, blockSize, chain, hashes, sources);
+  }
+}
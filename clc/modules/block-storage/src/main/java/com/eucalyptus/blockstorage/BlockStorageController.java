@@ -239,7 +239,7 @@ public class BlockStorageController {
     StorageInfo info = StorageInfo.getStorageInfo();
     VolumeThreadPool.initialize(info.getMaxConcurrentVolumes());
     SnapshotThreadPool.initialize(info.getMaxConcurrentSnapshots());
-    SnapshotTransferThreadPool.initialize(info.getMaxConcurrentSnapshotTransfers());
+    SnapshotTransferThreadPool.initialize(info.getMaxConcurrentSnapshotTransfers(), info.getMaxConcurrentSnapshotPartUploads());
     CheckerThreadPool.initialize();
 
     // Add checkers for volume and snapshot maintenance
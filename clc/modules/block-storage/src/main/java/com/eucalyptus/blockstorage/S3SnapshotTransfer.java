@@ -63,8 +63,9 @@
 package com.eucalyptus.blockstorage;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.File;
+import java.io.EOFException;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -73,16 +74,24 @@ import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -111,6 +120,9 @@ import com.amazonaws.services.s3.model.UploadPartRequest;
 import com.amazonaws.services.s3.model.UploadPartResult;
 import com.eucalyptus.auth.principal.BaseRole;
 import com.eucalyptus.blockstorage.async.SnapshotTransferCleaner;
+import com.eucalyptus.blockstorage.entities.SnapshotInfo;
+import com.eucalyptus.blockstorage.entities.SnapshotManifestInfo;
+import com.eucalyptus.blockstorage.entities.SnapshotManifestInfo.SnapshotManifestState;
 import com.eucalyptus.blockstorage.entities.SnapshotPart;
 import com.eucalyptus.blockstorage.entities.SnapshotPart.SnapshotPartState;
 import com.eucalyptus.blockstorage.entities.SnapshotTransferConfiguration;
@@ -130,13 +142,15 @@ import com.eucalyptus.entities.TransactionResource;
 import com.eucalyptus.objectstorage.client.EucaS3Client;
 import com.eucalyptus.objectstorage.client.EucaS3ClientFactory;
 import com.eucalyptus.util.EucalyptusCloudException;
-import com.eucalyptus.util.Exceptions;
+import com.eucalyptus.util.metrics.MonitoredAction;
+import com.eucalyptus.util.metrics.ThruputMetrics;
 import com.google.common.base.Function;
+import com.google.common.collect.Maps;
 
 /**
  * S3SnapshotTransfer manages snapshot transfers between SC and S3 API such as objectstorage gateway. An instance of the class must be obtained using
  * one of the constructors before invoking any methods. It is recommended that every snapshot operation instantiate a new object of this class as the
- * AmazonS3Client used is not thread safe
+ * AmazonS3Client used is not thread safe. Parts of a single upload are sent concurrently, each part upload uses a client of its own
  * 
  * @author Swathi Gangisetty
  */
@@ -152,7 +166,7 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
   // For multipart upload
   private String uploadId;
 
-  // Initiate for every request
+  // Initiate for every request, part uploads use their own clients
   private EucaS3Client eucaS3Client;
 
   // Instantiate from database for uploads
@@ -162,6 +176,8 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
   private Integer transferTimeout;
   private Integer readBufferSize;
   private Integer writeBufferSize;
+  private Long uploadBufferSize;
+  private Integer maxSnapshotDeltas;
 
   // Static parameters
   private static BaseRole role;
@@ -170,6 +186,7 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
   private static final Integer TX_RETRIES = 20;
   private static final Integer REFRESH_TOKEN_RETRIES = 1;
   private static final String UNCOMPRESSED_SIZE_KEY = "uncompressedsize";
+  private static final String MANIFEST_KEY_SUFFIX = ".manifest";
 
   public S3SnapshotTransfer() throws SnapshotTransferException {
     initializeEucaS3Client();
@@ -243,181 +260,57 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
    * {@link StorageInfo}. Bucket name should be configured before invoking this method. It can be looked up and initialized by
    * {@link #prepareForUpload()} or explicitly set using {@link #setBucketName(String)}
    * 
-   * @param sourceFileName absolute path to the snapshot on the file system
+   * The snapshot is read and compressed in segments of part size on the compression pool, each segment is an independent gzip member. Compressed
+   * segments are held in memory and assembled into parts that are uploaded concurrently while the remaining segments are compressed. Memory held by
+   * a single upload is bounded by the snapshot upload buffer size in {@link StorageInfo}. This method returns once the snapshot has been read
+   * completely, the returned future completes when all parts are uploaded
+   * 
+   * If incremental snapshots are enabled in {@link StorageInfo} the snapshot is read in fixed size blocks that are hashed and compared against the
+   * {@link BlockManifest} of the previous snapshot of the volume. Only changed blocks are uploaded, the manifest of the snapshot is uploaded
+   * alongside it and recorded in {@link SnapshotManifestInfo}
+   * 
+   * @param storageResource snapshot on the storage backend
    */
   @Override
   public Future<String> upload(StorageResource storageResource, SnapshotProgressCallback progressCallback) throws SnapshotTransferException {
     validateInput(); // Validate input
     loadTransferConfig(); // Load the transfer configuration parameters from database
 
-    Boolean error = Boolean.FALSE;
-    ArrayBlockingQueue<SnapshotPart> partQueue = null;
-    SnapshotPart part = null;
     SnapshotUploadInfo snapUploadInfo = null;
-    Future<List<PartETag>> uploadPartsFuture = null;
-    Future<String> completeUploadFuture = null;
-
-    byte[] buffer = new byte[readBufferSize];
-    Long readOffset = 0L;
-    Long bytesRead = 0L;
-    Long bytesWritten = 0L;
-    int len;
-    int partNumber = 1;
-
     try {
-      // Get the uncompressed file size for uploading as metadata
-      Long uncompressedSize = storageResource.getSize();
-
-      // Setup the snapshot and part entities.
+      // Setup the snapshot entity
       snapUploadInfo = SnapshotUploadInfo.create(snapshotId, bucketName, keyName);
-      Path zipFilePath = Files.createTempFile(keyName + '-', '-' + String.valueOf(partNumber));
-      part = SnapshotPart.createPart(snapUploadInfo, zipFilePath.toString(), partNumber, readOffset);
-
-      InputStream inputStream = storageResource.getInputStream();
-      ByteArrayOutputStream baos = new ByteArrayOutputStream();
-      GZIPOutputStream gzipStream = new GZIPOutputStream(baos);
-      FileOutputStream outputStream = new FileOutputStream(zipFilePath.toString());
+    } catch (Exception e) {
+      LOG.error("Failed to upload snapshot " + snapshotId + " due to: ", e);
+      throw new SnapshotTransferException("Failed to upload snapshot " + snapshotId + " due to: ", e);
+    }
 
+    SnapshotManifestInfo manifestInfo = null;
+    BlockManifest parentManifest = null;
+    if (maxSnapshotDeltas > 0) {
       try {
-        LOG.debug("Reading snapshot " + snapshotId + " and compressing it to disk in chunks of size " + partSize + " bytes or greater");
-        while ((len = inputStream.read(buffer)) > 0) {
-          bytesRead += len;
-          gzipStream.write(buffer, 0, len);
-
-          if ((bytesWritten + baos.size()) < partSize) {
-            baos.writeTo(outputStream);
-            bytesWritten += baos.size();
-            baos.reset();
-          } else {
-            gzipStream.close();
-            baos.writeTo(outputStream); // Order is important. Closing the gzip stream flushes stuff
-            bytesWritten += baos.size();
-            baos.reset();
-            outputStream.close();
-
-            if (partNumber > 1) {// Update the part status
-              part = part.updateStateCreated(bytesWritten, bytesRead, Boolean.FALSE);
-            } else {// Initialize multipart upload only once after the first part is created
-              LOG.info("Uploading snapshot " + snapshotId + " to objectstorage using multipart upload");
-              progressCallback.setUploadSize(uncompressedSize);
-              uploadId = initiateMulitpartUpload(uncompressedSize);
-              snapUploadInfo = snapUploadInfo.updateUploadId(uploadId); // update uploadId so its available for future parts
-              part = part.updateStateCreated(uploadId, bytesWritten, bytesRead, Boolean.FALSE);
-              partQueue = new ArrayBlockingQueue<SnapshotPart>(queueSize);
-              uploadPartsFuture = SnapshotTransferThreadPool.add(new UploadPartTask(partQueue, progressCallback));
-            }
-
-            // Check for the future task before adding part to the queue.
-            if (uploadPartsFuture != null && uploadPartsFuture.isDone()) {
-              // This task shouldn't be done until the last part is added. If it is done at this point, then something might have gone wrong
-              throw new SnapshotUploadPartException(
-                  "Error uploading parts, aborting part creation process. Check previous log messages for the exact error");
-            }
-
-            // Add part to the queue
-            partQueue.put(part);
-
-            // Prep the metadata for the next part
-            readOffset += bytesRead;
-            bytesRead = 0L;
-            bytesWritten = 0L;
-
-            // Setup the part entity for next part
-            zipFilePath = Files.createTempFile(keyName + '-', '-' + String.valueOf((++partNumber)));
-            part = SnapshotPart.createPart(snapUploadInfo, zipFilePath.toString(), partNumber, readOffset);
-
-            gzipStream = new GZIPOutputStream(baos);
-            outputStream = new FileOutputStream(zipFilePath.toString());
-          }
-        }
-
-        gzipStream.close();
-        baos.writeTo(outputStream);
-        bytesWritten += baos.size();
-        baos.reset();
-        outputStream.close();
-        inputStream.close();
-
-        // Update the part status
-        part = part.updateStateCreated(bytesWritten, bytesRead, Boolean.TRUE);
-
-        // Update the snapshot upload info status
-        snapUploadInfo = snapUploadInfo.updateStateCreatedParts(partNumber);
-      } catch (Exception e) {
-        LOG.error("Failed to upload " + snapshotId + " due to: ", e);
-        error = Boolean.TRUE;
-        throw new SnapshotTransferException("Failed to upload " + snapshotId + " due to: ", e);
-      } finally {
-        if (inputStream != null) {
+        String volumeId = lookupVolumeId();
+        Long volumeSize = storageResource.getSize();
+        SnapshotManifestInfo parentInfo = findParent(volumeId, volumeSize);
+        if (parentInfo != null) {
           try {
-            inputStream.close();
+            parentManifest = downloadManifest(parentInfo);
           } catch (Exception e) {
-
+            LOG.warn("Unable to fetch manifest of snapshot " + parentInfo.getSnapshotId() + ". Uploading a full snapshot of " + snapshotId, e);
+            parentInfo = null;
           }
         }
-        if (gzipStream != null) {
-          try {
-            gzipStream.close();
-          } catch (Exception e) {
-
-          }
-        }
-        if (outputStream != null) {
-          try {
-            outputStream.close();
-          } catch (Exception e) {
-
-          }
-        }
-        baos.reset();
-      }
-
-      if (partNumber > 1) {
-        // Check for the future task before adding the last part to the queue.
-        if (uploadPartsFuture != null && uploadPartsFuture.isDone()) {
-          // This task shouldn't be done until the last part is added. If it is done at this point, then something might have gone wrong
-          throw new SnapshotUploadPartException(
-              "Error uploading parts, aborting part upload process. Check previous log messages for the exact error");
-        }
-        // Add the last part to the queue
-        partQueue.put(part);
-        // Kick off the completion task
-        completeUploadFuture = SnapshotTransferThreadPool.add(new CompleteMpuTask(uploadPartsFuture, snapUploadInfo, partNumber));
-      } else {
-        try {
-          LOG.info("Uploading snapshot " + snapshotId + " to objectstorage as a single object. Compressed size of snapshot (" + bytesWritten
-              + " bytes) is less than minimum part size (" + partSize + " bytes) for multipart upload");
-          completeUploadFuture =
-              SnapshotTransferThreadPool.add(new UploadObjectTask(part, snapUploadInfo, zipFilePath.toString(), bytesWritten, uncompressedSize,
-                  progressCallback));
-        } catch (Exception e) {
-          error = Boolean.TRUE;
-          LOG.error("Failed to add async task for uploading " + snapshotId + " due to: ", e);
-          throw new SnapshotUploadObjectException("Failed to add async task for uploading " + snapshotId + " due to: ", e);
-        }
-      }
-      return completeUploadFuture;
-    } catch (SnapshotTransferException e) {
-      error = Boolean.TRUE;
-      throw e;
-    } catch (Exception e) {
-      error = Boolean.TRUE;
-      LOG.error("Failed to upload snapshot " + snapshotId + " due to: ", e);
-      throw new SnapshotTransferException("Failed to upload snapshot " + snapshotId + " due to: ", e);
-    } finally {
-      if (error) {
-        abortUpload(snapUploadInfo);
-        if (partQueue != null) {
-          partQueue.clear();
-        }
-        if (uploadPartsFuture != null && !uploadPartsFuture.isDone()) {
-          uploadPartsFuture.cancel(true);
-        }
-        if (completeUploadFuture != null && !completeUploadFuture.isDone()) {
-          completeUploadFuture.cancel(true);
-        }
+        manifestInfo =
+            SnapshotManifestInfo.create(new SnapshotManifestInfo(snapshotId, volumeId, parentInfo != null ? parentInfo.getSnapshotId() : null,
+                parentInfo != null ? parentInfo.getChainDepth() + 1 : 0, BlockManifest.DEFAULT_BLOCK_SIZE, volumeSize, bucketName, keyName, keyName
+                    + MANIFEST_KEY_SUFFIX));
+      } catch (Exception e) {
+        LOG.warn("Unable to set up block manifest for snapshot " + snapshotId + ". Uploading the snapshot without a manifest", e);
+        manifestInfo = null;
+        parentManifest = null;
       }
     }
+    return new UploadPipeline(storageResource, progressCallback, snapUploadInfo, manifestInfo, parentManifest).run();
   }
 
   /**
@@ -439,18 +332,21 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
       LOG.debug("Failed to cancel upload for snapshot " + snapshotId, e);
       throw new SnapshotTransferException("Failed to cancel upload for snapshot " + snapshotId, e);
     }
-  }
 
-  /**
-   * Not implemented
-   */
-  @Override
-  public void resumeUpload(StorageResource storageResource) throws SnapshotTransferException {
-    throw new SnapshotTransferException("Not supported yet");
+    // A cancelled snapshot is never used as the parent of incremental snapshots
+    try {
+      SnapshotManifestInfo manifestInfo = SnapshotManifestInfo.lookup(snapshotId);
+      if (manifestInfo != null && SnapshotManifestState.creating.equals(manifestInfo.getState())) {
+        manifestInfo.updateState(SnapshotManifestState.purged);
+      }
+    } catch (Exception e) {
+      LOG.debug("Failed to update manifest state for cancelled upload of snapshot " + snapshotId, e);
+    }
   }
 
   /**
-   * Downloads the compressed snapshot from objectstorage gateway to the filesystem
+   * Downloads the compressed snapshot from objectstorage gateway to the filesystem. Incremental snapshots are reassembled from the snapshots in their
+   * chain
    */
   public void download(StorageResource storageResource) throws SnapshotTransferException {
     validateInput();
@@ -461,10 +357,10 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
     if (snapObj != null && snapObj.getObjectContent() != null) {
       byte[] buffer = new byte[10 * readBufferSize];
       int len;
-      GZIPInputStream gzipInputStream = null;
+      InputStream gzipInputStream = null;
 
       try {
-        gzipInputStream = new GZIPInputStream(new BufferedInputStream(snapObj.getObjectContent(), buffer.length * 3), buffer.length * 2);
+        gzipInputStream = openSnapshotStream(snapObj, buffer.length);
 
         if (storageResource.isDownloadSynchronous()) { // Download and unzip snapshot to the storage device directly
           OutputStream outputStream = null;
@@ -596,30 +492,65 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
   }
 
   /**
-   * Delete the snapshot from objectstorage gateway
+   * Delete the snapshot from objectstorage gateway. Deletion of a snapshot that incremental snapshots depend on is deferred until the last of those
+   * snapshots is deleted
    */
   @Override
   public void delete() throws SnapshotTransferException {
     LOG.debug("Deleting snapshot from objectstorage: snapshotId=" + snapshotId + ", bucket=" + bucketName + ", key=" + keyName);
     validateInput();
+
+    SnapshotManifestInfo manifestInfo = null;
     try {
-      retryAfterRefresh(new Function<DeleteObjectRequest, String>() {
+      manifestInfo = lookupManifest(snapshotId);
+    } catch (Exception e) {
+      throw new SnapshotTransferException("Failed to look up block manifest for snapshot " + snapshotId, e);
+    }
+    if (manifestInfo == null || !bucketName.equals(manifestInfo.getBucketName()) || !keyName.equals(manifestInfo.getKeyName())) {
+      deleteObject(snapshotId, bucketName, keyName);
+      return;
+    }
+    deleteChain(manifestInfo);
+  }
 
-        @Override
-        @Nullable
-        public String apply(@Nullable DeleteObjectRequest arg0) {
-          eucaS3Client.refreshEndpoint();
-          eucaS3Client.deleteObject(arg0);
-          return null;
+  /**
+   * Deletes the snapshot unless incremental snapshots depend on it, followed by any parents whose deletion was deferred for it
+   */
+  void deleteChain(SnapshotManifestInfo manifestInfo) throws SnapshotTransferException {
+    try {
+      while (manifestInfo != null && !SnapshotManifestState.purged.equals(manifestInfo.getState())) {
+        if (isParent(manifestInfo.getSnapshotId())) {
+          LOG.info("Deferring deletion of snapshot " + manifestInfo.getSnapshotId() + " from objectstorage, incremental snapshots depend on it");
+          updateManifestState(manifestInfo, SnapshotManifestState.deleted);
+          break;
         }
-      }, new DeleteObjectRequest(bucketName, keyName), REFRESH_TOKEN_RETRIES);
+        deleteObject(manifestInfo.getSnapshotId(), manifestInfo.getBucketName(), manifestInfo.getKeyName());
+        deleteObject(manifestInfo.getSnapshotId(), manifestInfo.getBucketName(), manifestInfo.getManifestKeyName());
+        updateManifestState(manifestInfo, SnapshotManifestState.purged);
+
+        // Remove the parent if its deletion was deferred for this snapshot
+        SnapshotManifestInfo parentInfo = manifestInfo.getParentSnapshotId() != null ? lookupManifest(manifestInfo.getParentSnapshotId()) : null;
+        manifestInfo = parentInfo != null && SnapshotManifestState.deleted.equals(parentInfo.getState()) ? parentInfo : null;
+      }
+    } catch (SnapshotTransferException e) {
+      throw e;
     } catch (Exception e) {
-      LOG.warn("Failed to delete snapshot from objectstorage: snapshotId=" + snapshotId + ", bucket=" + bucketName + ", key=" + keyName);
-      throw new SnapshotTransferException("Failed to delete snapshot from objectstorage: snapshotId=" + snapshotId + ", bucket=" + bucketName
-          + ", key=" + keyName, e);
+      throw new SnapshotTransferException("Failed to delete snapshot " + snapshotId + " from objectstorage", e);
     }
   }
 
+  SnapshotManifestInfo lookupManifest(String snapshotId) throws EucalyptusCloudException {
+    return SnapshotManifestInfo.lookup(snapshotId);
+  }
+
+  boolean isParent(String snapshotId) throws EucalyptusCloudException {
+    return SnapshotManifestInfo.isParent(snapshotId);
+  }
+
+  void updateManifestState(SnapshotManifestInfo manifestInfo, SnapshotManifestState state) throws EucalyptusCloudException {
+    manifestInfo.updateState(state);
+  }
+
   @Override
   public Long getSizeInBytes() throws SnapshotTransferException {
     LOG.debug("Fetching snapshot metadata from objectstorage: snapshotId=" + snapshotId + ", bucket=" + bucketName + ", key=" + keyName);
@@ -667,8 +598,12 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
       }
     }
 
+    eucaS3Client = createEucaS3Client();
+  }
+
+  private EucaS3Client createEucaS3Client() throws SnapshotTransferException {
     try {
-      eucaS3Client = EucaS3ClientFactory.getEucaS3ClientByRole(role, (int) TimeUnit.HOURS.toSeconds(1));
+      return EucaS3ClientFactory.getEucaS3ClientByRole(role, (int) TimeUnit.HOURS.toSeconds(1));
     } catch (Exception e) {
       LOG.error("Failed to initialize S3 client for snapshot transfers due to " + e);
       throw new SnapshotTransferException("Failed to initialize S3 client for snapshot transfers", e);
@@ -683,6 +618,8 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
     this.transferTimeout = info.getSnapshotTransferTimeoutInHours();
     this.readBufferSize = info.getReadBufferSizeInMB() * 1024 * 1024;
     this.writeBufferSize = info.getWriteBufferSizeInMB() * 1024 * 1024;
+    this.uploadBufferSize = (long) info.getSnapshotUploadBufferSizeInMB() * 1024 * 1024;
+    this.maxSnapshotDeltas = info.getMaxSnapshotDeltas();
   }
 
   private void validateInput() throws SnapshotTransferException {
@@ -759,8 +696,12 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
   }
 
   private S3Object download() throws SnapshotTransferException {
+    return download(bucketName, keyName);
+  }
+
+  private S3Object download(String bucket, String key) throws SnapshotTransferException {
     try {
-      LOG.debug("Dowloading snapshot from objectstorage: snapshotId=" + snapshotId + ", bucket=" + bucketName + ", key=" + keyName);
+      LOG.debug("Dowloading snapshot object from objectstorage: snapshotId=" + snapshotId + ", bucket=" + bucket + ", key=" + key);
       return retryAfterRefresh(new Function<GetObjectRequest, S3Object>() {
 
         @Override
@@ -770,17 +711,149 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
           return eucaS3Client.getObject(arg0);
         }
 
-      }, new GetObjectRequest(bucketName, keyName), REFRESH_TOKEN_RETRIES);
+      }, new GetObjectRequest(bucket, key), REFRESH_TOKEN_RETRIES);
     } catch (Exception e) {
-      LOG.warn("Failed to download snapshot from objectstorage: snapshotId=" + snapshotId + ", bucket=" + bucketName + ", key=" + keyName);
-      throw new SnapshotTransferException("Failed to download snapshot from objectstorage: snapshotId=" + snapshotId + ", bucket=" + bucketName
-          + ", key=" + keyName, e);
+      LOG.warn("Failed to download snapshot object from objectstorage: snapshotId=" + snapshotId + ", bucket=" + bucket + ", key=" + key);
+      throw new SnapshotTransferException("Failed to download snapshot object from objectstorage: snapshotId=" + snapshotId + ", bucket=" + bucket
+          + ", key=" + key, e);
     }
   }
 
-  private String uploadSnapshotAsSingleObject(final String compressedSnapFileName, Long actualSize, Long uncompressedSize,
+  void deleteObject(String snapshot, String bucket, String key) throws SnapshotTransferException {
+    try {
+      retryAfterRefresh(new Function<DeleteObjectRequest, String>() {
+
+        @Override
+        @Nullable
+        public String apply(@Nullable DeleteObjectRequest arg0) {
+          eucaS3Client.refreshEndpoint();
+          eucaS3Client.deleteObject(arg0);
+          return null;
+        }
+      }, new DeleteObjectRequest(bucket, key), REFRESH_TOKEN_RETRIES);
+    } catch (Exception e) {
+      LOG.warn("Failed to delete snapshot from objectstorage: snapshotId=" + snapshot + ", bucket=" + bucket + ", key=" + key);
+      throw new SnapshotTransferException("Failed to delete snapshot from objectstorage: snapshotId=" + snapshot + ", bucket=" + bucket + ", key="
+          + key, e);
+    }
+  }
+
+  /**
+   * Opens the uncompressed content of the downloaded snapshot. Snapshots uploaded against a parent are read through a {@link BlockChainInputStream}
+   * over the objects of all the snapshots in the chain
+   */
+  private InputStream openSnapshotStream(final S3Object snapObj, int bufferSize) throws Exception {
+    SnapshotManifestInfo manifestInfo = SnapshotManifestInfo.lookup(snapshotId);
+    if (manifestInfo == null || manifestInfo.getParentSnapshotId() == null || !bucketName.equals(manifestInfo.getBucketName())
+        || !keyName.equals(manifestInfo.getKeyName())) {
+      return new GZIPInputStream(new BufferedInputStream(snapObj.getObjectContent(), bufferSize * 3), bufferSize * 2);
+    }
+
+    BlockManifest manifest = downloadManifest(manifestInfo);
+    final Map<String, SnapshotManifestInfo> chainInfos = Maps.newHashMap();
+    List<BlockManifest> chainManifests = new ArrayList<BlockManifest>();
+    for (String chainSnapshotId : manifest.getChain().subList(0, manifest.getChain().size() - 1)) {
+      SnapshotManifestInfo chainInfo = SnapshotManifestInfo.lookup(chainSnapshotId);
+      if (chainInfo == null || SnapshotManifestState.purged.equals(chainInfo.getState())) {
+        throw new SnapshotTransferException("Snapshot " + chainSnapshotId + " in the chain of " + snapshotId + " is not available");
+      }
+      chainInfos.put(chainSnapshotId, chainInfo);
+      chainManifests.add(downloadManifest(chainInfo));
+    }
+    chainManifests.add(manifest);
+    LOG.debug("Reassembling snapshot " + snapshotId + " from a chain of " + chainManifests.size() + " snapshots");
+
+    return new BlockChainInputStream(manifest, chainManifests, new BlockChainInputStream.SnapshotObjectOpener() {
+
+      @Override
+      public InputStream open(String chainSnapshotId) throws IOException {
+        if (snapshotId.equals(chainSnapshotId)) {
+          return snapObj.getObjectContent();
+        }
+        try {
+          SnapshotManifestInfo chainInfo = chainInfos.get(chainSnapshotId);
+          return download(chainInfo.getBucketName(), chainInfo.getKeyName()).getObjectContent();
+        } catch (SnapshotTransferException e) {
+          throw new IOException("Failed to open snapshot " + chainSnapshotId + " in the chain of " + snapshotId, e);
+        }
+      }
+    }, bufferSize * 2);
+  }
+
+  private BlockManifest downloadManifest(SnapshotManifestInfo manifestInfo) throws Exception {
+    S3Object manifestObj = download(manifestInfo.getBucketName(), manifestInfo.getManifestKeyName());
+    try (InputStream inputStream = manifestObj.getObjectContent()) {
+      BlockManifest manifest = BlockManifest.read(inputStream);
+      if (!manifestInfo.getSnapshotId().equals(manifest.getSnapshotId())) {
+        throw new SnapshotTransferException("Manifest " + manifestInfo.getManifestKeyName() + " does not belong to snapshot "
+            + manifestInfo.getSnapshotId());
+      }
+      return manifest;
+    }
+  }
+
+  private void uploadManifest(SnapshotManifestInfo manifestInfo, BlockManifest manifest) throws SnapshotTransferException {
+    final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try {
+      manifest.write(outputStream);
+    } catch (IOException e) {
+      throw new SnapshotTransferException("Failed to serialize block manifest of snapshot " + snapshotId, e);
+    }
+    ObjectMetadata objectMetadata = new ObjectMetadata();
+    objectMetadata.setContentLength(outputStream.size());
+
+    try {
+      LOG.debug("Uploading block manifest of snapshot " + snapshotId + " to " + manifestInfo.getManifestKeyName());
+      retryAfterRefresh(new Function<PutObjectRequest, PutObjectResult>() {
+
+        @Override
+        @Nullable
+        public PutObjectResult apply(@Nullable PutObjectRequest arg0) {
+          eucaS3Client.refreshEndpoint();
+          arg0.setInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
+          return eucaS3Client.putObject(arg0);
+        }
+
+      }, new PutObjectRequest(manifestInfo.getBucketName(), manifestInfo.getManifestKeyName(), null, objectMetadata), REFRESH_TOKEN_RETRIES);
+    } catch (Exception e) {
+      throw new SnapshotTransferException("Failed to upload block manifest of snapshot " + snapshotId, e);
+    }
+  }
+
+  /**
+   * @return manifest of the latest snapshot of the same volume and size that an incremental snapshot can be uploaded against, null if the
+   *         snapshot has to be a full snapshot
+   */
+  @Nullable
+  private SnapshotManifestInfo findParent(String volumeId, Long volumeSize) throws EucalyptusCloudException {
+    SnapshotManifestInfo parentInfo = SnapshotManifestInfo.lookupLatest(volumeId);
+    if (parentInfo == null) {
+      LOG.debug("No previous snapshot with a block manifest found, uploading a full snapshot of " + snapshotId);
+      return null;
+    } else if (parentInfo.getChainDepth() >= maxSnapshotDeltas) {
+      LOG.debug("Snapshot chain of " + parentInfo.getSnapshotId() + " has reached " + parentInfo.getChainDepth()
+          + " incremental snapshots, uploading a full snapshot of " + snapshotId);
+      return null;
+    } else if (!volumeSize.equals(parentInfo.getVolumeSize()) || !Integer.valueOf(BlockManifest.DEFAULT_BLOCK_SIZE).equals(parentInfo.getBlockSize())) {
+      LOG.debug("Size of snapshot " + parentInfo.getSnapshotId() + " differs, uploading a full snapshot of " + snapshotId);
+      return null;
+    }
+    return parentInfo;
+  }
+
+  private String lookupVolumeId() throws EucalyptusCloudException {
+    try (TransactionResource tran = Entities.transactionFor(SnapshotInfo.class)) {
+      SnapshotInfo snapInfo = Entities.uniqueResult(new SnapshotInfo(snapshotId));
+      tran.commit();
+      return snapInfo.getVolumeId();
+    } catch (Exception e) {
+      throw new EucalyptusCloudException("Failed to look up volume of snapshot " + snapshotId, e);
+    }
+  }
+
+  private String uploadSnapshotAsSingleObject(final List<CompressedSegment> segments, Long actualSize, Long uncompressedSize,
       final SnapshotProgressCallback callback) throws SnapshotUploadObjectException {
-    callback.setUploadSize(actualSize);
+    callback.setUploadSize(uncompressedSize);
     ObjectMetadata objectMetadata = new ObjectMetadata();
     Map<String, String> userMetadataMap = new HashMap<String, String>();
     userMetadataMap.put(UNCOMPRESSED_SIZE_KEY, String.valueOf(uncompressedSize)); // Send the uncompressed length as the metadata
@@ -788,7 +861,7 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
     objectMetadata.setContentLength(actualSize);
 
     try {
-      LOG.debug("Uploading " + compressedSnapFileName);
+      LOG.debug("Uploading snapshot " + snapshotId + " as a single object of size " + actualSize);
       PutObjectResult putResult = retryAfterRefresh(new Function<PutObjectRequest, PutObjectResult>() {
 
         @Override
@@ -796,24 +869,17 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
         public PutObjectResult apply(@Nullable PutObjectRequest arg0) {
           eucaS3Client.refreshEndpoint();
           // EUCA-10311 Set the input stream in put request. Doing it here to ensure that input stream is set before every attempt to put object
-          try {
-            arg0.setInputStream(new FileInputStreamWithCallback(new File(compressedSnapFileName), callback));
-          } catch (Exception e) {
-            LOG.warn("Failed to upload snapshot to objectstorage: snapshotId=" + snapshotId + ", bucket=" + bucketName + ", key=" + keyName
-                + ", reason: unable to initialize FileInputStreamWithCallback for file " + compressedSnapFileName, e);
-            Exceptions.toUndeclared(e);
-          }
+          arg0.setInputStream(new SegmentInputStream(segments));
           return eucaS3Client.putObject(arg0);
         }
 
       }, new PutObjectRequest(bucketName, keyName, null, objectMetadata), REFRESH_TOKEN_RETRIES);
 
+      callback.updateUploadProgress(uncompressedSize);
       return putResult.getETag();
     } catch (Exception e) {
-      LOG.warn("Failed to upload object " + compressedSnapFileName, e);
-      throw new SnapshotUploadObjectException("Failed to upload object " + compressedSnapFileName, e);
-    } finally {
-      deleteFile(compressedSnapFileName);
+      LOG.warn("Failed to upload snapshot " + snapshotId + " as a single object", e);
+      throw new SnapshotUploadObjectException("Failed to upload snapshot " + snapshotId + " as a single object", e);
     }
   }
 
@@ -850,7 +916,7 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
     return initResponse.getUploadId();
   }
 
-  private PartETag uploadPart(SnapshotPart part) throws SnapshotUploadPartException {
+  private PartETag uploadPart(SnapshotPart part, final List<CompressedSegment> segments) throws SnapshotUploadPartException {
     try {
       part = part.updateStateUploading();
     } catch (Exception e) {
@@ -860,24 +926,22 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
     try {
       LOG.debug("Uploading " + part);
       UploadPartResult uploadPartResult =
-          retryAfterRefresh(new Function<UploadPartRequest, UploadPartResult>() {
+          retryWithNewClient(new ClientOperation<UploadPartRequest, UploadPartResult>() {
 
             @Override
-            @Nullable
-            public UploadPartResult apply(@Nullable UploadPartRequest arg0) {
-              eucaS3Client.refreshEndpoint();
-              return eucaS3Client.uploadPart(arg0);
+            public UploadPartResult apply(EucaS3Client client, UploadPartRequest request) {
+              client.refreshEndpoint();
+              // Start from the beginning of the part on every attempt
+              request.setInputStream(new SegmentInputStream(segments));
+              return client.uploadPart(request);
             }
-          },
-              new UploadPartRequest().withBucketName(part.getBucketName()).withKey(part.getKeyName()).withUploadId(part.getUploadId())
-                  .withPartNumber(part.getPartNumber()).withPartSize(part.getSize()).withFile(new File(part.getFileName())), REFRESH_TOKEN_RETRIES);
+          }, new UploadPartRequest().withBucketName(part.getBucketName()).withKey(part.getKeyName()).withUploadId(part.getUploadId())
+              .withPartNumber(part.getPartNumber()).withPartSize(part.getSize()), REFRESH_TOKEN_RETRIES);
 
       return uploadPartResult.getPartETag();
     } catch (Exception e) {
       LOG.warn("Failed to upload part " + part, e);
       throw new SnapshotUploadPartException("Failed to upload part " + part, e);
-    } finally {
-      deleteFile(part.getFileName());
     }
   }
 
@@ -934,6 +998,16 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
     }
   }
 
+  private void markManifestAvailable(@Nullable SnapshotManifestInfo manifestInfo) {
+    if (manifestInfo != null) {
+      try {
+        manifestInfo.updateState(SnapshotManifestState.available);
+      } catch (EucalyptusCloudException e) {
+        LOG.warn("Failed to update manifest state of " + snapshotId + ", later snapshots of the volume will not be uploaded against it");
+      }
+    }
+  }
+
   private void deleteFile(String fileName) {
     if (StringUtils.isNotBlank(fileName)) {
       try {
@@ -976,87 +1050,641 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
     return output;
   }
 
-  public static abstract class UploadPart implements Callable<List<PartETag>> {
+  /**
+   * Operation for a thread that does not share the client of the transfer
+   */
+  private interface ClientOperation<F, T> {
+    T apply(EucaS3Client client, F input);
   }
 
-  class UploadPartTask extends UploadPart {
+  /**
+   * Runs the operation on a client used only by the calling thread, a new client with new credentials is used for each attempt
+   */
+  private <F, T> T retryWithNewClient(ClientOperation<F, T> operation, F input, int retries) throws SnapshotTransferException {
+    int failedAttempts = 0;
+    do {
+      EucaS3Client client = createEucaS3Client();
+      try {
+        return operation.apply(client, input);
+      } catch (AmazonServiceException e) {
+        if (failedAttempts < retries && e.getStatusCode() == HttpResponseStatus.FORBIDDEN.getCode()) {
+          LOG.debug("Snapshot transfer operation failed because of " + e.getMessage() + ". Will refresh credentials and retry");
+          failedAttempts++;
+        } else {
+          throw new SnapshotTransferException("Snapshot transfer operation failed because of", e);
+        }
+      } catch (Exception e) {
+        throw new SnapshotTransferException("Snapshot transfer operation failed because of", e);
+      } finally {
+        client.close();
+      }
+    } while (true);
+  }
 
-    private ArrayBlockingQueue<SnapshotPart> partQueue;
-    private SnapshotProgressCallback progressCallback;
-    private List<PartETag> partETags;
+  static long maxCompressedSize(long length) {
+    // Upper bound for deflate output including stored block and gzip header overheads
+    return length + (length >> 10) + 1024;
+  }
 
-    public UploadPartTask(ArrayBlockingQueue<SnapshotPart> partQueue, SnapshotProgressCallback progressCallback) throws EucalyptusCloudException {
-      if (partQueue == null || progressCallback == null) {
-        throw new EucalyptusCloudException("Invalid constructor parameters. Cannot proceed without part queue and or snapshot progress callback");
-      }
-      this.partQueue = partQueue;
+  static int toPermits(long bytes) {
+    return (int) Math.min(Integer.MAX_VALUE, (bytes + 1023) / 1024);
+  }
+
+  /**
+   * Drives a single upload. Segments are scheduled for compression in order, each reserving its worst case compressed size from the upload budget,
+   * and are assembled in order into parts on the calling thread. A part is handed to the upload part pool once it reaches the part size and holds
+   * its budget until it is uploaded. The budget is at least twice the worst case size of a part so that a partially assembled part can always be
+   * completed. Segments of incremental snapshots are aligned to the manifest block size
+   */
+  class UploadPipeline {
+
+    private final StorageResource storageResource;
+    private final SnapshotProgressCallback progressCallback;
+    private final SnapshotManifestInfo manifestInfo;
+    private final BlockManifest parentManifest;
+    private BlockManifest manifest;
+    private long segmentSize;
+    private final Semaphore budget;
+    private final UploadMetrics metrics;
+    private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    private final Deque<Future<CompressedSegment>> compressing = new ArrayDeque<Future<CompressedSegment>>();
+    private final List<Future<PartETag>> partFutures = new ArrayList<Future<PartETag>>();
+    private SnapshotUploadInfo snapUploadInfo;
+    private Long uncompressedSize;
+    private PartAssembler assembler;
+
+    UploadPipeline(StorageResource storageResource, SnapshotProgressCallback progressCallback, SnapshotUploadInfo snapUploadInfo,
+        @Nullable SnapshotManifestInfo manifestInfo, @Nullable BlockManifest parentManifest) {
+      this.storageResource = storageResource;
       this.progressCallback = progressCallback;
-      this.partETags = new ArrayList<PartETag>();
+      this.snapUploadInfo = snapUploadInfo;
+      this.manifestInfo = manifestInfo;
+      this.parentManifest = parentManifest;
+      this.segmentSize = partSize;
+      this.budget = new Semaphore(toPermits(Math.max(uploadBufferSize, 2 * maxCompressedSize(partSize))));
+      this.metrics = new UploadMetrics(snapshotId);
     }
 
-    @Override
-    public List<PartETag> call() throws Exception {
+    Future<String> run() throws SnapshotTransferException {
       Boolean error = Boolean.FALSE;
-      Boolean isLast = Boolean.FALSE;
-
+      Future<String> completeUploadFuture = null;
       try {
+        // Get the uncompressed file size for uploading as metadata
+        uncompressedSize = storageResource.getSize();
+        assembler = new PartAssembler(partSize, uncompressedSize);
+        if (manifestInfo != null) {
+          prepareManifest();
+        }
+
+        LOG.debug("Reading snapshot " + snapshotId + " and compressing it in memory in chunks of size " + segmentSize + " bytes or greater");
+        long readOffset = 0L;
         do {
-          SnapshotPart part = null;
+          long length = Math.min(segmentSize, uncompressedSize - readOffset);
+          int permits = toPermits(maxCompressedSize(length));
+          while (!budget.tryAcquire(permits, 1, TimeUnit.SECONDS)) {
+            checkFailure();
+            if (!compressing.isEmpty()) {
+              assemble(compressing.poll());
+            }
+          }
+          compressing.add(SnapshotTransferThreadPool.add(new CompressSegmentTask(storageResource, readOffset, length, permits, budget, manifest,
+              metrics)));
+          readOffset += length;
+          checkFailure();
+        } while (readOffset < uncompressedSize);
+
+        while (!compressing.isEmpty()) {
+          assemble(compressing.poll());
+        }
+        checkFailure();
 
-          try {
-            part = partQueue.take();
-          } catch (InterruptedException ex) { // Should rarely happen
-            error = Boolean.TRUE;
-            LOG.error("Failed to upload snapshot " + snapshotId + " due to an retrieving parts from queue", ex);
-            return null;
+        if (manifest != null) {
+          LOG.info("Snapshot " + snapshotId + " holds " + manifest.getStoredBlockCount() + " of " + manifest.getBlockCount() + " blocks in a chain of "
+              + manifest.getChain().size() + " snapshots");
+          uploadManifest(manifestInfo, manifest);
+        }
+
+        if (snapUploadInfo.getUploadId() == null) {
+          LOG.info("Uploading snapshot " + snapshotId + " to objectstorage as a single object. Compressed size of snapshot ("
+              + assembler.getPendingSize() + " bytes) is less than minimum part size (" + partSize + " bytes) for multipart upload");
+          AssembledPart assembled = assembler.takePart(Boolean.TRUE);
+          SnapshotPart part = SnapshotPart.createPart(snapUploadInfo, null, assembled.partNumber, assembled.offset);
+          part = part.updateStateCreated(assembled.size, assembled.bytesRead, Boolean.TRUE);
+          snapUploadInfo = snapUploadInfo.updateStateCreatedParts(assembled.partNumber);
+          completeUploadFuture =
+              SnapshotTransferThreadPool.add(new UploadObjectTask(part, snapUploadInfo, manifestInfo, assembled.segments, assembled.size,
+                  uncompressedSize, progressCallback, metrics));
+        } else {
+          int totalParts = assembler.getPartCount();
+          if (assembler.getPendingSize() > 0) {
+            totalParts++;
+            emitPart(assembler.takePart(Boolean.TRUE));
+          } else {
+            // Trailing blocks of an incremental snapshot were unchanged, there is nothing left to upload
+            progressCallback.updateUploadProgress(assembler.getPendingBytesRead());
           }
+          snapUploadInfo = snapUploadInfo.updateStateCreatedParts(totalParts);
+          completeUploadFuture =
+              SnapshotTransferThreadPool.add(new CompleteMpuTask(partFutures, snapUploadInfo, manifestInfo, totalParts, metrics));
+        }
+        return completeUploadFuture;
+      } catch (SnapshotTransferException e) {
+        error = Boolean.TRUE;
+        LOG.error("Failed to upload snapshot " + snapshotId + " due to: ", e);
+        throw e;
+      } catch (Exception e) {
+        error = Boolean.TRUE;
+        LOG.error("Failed to upload snapshot " + snapshotId + " due to: ", e);
+        throw new SnapshotTransferException("Failed to upload snapshot " + snapshotId + " due to: ", e);
+      } finally {
+        if (error) {
+          abortUpload(snapUploadInfo);
+          for (Future<CompressedSegment> future : compressing) {
+            future.cancel(true);
+          }
+          for (Future<PartETag> future : partFutures) {
+            if (!future.isDone()) {
+              future.cancel(true);
+            }
+          }
+          if (completeUploadFuture != null && !completeUploadFuture.isDone()) {
+            completeUploadFuture.cancel(true);
+          }
+        }
+      }
+    }
 
-          if (part != null) {
-            if (part.getState().equals(SnapshotPartState.created) || part.getState().equals(SnapshotPartState.uploading)
-                || part.getState().equals(SnapshotPartState.failed)) {
-              isLast = part.getIsLast();
-              try {
-                PartETag partEtag = uploadPart(part);
-                partETags.add(partEtag);
-
-                progressCallback.updateUploadProgress(part.getInputFileBytesRead());
-                try {
-                  part = part.updateStateUploaded(partEtag.getETag());
-                } catch (Exception e) {
-                  LOG.debug("Failed to update part status in DB. Moving on. " + part);
-                }
+    /**
+     * Sets up the block manifest from the parent manifest
+     */
+    private void prepareManifest() throws Exception {
+      manifest = BlockManifest.create(snapshotId, uncompressedSize, manifestInfo.getBlockSize(), parentManifest);
+      if (parentManifest != null && manifest.getChain().size() == 1) {
+        throw new SnapshotTransferException("Block manifest of parent snapshot " + manifestInfo.getParentSnapshotId() + " does not match snapshot "
+            + snapshotId);
+      }
+      segmentSize = Math.max(1L, partSize / manifest.getBlockSize()) * manifest.getBlockSize();
+    }
 
-                LOG.debug("Uploaded " + part);
-              } catch (Exception e) {
-                error = Boolean.TRUE;
-                // update part status in database
-                try {
-                  part = part.updateStateFailed();
-                } catch (Throwable t) {
-                  LOG.debug("Failed to update part status in DB for " + part, t);
-                }
-                return null;
-              }
-            } else {
-              LOG.warn("Not sure what to do with part in state " + part.getState() + ". Ignoring " + part);
+    private void checkFailure() throws SnapshotUploadPartException {
+      Throwable t = failure.get();
+      if (t != null) {
+        throw new SnapshotUploadPartException("Error uploading parts, aborting part creation process. Check previous log messages for the exact error",
+            t);
+      }
+    }
+
+    private void assemble(Future<CompressedSegment> future) throws Exception {
+      CompressedSegment segment;
+      try {
+        segment = future.get(transferTimeout, TimeUnit.HOURS);
+      } catch (ExecutionException e) {
+        throw new SnapshotTransferException("Failed to read and compress snapshot " + snapshotId + " at offset " + assembler.getNextOffset(),
+            e.getCause());
+      }
+      if (assembler.add(segment)) {
+        if (snapUploadInfo.getUploadId() == null) {
+          // Initialize multipart upload only once after the first part is created
+          LOG.info("Uploading snapshot " + snapshotId + " to objectstorage using multipart upload");
+          progressCallback.setUploadSize(uncompressedSize);
+          uploadId = initiateMulitpartUpload(uncompressedSize);
+          snapUploadInfo = snapUploadInfo.updateUploadId(uploadId); // update uploadId so its available for future parts
+        }
+        emitPart(assembler.takePart(Boolean.FALSE));
+      }
+    }
+
+    private void emitPart(AssembledPart assembled) throws Exception {
+      SnapshotPart part = SnapshotPart.createPart(snapUploadInfo, null, assembled.partNumber, assembled.offset);
+      part = part.updateStateCreated(assembled.size, assembled.bytesRead, assembled.isLast);
+      partFutures.add(SnapshotTransferThreadPool.add(new UploadPartTask(part, assembled.segments, budget, failure, progressCallback, metrics)));
+    }
+  }
+
+  /**
+   * Assembles compressed segments into parts in snapshot order. A part is complete once it reaches the part size, the final segment is held back
+   * so that the last part is never empty
+   */
+  static class PartAssembler {
+    private final long partSize;
+    private final long totalSize;
+    private List<CompressedSegment> pending = new ArrayList<CompressedSegment>();
+    private long pendingSize = 0L;
+    private long pendingOffset = 0L;
+    private long pendingBytesRead = 0L;
+    private int partCount = 0;
+
+    PartAssembler(long partSize, long totalSize) {
+      this.partSize = partSize;
+      this.totalSize = totalSize;
+    }
+
+    /**
+     * Adds the next segment of the snapshot
+     * 
+     * @return true if the pending segments should be taken as a part
+     */
+    boolean add(CompressedSegment segment) {
+      if (segment.offset != getNextOffset()) {
+        throw new IllegalStateException("Segment at offset " + segment.offset + " is out of order, expected offset " + getNextOffset());
+      }
+      pending.add(segment);
+      pendingSize += segment.length;
+      pendingBytesRead += segment.bytesRead;
+      boolean isFinal = segment.offset + segment.bytesRead >= totalSize;
+      return !isFinal && pendingSize >= partSize;
+    }
+
+    AssembledPart takePart(Boolean isLast) {
+      AssembledPart part = new AssembledPart(++partCount, pendingOffset, pendingBytesRead, pendingSize, pending, isLast);
+      pendingOffset += pendingBytesRead;
+      pending = new ArrayList<CompressedSegment>();
+      pendingSize = 0L;
+      pendingBytesRead = 0L;
+      return part;
+    }
+
+    long getNextOffset() {
+      return pendingOffset + pendingBytesRead;
+    }
+
+    long getPendingSize() {
+      return pendingSize;
+    }
+
+    long getPendingBytesRead() {
+      return pendingBytesRead;
+    }
+
+    int getPartCount() {
+      return partCount;
+    }
+  }
+
+  static class AssembledPart {
+    final int partNumber;
+    final long offset;
+    final long bytesRead;
+    final long size;
+    final List<CompressedSegment> segments;
+    final Boolean isLast;
+
+    AssembledPart(int partNumber, long offset, long bytesRead, long size, List<CompressedSegment> segments, Boolean isLast) {
+      this.partNumber = partNumber;
+      this.offset = offset;
+      this.bytesRead = bytesRead;
+      this.size = size;
+      this.segments = segments;
+      this.isLast = isLast;
+    }
+  }
+
+  /**
+   * Segment of the snapshot compressed as an independent gzip member
+   */
+  public static class CompressedSegment {
+    private final long offset;
+    private final long bytesRead;
+    private final byte[] data;
+    private final int length;
+    private final int permits;
+
+    CompressedSegment(long offset, long bytesRead, byte[] data, int length, int permits) {
+      this.offset = offset;
+      this.bytesRead = bytesRead;
+      this.data = data;
+      this.length = length;
+      this.permits = permits;
+    }
+
+    /**
+     * Creates a segment holding the reserved permits, the unused part of the reservation is released if the data is copied to a smaller buffer
+     */
+    static CompressedSegment create(long offset, long bytesRead, byte[] buffer, int length, int reservedPermits, Semaphore budget) {
+      byte[] data = buffer;
+      int heldPermits = reservedPermits;
+      if (length < buffer.length / 2) {
+        data = Arrays.copyOf(buffer, length);
+        heldPermits = toPermits(length);
+        budget.release(reservedPermits - heldPermits);
+      }
+      return new CompressedSegment(offset, bytesRead, data, length, heldPermits);
+    }
+
+    /**
+     * Releases the permits held by the segments once their data is no longer needed
+     */
+    static void release(List<CompressedSegment> segments, Semaphore budget) {
+      int permits = 0;
+      for (CompressedSegment segment : segments) {
+        permits += segment.permits;
+      }
+      budget.release(permits);
+    }
+  }
+
+  /**
+   * Fixed capacity output buffer that exposes its contents without copying
+   */
+  private static class SegmentOutputStream extends OutputStream {
+    private final byte[] buf;
+    private int count;
+
+    SegmentOutputStream(int capacity) {
+      this.buf = new byte[capacity];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      if (count == buf.length) {
+        throw new IOException("Compressed segment exceeds buffer capacity of " + buf.length + " bytes");
+      }
+      buf[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (len > buf.length - count) {
+        throw new IOException("Compressed segment exceeds buffer capacity of " + buf.length + " bytes");
+      }
+      System.arraycopy(b, off, buf, count, len);
+      count += len;
+    }
+  }
+
+  /**
+   * Reads compressed segments back to back. Supports mark and reset so that the S3 client can retry a request
+   */
+  private static class SegmentInputStream extends InputStream {
+    private final List<CompressedSegment> segments;
+    private int segment;
+    private int position;
+    private int markSegment;
+    private int markPosition;
+
+    SegmentInputStream(List<CompressedSegment> segments) {
+      this.segments = segments;
+    }
+
+    @Override
+    public int read() throws IOException {
+      while (segment < segments.size()) {
+        CompressedSegment current = segments.get(segment);
+        if (position < current.length) {
+          return current.data[position++] & 0xff;
+        }
+        segment++;
+        position = 0;
+      }
+      return -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      int read = 0;
+      while (read < len && segment < segments.size()) {
+        CompressedSegment current = segments.get(segment);
+        int count = Math.min(len - read, current.length - position);
+        if (count > 0) {
+          System.arraycopy(current.data, position, b, off + read, count);
+          position += count;
+          read += count;
+        } else {
+          segment++;
+          position = 0;
+        }
+      }
+      return read > 0 ? read : -1;
+    }
+
+    @Override
+    public int available() {
+      long available = 0;
+      for (int i = segment; i < segments.size(); i++) {
+        available += segments.get(i).length - (i == segment ? position : 0);
+      }
+      return (int) Math.min(Integer.MAX_VALUE, available);
+    }
+
+    @Override
+    public boolean markSupported() {
+      return true;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+      markSegment = segment;
+      markPosition = position;
+    }
+
+    @Override
+    public synchronized void reset() {
+      segment = markSegment;
+      position = markPosition;
+    }
+  }
+
+  /**
+   * Per snapshot transfer statistics, logged and recorded in {@link ThruputMetrics} when the upload completes
+   */
+  static class UploadMetrics {
+    private final String snapshotId;
+    private final long startTime;
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong bytesCompressed = new AtomicLong();
+    private final AtomicLong bytesUploaded = new AtomicLong();
+    private final AtomicLong compressNanos = new AtomicLong();
+    private final AtomicLong uploadNanos = new AtomicLong();
+
+    UploadMetrics(String snapshotId) {
+      this.snapshotId = snapshotId;
+      this.startTime = System.currentTimeMillis();
+      ThruputMetrics.startOperation(MonitoredAction.UPLOAD_SNAPSHOT, snapshotId, startTime);
+    }
+
+    void compressed(long read, long compressed, long nanos) {
+      bytesRead.addAndGet(read);
+      bytesCompressed.addAndGet(compressed);
+      compressNanos.addAndGet(nanos);
+    }
+
+    void uploaded(long uploaded, long nanos) {
+      bytesUploaded.addAndGet(uploaded);
+      uploadNanos.addAndGet(nanos);
+    }
+
+    void completed() {
+      long endTime = System.currentTimeMillis();
+      long elapsed = Math.max(1L, endTime - startTime);
+      long kbPerSecond = (bytesRead.get() * 1000 / elapsed) / 1024;
+      ThruputMetrics.endOperation(MonitoredAction.UPLOAD_SNAPSHOT, snapshotId, endTime);
+      ThruputMetrics.addDataPoint(MonitoredAction.UPLOAD_SNAPSHOT_THRUPUT, kbPerSecond);
+      LOG.info("Uploaded snapshot " + snapshotId + ": read " + bytesRead.get() + " bytes, uploaded " + bytesUploaded.get() + " compressed bytes in "
+          + elapsed + " ms (" + kbPerSecond + " KB/s), compression " + perSecond(bytesRead.get(), compressNanos.get()) + " KB/s per thread, upload "
+          + perSecond(bytesUploaded.get(), uploadNanos.get()) + " KB/s per part");
+    }
+
+    private static long perSecond(long bytes, long nanos) {
+      return nanos > 0 ? (long) (bytes / (nanos / 1e9) / 1024) : 0;
+    }
+  }
+
+  public static abstract class CompressSegment implements Callable<CompressedSegment> {
+  }
+
+  class CompressSegmentTask extends CompressSegment {
+
+    private StorageResource storageResource;
+    private long offset;
+    private long length;
+    private int permits;
+    private Semaphore budget;
+    private BlockManifest manifest;
+    private UploadMetrics metrics;
+
+    /**
+     * @param manifest block manifest of an incremental snapshot, only blocks that differ from the parent snapshot are compressed
+     */
+    public CompressSegmentTask(StorageResource storageResource, long offset, long length, int permits, Semaphore budget,
+        @Nullable BlockManifest manifest, UploadMetrics metrics) {
+      this.storageResource = storageResource;
+      this.offset = offset;
+      this.length = length;
+      this.permits = permits;
+      this.budget = budget;
+      this.manifest = manifest;
+      this.metrics = metrics;
+    }
+
+    @Override
+    public CompressedSegment call() throws Exception {
+      long start = System.nanoTime();
+      SegmentOutputStream outputStream = new SegmentOutputStream((int) maxCompressedSize(length));
+      long bytesRead = 0L;
+
+      try (InputStream inputStream = storageResource.getInputStream()) {
+        long skipped = 0L;
+        while (skipped < offset) {
+          long count = inputStream.skip(offset - skipped);
+          if (count <= 0) {
+            throw new EOFException("Unable to skip to offset " + offset + " of snapshot " + snapshotId);
+          }
+          skipped += count;
+        }
+
+        if (manifest != null) {
+          bytesRead = compressBlocks(inputStream, outputStream);
+        } else {
+          byte[] buffer = new byte[readBufferSize];
+          int len;
+          try (GZIPOutputStream gzipStream = new GZIPOutputStream(outputStream, readBufferSize)) {
+            while (bytesRead < length && (len = inputStream.read(buffer, 0, (int) Math.min(buffer.length, length - bytesRead))) > 0) {
+              gzipStream.write(buffer, 0, len);
+              bytesRead += len;
             }
-          } else {
-            error = Boolean.TRUE;
-            LOG.warn("Null reference snapshot part found in queue for " + snapshotId + ". Aborting snapshot upload");
-            return null;
           }
-        } while (!isLast);
+        }
+      }
+      metrics.compressed(bytesRead, outputStream.count, System.nanoTime() - start);
+      return CompressedSegment.create(offset, bytesRead, outputStream.buf, outputStream.count, permits, budget);
+    }
 
-        return partETags;
-      } catch (Throwable t) {
-        error = Boolean.TRUE;
-        LOG.warn("Failed to process snapshot uplodad for " + snapshotId, t);
-        return null;
+    private long compressBlocks(InputStream inputStream, OutputStream outputStream) throws Exception {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      byte[] buffer = new byte[manifest.getBlockSize()];
+      GZIPOutputStream gzipStream = null;
+      long bytesRead = 0L;
+      int block = (int) (offset / manifest.getBlockSize());
+
+      try {
+        while (bytesRead < length) {
+          int blockLength = manifest.getBlockLength(block);
+          int read = 0;
+          while (read < blockLength) {
+            int len = inputStream.read(buffer, read, blockLength - read);
+            if (len <= 0) {
+              throw new EOFException("Unexpected end of snapshot " + snapshotId + " reading block " + block);
+            }
+            read += len;
+          }
+          digest.update(buffer, 0, blockLength);
+          byte[] hash = digest.digest();
+          boolean stored = !manifest.matches(block, hash);
+          manifest.recordBlock(block, hash, stored);
+          if (stored) {
+            if (gzipStream == null) {
+              gzipStream = new GZIPOutputStream(outputStream, readBufferSize);
+            }
+            gzipStream.write(buffer, 0, blockLength);
+          }
+          bytesRead += blockLength;
+          block++;
+        }
       } finally {
-        if (error && partQueue != null) { // drain the queue so the upload process does not hang
-          LOG.debug("Clearing part queue for " + snapshotId + " due to a previous error uploading");
-          partQueue.clear();
+        if (gzipStream != null) {
+          gzipStream.close();
+        }
+      }
+      return bytesRead;
+    }
+  }
+
+  public static abstract class UploadPart implements Callable<PartETag> {
+  }
+
+  class UploadPartTask extends UploadPart {
+
+    private SnapshotPart part;
+    private List<CompressedSegment> segments;
+    private Semaphore budget;
+    private AtomicReference<Throwable> failure;
+    private SnapshotProgressCallback progressCallback;
+    private UploadMetrics metrics;
+
+    public UploadPartTask(SnapshotPart part, List<CompressedSegment> segments, Semaphore budget, AtomicReference<Throwable> failure,
+        SnapshotProgressCallback progressCallback, UploadMetrics metrics) throws EucalyptusCloudException {
+      if (part == null || segments == null || progressCallback == null) {
+        throw new EucalyptusCloudException("Invalid constructor parameters. Cannot proceed without part, part data and or snapshot progress callback");
+      }
+      this.part = part;
+      this.segments = segments;
+      this.budget = budget;
+      this.failure = failure;
+      this.progressCallback = progressCallback;
+      this.metrics = metrics;
+    }
+
+    @Override
+    public PartETag call() throws Exception {
+      try {
+        long start = System.nanoTime();
+        PartETag partEtag = uploadPart(part, segments);
+        metrics.uploaded(part.getSize(), System.nanoTime() - start);
+
+        progressCallback.updateUploadProgress(part.getInputFileBytesRead());
+        try {
+          part = part.updateStateUploaded(partEtag.getETag());
+        } catch (Exception e) {
+          LOG.debug("Failed to update part status in DB. Moving on. " + part);
+        }
+
+        LOG.debug("Uploaded " + part);
+        return partEtag;
+      } catch (Exception e) {
+        failure.compareAndSet(null, e);
+        // update part status in database
+        try {
+          part = part.updateStateFailed();
+        } catch (Throwable t) {
+          LOG.debug("Failed to update part status in DB for " + part, t);
         }
+        throw e;
+      } finally {
+        CompressedSegment.release(segments, budget);
+        segments = null;
       }
     }
   }
@@ -1066,14 +1694,19 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
 
   class CompleteMpuTask extends CompleteUpload {
 
-    private Future<List<PartETag>> uploadTaskFuture;
+    private List<Future<PartETag>> partFutures;
     private SnapshotUploadInfo snapUploadInfo;
+    private SnapshotManifestInfo manifestInfo;
     private Integer totalParts;
+    private UploadMetrics metrics;
 
-    public CompleteMpuTask(Future<List<PartETag>> uploadTaskFuture, SnapshotUploadInfo snapUploadInfo, Integer totalParts) {
-      this.uploadTaskFuture = uploadTaskFuture;
+    public CompleteMpuTask(List<Future<PartETag>> partFutures, SnapshotUploadInfo snapUploadInfo, @Nullable SnapshotManifestInfo manifestInfo,
+        Integer totalParts, UploadMetrics metrics) {
+      this.partFutures = partFutures;
       this.snapUploadInfo = snapUploadInfo;
+      this.manifestInfo = manifestInfo;
       this.totalParts = totalParts;
+      this.metrics = metrics;
     }
 
     @Override
@@ -1081,16 +1714,21 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
       Boolean error = Boolean.FALSE;
       String etag = null;
       try {
-        List<PartETag> partETags = uploadTaskFuture.get(transferTimeout, TimeUnit.HOURS);
-        if (partETags != null && partETags.size() == totalParts) {
+        long deadline = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(transferTimeout);
+        List<PartETag> partETags = new ArrayList<PartETag>();
+        for (Future<PartETag> partFuture : partFutures) {
+          partETags.add(partFuture.get(Math.max(0L, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS));
+        }
+        if (partETags.size() == totalParts) {
           try {
             etag = finalizeMultipartUpload(partETags);
-            // markSnapshotAvailable();
             try {
               snapUploadInfo = snapUploadInfo.updateStateUploaded(etag);
             } catch (Exception e) {
               LOG.debug("Failed to update status in DB for " + snapUploadInfo);
             }
+            markManifestAvailable(manifestInfo);
+            metrics.completed();
             LOG.debug("Uploaded snapshot " + snapUploadInfo.getSnapshotId() + " to objectstorage");
           } catch (Exception e) {
             error = Boolean.TRUE;
@@ -1102,13 +1740,18 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
         }
       } catch (TimeoutException tex) {
         error = Boolean.TRUE;
-        LOG.error("Failed to upload " + snapshotId + ". Complete upload task timed out waiting on upload part task after " + transferTimeout
+        LOG.error("Failed to upload " + snapshotId + ". Complete upload task timed out waiting on upload part tasks after " + transferTimeout
             + " hours");
       } catch (Exception ex) {
         error = Boolean.TRUE;
         LOG.error("Failed to upload " + snapshotId, ex);
       } finally {
         if (error) {
+          for (Future<PartETag> partFuture : partFutures) {
+            if (!partFuture.isDone()) {
+              partFuture.cancel(true);
+            }
+          }
           abortUpload(snapUploadInfo);
           etag = null;
         }
@@ -1121,36 +1764,46 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
 
     private SnapshotPart part;
     private SnapshotUploadInfo snapUploadInfo;
-    private String pathToFile;
+    private SnapshotManifestInfo manifestInfo;
+    private List<CompressedSegment> segments;
     private Long actualSize;
     private Long uncompressedSize;
     private SnapshotProgressCallback callback;
+    private UploadMetrics metrics;
 
-    public UploadObjectTask(SnapshotPart part, SnapshotUploadInfo snapUploadInfo, String pathToFile, Long actualSize, Long uncompressedSize,
-        SnapshotProgressCallback callback) {
+    public UploadObjectTask(SnapshotPart part, SnapshotUploadInfo snapUploadInfo, @Nullable SnapshotManifestInfo manifestInfo,
+        List<CompressedSegment> segments, Long actualSize, Long uncompressedSize, SnapshotProgressCallback callback, UploadMetrics metrics) {
       this.part = part;
       this.snapUploadInfo = snapUploadInfo;
-      this.pathToFile = pathToFile;
+      this.manifestInfo = manifestInfo;
+      this.segments = segments;
       this.actualSize = actualSize;
       this.uncompressedSize = uncompressedSize;
       this.callback = callback;
+      this.metrics = metrics;
     }
 
     @Override
     public String call() throws Exception {
       String etag = null;
       try {
-        etag = uploadSnapshotAsSingleObject(pathToFile, actualSize, uncompressedSize, callback);
+        long start = System.nanoTime();
+        etag = uploadSnapshotAsSingleObject(segments, actualSize, uncompressedSize, callback);
+        metrics.uploaded(actualSize, System.nanoTime() - start);
         try {
           part = part.updateStateUploaded(etag);
           snapUploadInfo = snapUploadInfo.updateStateUploaded(etag);
         } catch (Exception e) {
           LOG.debug("Failed to update status in DB for " + snapUploadInfo);
         }
-        LOG.debug("Uploaded " + pathToFile + " to objectstorage");
+        markManifestAvailable(manifestInfo);
+        metrics.completed();
+        LOG.debug("Uploaded " + snapshotId + " to objectstorage");
       } catch (Exception e) {
         LOG.warn("Failed to upload " + snapshotId, e);
         abortUpload(snapUploadInfo);
+      } finally {
+        segments = null;
       }
       return etag;
     }
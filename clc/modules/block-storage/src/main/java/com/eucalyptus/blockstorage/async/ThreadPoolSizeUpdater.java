@@ -48,6 +48,11 @@ public class ThreadPoolSizeUpdater extends CheckerTask {
       if (currentSize != null && info.getMaxConcurrentSnapshotTransfers() != null && currentSize != info.getMaxConcurrentSnapshotTransfers()) {
         SnapshotTransferThreadPool.updatePoolSize(info.getMaxConcurrentSnapshotTransfers());
       }
+
+      currentSize = SnapshotTransferThreadPool.getPartUploadPoolSize();
+      if (currentSize != null && info.getMaxConcurrentSnapshotPartUploads() != null && currentSize != info.getMaxConcurrentSnapshotPartUploads()) {
+        SnapshotTransferThreadPool.updatePartUploadPoolSize(info.getMaxConcurrentSnapshotPartUploads());
+      }
     } catch (Throwable t) {
       LOG.debug("Unable to check or update thread pool size", t);
     }
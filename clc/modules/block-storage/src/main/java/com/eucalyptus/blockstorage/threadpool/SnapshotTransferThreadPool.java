@@ -73,6 +73,8 @@ import org.apache.log4j.Logger;
 
 import com.amazonaws.services.s3.model.PartETag;
 import com.eucalyptus.blockstorage.S3SnapshotTransfer.CompleteUpload;
+import com.eucalyptus.blockstorage.S3SnapshotTransfer.CompressSegment;
+import com.eucalyptus.blockstorage.S3SnapshotTransfer.CompressedSegment;
 import com.eucalyptus.blockstorage.S3SnapshotTransfer.StorageWriter;
 import com.eucalyptus.blockstorage.S3SnapshotTransfer.UploadPart;
 import com.eucalyptus.blockstorage.Storage;
@@ -84,19 +86,20 @@ public class SnapshotTransferThreadPool {
   private static ThreadPoolExecutor uploadPartPool;
   private static ThreadPoolExecutor completeMpuPool;
   private static ThreadPoolExecutor backendWriterPool;
+  private static ThreadPoolExecutor compressPool;
 
   private static final ReentrantLock RLOCK = new ReentrantLock();
 
   private SnapshotTransferThreadPool() {}
 
-  public static void initialize(Integer poolSize) {
+  public static void initialize(Integer poolSize, Integer partUploadPoolSize) {
     RLOCK.lock();
     try {
       shutdown();
       LOG.info("Initializing SC thread pool catering to snapshot transfers");
 
       uploadPartPool =
-          new ThreadPoolExecutor(poolSize, poolSize, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), Threads.lookup(Storage.class,
+          new ThreadPoolExecutor(partUploadPoolSize, partUploadPoolSize, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), Threads.lookup(Storage.class,
               UploadPart.class), new ThreadPoolExecutor.AbortPolicy());
       completeMpuPool =
           new ThreadPoolExecutor(poolSize, poolSize, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), Threads.lookup(Storage.class,
@@ -104,12 +107,17 @@ public class SnapshotTransferThreadPool {
       backendWriterPool =
           new ThreadPoolExecutor(poolSize, poolSize, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), Threads.lookup(Storage.class,
               StorageWriter.class), new ThreadPoolExecutor.AbortPolicy());
+      // Compression is CPU bound, size the pool by the available processors
+      int compressPoolSize = Runtime.getRuntime().availableProcessors();
+      compressPool =
+          new ThreadPoolExecutor(compressPoolSize, compressPoolSize, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), Threads.lookup(
+              Storage.class, CompressSegment.class), new ThreadPoolExecutor.AbortPolicy());
     } finally {
       RLOCK.unlock();
     }
   }
 
-  public static Future<List<PartETag>> add(UploadPart task) throws ThreadPoolNotInitializedException {
+  public static Future<PartETag> add(UploadPart task) throws ThreadPoolNotInitializedException {
     if (uploadPartPool != null && !uploadPartPool.isShutdown()) {
       return uploadPartPool.submit(task);
     } else {
@@ -139,9 +147,27 @@ public class SnapshotTransferThreadPool {
     }
   }
 
+  public static Future<CompressedSegment> add(CompressSegment task) throws ThreadPoolNotInitializedException {
+    if (compressPool != null && !compressPool.isShutdown()) {
+      return compressPool.submit(task);
+    } else {
+      LOG.warn("SC thread pool catering to snapshot transfers (compress pool) is either not initalized or shut down");
+      throw new ThreadPoolNotInitializedException(
+          "SC thread pool catering to snapshot transfers (compress pool) is either not initalized or shut down");
+    }
+  }
+
   public static Integer getPoolSize() {
     if (uploadPartPool != null && !uploadPartPool.isShutdown() && completeMpuPool != null && !completeMpuPool.isShutdown()
         && backendWriterPool != null && !backendWriterPool.isShutdown()) {
+      return completeMpuPool.getCorePoolSize();
+    } else {
+      return null;
+    }
+  }
+
+  public static Integer getPartUploadPoolSize() {
+    if (uploadPartPool != null && !uploadPartPool.isShutdown()) {
       return uploadPartPool.getCorePoolSize();
     } else {
       return null;
@@ -150,9 +176,7 @@ public class SnapshotTransferThreadPool {
 
   public static void updatePoolSize(Integer newSize) {
     if (uploadPartPool != null && !uploadPartPool.isShutdown() && completeMpuPool != null && !completeMpuPool.isShutdown()
-        && backendWriterPool != null && !backendWriterPool.isShutdown() && newSize != null && uploadPartPool.getCorePoolSize() != newSize) {
-      uploadPartPool.setCorePoolSize(newSize);
-      uploadPartPool.setMaximumPoolSize(newSize);
+        && backendWriterPool != null && !backendWriterPool.isShutdown() && newSize != null && completeMpuPool.getCorePoolSize() != newSize) {
       completeMpuPool.setCorePoolSize(newSize);
       completeMpuPool.setMaximumPoolSize(newSize);
       backendWriterPool.setCorePoolSize(newSize);
@@ -160,6 +184,13 @@ public class SnapshotTransferThreadPool {
     }
   }
 
+  public static void updatePartUploadPoolSize(Integer newSize) {
+    if (uploadPartPool != null && !uploadPartPool.isShutdown() && newSize != null && uploadPartPool.getCorePoolSize() != newSize) {
+      uploadPartPool.setCorePoolSize(newSize);
+      uploadPartPool.setMaximumPoolSize(newSize);
+    }
+  }
+
   public static void shutdown() {
     RLOCK.lock();
     try {
@@ -184,6 +215,11 @@ public class SnapshotTransferThreadPool {
         LOG.debug("Number of queued snapshots for download: " + awaitingExecution.size());
         backendWriterPool = null;
       }
+      if (compressPool != null) {
+        LOG.info("Shutting down SC thread pool catering to snapshot transfers (compress pool)");
+        compressPool.shutdownNow();
+        compressPool = null;
+      }
     } finally {
       RLOCK.unlock();
     }
@@ -0,0 +1,173 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+
+package com.eucalyptus.blockstorage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+public class BlockChainInputStreamTest {
+
+  private static final int BLOCK_SIZE = 1024;
+
+  private final Map<String, byte[]> objects = Maps.newHashMap();
+
+  @Test
+  public void testManifestRoundTrip() throws Exception {
+    byte[] volume = randomVolume(BLOCK_SIZE * 4 + 100, 1);
+    BlockManifest manifest = snapshot("snap-1", volume, null);
+
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    manifest.write(outputStream);
+    BlockManifest read = BlockManifest.read(new ByteArrayInputStream(outputStream.toByteArray()));
+
+    assertEquals(Arrays.asList("snap-1"), read.getChain());
+    assertEquals(volume.length, read.getVolumeSize());
+    assertEquals(5, read.getBlockCount());
+    assertEquals(100, read.getBlockLength(4));
+    for (int block = 0; block < read.getBlockCount(); block++) {
+      assertTrue(read.isStored(block));
+      assertFalse(read.matches(block, hash(volume, block)));
+    }
+  }
+
+  @Test
+  public void testIncrementalSnapshotStoresChangedBlocks() throws Exception {
+    byte[] volume = randomVolume(BLOCK_SIZE * 4 + 100, 1);
+    BlockManifest full = snapshot("snap-1", volume, null);
+
+    volume[BLOCK_SIZE + 5]++;
+    volume[volume.length - 1]++;
+    BlockManifest delta = snapshot("snap-2", volume, full);
+
+    assertEquals(Arrays.asList("snap-1", "snap-2"), delta.getChain());
+    assertEquals(2, delta.getStoredBlockCount());
+    assertFalse(delta.isStored(0));
+    assertTrue(delta.isStored(1));
+    assertFalse(delta.isStored(2));
+    assertFalse(delta.isStored(3));
+    assertTrue(delta.isStored(4));
+    assertEquals(0, delta.getSource(0));
+  }
+
+  @Test
+  public void testRestoreFromChain() throws Exception {
+    byte[] volume = randomVolume(BLOCK_SIZE * 6 + 17, 2);
+    BlockManifest full = snapshot("snap-1", volume, null);
+
+    volume[0]++;
+    volume[BLOCK_SIZE * 3]++;
+    BlockManifest second = snapshot("snap-2", volume, full);
+
+    volume[BLOCK_SIZE * 3 + 1]++;
+    volume[BLOCK_SIZE * 5]++;
+    BlockManifest third = snapshot("snap-3", volume, second);
+
+    // Unchanged snapshot stores no blocks
+    BlockManifest fourth = snapshot("snap-4", volume, third);
+    assertEquals(0, fourth.getStoredBlockCount());
+    assertEquals(0, objects.get("snap-4").length);
+
+    assertArrayEquals(volume, restore(fourth, full, second, third, fourth));
+    assertArrayEquals(volume, restore(third, full, second, third));
+  }
+
+  @Test(expected = IOException.class)
+  public void testRestoreRejectsForeignManifest() throws Exception {
+    byte[] volume = randomVolume(BLOCK_SIZE * 2, 3);
+    BlockManifest full = snapshot("snap-1", volume, null);
+    BlockManifest other = snapshot("snap-9", volume, null);
+    volume[0]++;
+    BlockManifest delta = snapshot("snap-2", volume, full);
+    restore(delta, other, delta);
+  }
+
+  private BlockManifest snapshot(String snapshotId, byte[] volume, BlockManifest parent) throws Exception {
+    BlockManifest manifest = BlockManifest.create(snapshotId, volume.length, BLOCK_SIZE, parent);
+    ByteArrayOutputStream object = new ByteArrayOutputStream();
+    GZIPOutputStream gzipStream = null;
+    for (int block = 0; block < manifest.getBlockCount(); block++) {
+      byte[] hash = hash(volume, block);
+      boolean stored = !manifest.matches(block, hash);
+      manifest.recordBlock(block, hash, stored);
+      if (stored) {
+        if (gzipStream == null) {
+          gzipStream = new GZIPOutputStream(object);
+        }
+        gzipStream.write(volume, block * BLOCK_SIZE, manifest.getBlockLength(block));
+      }
+    }
+    if (gzipStream != null) {
+      gzipStream.close();
+    }
+    objects.put(snapshotId, object.toByteArray());
+
+    // Manifests are always used after a round trip through objectstorage
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    manifest.write(outputStream);
+    return BlockManifest.read(new ByteArrayInputStream(outputStream.toByteArray()));
+  }
+
+  private byte[] restore(BlockManifest manifest, BlockManifest... chain) throws Exception {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try (InputStream inputStream = new BlockChainInputStream(manifest, Arrays.asList(chain), new BlockChainInputStream.SnapshotObjectOpener() {
+
+      @Override
+      public InputStream open(String snapshotId) throws IOException {
+        return new ByteArrayInputStream(objects.get(snapshotId));
+      }
+    }, 100)) {
+      byte[] buffer = new byte[333];
+      int len;
+      while ((len = inputStream.read(buffer)) > 0) {
+        outputStream.write(buffer, 0, len);
+      }
+    }
+    return outputStream.toByteArray();
+  }
+
+  private static byte[] randomVolume(int size, long seed) {
+    byte[] volume = new byte[size];
+    new Random(seed).nextBytes(volume);
+    return volume;
+  }
+
+  private static byte[] hash(byte[] volume, int block) throws Exception {
+    MessageDigest digest = MessageDigest.getInstance("SHA-256");
+    digest.update(volume, block * BLOCK_SIZE, Math.min(BLOCK_SIZE, volume.length - block * BLOCK_SIZE));
+    return digest.digest();
+  }
+}
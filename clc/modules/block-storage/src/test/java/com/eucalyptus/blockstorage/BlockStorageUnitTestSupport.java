@@ -32,6 +32,7 @@ import com.eucalyptus.blockstorage.entities.DirectStorageInfo;
 import com.eucalyptus.blockstorage.entities.ISCSIMetaInfo;
 import com.eucalyptus.blockstorage.entities.ISCSIVolumeInfo;
 import com.eucalyptus.blockstorage.entities.SnapshotInfo;
+import com.eucalyptus.blockstorage.entities.SnapshotManifestInfo;
 import com.eucalyptus.blockstorage.entities.SnapshotPart;
 import com.eucalyptus.blockstorage.entities.SnapshotTransferConfiguration;
 import com.eucalyptus.blockstorage.entities.SnapshotUploadInfo;
@@ -76,7 +77,7 @@ public class BlockStorageUnitTestSupport {
         "eucalyptus_storage",
         ImmutableList.<Class<?>>builder( ).add( BlockStorageGlobalConfiguration.class ).add( CHAPUserInfo.class )
             .add( DASInfo.class ).add( DirectStorageInfo.class ).add( ISCSIMetaInfo.class )
-            .add( ISCSIVolumeInfo.class ).add( SnapshotInfo.class ).add( SnapshotPart.class )
+            .add( ISCSIVolumeInfo.class ).add( SnapshotInfo.class ).add( SnapshotManifestInfo.class ).add( SnapshotPart.class )
             .add( SnapshotTransferConfiguration.class ).add( SnapshotUploadInfo.class ).add( StorageInfo.class )
             .add( VolumeExportRecord.class ).add( VolumeInfo.class ).add( VolumeToken.class )
             .add( SANVolumeInfo.class ).add( SANInfo.class ).build( ),
@@ -227,11 +228,6 @@ public class BlockStorageUnitTestSupport {
 
       }
 
-      @Override
-      public void resumeUpload(StorageResource storageResource) throws SnapshotTransferException {
-
-      }
-
       @Override
       public void download(StorageResource storageResource) throws SnapshotTransferException {
 
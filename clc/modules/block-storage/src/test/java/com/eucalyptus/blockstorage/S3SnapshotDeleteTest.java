@@ -0,0 +1,133 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+
+
+package com.eucalyptus.blockstorage;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.eucalyptus.blockstorage.entities.SnapshotManifestInfo;
+import com.eucalyptus.blockstorage.entities.SnapshotManifestInfo.SnapshotManifestState;
+import com.eucalyptus.util.EucalyptusCloudException;
+import com.google.common.collect.Maps;
+
+public class S3SnapshotDeleteTest {
+
+  private final Map<String, SnapshotManifestInfo> manifests = Maps.newHashMap();
+  private final List<String> deletedKeys = new ArrayList<String>();
+
+  @Test
+  public void testDeleteWithDependentDeltaDeferred() throws Exception {
+    manifest("snap-1", null);
+    manifest("snap-2", "snap-1");
+
+    transfer().deleteChain(manifests.get("snap-1"));
+    assertEquals(SnapshotManifestState.deleted, manifests.get("snap-1").getState());
+    assertEquals(SnapshotManifestState.available, manifests.get("snap-2").getState());
+    assertEquals(Collections.<String>emptyList(), deletedKeys);
+  }
+
+  @Test
+  public void testDeferredDeleteReclaimedWithLastDependentDelta() throws Exception {
+    manifest("snap-1", null);
+    manifest("snap-2", "snap-1");
+    manifest("snap-3", "snap-2");
+
+    transfer().deleteChain(manifests.get("snap-2"));
+    transfer().deleteChain(manifests.get("snap-1"));
+    assertEquals(SnapshotManifestState.deleted, manifests.get("snap-1").getState());
+    assertEquals(SnapshotManifestState.deleted, manifests.get("snap-2").getState());
+    assertEquals(Collections.<String>emptyList(), deletedKeys);
+
+    transfer().deleteChain(manifests.get("snap-3"));
+    assertEquals(SnapshotManifestState.purged, manifests.get("snap-1").getState());
+    assertEquals(SnapshotManifestState.purged, manifests.get("snap-2").getState());
+    assertEquals(SnapshotManifestState.purged, manifests.get("snap-3").getState());
+    assertEquals(Arrays.asList("snap-3", "snap-3.manifest", "snap-2", "snap-2.manifest", "snap-1", "snap-1.manifest"), deletedKeys);
+  }
+
+  @Test
+  public void testDeleteDeltaKeepsParent() throws Exception {
+    manifest("snap-1", null);
+    manifest("snap-2", "snap-1");
+    manifest("snap-3", "snap-1");
+
+    transfer().deleteChain(manifests.get("snap-1"));
+    transfer().deleteChain(manifests.get("snap-2"));
+    assertEquals(SnapshotManifestState.deleted, manifests.get("snap-1").getState());
+    assertEquals(SnapshotManifestState.purged, manifests.get("snap-2").getState());
+    assertEquals(Arrays.asList("snap-2", "snap-2.manifest"), deletedKeys);
+
+    // A snapshot that is not deleted keeps its parent when the last other dependent delta is deleted
+    deletedKeys.clear();
+    manifest("snap-4", null);
+    manifest("snap-5", "snap-4");
+    transfer().deleteChain(manifests.get("snap-5"));
+    assertEquals(SnapshotManifestState.available, manifests.get("snap-4").getState());
+    assertEquals(Arrays.asList("snap-5", "snap-5.manifest"), deletedKeys);
+  }
+
+  private void manifest(String snapshotId, String parentSnapshotId) {
+    SnapshotManifestInfo manifestInfo = new SnapshotManifestInfo(snapshotId);
+    manifestInfo.setParentSnapshotId(parentSnapshotId);
+    manifestInfo.setBucketName("snapshots");
+    manifestInfo.setKeyName(snapshotId);
+    manifestInfo.setManifestKeyName(snapshotId + ".manifest");
+    manifestInfo.setState(SnapshotManifestState.available);
+    manifests.put(snapshotId, manifestInfo);
+  }
+
+  private S3SnapshotTransfer transfer() {
+    return new S3SnapshotTransfer(true) {
+      @Override
+      SnapshotManifestInfo lookupManifest(String snapshotId) {
+        return manifests.get(snapshotId);
+      }
+
+      @Override
+      boolean isParent(String snapshotId) {
+        for (SnapshotManifestInfo manifestInfo : manifests.values()) {
+          if (snapshotId.equals(manifestInfo.getParentSnapshotId()) && !SnapshotManifestState.purged.equals(manifestInfo.getState())) {
+            return true;
+          }
+        }
+        return false;
+      }
+
+      @Override
+      void updateManifestState(SnapshotManifestInfo manifestInfo, SnapshotManifestState state) throws EucalyptusCloudException {
+        manifests.get(manifestInfo.getSnapshotId()).setState(state);
+      }
+
+      @Override
+      void deleteObject(String snapshot, String bucket, String key) {
+        deletedKeys.add(key);
+      }
+    };
+  }
+}
@@ -0,0 +1,133 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+
+package com.eucalyptus.blockstorage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+import org.junit.Test;
+
+import com.eucalyptus.blockstorage.S3SnapshotTransfer.AssembledPart;
+import com.eucalyptus.blockstorage.S3SnapshotTransfer.CompressedSegment;
+import com.eucalyptus.blockstorage.S3SnapshotTransfer.PartAssembler;
+
+public class S3SnapshotUploadPipelineTest {
+
+  private static final long PART_SIZE = 1000;
+
+  @Test
+  public void testPartsAssembledInOrder() {
+    PartAssembler assembler = new PartAssembler(PART_SIZE, 3500);
+    assertFalse(assembler.add(segment(0, 1000, 600)));
+    assertTrue(assembler.add(segment(1000, 1000, 600)));
+
+    AssembledPart first = assembler.takePart(Boolean.FALSE);
+    assertEquals(1, first.partNumber);
+    assertEquals(0, first.offset);
+    assertEquals(2000, first.bytesRead);
+    assertEquals(1200, first.size);
+    assertEquals(2, first.segments.size());
+    assertFalse(first.isLast);
+
+    assertFalse(assembler.add(segment(2000, 1000, 600)));
+    assertEquals(3000, assembler.getNextOffset());
+    try {
+      assembler.add(segment(3500, 500, 300));
+      fail("Expected out of order segment to be rejected");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testFinalSegmentHeldForLastPart() {
+    PartAssembler assembler = new PartAssembler(PART_SIZE, 2500);
+    assertTrue(assembler.add(segment(0, 1000, 1200)));
+    assertEquals(1, assembler.takePart(Boolean.FALSE).partNumber);
+    assertTrue(assembler.add(segment(1000, 1000, 1200)));
+    assertEquals(2, assembler.takePart(Boolean.FALSE).partNumber);
+
+    // The final segment is never emitted as a non final part even when it reaches the part size
+    assertFalse(assembler.add(segment(2000, 500, 1200)));
+    assertEquals(2, assembler.getPartCount());
+    assertEquals(1200, assembler.getPendingSize());
+
+    AssembledPart last = assembler.takePart(Boolean.TRUE);
+    assertEquals(3, last.partNumber);
+    assertEquals(2000, last.offset);
+    assertEquals(500, last.bytesRead);
+    assertTrue(last.isLast);
+  }
+
+  @Test
+  public void testUnchangedTrailingBlocks() {
+    PartAssembler assembler = new PartAssembler(PART_SIZE, 2000);
+    assertTrue(assembler.add(segment(0, 1000, 1000)));
+    assembler.takePart(Boolean.FALSE);
+    assertFalse(assembler.add(segment(1000, 1000, 0)));
+
+    assertEquals(1, assembler.getPartCount());
+    assertEquals(0, assembler.getPendingSize());
+    assertEquals(1000, assembler.getPendingBytesRead());
+  }
+
+  @Test
+  public void testBudget() {
+    long segmentSize = 1024 * 1024;
+    int total = S3SnapshotTransfer.toPermits(2 * S3SnapshotTransfer.maxCompressedSize(segmentSize));
+    Semaphore budget = new Semaphore(total);
+    int reserve = S3SnapshotTransfer.toPermits(S3SnapshotTransfer.maxCompressedSize(segmentSize));
+
+    // Poorly compressed segments hold their whole reservation
+    assertTrue(budget.tryAcquire(reserve));
+    CompressedSegment first = CompressedSegment.create(0, segmentSize, new byte[reserve * 1024], reserve * 1024, reserve, budget);
+    assertTrue(budget.tryAcquire(reserve));
+    CompressedSegment second = CompressedSegment.create(segmentSize, segmentSize, new byte[reserve * 1024], reserve * 1024, reserve, budget);
+    assertEquals(0, budget.availablePermits());
+    assertFalse(budget.tryAcquire(reserve));
+
+    List<CompressedSegment> part = new ArrayList<CompressedSegment>();
+    part.add(first);
+    part.add(second);
+    CompressedSegment.release(part, budget);
+    assertEquals(total, budget.availablePermits());
+
+    // Well compressed segments hand back the unused part of the reservation
+    assertTrue(budget.tryAcquire(reserve));
+    CompressedSegment compressed = CompressedSegment.create(0, segmentSize, new byte[reserve * 1024], 10 * 1024, reserve, budget);
+    assertEquals(total - 10, budget.availablePermits());
+
+    part.clear();
+    part.add(compressed);
+    CompressedSegment.release(part, budget);
+    assertEquals(total, budget.availablePermits());
+  }
+
+  private static CompressedSegment segment(long offset, long bytesRead, int length) {
+    return new CompressedSegment(offset, bytesRead, new byte[length], length, S3SnapshotTransfer.toPermits(length));
+  }
+}
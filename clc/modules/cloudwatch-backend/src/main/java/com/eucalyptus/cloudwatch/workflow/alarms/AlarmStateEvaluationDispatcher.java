@@ -37,37 +37,60 @@
 
 package com.eucalyptus.cloudwatch.workflow.alarms;
 
+import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 
 import com.eucalyptus.cloudwatch.common.config.CloudWatchConfigProperties;
 import com.eucalyptus.cloudwatch.common.internal.domain.alarms.AlarmEntity;
+import com.eucalyptus.cloudwatch.common.internal.domain.alarms.AlarmManager;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricChangeTracker;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricChangeTracker.MetricKey;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntityFactory;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricManager;
 import com.eucalyptus.entities.TransactionResource;
+import com.google.common.base.Objects;
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 import org.apache.log4j.Logger;
 import org.hibernate.Criteria;
+import org.hibernate.criterion.Restrictions;
 
 import com.eucalyptus.bootstrap.Bootstrap;
 import com.eucalyptus.cloudwatch.common.CloudWatchBackend;
 import com.eucalyptus.component.Topology;
 import com.eucalyptus.entities.Entities;
 
+/**
+ * Dispatches alarm evaluation.
+ *
+ * Alarms are indexed by metric so that only alarms for metrics that received
+ * data, alarms whose period has elapsed since they were last evaluated and
+ * new or updated alarms are evaluated. All alarms are periodically evaluated
+ * as a safety net.
+ */
 public class AlarmStateEvaluationDispatcher implements Runnable {
   private static final Logger LOG = Logger.getLogger(AlarmStateEvaluationDispatcher.class);
+  private static final long EVALUATION_TOLERANCE_MILLIS = TimeUnit.SECONDS.toMillis( 30 );
   ExecutorService executorService;
+  private final Map<String, IndexedAlarm> alarmIndex = Maps.newHashMap();
+  private final Multimap<MetricKey, String> alarmsByMetric = HashMultimap.create();
+  private long indexedAlarmsVersion = -1;
+  private long lastFullEvaluation = 0;
 
   public AlarmStateEvaluationDispatcher(ExecutorService executorService) {
     super();
@@ -82,33 +105,56 @@ public class AlarmStateEvaluationDispatcher implements Runnable {
       int size = 0;
       long before = 0;
       List<List<AlarmEntity>> resultsList = null;
+      final long now = System.currentTimeMillis();
+      final Set<MetricKey> changedMetrics = MetricChangeTracker.drainChanges();
+      final long alarmsVersion = AlarmManager.getAlarmsVersion();
+      final boolean fullEvaluation = changedMetrics == null || lastFullEvaluation == 0 ||
+          now - lastFullEvaluation >= TimeUnit.MINUTES.toMillis(
+              Math.max( 1, CloudWatchConfigProperties.ALARM_FULL_EVALUATION_INTERVAL_MINUTES ) ) - EVALUATION_TOLERANCE_MILLIS;
+      boolean selected = false;
       try (final TransactionResource db = Entities.transactionFor(AlarmEntity.class)) {
-        Criteria criteria = Entities.createCriteria(AlarmEntity.class);
-        List<AlarmEntity> results = (List<AlarmEntity>) criteria.list();
+        final List<AlarmEntity> results;
+        if (fullEvaluation || alarmsVersion != indexedAlarmsVersion) {
+          Criteria criteria = Entities.createCriteria(AlarmEntity.class);
+          results = reindex((List<AlarmEntity>) criteria.list(), fullEvaluation, changedMetrics, now);
+          indexedAlarmsVersion = alarmsVersion;
+        } else {
+          results = loadAlarms(selectAlarms(changedMetrics, now));
+        }
         resultsList = makeResultsList(results);
         before = System.currentTimeMillis();
         size = results.size();
+        selected = true;
+      } finally {
+        if (!selected) { // keep changes for the next run
+          MetricChangeTracker.restoreChanges(changedMetrics);
+        }
+      }
+      if (fullEvaluation) {
+        lastFullEvaluation = now;
       }
       try {
         if (resultsList != null) {
           ExecutorCompletionService executorCompletionService = new ExecutorCompletionService(executorService);
-          Set<Future> futures = Sets.newHashSet();
+          Map<Future, List<AlarmEntity>> futures = Maps.newHashMap();
           for (List<AlarmEntity> alarmEntityList: resultsList) {
-            futures.add(executorCompletionService.submit(new AlarmStateEvaluationWorker(alarmEntityList), new Object()));
+            futures.put(executorCompletionService.submit(new AlarmStateEvaluationWorker(alarmEntityList), new Object()), alarmEntityList);
           }
           Future completedFuture;
           while (futures.size() > 0) {
             completedFuture = executorCompletionService.take();
-            futures.remove(completedFuture);
+            final List<AlarmEntity> alarmEntityList = futures.remove(completedFuture);
             try {
               completedFuture.get();
+              evaluated(alarmEntityList, now);
             } catch (ExecutionException e) {
               Throwable cause = e.getCause();
               LOG.error(cause);
             }
           }
           long after = System.currentTimeMillis();
-          LOG.debug("Done evaluating " + size + " alarms, time = " + (after - before) + " ms");
+          LOG.debug("Done evaluating " + size + " of " + alarmIndex.size() + " alarms" +
+              (fullEvaluation ? " (full evaluation)" : "") + ", time = " + (after - before) + " ms");
         }
       } catch (InterruptedException e) {
         LOG.debug(e);
@@ -116,6 +162,94 @@ public class AlarmStateEvaluationDispatcher implements Runnable {
     }
   }
 
+  /**
+   * Rebuild the index from all alarms, return alarms requiring evaluation.
+   */
+  List<AlarmEntity> reindex(final List<AlarmEntity> alarmEntities,
+                                    final boolean fullEvaluation,
+                                    final Set<MetricKey> changedMetrics,
+                                    final long now) {
+    final Map<String, IndexedAlarm> previousIndex = Maps.newHashMap(alarmIndex);
+    alarmIndex.clear();
+    alarmsByMetric.clear();
+    final List<AlarmEntity> selected = Lists.newArrayList();
+    for (AlarmEntity alarmEntity: alarmEntities) {
+      final IndexedAlarm previous = previousIndex.get(alarmEntity.getNaturalId());
+      final IndexedAlarm indexedAlarm = new IndexedAlarm(alarmEntity);
+      if (previous != null && Objects.equal(previous.configurationTimestamp, indexedAlarm.configurationTimestamp)) {
+        indexedAlarm.lastEvaluated = previous.lastEvaluated;
+      }
+      alarmIndex.put(alarmEntity.getNaturalId(), indexedAlarm);
+      alarmsByMetric.put(indexedAlarm.metricKey, alarmEntity.getNaturalId());
+      if (fullEvaluation || indexedAlarm.requiresEvaluation(changedMetrics, now)) {
+        selected.add(alarmEntity);
+      }
+    }
+    return selected;
+  }
+
+  Set<String> selectAlarms(final Set<MetricKey> changedMetrics, final long now) {
+    final Set<String> selected = Sets.newHashSet();
+    for (MetricKey metricKey: changedMetrics) {
+      selected.addAll(alarmsByMetric.get(metricKey));
+    }
+    for (Map.Entry<String, IndexedAlarm> entry: alarmIndex.entrySet()) {
+      if (entry.getValue().requiresEvaluation(null, now)) {
+        selected.add(entry.getKey());
+      }
+    }
+    return selected;
+  }
+
+  /**
+   * Record evaluation of the given alarms.
+   */
+  void evaluated(final List<AlarmEntity> alarmEntities, final long now) {
+    for (AlarmEntity alarmEntity: alarmEntities) {
+      final IndexedAlarm indexedAlarm = alarmIndex.get(alarmEntity.getNaturalId());
+      if (indexedAlarm != null) {
+        indexedAlarm.lastEvaluated = now;
+      }
+    }
+  }
+
+  private List<AlarmEntity> loadAlarms(final Set<String> naturalIds) {
+    final List<AlarmEntity> alarmEntities = Lists.newArrayList();
+    for (List<String> naturalIdBatch: Iterables.partition(naturalIds, 1000)) {
+      Criteria criteria = Entities.createCriteria(AlarmEntity.class);
+      criteria = criteria.add(Restrictions.in("naturalId", naturalIdBatch));
+      alarmEntities.addAll((List<AlarmEntity>) criteria.list());
+    }
+    if (alarmEntities.size() < naturalIds.size()) { // deleted elsewhere, reindex on next run
+      indexedAlarmsVersion = -1;
+    }
+    return alarmEntities;
+  }
+
+  private static final class IndexedAlarm {
+    private final MetricKey metricKey;
+    private final long periodMillis;
+    private final Date configurationTimestamp;
+    private long lastEvaluated;
+
+    private IndexedAlarm(final AlarmEntity alarmEntity) {
+      this.metricKey = new MetricKey(
+          alarmEntity.getAccountId(),
+          alarmEntity.getNamespace(),
+          alarmEntity.getMetricName(),
+          alarmEntity.getMetricType(),
+          MetricManager.hash(alarmEntity.getDimensionMap()));
+      this.periodMillis = 1000L * alarmEntity.getPeriod();
+      this.configurationTimestamp = alarmEntity.getAlarmConfigurationUpdatedTimestamp();
+    }
+
+    private boolean requiresEvaluation(final Set<MetricKey> changedMetrics, final long now) {
+      return lastEvaluated == 0 ||
+          now - lastEvaluated >= periodMillis - EVALUATION_TOLERANCE_MILLIS ||
+          (changedMetrics != null && changedMetrics.contains(metricKey));
+    }
+  }
+
   private List<List<AlarmEntity>> makeResultsList(List<AlarmEntity> results) {
     Multimap<Class, AlarmEntity> classMultiMap = LinkedListMultimap.create();
     for (AlarmEntity alarmEntity: results) {
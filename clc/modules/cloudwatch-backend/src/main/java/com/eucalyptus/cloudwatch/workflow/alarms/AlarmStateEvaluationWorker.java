@@ -62,6 +62,7 @@ import com.eucalyptus.cloudwatch.common.internal.domain.alarms.AlarmEntity.State
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricManager;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricStatistics;
 import com.eucalyptus.component.Topology;
+import com.eucalyptus.util.Exceptions;
 
 public class AlarmStateEvaluationWorker implements Runnable {
   private Collection<AlarmEntity> alarmEntities;
@@ -92,7 +93,7 @@ public class AlarmStateEvaluationWorker implements Runnable {
         AlarmManager.addAlarmHistoryEvents(historyList);
       }
     } catch(Exception e) {
-      LOG.error(e);
+      throw Exceptions.toUndeclared(e); // logged by dispatcher
     }
   }
 
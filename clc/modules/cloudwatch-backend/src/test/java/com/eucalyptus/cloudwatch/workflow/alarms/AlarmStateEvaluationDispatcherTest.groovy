@@ -0,0 +1,93 @@
+/*************************************************************************
+ * Copyright 2009-2015 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.workflow.alarms
+
+import com.eucalyptus.cloudwatch.common.internal.domain.alarms.AlarmEntity
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricChangeTracker.MetricKey
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntity.MetricType
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricManager
+import org.junit.Test
+
+import static org.junit.Assert.*
+
+/**
+ *
+ */
+class AlarmStateEvaluationDispatcherTest {
+
+  private static final long NOW = 1_400_000_000_000L
+
+  @Test
+  void testSelection( ) {
+    AlarmStateEvaluationDispatcher dispatcher = new AlarmStateEvaluationDispatcher( null )
+    AlarmEntity alarm1 = alarm( 'alarm-1', 'Metric1', 60 )
+    AlarmEntity alarm2 = alarm( 'alarm-2', 'Metric2', 300 )
+
+    assertEquals( "New alarms selected", [ alarm1, alarm2 ], dispatcher.reindex( [ alarm1, alarm2 ], false, [ ] as Set, NOW ) )
+    dispatcher.evaluated( [ alarm1, alarm2 ], NOW )
+
+    assertEquals( "Evaluated alarms not selected", [ ] as Set, dispatcher.selectAlarms( [ ] as Set, NOW + 1000 ) )
+    assertEquals( "Changed metric alarm selected", [ 'alarm-2' ] as Set, dispatcher.selectAlarms( [ key( 'Metric2' ) ] as Set, NOW + 1000 ) )
+    assertEquals( "Period elapsed alarm selected", [ 'alarm-1' ] as Set, dispatcher.selectAlarms( [ ] as Set, NOW + 60_000 ) )
+    assertEquals( "All periods elapsed", [ 'alarm-1', 'alarm-2' ] as Set, dispatcher.selectAlarms( [ ] as Set, NOW + 300_000 ) )
+    assertEquals( "Full evaluation", [ alarm1, alarm2 ], dispatcher.reindex( [ alarm1, alarm2 ], true, null, NOW + 1000 ) )
+  }
+
+  @Test
+  void testEvaluationFailure( ) {
+    AlarmStateEvaluationDispatcher dispatcher = new AlarmStateEvaluationDispatcher( null )
+    AlarmEntity alarm1 = alarm( 'alarm-1', 'Metric1', 60 )
+    AlarmEntity alarm2 = alarm( 'alarm-2', 'Metric2', 60 )
+
+    dispatcher.reindex( [ alarm1, alarm2 ], false, [ ] as Set, NOW )
+    dispatcher.evaluated( [ alarm1 ], NOW )
+
+    assertEquals( "Failed alarm selected", [ 'alarm-2' ] as Set, dispatcher.selectAlarms( [ ] as Set, NOW + 1000 ) )
+    assertEquals( "Failed alarm selected on reindex", [ alarm2 ], dispatcher.reindex( [ alarm1, alarm2 ], false, [ ] as Set, NOW + 1000 ) )
+  }
+
+  @Test
+  void testUpdatedAlarm( ) {
+    AlarmStateEvaluationDispatcher dispatcher = new AlarmStateEvaluationDispatcher( null )
+    AlarmEntity alarm1 = alarm( 'alarm-1', 'Metric1', 60 )
+
+    dispatcher.reindex( [ alarm1 ], false, [ ] as Set, NOW )
+    dispatcher.evaluated( [ alarm1 ], NOW )
+
+    AlarmEntity updated = alarm( 'alarm-1', 'Metric1', 60 )
+    updated.setAlarmConfigurationUpdatedTimestamp( new Date( NOW + 500 ) )
+    assertEquals( "Updated alarm selected", [ updated ], dispatcher.reindex( [ updated ], false, [ ] as Set, NOW + 1000 ) )
+  }
+
+  private static AlarmEntity alarm( String naturalId, String metricName, int period ) {
+    AlarmEntity alarm = new AlarmEntity( )
+    alarm.naturalId = naturalId
+    alarm.accountId = '000000000000'
+    alarm.namespace = 'Test'
+    alarm.metricName = metricName
+    alarm.metricType = MetricType.Custom
+    alarm.period = period
+    alarm
+  }
+
+  private static MetricKey key( String metricName ) {
+    new MetricKey( '000000000000', 'Test', metricName, MetricType.Custom, MetricManager.hash( [:] as Map<String,String> ) )
+  }
+}
@@ -30,6 +30,24 @@ public class CloudWatchConfigProperties {
   @ConfigurableField(initial = "1000", description = "Size of the reporting data set that stores cloud watch queues performance info (debug only prop)")
   public static volatile int CLOUDWATCH_MONITORING_HISTORY_SIZE = 1000;
 
+  @ConfigurableField(initial = "250000", description = "Maximum number of pre-aggregated metric data points buffered for writing before PutMetricData requests are rejected")
+  public static volatile int PUT_METRIC_DATA_MAX_PENDING = 250000;
+
+  @ConfigurableField(initial = "60", description = "Interval in seconds between flushes of each PutMetricData ingestion shard")
+  public static volatile int PUT_METRIC_DATA_FLUSH_INTERVAL_SECONDS = 60;
+
+  @ConfigurableField(initial = "false", description = "Set this to true to serve recent metric statistics from memory (only valid when a single host accepts metric data)")
+  public static volatile Boolean METRIC_DATA_MEMORY_STORE_ENABLED = false;
+
+  @ConfigurableField(initial = "180", description = "Number of minutes of metric data to hold in memory")
+  public static volatile int METRIC_DATA_MEMORY_STORE_RETENTION_MINUTES = 180;
+
+  @ConfigurableField(initial = "10000", description = "Maximum number of metrics to hold in memory")
+  public static volatile int METRIC_DATA_MEMORY_STORE_MAX_SERIES = 10000;
+
+  @ConfigurableField(initial = "10", description = "Interval in minutes between evaluations of all alarms, other alarms are evaluated when metric data arrives or their period elapses")
+  public static volatile int ALARM_FULL_EVALUATION_INTERVAL_MINUTES = 10;
+
   public static Boolean isDisabledCloudWatchService() {
     return DISABLE_CLOUDWATCH_SERVICE;
   }
@@ -46,6 +46,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -98,6 +99,16 @@ import com.google.common.collect.Sets;
 
 public class AlarmManager {
   private static final Logger LOG = Logger.getLogger(AlarmManager.class);
+  private static final AtomicLong alarmsVersion = new AtomicLong( 0 );
+
+  /**
+   * Version for locally modified alarms, incremented when alarms are
+   * created, updated or deleted.
+   */
+  public static long getAlarmsVersion() {
+    return alarmsVersion.get();
+  }
+
   public static Long countMetricAlarms(String accountId) {
     try (final TransactionResource db = Entities.transactionFor(AlarmEntity.class)) {
       Criteria criteria = Entities.createCriteria(AlarmEntity.class);
@@ -186,6 +197,7 @@ public class AlarmManager {
       }
       db.commit();
     }
+    alarmsVersion.incrementAndGet();
   }
 
   static void addAlarmHistoryItem(String accountId, String alarmName,
@@ -353,6 +365,7 @@ public class AlarmManager {
       }
       CollectionUtils.each( alarmEntities, update );
       db.commit();
+      alarmsVersion.incrementAndGet();
       return true;
     }
   }
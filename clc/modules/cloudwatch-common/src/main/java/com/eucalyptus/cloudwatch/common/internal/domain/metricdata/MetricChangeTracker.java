@@ -0,0 +1,193 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.common.internal.domain.metricdata;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import javax.annotation.Nullable;
+
+import com.eucalyptus.cloudwatch.common.CloudWatch;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntity.MetricType;
+import com.eucalyptus.component.ServiceConfigurations;
+import com.eucalyptus.component.Topology;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+
+/**
+ * Tracks metrics that have received data since the last drain.
+ *
+ * Metric data writers record the metrics they touch and alarm evaluation
+ * drains the set to find alarms that need evaluating. The tracked set is
+ * bounded, if the bound is exceeded all metrics are treated as changed.
+ * Writers record under a shared lock so a drain never misses a change that
+ * is recorded while the set is swapped.
+ *
+ * Changes are tracked in memory so are only complete when every enabled
+ * CloudWatch service is on this host, otherwise changes are unknown.
+ */
+public class MetricChangeTracker {
+
+  private static final MetricChangeTracker tracker = new MetricChangeTracker( 1_000_000 );
+
+  private final int maxTracked;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock( );
+  private Set<MetricKey> changed = newSet( );
+  private final AtomicBoolean overflowed = new AtomicBoolean( false );
+  private final AtomicBoolean tracking = new AtomicBoolean( false );
+
+  MetricChangeTracker( final int maxTracked ) {
+    this.maxTracked = maxTracked;
+  }
+
+  public static void recordChange( final SimpleMetricEntity entity ) {
+    recordChange( new MetricKey(
+        entity.getAccountId( ),
+        entity.getNamespace( ),
+        entity.getMetricName( ),
+        entity.getMetricType( ),
+        MetricManager.hash( entity.getDimensionMap( ) ) ) );
+  }
+
+  public static void recordChange( final MetricKey key ) {
+    tracker.record( key );
+  }
+
+  /**
+   * Restore changes that were drained but could not be processed.
+   *
+   * @param keys The drained changes, null if changes were not known
+   */
+  public static void restoreChanges( @Nullable final Set<MetricKey> keys ) {
+    tracker.restore( keys );
+  }
+
+  /**
+   * Get and reset the set of changed metrics.
+   *
+   * @return The changed metrics, or null if changes were not fully tracked
+   */
+  @Nullable
+  public static Set<MetricKey> drainChanges( ) {
+    return tracker.drain( Iterables.all( Topology.enabledServices( CloudWatch.class ), ServiceConfigurations.filterHostLocal( ) ) );
+  }
+
+  void record( final MetricKey key ) {
+    lock.readLock( ).lock( );
+    try {
+      if ( changed.size( ) < maxTracked ) {
+        changed.add( key );
+      } else {
+        overflowed.set( true );
+      }
+    } finally {
+      lock.readLock( ).unlock( );
+    }
+  }
+
+  void restore( @Nullable final Set<MetricKey> keys ) {
+    if ( keys == null ) {
+      // changes were unknown, so they remain unknown for the next drain
+      overflowed.set( true );
+    } else {
+      for ( final MetricKey key : keys ) {
+        record( key );
+      }
+    }
+  }
+
+  /**
+   * Changes are only known if tracked locally for the whole period since
+   * the previous drain.
+   *
+   * @param local True if all metric data writers are local
+   */
+  @Nullable
+  Set<MetricKey> drain( final boolean local ) {
+    final Set<MetricKey> keys;
+    final boolean overflow;
+    lock.writeLock( ).lock( );
+    try {
+      keys = changed;
+      changed = newSet( );
+      overflow = overflowed.getAndSet( false );
+    } finally {
+      lock.writeLock( ).unlock( );
+    }
+    final boolean tracked = tracking.getAndSet( local );
+    return overflow || !local || !tracked ? null : ImmutableSet.copyOf( keys );
+  }
+
+  private static Set<MetricKey> newSet( ) {
+    return Collections.newSetFromMap( new ConcurrentHashMap<MetricKey, Boolean>( ) );
+  }
+
+  public static final class MetricKey {
+    private final String accountId;
+    private final String namespace;
+    private final String metricName;
+    private final MetricType metricType;
+    private final String dimensionHash;
+
+    public MetricKey( final String accountId,
+                      final String namespace,
+                      final String metricName,
+                      final MetricType metricType,
+                      final String dimensionHash ) {
+      this.accountId = accountId;
+      this.namespace = namespace;
+      this.metricName = metricName;
+      this.metricType = metricType;
+      this.dimensionHash = dimensionHash;
+    }
+
+    @Override
+    public boolean equals( final Object o ) {
+      if ( this == o ) return true;
+      if ( o == null || getClass( ) != o.getClass( ) ) return false;
+      final MetricKey that = (MetricKey) o;
+      return Objects.equal( accountId, that.accountId ) &&
+          Objects.equal( namespace, that.namespace ) &&
+          Objects.equal( metricName, that.metricName ) &&
+          metricType == that.metricType &&
+          Objects.equal( dimensionHash, that.dimensionHash );
+    }
+
+    @Override
+    public int hashCode( ) {
+      return Objects.hashCode( accountId, namespace, metricName, metricType, dimensionHash );
+    }
+
+    @Override
+    public String toString( ) {
+      return Objects.toStringHelper( this )
+          .add( "accountId", accountId )
+          .add( "namespace", namespace )
+          .add( "metricName", metricName )
+          .add( "metricType", metricType )
+          .add( "dimensionHash", dimensionHash )
+          .toString( );
+    }
+  }
+}
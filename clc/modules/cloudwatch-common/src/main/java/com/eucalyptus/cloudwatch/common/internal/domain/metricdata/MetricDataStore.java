@@ -0,0 +1,356 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.common.internal.domain.metricdata;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntity.MetricType;
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+
+/**
+ * In-memory store of recent minute resolution metric aggregates.
+ *
+ * Each series (account, namespace, metric, type, dimension hash) holds a ring
+ * of primitive arrays per unit, indexed by minute. The store only answers a
+ * query when it has seen every write for the series since the start of the
+ * queried range, otherwise the caller must fall back to the database.
+ */
+public class MetricDataStore {
+
+  private static final long MINUTE_MILLIS = TimeUnit.MINUTES.toMillis( 1 );
+
+  /**
+   * Extra ring capacity so that points with timestamps slightly in the future
+   * do not overwrite minutes within the retention window.
+   */
+  private static final int FUTURE_MINUTES = 60;
+
+  private final int retentionMinutes;
+  private final int capacity;
+  private final int maxSeries;
+  private final long coverageStartMinute;
+  private final ConcurrentMap<SeriesKey, Series> seriesMap = new ConcurrentHashMap<>( );
+  private final AtomicLong lastSweepMinute = new AtomicLong( 0 );
+  private volatile boolean overflowed = false;
+
+  public MetricDataStore( final int retentionMinutes, final int maxSeries, final long now ) {
+    if ( retentionMinutes < 1 ) throw new IllegalArgumentException( "Invalid retention: " + retentionMinutes );
+    this.retentionMinutes = retentionMinutes;
+    this.capacity = retentionMinutes + FUTURE_MINUTES;
+    this.maxSeries = maxSeries;
+    // the current minute may already have been (partially) written to the database
+    this.coverageStartMinute = minute( now ) + 1;
+  }
+
+  public int getRetentionMinutes( ) {
+    return retentionMinutes;
+  }
+
+  public int getMaxSeries( ) {
+    return maxSeries;
+  }
+
+  public int size( ) {
+    return seriesMap.size( );
+  }
+
+  /**
+   * Record metric data that has been durably written.
+   */
+  public void add( final Collection<? extends MetricEntity> entities, final long now ) {
+    final long nowMinute = minute( now );
+    for ( final MetricEntity entity : entities ) {
+      add( entity, nowMinute );
+    }
+    sweep( nowMinute );
+  }
+
+  private void add( final MetricEntity entity, final long nowMinute ) {
+    if ( entity.getTimestamp( ) == null || entity.getUnits( ) == null ) return;
+    final long entityMinute = minute( entity.getTimestamp( ).getTime( ) );
+    if ( entityMinute <= nowMinute - retentionMinutes ) return; // too old to be queried from memory
+    final SeriesKey key = new SeriesKey( entity );
+    while ( true ) {
+      Series series = seriesMap.get( key );
+      if ( series == null ) {
+        if ( seriesMap.size( ) >= maxSeries ) {
+          overflowed = true;
+          return;
+        }
+        // a series created after overflow may have missed earlier writes
+        final Series newSeries = new Series( overflowed ? nowMinute + 1 : coverageStartMinute );
+        series = Objects.firstNonNull( seriesMap.putIfAbsent( key, newSeries ), newSeries );
+      }
+      if ( series.add( entity, entityMinute, nowMinute ) ) {
+        return;
+      } // else series was concurrently expired, retry
+    }
+  }
+
+  /**
+   * Get statistics for the given parameters if they can be answered from memory.
+   *
+   * @param params The validated query parameters
+   * @return The statistics or null if the database must be queried
+   */
+  public Collection<MetricStatistics> query( final MetricManager.GetMetricStatisticsParams params, final long now ) {
+    final long nowMinute = minute( now );
+    final long startMinute = minute( params.getStartTime( ).getTime( ) );
+    final long endMinute = minute( params.getEndTime( ).getTime( ) ); // exclusive
+    if ( startMinute <= nowMinute - retentionMinutes || startMinute < coverageStartMinute ) {
+      return null;
+    }
+    final Series series = seriesMap.get( new SeriesKey( params ) );
+    if ( series == null ) {
+      return overflowed ? null : Lists.<MetricStatistics>newArrayList( );
+    }
+    return series.query( params, startMinute, endMinute );
+  }
+
+  public void clear( ) {
+    seriesMap.clear( );
+  }
+
+  private void sweep( final long nowMinute ) {
+    final long lastSweep = lastSweepMinute.get( );
+    if ( lastSweep < nowMinute && lastSweepMinute.compareAndSet( lastSweep, nowMinute ) ) {
+      for ( final Map.Entry<SeriesKey, Series> entry : seriesMap.entrySet( ) ) {
+        if ( entry.getValue( ).expire( nowMinute - retentionMinutes ) ) {
+          seriesMap.remove( entry.getKey( ), entry.getValue( ) );
+        }
+      }
+    }
+  }
+
+  private static long minute( final long time ) {
+    return time / MINUTE_MILLIS;
+  }
+
+  private final class Series {
+    private final Ring[] rings = new Ring[ Units.values( ).length ];
+    private long coverageStartMinute;
+    private long latestMinute = Long.MIN_VALUE;
+    private boolean expired = false;
+
+    private Series( final long coverageStartMinute ) {
+      this.coverageStartMinute = coverageStartMinute;
+    }
+
+    private synchronized boolean add( final MetricEntity entity, final long entityMinute, final long nowMinute ) {
+      if ( expired ) {
+        return false;
+      }
+      if ( entityMinute >= nowMinute + FUTURE_MINUTES ) {
+        // cannot be held without overwriting retained data, only serve later ranges
+        coverageStartMinute = Math.max( coverageStartMinute, entityMinute + 1 );
+        return true;
+      }
+      final int unitIndex = entity.getUnits( ).ordinal( );
+      if ( rings[ unitIndex ] == null ) {
+        rings[ unitIndex ] = new Ring( capacity );
+      }
+      rings[ unitIndex ].add(
+          entityMinute,
+          entity.getSampleMax( ),
+          entity.getSampleMin( ),
+          entity.getSampleSize( ),
+          entity.getSampleSum( ) );
+      latestMinute = Math.max( latestMinute, entityMinute );
+      return true;
+    }
+
+    private synchronized boolean expire( final long oldestRetainedMinute ) {
+      if ( latestMinute <= oldestRetainedMinute && coverageStartMinute <= oldestRetainedMinute ) {
+        expired = true;
+      }
+      return expired;
+    }
+
+    private synchronized Collection<MetricStatistics> query(
+        final MetricManager.GetMetricStatisticsParams params,
+        final long startMinute,
+        final long endMinute
+    ) {
+      if ( startMinute < coverageStartMinute ) {
+        return null;
+      }
+      final long periodMinutes = Math.max( 1, params.getPeriod( ) / 60 );
+      final TreeMap<Long, List<MetricStatistics>> byPeriod = new TreeMap<>( );
+      for ( final Units units : Units.values( ) ) {
+        final Ring ring = rings[ units.ordinal( ) ];
+        if ( ring == null || ( params.getUnits( ) != null && params.getUnits( ) != units ) ) continue;
+        for ( long periodStart = startMinute; periodStart < endMinute; periodStart += periodMinutes ) {
+          final MetricStatistics statistics =
+              ring.aggregate( params, units, periodStart, Math.min( endMinute, periodStart + periodMinutes ) );
+          if ( statistics != null ) {
+            List<MetricStatistics> statisticsList = byPeriod.get( periodStart );
+            if ( statisticsList == null ) {
+              byPeriod.put( periodStart, statisticsList = Lists.newArrayList( ) );
+            }
+            statisticsList.add( statistics );
+          }
+        }
+      }
+      final List<MetricStatistics> results = Lists.newArrayList( );
+      for ( final List<MetricStatistics> statisticsList : byPeriod.values( ) ) {
+        results.addAll( statisticsList );
+      }
+      return results;
+    }
+  }
+
+  /**
+   * Minute aggregates for a single series and unit.
+   */
+  private static final class Ring {
+    private final long[] minutes;
+    private final double[] sampleMax;
+    private final double[] sampleMin;
+    private final double[] sampleSize;
+    private final double[] sampleSum;
+
+    private Ring( final int capacity ) {
+      minutes = new long[ capacity ];
+      sampleMax = new double[ capacity ];
+      sampleMin = new double[ capacity ];
+      sampleSize = new double[ capacity ];
+      sampleSum = new double[ capacity ];
+      Arrays.fill( minutes, Long.MIN_VALUE );
+    }
+
+    private int slot( final long minute ) {
+      return (int) ( ( minute % minutes.length + minutes.length ) % minutes.length );
+    }
+
+    private void add( final long minute,
+                      final double max,
+                      final double min,
+                      final double size,
+                      final double sum ) {
+      final int slot = slot( minute );
+      if ( minutes[ slot ] != minute ) {
+        minutes[ slot ] = minute;
+        sampleMax[ slot ] = max;
+        sampleMin[ slot ] = min;
+        sampleSize[ slot ] = size;
+        sampleSum[ slot ] = sum;
+      } else {
+        sampleMax[ slot ] = Math.max( max, sampleMax[ slot ] );
+        sampleMin[ slot ] = Math.min( min, sampleMin[ slot ] );
+        sampleSize[ slot ] += size;
+        sampleSum[ slot ] += sum;
+      }
+    }
+
+    private MetricStatistics aggregate( final MetricManager.GetMetricStatisticsParams params,
+                                        final Units units,
+                                        final long fromMinute,
+                                        final long toMinute ) {
+      boolean found = false;
+      double max = 0;
+      double min = 0;
+      double size = 0;
+      double sum = 0;
+      for ( long minute = fromMinute; minute < toMinute; minute++ ) {
+        final int slot = slot( minute );
+        if ( minutes[ slot ] != minute ) continue;
+        if ( !found ) {
+          found = true;
+          max = sampleMax[ slot ];
+          min = sampleMin[ slot ];
+        } else {
+          max = Math.max( max, sampleMax[ slot ] );
+          min = Math.min( min, sampleMin[ slot ] );
+        }
+        size += sampleSize[ slot ];
+        sum += sampleSum[ slot ];
+      }
+      return !found ? null : new MetricStatistics(
+          params.getAccountId( ),
+          params.getNamespace( ),
+          params.getMetricName( ),
+          units,
+          params.getMetricType( ),
+          new Date( fromMinute * MINUTE_MILLIS ),
+          size,
+          max,
+          min,
+          sum,
+          params.getDimensions( ) );
+    }
+  }
+
+  private static final class SeriesKey {
+    private final String accountId;
+    private final String namespace;
+    private final String metricName;
+    private final MetricType metricType;
+    private final String dimensionHash;
+
+    private SeriesKey( final MetricEntity entity ) {
+      this( entity.getAccountId( ), entity.getNamespace( ), entity.getMetricName( ),
+          entity.getMetricType( ), entity.getDimensionHash( ) );
+    }
+
+    private SeriesKey( final MetricManager.GetMetricStatisticsParams params ) {
+      this( params.getAccountId( ), params.getNamespace( ), params.getMetricName( ),
+          params.getMetricType( ), params.getDimensionHash( ) );
+    }
+
+    private SeriesKey( final String accountId,
+                       final String namespace,
+                       final String metricName,
+                       final MetricType metricType,
+                       final String dimensionHash ) {
+      this.accountId = accountId;
+      this.namespace = namespace;
+      this.metricName = metricName;
+      this.metricType = metricType;
+      this.dimensionHash = dimensionHash;
+    }
+
+    @Override
+    public boolean equals( final Object o ) {
+      if ( this == o ) return true;
+      if ( o == null || getClass( ) != o.getClass( ) ) return false;
+      final SeriesKey that = (SeriesKey) o;
+      return Objects.equal( accountId, that.accountId ) &&
+          Objects.equal( namespace, that.namespace ) &&
+          Objects.equal( metricName, that.metricName ) &&
+          metricType == that.metricType &&
+          Objects.equal( dimensionHash, that.dimensionHash );
+    }
+
+    @Override
+    public int hashCode( ) {
+      return Objects.hashCode( accountId, namespace, metricName, metricType, dimensionHash );
+    }
+  }
+}
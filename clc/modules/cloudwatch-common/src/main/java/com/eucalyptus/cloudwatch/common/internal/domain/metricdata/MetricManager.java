@@ -30,9 +30,11 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.persistence.EntityTransaction;
 
+import com.eucalyptus.cloudwatch.common.config.CloudWatchConfigProperties;
 import com.eucalyptus.cloudwatch.common.internal.domain.AbstractPersistentWithDimensions;
 import com.eucalyptus.configurable.ConfigurableClass;
 import com.eucalyptus.configurable.ConfigurableField;
@@ -68,6 +70,31 @@ public class MetricManager {
   public static volatile Integer METRIC_DATA_NUM_DB_OPERATIONS_UNTIL_SESSION_FLUSH = 50;
 
   public static final Logger LOG = Logger.getLogger(MetricManager.class);
+
+  private static final AtomicReference<MetricDataStore> memoryStore = new AtomicReference<>();
+
+  /**
+   * Get the in-memory store for recent metric data, if enabled.
+   *
+   * The store only holds data written via this host, so it must only be
+   * enabled when all metric data is accepted by a single host.
+   */
+  private static MetricDataStore memoryStore() {
+    if (!CloudWatchConfigProperties.METRIC_DATA_MEMORY_STORE_ENABLED) {
+      memoryStore.set(null);
+      return null;
+    }
+    final int retentionMinutes = Math.max(1, CloudWatchConfigProperties.METRIC_DATA_MEMORY_STORE_RETENTION_MINUTES);
+    final int maxSeries = Math.max(0, CloudWatchConfigProperties.METRIC_DATA_MEMORY_STORE_MAX_SERIES);
+    final MetricDataStore store = memoryStore.get();
+    if (store == null || store.getRetentionMinutes() != retentionMinutes || store.getMaxSeries() != maxSeries) {
+      final MetricDataStore newStore = new MetricDataStore(retentionMinutes, maxSeries, System.currentTimeMillis());
+      memoryStore.compareAndSet(store, newStore);
+      return memoryStore.get();
+    }
+    return store;
+  }
+
   public static void addMetric(String accountId, 
       String metricName, String namespace, Map<String, String> dimensionMap,
       MetricType metricType, Units units, Date timestamp, Double sampleSize,
@@ -129,6 +156,7 @@ public class MetricManager {
   }
 
   private static void addManyMetrics(Multimap<Class, MetricEntity> metricMap) {
+    final MetricDataStore store = memoryStore();
     for (Class c : metricMap.keySet()) {
       for (List<MetricEntity> dataBatchPartial : Iterables.partition(metricMap.get(c), METRIC_DATA_NUM_DB_OPERATIONS_PER_TRANSACTION)) {
         try (final TransactionResource db = Entities.transactionFor(c)) {
@@ -143,6 +171,9 @@ public class MetricManager {
           }
           db.commit();
         }
+        if (store != null) {
+          store.add(dataBatchPartial, System.currentTimeMillis());
+        }
       }
     }
   }
@@ -168,6 +199,10 @@ public class MetricManager {
   }
 
   public static void deleteAllMetrics() {
+    final MetricDataStore store = memoryStore.get();
+    if (store != null) {
+      store.clear();
+    }
     for (Class c : MetricEntityFactory.getAllClassesForEntitiesGet()) {
       try (final TransactionResource db = Entities.transactionFor(c)) {
         Entities.deleteAll(c);
@@ -339,9 +374,15 @@ public class MetricManager {
     Date now = new Date();
     Map<GetMetricStatisticsParams, Collection<MetricStatistics>> resultMap = Maps.newHashMap();
     Multimap<Class, GetMetricStatisticsParams> hashGroupMap = LinkedListMultimap.create();
+    final MetricDataStore store = memoryStore();
     for (GetMetricStatisticsParams getMetricStatisticsParams : getMetricStatisticsParamses) {
       if (getMetricStatisticsParams == null) throw new IllegalArgumentException("getMetricStatisticsParams can not be null");
       getMetricStatisticsParams.validate(now);
+      final Collection<MetricStatistics> storedStatistics = store == null ? null : store.query(getMetricStatisticsParams, now.getTime());
+      if (storedStatistics != null) {
+        resultMap.put(getMetricStatisticsParams, storedStatistics);
+        continue;
+      }
       Class metricEntityClass = MetricEntityFactory.getClassForEntitiesGet(getMetricStatisticsParams.getMetricType(), getMetricStatisticsParams.getDimensionHash());
       hashGroupMap.put(metricEntityClass, getMetricStatisticsParams);
     }
@@ -444,6 +485,11 @@ public class MetricManager {
     if (getMetricStatisticsParams == null) throw new IllegalArgumentException("getMetricStatisticsParams can not be null");
     Date now = new Date();
     getMetricStatisticsParams.validate(now);
+    final MetricDataStore store = memoryStore();
+    final Collection<MetricStatistics> storedStatistics = store == null ? null : store.query(getMetricStatisticsParams, now.getTime());
+    if (storedStatistics != null) {
+      return storedStatistics;
+    }
     Class metricEntityClass = MetricEntityFactory.getClassForEntitiesGet(getMetricStatisticsParams.getMetricType(), getMetricStatisticsParams.getDimensionHash());
     Map<GetMetricStatisticsAggregationKey, MetricStatistics> aggregationMap = new TreeMap<GetMetricStatisticsAggregationKey, MetricStatistics>(GetMetricStatisticsAggregationKey.COMPARATOR_WITH_NULLS.INSTANCE);
     try (final TransactionResource db = Entities.transactionFor(metricEntityClass)) {
@@ -0,0 +1,125 @@
+/*************************************************************************
+ * Copyright 2009-2015 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.common.internal.domain.metricdata
+
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricChangeTracker.MetricKey
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntity.MetricType
+import groovy.transform.CompileStatic
+import org.junit.Test
+
+import static org.junit.Assert.*
+
+/**
+ *
+ */
+@CompileStatic
+class MetricChangeTrackerTest {
+
+  @Test
+  void testDrain( ) {
+    MetricChangeTracker tracker = new MetricChangeTracker( 10 )
+    assertNull( "Changes unknown before first drain", tracker.drain( true ) )
+
+    tracker.record( key( 'Metric1' ) )
+    tracker.record( key( 'Metric2' ) )
+    tracker.record( key( 'Metric1' ) )
+    Set<MetricKey> changes = tracker.drain( true )
+    assertEquals( "Changes", [ key( 'Metric1' ), key( 'Metric2' ) ] as Set, changes )
+
+    tracker.record( key( 'Metric3' ) )
+    assertEquals( "Drained changes after record", [ key( 'Metric1' ), key( 'Metric2' ) ] as Set, changes )
+    assertEquals( "Changes after drain", [ key( 'Metric3' ) ] as Set, tracker.drain( true ) )
+    assertEquals( "No changes", [ ] as Set, tracker.drain( true ) )
+  }
+
+  @Test
+  void testOverflow( ) {
+    MetricChangeTracker tracker = new MetricChangeTracker( 2 )
+    tracker.drain( true )
+
+    tracker.record( key( 'Metric1' ) )
+    tracker.record( key( 'Metric2' ) )
+    tracker.record( key( 'Metric3' ) )
+    assertNull( "Changes unknown on overflow", tracker.drain( true ) )
+
+    tracker.record( key( 'Metric4' ) )
+    assertEquals( "Changes after overflow", [ key( 'Metric4' ) ] as Set, tracker.drain( true ) )
+  }
+
+  @Test
+  void testNotLocal( ) {
+    MetricChangeTracker tracker = new MetricChangeTracker( 10 )
+    tracker.drain( true )
+
+    tracker.record( key( 'Metric1' ) )
+    assertNull( "Changes unknown when not local", tracker.drain( false ) )
+
+    tracker.record( key( 'Metric2' ) )
+    assertNull( "Changes unknown after not local", tracker.drain( true ) )
+
+    tracker.record( key( 'Metric3' ) )
+    assertEquals( "Changes when local", [ key( 'Metric3' ) ] as Set, tracker.drain( true ) )
+  }
+
+  @Test
+  void testRestore( ) {
+    MetricChangeTracker tracker = new MetricChangeTracker( 10 )
+    tracker.drain( true )
+
+    tracker.record( key( 'Metric1' ) )
+    Set<MetricKey> changes = tracker.drain( true )
+    tracker.record( key( 'Metric2' ) )
+    tracker.restore( changes )
+    assertEquals( "Restored changes", [ key( 'Metric1' ), key( 'Metric2' ) ] as Set, tracker.drain( true ) )
+
+    tracker.record( key( 'Metric3' ) )
+    tracker.restore( null )
+    assertNull( "Changes unknown after restoring unknown changes", tracker.drain( true ) )
+    assertEquals( "No changes", [ ] as Set, tracker.drain( true ) )
+  }
+
+  @Test
+  void testConcurrentDrain( ) {
+    MetricChangeTracker tracker = new MetricChangeTracker( 1_000_000 )
+    tracker.drain( true )
+
+    int threadCount = 4
+    int keysPerThread = 20_000
+    List<Thread> threads = ( 0..<threadCount ).collect{ int thread ->
+      new Thread( {
+        for ( int i = 0; i < keysPerThread; i++ ) {
+          tracker.record( key( "Metric-${thread}-${i}" as String ) )
+        }
+      } as Runnable )
+    }
+    threads*.start( )
+    Set<MetricKey> drained = [ ] as Set
+    while ( threads.any{ Thread thread -> thread.alive } ) {
+      drained.addAll( tracker.drain( true ) )
+    }
+    threads*.join( )
+    drained.addAll( tracker.drain( true ) )
+    assertEquals( "Drained changes", threadCount * keysPerThread, drained.size( ) )
+  }
+
+  private static MetricKey key( String metricName ) {
+    new MetricKey( '000000000000', 'Test', metricName, MetricType.Custom, MetricManager.hash( [:] as Map<String,String> ) )
+  }
+}
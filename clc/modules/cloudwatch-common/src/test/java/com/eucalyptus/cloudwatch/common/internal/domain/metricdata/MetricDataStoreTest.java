@@ -0,0 +1,128 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.common.internal.domain.metricdata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import org.junit.Test;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntity.MetricType;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ *
+ */
+public class MetricDataStoreTest {
+
+  private static final double TOLERANCE = 0.000000001;
+  private static final long MINUTE = 60000L;
+  private static final Map<String,String> DIMENSIONS = ImmutableMap.of( "InstanceId", "i-00000001" );
+
+  @Test
+  public void testQueryAggregatesByPeriod( ) {
+    final long start = minuteStart( System.currentTimeMillis( ) );
+    final MetricDataStore store = new MetricDataStore( 60, 100, start - MINUTE );
+    for ( int i = 0; i < 10; i++ ) {
+      store.add( Collections.singleton( entity( start + i * MINUTE, Units.Count, i ) ), start + i * MINUTE );
+    }
+    final Collection<MetricStatistics> statistics =
+        store.query( params( start, start + 10 * MINUTE, 300, null ), start + 10 * MINUTE );
+    assertNotNull( "statistics", statistics );
+    assertEquals( "statistics count", 2, statistics.size( ) );
+    final Iterator<MetricStatistics> iterator = statistics.iterator( );
+    final MetricStatistics first = iterator.next( );
+    assertEquals( "first timestamp", new Date( start ), first.getTimestamp( ) );
+    assertEquals( "first sum", 0 + 1 + 2 + 3 + 4, first.getSampleSum( ), TOLERANCE );
+    assertEquals( "first size", 5, first.getSampleSize( ), TOLERANCE );
+    assertEquals( "first min", 0, first.getSampleMin( ), TOLERANCE );
+    assertEquals( "first max", 4, first.getSampleMax( ), TOLERANCE );
+    final MetricStatistics second = iterator.next( );
+    assertEquals( "second timestamp", new Date( start + 5 * MINUTE ), second.getTimestamp( ) );
+    assertEquals( "second sum", 5 + 6 + 7 + 8 + 9, second.getSampleSum( ), TOLERANCE );
+  }
+
+  @Test
+  public void testUnitsFilter( ) {
+    final long start = minuteStart( System.currentTimeMillis( ) );
+    final MetricDataStore store = new MetricDataStore( 60, 100, start - MINUTE );
+    store.add( Collections.singleton( entity( start, Units.Count, 1 ) ), start );
+    store.add( Collections.singleton( entity( start, Units.Bytes, 2 ) ), start );
+    assertEquals( "all units", 2, store.query( params( start, start + MINUTE, 60, null ), start ).size( ) );
+    final Collection<MetricStatistics> bytes = store.query( params( start, start + MINUTE, 60, Units.Bytes ), start );
+    assertEquals( "bytes", 1, bytes.size( ) );
+    assertEquals( "bytes sum", 2, bytes.iterator( ).next( ).getSampleSum( ), TOLERANCE );
+  }
+
+  @Test
+  public void testRangesNotCovered( ) {
+    final long start = minuteStart( System.currentTimeMillis( ) );
+    final MetricDataStore store = new MetricDataStore( 60, 100, start );
+    store.add( Collections.singleton( entity( start + MINUTE, Units.Count, 1 ) ), start + MINUTE );
+    assertNull( "before coverage", store.query( params( start, start + 2 * MINUTE, 60, null ), start + 2 * MINUTE ) );
+    assertNotNull( "after coverage", store.query( params( start + MINUTE, start + 2 * MINUTE, 60, null ), start + 2 * MINUTE ) );
+    assertNull( "beyond retention", store.query( params( start + MINUTE, start + 2 * MINUTE, 60, null ), start + 120 * MINUTE ) );
+  }
+
+  @Test
+  public void testOverflow( ) {
+    final long start = minuteStart( System.currentTimeMillis( ) );
+    final MetricDataStore store = new MetricDataStore( 60, 0, start - MINUTE );
+    assertEquals( "no data", 0, store.query( params( start, start + MINUTE, 60, null ), start ).size( ) );
+    store.add( Collections.singleton( entity( start, Units.Count, 1 ) ), start );
+    assertNull( "overflowed", store.query( params( start, start + MINUTE, 60, null ), start ) );
+  }
+
+  private static long minuteStart( final long time ) {
+    return time - time % MINUTE;
+  }
+
+  private static MetricManager.GetMetricStatisticsParams params( final long start,
+                                                                 final long end,
+                                                                 final int period,
+                                                                 final Units units ) {
+    final MetricManager.GetMetricStatisticsParams params = new MetricManager.GetMetricStatisticsParams(
+        "000000000001", "CPUUtilization", "AWS/EC2", DIMENSIONS, MetricType.System, units,
+        new Date( start ), new Date( end ), period );
+    params.validate( new Date( end ) );
+    return params;
+  }
+
+  private static MetricEntity entity( final long timestamp, final Units units, final double value ) {
+    final MetricEntity entity = new MetricEntity( ) { };
+    entity.setAccountId( "000000000001" );
+    entity.setMetricName( "CPUUtilization" );
+    entity.setNamespace( "AWS/EC2" );
+    entity.setMetricType( MetricType.System );
+    entity.setDimensionHash( MetricManager.hash( DIMENSIONS ) );
+    entity.setUnits( units );
+    entity.setTimestamp( new Date( timestamp ) );
+    entity.setSampleMax( value );
+    entity.setSampleMin( value );
+    entity.setSampleSize( 1.0 );
+    entity.setSampleSum( value );
+    return entity;
+  }
+}
@@ -19,7 +19,8 @@
  ************************************************************************/
 package com.eucalyptus.cloudwatch.service.queue.metricdata;
 
-import com.eucalyptus.cloudwatch.common.internal.domain.listmetrics.ListMetricManager;
+import com.eucalyptus.cloudwatch.common.config.CloudWatchConfigProperties;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricChangeTracker;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntity.MetricType;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricManager;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricUtils;
@@ -27,32 +28,50 @@ import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.SimpleMetricE
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.Units;
 import com.eucalyptus.cloudwatch.common.msgs.Dimension;
 import com.eucalyptus.cloudwatch.common.msgs.MetricDatum;
+import com.eucalyptus.cloudwatch.service.CloudWatchUnavailableException;
 import com.eucalyptus.cloudwatch.service.queue.listmetrics.ListMetricQueue;
 import com.eucalyptus.util.metrics.MonitoredAction;
 import com.eucalyptus.util.metrics.ThruputMetrics;
-import com.google.common.base.Supplier;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import org.apache.log4j.Logger;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Ingestion pipeline for PutMetricData.
+ *
+ * Data points are converted and pre-aggregated on arrival into one of a fixed
+ * number of shards, selected by the hash of the PutMetricDataAggregationKey.
+ * Each shard is flushed once per flush interval by its own worker, the shard
+ * flushes are spread over the interval so that writes are not made in a
+ * single large batch. The number of buffered aggregates is bounded, requests
+ * are rejected with a retryable error when the bound is reached.
+ */
 public class MetricDataQueue {
   private static final Logger LOG = Logger.getLogger(MetricDataQueue.class);
-  final static LinkedBlockingQueue<MetricQueueItem> dataQueue = new LinkedBlockingQueue<MetricQueueItem>();
 
-  private static final ScheduledExecutorService dataFlushTimer = Executors
-      .newSingleThreadScheduledExecutor();
+  private static final int NUM_SHARDS = Math.max( 1, Integer.parseInt( System.getProperty(
+      "com.eucalyptus.cloudwatch.putMetricDataShards",
+      String.valueOf( Math.min( 8, Runtime.getRuntime( ).availableProcessors( ) ) ) ) ) );
+
+  private static final AtomicInteger pendingCount = new AtomicInteger( 0 );
+
+  private static final Shard[] shards = new Shard[ NUM_SHARDS ];
+
+  private static final ScheduledExecutorService dataFlushTimer = Executors.newScheduledThreadPool(
+      NUM_SHARDS,
+      new ThreadFactoryBuilder( ).setDaemon( true ).setNameFormat( "cloudwatch-put-metric-data-flush-%d" ).build( ) );
 
   private static MetricDataQueue singleton = getInstance();
 
@@ -64,44 +83,124 @@ public class MetricDataQueue {
     return singleton;
   }
 
-  private void queue(Supplier<MetricQueueItem> metriMetaDataSupplier) {
-    final MetricQueueItem metricData = metriMetaDataSupplier.get();
-    dataQueue.offer(metricData);
-  }
+  /**
+   * A single partition of the ingestion pipeline, holding aggregates for the
+   * keys that hash to it until the next flush.
+   */
+  private static final class Shard implements Runnable {
+    private final int index;
+    private HashMap<PutMetricDataAggregationKey, SimpleMetricEntity> aggregationMap = Maps.newHashMap();
+    private final String tag;
+    private long lastFlush;
+    private volatile long flushCount;
+
+    private Shard( final int index ) {
+      this.index = index;
+      this.tag = "shard" + index;
+      // offset the first flush so shard flushes are spread over the interval
+      this.lastFlush = System.currentTimeMillis( ) - ( index * flushIntervalMillis( ) ) / NUM_SHARDS;
+    }
+
+    /**
+     * Aggregate the given item into this shard.
+     *
+     * @return true if a new aggregate was created
+     */
+    private synchronized boolean add( final PutMetricDataAggregationKey key, final SimpleMetricEntity item ) {
+      final SimpleMetricEntity totalSoFar = aggregationMap.get( key );
+      if ( totalSoFar == null ) {
+        aggregationMap.put( key, item );
+        return true;
+      } else {
+        accumulate( totalSoFar, item );
+        return false;
+      }
+    }
+
+    private synchronized int size( ) {
+      return aggregationMap.size( );
+    }
+
+    private synchronized List<SimpleMetricEntity> drain( ) {
+      if ( aggregationMap.isEmpty( ) ) {
+        return Collections.emptyList( );
+      }
+      final List<SimpleMetricEntity> drained = Lists.newArrayList( aggregationMap.values( ) );
+      aggregationMap = Maps.newHashMap( );
+      return drained;
+    }
 
-  private static Runnable safeRunner = new Runnable() {
     @Override
-    public void run() {
+    public void run( ) {
+      final long now = System.currentTimeMillis( );
+      if ( ( now - lastFlush ) < flushIntervalMillis( ) && size( ) < earlyFlushThreshold( ) ) {
+        return;
+      }
+      lastFlush = now;
+      flush( );
+    }
+
+    private void flush( ) {
       long before = System.currentTimeMillis();
+      List<SimpleMetricEntity> dataBatch = Collections.emptyList( );
       try {
-        List<MetricQueueItem> dataBatch = Lists.newArrayList();
-        dataQueue.drainTo(dataBatch);
+        dataBatch = drain( );
+        if ( dataBatch.isEmpty( ) ) {
+          return;
+        }
         ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_QUEUE_SIZE, dataBatch.size( ));
-        long t1 = System.currentTimeMillis();
-        List<SimpleMetricEntity> simpleDataBatch = convertToSimpleDataBatch(dataBatch);
-        long t2 = System.currentTimeMillis();
-        ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_QUEUE_CONVERT, t2-t1);
-        simpleDataBatch = aggregate(simpleDataBatch);
         long t3 = System.currentTimeMillis();
-        ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_QUEUE_AGGREGATE, t3-t2);
-        MetricManager.addMetricBatch(simpleDataBatch);
+        MetricManager.addMetricBatch(dataBatch);
         long t4 = System.currentTimeMillis();
         ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_QUEUE_MERTIC_ADD_BATCH, t4-t3);
-        ListMetricQueue.getInstance().addAll(simpleDataBatch);
+        for ( final SimpleMetricEntity item : dataBatch ) {
+          MetricChangeTracker.recordChange( item );
+        }
+        ListMetricQueue.getInstance().addAll(dataBatch);
         long t5 = System.currentTimeMillis();
         ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_QUEUE_MERTIC_QUEUE_ADDALL, t5-t4);
       } catch (Throwable ex) {
-        LOG.debug("PutMetricDataQueue:error");
-        ex.printStackTrace();
-        LOG.error(ex,ex);
+        LOG.error( "PutMetricDataQueue:error flushing shard " + index, ex );
       } finally {
-        ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_TIMING, System.currentTimeMillis()-before);
+        pendingCount.addAndGet( -dataBatch.size( ) );
+        if ( !dataBatch.isEmpty( ) ) {
+          final long flushTime = System.currentTimeMillis( ) - before;
+          flushCount++;
+          ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_SHARD_FLUSH_SIZE, tag, dataBatch.size( ));
+          ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_TIMING, flushTime);
+          if ( LOG.isTraceEnabled( ) ) {
+            LOG.trace( "PutMetricDataQueue:shard " + index + " flushed " + dataBatch.size( ) + " items in " +
+                flushTime + "ms (flush " + flushCount + ")" );
+          }
+        }
       }
     }
-  };
+  }
 
   static {
-    dataFlushTimer.scheduleAtFixedRate(safeRunner, 0, 1, TimeUnit.MINUTES);
+    for ( int i = 0; i < NUM_SHARDS; i++ ) {
+      shards[ i ] = new Shard( i );
+      dataFlushTimer.scheduleWithFixedDelay( shards[ i ], 1000L + ( i * 1000L ) / NUM_SHARDS, 1000L, TimeUnit.MILLISECONDS );
+    }
+  }
+
+  private static long flushIntervalMillis( ) {
+    return TimeUnit.SECONDS.toMillis( Math.max( 1, CloudWatchConfigProperties.PUT_METRIC_DATA_FLUSH_INTERVAL_SECONDS ) );
+  }
+
+  private static int earlyFlushThreshold( ) {
+    return Math.max( 1, CloudWatchConfigProperties.PUT_METRIC_DATA_MAX_PENDING / ( 2 * NUM_SHARDS ) );
+  }
+
+  private static Shard shardFor( final PutMetricDataAggregationKey key ) {
+    return shards[ ( key.hashCode( ) & Integer.MAX_VALUE ) % NUM_SHARDS ];
+  }
+
+  private static void accumulate( final SimpleMetricEntity totalSoFar, final SimpleMetricEntity item ) {
+    totalSoFar.setSampleMax(Math.max(item.getSampleMax(), totalSoFar.getSampleMax()));
+    totalSoFar.setSampleMin(Math.min(item.getSampleMin(), totalSoFar.getSampleMin()));
+    totalSoFar.setSampleSize(totalSoFar.getSampleSize() + item.getSampleSize());
+    totalSoFar.setSampleSum(totalSoFar.getSampleSum() + item.getSampleSum());
   }
 
   public static List<SimpleMetricEntity> aggregate(List<SimpleMetricEntity> dataBatch) {
@@ -112,74 +211,91 @@ public class MetricDataQueue {
       if (!aggregationMap.containsKey(key)) {
         aggregationMap.put(key, new SimpleMetricEntity(item));
       } else {
-        SimpleMetricEntity totalSoFar = aggregationMap.get(key);
-        totalSoFar.setSampleMax(Math.max(item.getSampleMax(), totalSoFar.getSampleMax()));
-        totalSoFar.setSampleMin(Math.min(item.getSampleMin(), totalSoFar.getSampleMin()));
-        totalSoFar.setSampleSize(totalSoFar.getSampleSize() + item.getSampleSize());
-        totalSoFar.setSampleSum(totalSoFar.getSampleSum() + item.getSampleSum());
+        accumulate(aggregationMap.get(key), item);
       }
     }
     return Lists.newArrayList(aggregationMap.values());
   }
 
-  protected static List<SimpleMetricEntity> convertToSimpleDataBatch(
-      List<MetricQueueItem> stupidDataBatch) {
-    ArrayList<SimpleMetricEntity> returnValue = new ArrayList<SimpleMetricEntity>();
-    for(MetricQueueItem item: stupidDataBatch) {
-      SimpleMetricEntity metricMetadata = new SimpleMetricEntity();
-      metricMetadata.setAccountId(item.getAccountId());
-      MetricDatum datum = item.getMetricDatum();
-      
-      metricMetadata.setMetricName(datum.getMetricName());
-      metricMetadata.setNamespace(item.getNamespace());
-      final List<Dimension> dimensions = datum.getDimensions( ) == null ?
-          Collections.<Dimension>emptyList( ) :
-          datum.getDimensions( ).getMember( );
-      metricMetadata.setDimensionMap(makeDimensionMap(dimensions));
-      metricMetadata.setMetricType(item.getMetricType());
-      metricMetadata.setUnits(Units.fromValue(datum.getUnit()));
-      metricMetadata.setTimestamp(datum.getTimestamp());
-      if (datum.getValue() != null) { // Either or case taken care of in service
-        metricMetadata.setSampleMax(datum.getValue());
-        metricMetadata.setSampleMin(datum.getValue());
-        metricMetadata.setSampleSum(datum.getValue());
-        metricMetadata.setSampleSize(1.0);
-      } else if ((datum.getStatisticValues() != null) &&
-            (datum.getStatisticValues().getMaximum() != null) &&
-            (datum.getStatisticValues().getMinimum() != null) &&
-            (datum.getStatisticValues().getSum() != null) &&
-            (datum.getStatisticValues().getSampleCount() != null)) {
-          metricMetadata.setSampleMax(datum.getStatisticValues().getMaximum());
-          metricMetadata.setSampleMin(datum.getStatisticValues().getMinimum());
-          metricMetadata.setSampleSum(datum.getStatisticValues().getSum());
-          metricMetadata.setSampleSize(datum.getStatisticValues().getSampleCount());
-      } else {
-        throw new RuntimeException("Statistics set (all values) or Value must be set"); 
-      }
-      returnValue.add(metricMetadata);
+  private static SimpleMetricEntity convertToSimpleMetricEntity(
+      final String accountId, final String namespace, final MetricDatum datum, final MetricType metricType) {
+    SimpleMetricEntity metricMetadata = new SimpleMetricEntity();
+    metricMetadata.setAccountId(accountId);
+    metricMetadata.setMetricName(datum.getMetricName());
+    metricMetadata.setNamespace(namespace);
+    final List<Dimension> dimensions = datum.getDimensions( ) == null ?
+        Collections.<Dimension>emptyList( ) :
+        datum.getDimensions( ).getMember( );
+    metricMetadata.setDimensionMap(makeDimensionMap(dimensions));
+    metricMetadata.setMetricType(metricType);
+    metricMetadata.setUnits(Units.fromValue(datum.getUnit()));
+    metricMetadata.setTimestamp(datum.getTimestamp());
+    if (datum.getValue() != null) { // Either or case taken care of in service
+      metricMetadata.setSampleMax(datum.getValue());
+      metricMetadata.setSampleMin(datum.getValue());
+      metricMetadata.setSampleSum(datum.getValue());
+      metricMetadata.setSampleSize(1.0);
+    } else if ((datum.getStatisticValues() != null) &&
+          (datum.getStatisticValues().getMaximum() != null) &&
+          (datum.getStatisticValues().getMinimum() != null) &&
+          (datum.getStatisticValues().getSum() != null) &&
+          (datum.getStatisticValues().getSampleCount() != null)) {
+        metricMetadata.setSampleMax(datum.getStatisticValues().getMaximum());
+        metricMetadata.setSampleMin(datum.getStatisticValues().getMinimum());
+        metricMetadata.setSampleSum(datum.getStatisticValues().getSum());
+        metricMetadata.setSampleSize(datum.getStatisticValues().getSampleCount());
+    } else {
+      throw new RuntimeException("Statistics set (all values) or Value must be set"); 
     }
-    return returnValue;
+    return metricMetadata;
   }
 
+  /**
+   * Convert and aggregate the given data into the ingestion shards.
+   *
+   * @throws CloudWatchUnavailableException If the pipeline is at capacity
+   */
   public void insertMetricData(final String ownerAccountId, final String nameSpace,
-                               final List<MetricDatum> metricDatum, final MetricType metricType) {
+                               final List<MetricDatum> metricDatum, final MetricType metricType)
+      throws CloudWatchUnavailableException {
     // Some points do not actually go in.  If a data point represents an absolute value, the first one does not go in.
     // Also, some data points are added while we go through the list (derived metrics)
     Date now = new Date();
 
-    for (final MetricDatum datum : metricDatum) {
-      scrub(datum, now);
-      queue(new Supplier<MetricQueueItem>() {
-        @Override
-        public MetricQueueItem get() {
-          MetricQueueItem metricMetadata = new MetricQueueItem();
-          metricMetadata.setAccountId(ownerAccountId);
-          metricMetadata.setMetricDatum(datum);
-          metricMetadata.setNamespace(nameSpace);
-          metricMetadata.setMetricType(metricType);
-          return metricMetadata;
+    // reserve for the worst case, every datum creating a new aggregate
+    final int reserved = metricDatum.size( );
+    if ( !reservePending( reserved ) ) {
+      ThruputMetrics.addDataPoint( MonitoredAction.PUT_DATA_QUEUE_REJECTED, metricDatum.size( ) );
+      throw new CloudWatchUnavailableException( "Metric data ingestion at capacity, please retry" );
+    }
+
+    long before = System.currentTimeMillis();
+    int created = 0;
+    try {
+      for (final MetricDatum datum : metricDatum) {
+        scrub(datum, now);
+        final SimpleMetricEntity item = convertToSimpleMetricEntity(ownerAccountId, nameSpace, datum, metricType);
+        item.setTimestamp(MetricUtils.stripSeconds(item.getTimestamp()));
+        final PutMetricDataAggregationKey key = new PutMetricDataAggregationKey(item);
+        if ( shardFor( key ).add( key, item ) ) {
+          created++;
         }
-      });
+      }
+    } finally {
+      pendingCount.addAndGet( created - reserved );
+    }
+    ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_QUEUE_AGGREGATE, System.currentTimeMillis()-before);
+  }
+
+  private static boolean reservePending( final int count ) {
+    while ( true ) {
+      final int pending = pendingCount.get( );
+      if ( pending + count > CloudWatchConfigProperties.PUT_METRIC_DATA_MAX_PENDING ) {
+        return false;
+      }
+      if ( pendingCount.compareAndSet( pending, pending + count ) ) {
+        return true;
+      }
     }
   }
 
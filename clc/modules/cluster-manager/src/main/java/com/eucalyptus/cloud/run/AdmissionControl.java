@@ -240,23 +240,12 @@ public class AdmissionControl {
         try {
           final ResourceState state = cluster.getNodeState( );
           /**
-           * NOTE: If the defined instance type has an ordering conflict w/ some other type then it
-           * isn't safe to service TWO requests which use differing types during the same resource refresh
-           * duty cycle.
-           * This determines whether or not an asynchronous allocation is safe to do for the
-           * request instance type or whether a synchronous resource availability refresh is needed.
-           * 
+           * NOTE: If the defined instance type has an ordering conflict w/ some other type then the
+           * availability of other types after this allocation is only a conservative estimate. Rather
+           * than refresh the actual cluster state before allocating we request an asynchronous refresh
+           * after allocating, concurrent requests are merged into a single refresh.
            */
-          boolean unorderedType = VmTypes.isUnorderedType( allocInfo.getVmType( ) );
-          boolean forceResourceRefresh = state.hasUnorderedTokens( ) || unorderedType;
-          /**
-           * GRZE: if the vm type is not "nicely" ordered then we force a refresh of the actual
-           * cluster state. Note: we already hold the cluster gating lock here so this update will
-           * be mutual exclusive wrt both resource allocations and cluster state updates.
-           */
-          if ( forceResourceRefresh ) {
-            cluster.refreshResources( );
-          }
+          final boolean unorderedType = VmTypes.isUnorderedType( allocInfo.getVmType( ) );
           final BatchAllocator<ResourceToken> allocator = new BatchAllocator<ResourceToken>( ) {
             @Override
             public List<ResourceToken> allocate( int min, int max ) {
@@ -308,7 +297,13 @@ public class AdmissionControl {
             }
           };
 
-          RestrictedTypes.allocateUnitlessResources( CloudMetadata.VmInstanceMetadata.class, tryAmount, maxAmount, allocator );
+          try {
+            RestrictedTypes.allocateUnitlessResources( CloudMetadata.VmInstanceMetadata.class, tryAmount, maxAmount, allocator );
+          } finally {
+            if ( unorderedType ) {
+              cluster.requestResourceRefresh( );
+            }
+          }
           return allocInfo.getAllocationTokens( );
         } finally {
           cluster.getGateLock( ).readLock( ).unlock( );
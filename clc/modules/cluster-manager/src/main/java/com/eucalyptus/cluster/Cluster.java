@@ -130,6 +130,7 @@ import com.eucalyptus.event.Hertz;
 import com.eucalyptus.event.ListenerRegistry;
 import com.eucalyptus.event.Listeners;
 import com.eucalyptus.images.Emis;
+import com.eucalyptus.network.NetworkInfoBroadcaster;
 import com.eucalyptus.records.EventRecord;
 import com.eucalyptus.records.EventType;
 import com.eucalyptus.records.Logs;
@@ -243,12 +244,14 @@ public class Cluster implements AvailabilityZoneMetadata, HasFullName<Cluster>,
   private boolean                                        hasClusterCert = false;
   private boolean                                        hasNodeCert    = false;
   private final ReadWriteLock                            gateLock       = new ReentrantReadWriteLock( );
+  private final AtomicBoolean                            resourceRefreshRequested = new AtomicBoolean( false );
   
   enum ZoneRegistration implements Predicate<Cluster> {
     REGISTER {
       @Override
       public boolean apply( final Cluster input ) {
         Clusters.getInstance( ).register( input );
+        NetworkInfoBroadcaster.resetAcknowledgement( input.getPartition( ) );
         return true;
       }
     },
@@ -256,6 +259,7 @@ public class Cluster implements AvailabilityZoneMetadata, HasFullName<Cluster>,
       @Override
       public boolean apply( final Cluster input ) {
         Clusters.getInstance( ).registerDisabled( input );
+        NetworkInfoBroadcaster.resetAcknowledgement( input.getPartition( ) );
         return true;
       }
     };
@@ -867,6 +871,7 @@ public class Cluster implements AvailabilityZoneMetadata, HasFullName<Cluster>,
   public void start( ) throws ServiceRegistrationException {
     try {
       Clusters.getInstance( ).registerDisabled( this );
+      NetworkInfoBroadcaster.resetAcknowledgement( this.getPartition( ) );
       if ( !State.DISABLED.equals( this.stateMachine.getState( ) ) ) {
         final Callable<CheckedListenableFuture<Cluster>> trans = startingTransition( );
         Exception lastEx = null;
@@ -1275,6 +1280,25 @@ public class Cluster implements AvailabilityZoneMetadata, HasFullName<Cluster>,
     }
   }
   
+  /**
+   * Request an asynchronous resource refresh.
+   *
+   * Requests made while a refresh is queued are merged into it, a request made
+   * while a refresh is in progress results in one further refresh.
+   */
+  public void requestResourceRefresh( ) {
+    if ( this.resourceRefreshRequested.compareAndSet( false, true ) ) {
+      Threads.enqueue( this.getConfiguration( ), Cluster.class, 1, new Callable<Void>( ) {
+        @Override
+        public Void call( ) {
+          Cluster.this.resourceRefreshRequested.set( false );
+          Cluster.this.refreshResources( );
+          return null;
+        }
+      } );
+    }
+  }
+
   public void check( ) throws Faults.CheckException, IllegalStateException, InterruptedException, ServiceStateException {
     if ( this.gateLock.readLock( ).tryLock( 60, TimeUnit.SECONDS ) ) {
       try {    	
@@ -66,11 +66,14 @@ import java.util.Date;
 import java.util.List;
 import java.util.NavigableSet;
 import java.util.Set;
-import java.util.TreeSet;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import javax.annotation.Nonnull;
 
 import com.eucalyptus.auth.principal.AccountFullName;
@@ -81,7 +84,7 @@ import com.eucalyptus.compute.common.internal.util.NotEnoughResourcesException;
 import com.eucalyptus.records.EventRecord;
 import com.eucalyptus.records.EventType;
 import com.eucalyptus.records.Logs;
-import com.eucalyptus.util.LogUtil;
+import com.eucalyptus.util.LockResource;
 import com.eucalyptus.auth.principal.OwnerFullName;
 import com.eucalyptus.compute.common.internal.vmtypes.VmType;
 import com.eucalyptus.vmtypes.VmTypes;
@@ -98,6 +101,7 @@ public class ResourceState {
   private NavigableSet<ResourceToken>                        submittedTokens;
   private NavigableSet<ResourceToken>                        redeemedTokens;
   private String                                             clusterName;
+  private final ReadWriteLock                                capacityLock = new ReentrantReadWriteLock( );
 
   public static class NoSuchTokenException extends Exception {
     private static final long serialVersionUID = 1L;
@@ -109,10 +113,14 @@ public class ResourceState {
   }
 
   public ResourceState( String clusterName ) {
+    this( clusterName, VmTypes.list( ) );
+  }
+
+  ResourceState( String clusterName, Iterable<VmType> vmTypes ) {
     this.clusterName = clusterName;
     this.typeMap = new ConcurrentSkipListMap<>( );
     
-    for ( VmType v : VmTypes.list( ) )
+    for ( VmType v : vmTypes )
       this.typeMap.putIfAbsent( v.getName( ), new VmTypeAvailability( v, 0, 0 ) );
     
     this.pendingTokens = new ConcurrentSkipListSet<>( );
@@ -130,52 +138,111 @@ public class ResourceState {
     } );
   }
   
-  public synchronized List<ResourceToken> requestResourceAllocation( Allocation allocInfo, int minAmount, int maxAmount ) throws NotEnoughResourcesException {
-    VmTypeAvailability vmTypeStatus = this.typeMap.get( allocInfo.getVmType( ).getName( ) );
-    Integer available = vmTypeStatus.getAvailable( );
-    NavigableSet<VmTypeAvailability> sorted = this.sorted( );
-    LOG.debug( LogUtil.header( "BEFORE ALLOCATE" ) );
-    LOG.debug( sorted );
-    //:: if not enough, then bail out :://
-    final Integer quantity;
-    if ( vmTypeStatus.getAvailable( ) < minAmount ) {
-      throw new NotEnoughResourcesException( "Not enough resources (" + available + " < " + minAmount + ": vm instances." );
-    } else {
-      quantity = ( maxAmount < available
-                                        ? maxAmount
-                                        : available );
-    }
-
-    Set<VmTypeAvailability> tailSet = sorted.tailSet( vmTypeStatus );
-    Set<VmTypeAvailability> headSet = sorted.headSet( vmTypeStatus );
-    LOG.debug( LogUtil.header( "DURING ALLOCATE" ) );
-    LOG.debug( LogUtil.subheader( "TAILSET: \n" + tailSet ) );
-    LOG.debug( LogUtil.subheader( "HEADSET: \n" + headSet ) );
-    //:: decrement available resources across the "active" partition :://
-    for ( VmTypeAvailability v : tailSet )
-      v.decrement( quantity );
-    for ( VmTypeAvailability v : headSet )
-      v.setAvailable( vmTypeStatus.getAvailable( ) );
-    LOG.debug( LogUtil.header( "AFTER ALLOCATE" ) );
-    LOG.debug( sorted );
+  public List<ResourceToken> requestResourceAllocation( Allocation allocInfo, int minAmount, int maxAmount ) throws NotEnoughResourcesException {
+    final VmType vmType = allocInfo.getVmType( );
+    final int quantity = reserve( vmType, minAmount, maxAmount );
     List<ResourceToken> tokenList = Lists.newArrayList( );
-    for ( int i = 0; i < quantity; i++ ) {
-      try {
+    try {
+      for ( int i = 0; i < quantity; i++ ) {
         ResourceToken token = new ResourceToken( allocInfo, i );
         LOG.debug( EventType.TOKEN_RESERVED.name( ) + ": " + token.toString( ) );
         this.pendingTokens.add( token );
         tokenList.add( token );
-      } catch ( Exception ex ) {
-        LOG.error( ex );
-        Logs.extreme( ).error( ex, ex );
-        for ( ResourceToken token : tokenList ) {
-          this.pendingTokens.remove( token );
-        }
       }
+    } catch ( Exception ex ) {
+      LOG.error( ex );
+      Logs.extreme( ).error( ex, ex );
+      for ( ResourceToken token : tokenList ) {
+        this.pendingTokens.remove( token );
+      }
+      unreserve( vmType, quantity );
+      throw new NotEnoughResourcesException( "Error reserving resources for " + quantity + " vm instances: " + ex.getMessage( ), ex );
     }
     return tokenList;
   }
 
+  /**
+   * Reserve capacity for between min and max instances of the given type.
+   *
+   * <p>The reserved type is decremented atomically and availability for other
+   * types is reduced by the number of their slots that the reserved instances
+   * could occupy. Reservations that affect other types exclude each other so
+   * that instances of different types cannot reserve the same slots. A
+   * resource update will replace the estimates for other types with reported
+   * availability.</p>
+   *
+   * @return The number of instances reserved
+   * @throws NotEnoughResourcesException If fewer than the minimum are available
+   */
+  int reserve( final VmType vmType, final int minAmount, final int maxAmount ) throws NotEnoughResourcesException {
+    final VmTypeAvailability vmTypeStatus = this.typeMap.get( vmType.getName( ) );
+    if ( vmTypeStatus == null ) {
+      throw new NotEnoughResourcesException( "Not enough resources (0 < " + minAmount + "): vm instances." );
+    }
+    try ( final LockResource lock = LockResource.lock( capacityLock( vmType ) ) ) {
+      final int quantity = vmTypeStatus.reserve( minAmount, maxAmount );
+      if ( quantity < 0 ) {
+        throw new NotEnoughResourcesException( "Not enough resources (" + vmTypeStatus.getAvailable( ) + " < " + minAmount + ": vm instances." );
+      }
+      for ( final VmTypeAvailability v : this.typeMap.values( ) ) {
+        if ( v != vmTypeStatus ) {
+          v.decrement( quantity * slots( vmType, v.getType( ) ) );
+        }
+      }
+      if ( LOG.isDebugEnabled( ) ) {
+        LOG.debug( "Reserved " + quantity + " " + vmType.getName( ) + " for " + this.clusterName + ": " + this.typeMap.values( ) );
+      }
+      return quantity;
+    }
+  }
+
+  /**
+   * Return reserved capacity for the given type and the slots of other types
+   * that it occupied. Other types are not restored beyond their maximum as
+   * their reservation may have been limited by the available capacity.
+   */
+  void unreserve( final VmType vmType, final int quantity ) {
+    final VmTypeAvailability vmTypeStatus = this.typeMap.get( vmType.getName( ) );
+    if ( vmTypeStatus != null ) {
+      try ( final LockResource lock = LockResource.lock( capacityLock( vmType ) ) ) {
+        vmTypeStatus.decrement( -quantity );
+        for ( final VmTypeAvailability v : this.typeMap.values( ) ) {
+          if ( v != vmTypeStatus ) {
+            v.restore( quantity * slots( vmType, v.getType( ) ) );
+          }
+        }
+      }
+    }
+  }
+
+  private Lock capacityLock( final VmType vmType ) {
+    for ( final VmTypeAvailability v : this.typeMap.values( ) ) {
+      if ( !vmType.equals( v.getType( ) ) && slots( vmType, v.getType( ) ) > 0 ) {
+        return capacityLock.writeLock( );
+      }
+    }
+    return capacityLock.readLock( );
+  }
+
+  /**
+   * The most slots of the other type that one instance of the given type can
+   * occupy on a node.
+   */
+  static int slots( final VmType vmType, final VmType other ) {
+    if ( vmType.equals( other ) ) {
+      return 1;
+    }
+    return Math.max( slots( vmType.getCpu( ), other.getCpu( ) ),
+        Math.max( slots( vmType.getMemory( ), other.getMemory( ) ), slots( vmType.getDisk( ), other.getDisk( ) ) ) );
+  }
+
+  private static int slots( final Integer amount, final Integer otherAmount ) {
+    if ( amount == null || otherAmount == null || amount <= 0 || otherAmount <= 0 ) {
+      return 0;
+    }
+    return ( amount + otherAmount - 1 ) / otherAmount;
+  }
+
   private static boolean tokenOwnerRepresentsOwnerFullName( final OwnerFullName tokenOwnerFullName, final OwnerFullName ownerFullName ) {
     if (tokenOwnerFullName == null || ownerFullName == null) return false;
     if (ownerFullName instanceof AccountFullName) {
@@ -286,33 +353,43 @@ public class ResourceState {
     long expiryAge = System.currentTimeMillis( ) - TimeUnit.MINUTES.toMillis( getExpiryMinutes( 15 ) );
     expirePendingTokens( expiryAge );
 
-    int pending = 0, submitted = 0, redeemed = 0;
-    for ( ResourceToken t : this.pendingTokens )
-      pending += t.getAmount( );
-    for ( ResourceToken t : this.submittedTokens )
-      submitted += t.getAmount( );
-    for ( ResourceToken t : this.redeemedTokens )
-      redeemed += t.getAmount( );
-    final int outstandingCount = pending + submitted;
-    EventRecord.here( ResourceState.class, EventType.CLUSTER_STATE_UPDATE, this.clusterName,
-                      String.format( "outstanding=%d:pending=%d:submitted=%d:redeemed=%d", outstandingCount, pending, submitted, redeemed ) ).info( );
-    this.redeemedTokens.clear( );
-    
     StringBuilder before = new StringBuilder( );
     StringBuilder after = new StringBuilder( );
-    for ( ResourceType rsc : rscUpdate ) {
-      VmTypeAvailability vmAvailable = this.typeMap.get( rsc.getInstanceType( ).getName( ) );
-      if ( vmAvailable == null ) continue;
-      before.append( String.format( ":%s:%d/%d", vmAvailable.getType( ).getName( ), vmAvailable.getAvailable( ), vmAvailable.getMax( ) ) );
-      vmAvailable.setAvailable( rsc.getAvailableInstances( ) );
-      vmAvailable.decrement( outstandingCount );
-      vmAvailable.setMax( rsc.getMaxInstances( ) );
-      after.append( String.format( ":%s:%d/%d", vmAvailable.getType( ).getName( ), vmAvailable.getAvailable( ), vmAvailable.getMax( ) ) );
+    // exclude reservations while counting outstanding tokens so that none are lost or double counted
+    try ( final LockResource lock = LockResource.lock( capacityLock.writeLock( ) ) ) {
+      int pending = 0, submitted = 0, redeemed = 0;
+      for ( ResourceToken t : this.pendingTokens )
+        pending += t.getAmount( );
+      for ( ResourceToken t : this.submittedTokens )
+        submitted += t.getAmount( );
+      for ( ResourceToken t : this.redeemedTokens )
+        redeemed += t.getAmount( );
+      final int outstandingCount = pending + submitted;
+      EventRecord.here( ResourceState.class, EventType.CLUSTER_STATE_UPDATE, this.clusterName,
+                        String.format( "outstanding=%d:pending=%d:submitted=%d:redeemed=%d", outstandingCount, pending, submitted, redeemed ) ).info( );
+      this.redeemedTokens.clear( );
+
+      for ( ResourceType rsc : rscUpdate ) {
+        VmTypeAvailability vmAvailable = this.typeMap.get( rsc.getInstanceType( ).getName( ) );
+        if ( vmAvailable == null ) continue;
+        before.append( String.format( ":%s:%d/%d", vmAvailable.getType( ).getName( ), vmAvailable.getAvailable( ), vmAvailable.getMax( ) ) );
+        vmAvailable.setAvailable( rsc.getAvailableInstances( ) );
+        vmAvailable.decrement( outstandingSlots( vmAvailable.getType( ) ) );
+        vmAvailable.setMax( rsc.getMaxInstances( ) );
+        after.append( String.format( ":%s:%d/%d", vmAvailable.getType( ).getName( ), vmAvailable.getAvailable( ), vmAvailable.getMax( ) ) );
+      }
     }
     EventRecord.here( ResourceState.class, EventType.CLUSTER_STATE_UPDATE, this.clusterName, "ANTE" + before.toString( ) ).info( );
     EventRecord.here( ResourceState.class, EventType.CLUSTER_STATE_UPDATE, this.clusterName, "POST" + after.toString( ) ).info( );
   }
 
+  private int outstandingSlots( final VmType vmType ) {
+    int slots = 0;
+    for ( ResourceToken t : Iterables.concat( this.pendingTokens, this.submittedTokens ) )
+      slots += t.getAmount( ) * slots( t.getAllocationInfo( ).getVmType( ), vmType );
+    return slots;
+  }
+
   private int getExpiryMinutes( final int defaultValue ) {
     try {
       return Integer.parseInt( System.getProperty(
@@ -333,15 +410,6 @@ public class ResourceState {
     }
   }
 
-  private NavigableSet<VmTypeAvailability> sorted( ) {
-    NavigableSet<VmTypeAvailability> available = new TreeSet<>( );
-    for ( String typeName : this.typeMap.keySet( ) )
-      available.add( this.typeMap.get( typeName ) );
-    available.add( VmTypeAvailability.ZERO );
-    LOG.debug( "Resource information for " + this.clusterName );
-    return available;
-  }
-  
   public VmTypeAvailability getAvailability( String vmTypeName ) {
     return this.typeMap.get( vmTypeName );
   }
@@ -354,13 +422,13 @@ public class ResourceState {
   
   public static class VmTypeAvailability implements Comparable {
     private VmType type;
-    private int    max;
-    private int    available;
+    private volatile int max;
+    private final AtomicInteger available;
     
     public VmTypeAvailability( final VmType type, final int max, final int available ) {
       this.type = type;
       this.max = max;
-      this.available = available;
+      this.available = new AtomicInteger( available );
     }
     
     public VmType getType( ) {
@@ -368,10 +436,38 @@ public class ResourceState {
     }
     
     public void decrement( int quantity ) {
-      this.available -= quantity;
-      this.available = ( this.available < 0 )
-                                             ? 0
-                                             : this.available;
+      int current;
+      do {
+        current = this.available.get( );
+      } while ( !this.available.compareAndSet( current, Math.max( 0, current - quantity ) ) );
+    }
+
+    /**
+     * Increase availability by the given quantity up to the maximum.
+     */
+    public void restore( int quantity ) {
+      int current;
+      do {
+        current = this.available.get( );
+      } while ( !this.available.compareAndSet( current, Math.max( current, Math.min( this.max, current + quantity ) ) ) );
+    }
+
+    /**
+     * Atomically reserve up to maxAmount if at least minAmount are available.
+     *
+     * @return The reserved amount or -1 if fewer than minAmount are available
+     */
+    public int reserve( final int minAmount, final int maxAmount ) {
+      int current;
+      int quantity;
+      do {
+        current = this.available.get( );
+        if ( current < minAmount ) {
+          return -1;
+        }
+        quantity = Math.min( maxAmount, current );
+      } while ( !this.available.compareAndSet( current, current - quantity ) );
+      return quantity;
     }
     
     public int getMax( ) {
@@ -383,11 +479,11 @@ public class ResourceState {
     }
     
     public int getAvailable( ) {
-      return available;
+      return available.get( );
     }
     
     public void setAvailable( final int available ) {
-      this.available = available;
+      this.available.set( available );
     }
     
     @SuppressWarnings( "RedundantIfStatement" )
@@ -443,6 +539,11 @@ public class ResourceState {
       
       @Override
       public void decrement( final int quantity ) {}
+
+      @Override
+      public int reserve( final int minAmount, final int maxAmount ) {
+        return -1;
+      }
       
       @SuppressWarnings( { "EqualsWhichDoesntCheckParameterClass", "RedundantIfStatement" } )
       @Override
@@ -150,6 +150,8 @@ public class VmStateCallback extends StateUpdateMessageCallback<Cluster, VmDescr
 
   private static final ConcurrentMap<String, Long> pendingUpdates = Maps.newConcurrentMap( );
 
+  private static final VmStateChanges stateChanges = new VmStateChanges( );
+
   private static final Supplier<Iterable<VmStateView>> instanceViewSupplier =
       Suppliers.memoizeWithExpiration(
           new EntityCache<>(
@@ -233,10 +235,19 @@ public class VmStateCallback extends StateUpdateMessageCallback<Cluster, VmDescr
         Sets.newHashSet( Sets.difference( reportedInstances, this.initialInstances.get( ) ) );
 
     final List<Optional<Runnable>> taskList = Lists.newArrayList( );
+    final VmStateChanges.Sync sync = stateChanges.begin(
+        this.getSubject( ).getPartition( ),
+        System.currentTimeMillis( ),
+        TimeUnit.SECONDS.toMillis( VmInstances.VM_STATE_FULL_SYNC_INTERVAL ) );
 
+    int unchanged = 0;
     for ( final VmInfo runVm : reply.getVms( ) ) {
       if ( this.initialInstances.get( ).contains( runVm.getInstanceId( ) ) ) {
-        taskList.add( UpdateTaskFunction.REPORTED.apply( context( localState, runVm ) ) );
+        if ( sync.isChanged( runVm, localState.get( runVm.getInstanceId( ) ) ) ) {
+          taskList.add( UpdateTaskFunction.REPORTED.apply( context( localState, runVm, sync ) ) );
+        } else {
+          unchanged++;
+        }
       } else if ( unknownInstances.contains( runVm.getInstanceId( ) ) ) {
         taskList.add( UpdateTaskFunction.UNKNOWN.apply( context( localState, runVm ) ) );
       }
@@ -244,6 +255,12 @@ public class VmStateCallback extends StateUpdateMessageCallback<Cluster, VmDescr
     for ( final String vmId : unreportedInstances ) {
       taskList.add( UpdateTaskFunction.UNREPORTED.apply( context( localState, vmId ) ) );
     }
+    sync.retain( reportedInstances );
+    if ( LOG.isDebugEnabled( ) ) {
+      LOG.debug( "Instance state sync " + sync.getSequence( ) + ( sync.isFull( ) ? " (full)" : "" ) +
+          " for partition " + this.getSubject( ).getPartition( ) + " skipped " + unchanged +
+          " unchanged of " + reply.getVms( ).size( ) + " reported instances" );
+    }
     final Optional<Runnable> broadcastRequestRunnable = requestBroadcast ?
         Optional.<Runnable>of( new Runnable( ) {
           @Override
@@ -298,7 +315,10 @@ public class VmStateCallback extends StateUpdateMessageCallback<Cluster, VmDescr
     }
   }
   
-  private static void handleReportedState( final VmStateContext vmStateContext ) {
+  /**
+   * @return false if the reported state could not be handled
+   */
+  private static boolean handleReportedState( final VmStateContext vmStateContext ) {
     final VmInfo runVm = vmStateContext.getInput( ).getRight( );
     final VmState runVmState = VmState.Mapper.get( runVm.getStateName( ) );
     try {
@@ -312,7 +332,7 @@ public class VmStateCallback extends StateUpdateMessageCallback<Cluster, VmDescr
           } else {
             LOG.trace( "Ignore state update to terminated instance: " + runVm.getInstanceId( ) );
           }
-          return;
+          return true;
         } else if ( vmView.getState( ) == VmState.RUNNING && System.currentTimeMillis( ) > vmView.getExpires( )  ) {
           updateRequired = true;
         } else if ( VmState.SHUTTING_DOWN.equals( runVmState ) ) {
@@ -352,7 +372,7 @@ public class VmStateCallback extends StateUpdateMessageCallback<Cluster, VmDescr
         } else if ( VmState.SHUTTING_DOWN.equals( runVmState ) ) {
           db.rollback();
           VmStateCallback.handleReportedTeardown( vm, runVm );
-          return;
+          return true;
         } else {
           VmInstances.doUpdate( vm ).apply( runVm );
         }
@@ -369,13 +389,18 @@ public class VmStateCallback extends StateUpdateMessageCallback<Cluster, VmDescr
     } catch ( Exception ex1 ) {
       LOG.error( ex1 );
       Logs.extreme( ).error( ex1, ex1 );
+      return false;
     }
+    return true;
   }
 
   enum UpdateTaskFunction implements NonNullFunction<VmStateContext, Optional<Runnable>> {
     REPORTED {
       void task( final VmStateContext context ) {
-        VmStateCallback.handleReportedState( context );
+        if ( VmStateCallback.handleReportedState( context ) && context.getSync( ) != null ) {
+          final VmInfo runVm = context.getInput( ).getRight( );
+          context.getSync( ).applied( runVm, context.getLocalState( ).get( runVm.getInstanceId( ) ) );
+        }
       }
     },
     UNKNOWN {
@@ -546,7 +571,15 @@ public class VmStateCallback extends StateUpdateMessageCallback<Cluster, VmDescr
   }
 
   private static VmStateContext context( final Map<String,VmStateView> localState, final VmInfo vmInfo ) {
-    return new VmStateContext( localState, vmInfo );
+    return new VmStateContext( localState, vmInfo, null );
+  }
+
+  private static VmStateContext context(
+      final Map<String,VmStateView> localState,
+      final VmInfo vmInfo,
+      final VmStateChanges.Sync sync
+  ) {
+    return new VmStateContext( localState, vmInfo, sync );
   }
 
   @TypeMapper
@@ -833,6 +866,7 @@ public class VmStateCallback extends StateUpdateMessageCallback<Cluster, VmDescr
   private static final class VmStateContext {
     private final Map<String,VmStateView> localState;
     private final Either<String,VmInfo> input;
+    private final VmStateChanges.Sync sync;
 
     VmStateContext(
         final Map<String,VmStateView> localState,
@@ -840,14 +874,17 @@ public class VmStateCallback extends StateUpdateMessageCallback<Cluster, VmDescr
     ) {
       this.localState = localState;
       this.input = Either.left( vmId );
+      this.sync = null;
     }
 
     VmStateContext(
         final Map<String,VmStateView> localState,
-        final VmInfo vmInfo
+        final VmInfo vmInfo,
+        @Nullable final VmStateChanges.Sync sync
     ) {
       this.localState = localState;
       this.input = Either.right( vmInfo );
+      this.sync = sync;
     }
 
     public Map<String, VmStateView> getLocalState( ) {
@@ -857,6 +894,11 @@ public class VmStateCallback extends StateUpdateMessageCallback<Cluster, VmDescr
     public Either<String, VmInfo> getInput( ) {
       return input;
     }
+
+    @Nullable
+    public VmStateChanges.Sync getSync( ) {
+      return sync;
+    }
   }
 
   @TypeMapper
@@ -0,0 +1,190 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cluster.callback;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import com.eucalyptus.cluster.callback.VmStateCallback.VmStateView;
+import com.eucalyptus.compute.common.internal.vm.MigrationState;
+import com.eucalyptus.compute.common.internal.vm.VmInstance.VmState;
+import com.eucalyptus.compute.common.internal.vm.VmRuntimeState.ReachabilityStatus;
+import com.google.common.base.Strings;
+import com.google.common.collect.Maps;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import edu.ucsb.eucalyptus.cloud.VmInfo;
+import edu.ucsb.eucalyptus.msgs.AttachedVolume;
+import edu.ucsb.eucalyptus.msgs.NetworkConfigType;
+
+/**
+ * Change tracking for instance state reported by clusters.
+ *
+ * Each poll of a partition is a numbered sync. Between full syncs only
+ * reports that differ from the last applied report for an instance, or
+ * that are for an instance whose local state is not settled, need to be
+ * reconciled.
+ */
+final class VmStateChanges {
+
+  private static final HashFunction hashFunction = Hashing.goodFastHash( 64 );
+
+  private final ConcurrentMap<String,PartitionState> partitions = Maps.newConcurrentMap( );
+
+  /**
+   * Begin a sync for the given partition.
+   *
+   * @param partition The partition being synchronized
+   * @param now The current time in millis
+   * @param fullSyncIntervalMillis Interval between full syncs, zero for always full
+   * @return The sync
+   */
+  Sync begin( final String partition, final long now, final long fullSyncIntervalMillis ) {
+    PartitionState state = partitions.get( partition );
+    if ( state == null ) {
+      final PartitionState newState = new PartitionState( );
+      state = partitions.putIfAbsent( partition, newState );
+      if ( state == null ) {
+        state = newState;
+      }
+    }
+    return state.begin( now, fullSyncIntervalMillis );
+  }
+
+  static long fingerprint( final VmInfo vmInfo, @Nullable final VmStateView view ) {
+    final Hasher hasher = hashFunction.newHasher( );
+    if ( view != null ) {
+      hasher.putInt( view.getVersion( ) );
+      putString( hasher, view.getState( ).name( ) );
+    }
+    putString( hasher, vmInfo.getStateName( ) );
+    putString( hasher, vmInfo.getGuestStateName( ) );
+    putString( hasher, vmInfo.getServiceTag( ) );
+    putString( hasher, vmInfo.getBundleTaskStateName( ) );
+    putString( hasher, vmInfo.getCreateImageStateName( ) );
+    putString( hasher, vmInfo.getMigrationStateName( ) );
+    putNetworkConfig( hasher, vmInfo.getNetParams( ) );
+    for ( final AttachedVolume volume : vmInfo.getVolumes( ) ) {
+      putString( hasher, volume.getVolumeId( ) );
+      putString( hasher, volume.getDevice( ) );
+      putString( hasher, volume.getRemoteDevice( ) );
+      putString( hasher, volume.getStatus( ) );
+    }
+    if ( vmInfo.getSecondaryNetConfigList( ) != null ) {
+      for ( final NetworkConfigType networkConfig : vmInfo.getSecondaryNetConfigList( ) ) {
+        putNetworkConfig( hasher, networkConfig );
+      }
+    }
+    return hasher.hash( ).asLong( );
+  }
+
+  /**
+   * Local state for which a reconciliation could result in an update even
+   * when the reported state is unchanged.
+   */
+  static boolean isSettled( @Nullable final VmStateView view, final long now ) {
+    return view != null &&
+        view.getState( ) == VmState.RUNNING &&
+        view.getReachabilityStatus( ) == ReachabilityStatus.Passed &&
+        !view.isBundling( ) &&
+        !view.isMigrating( ) &&
+        view.getExpires( ) > now;
+  }
+
+  private static void putNetworkConfig( final Hasher hasher, @Nullable final NetworkConfigType networkConfig ) {
+    if ( networkConfig != null ) {
+      putString( hasher, networkConfig.getInterfaceId( ) );
+      putString( hasher, networkConfig.getAttachmentId( ) );
+      putString( hasher, networkConfig.getMacAddress( ) );
+      putString( hasher, networkConfig.getIpAddress( ) );
+      putString( hasher, networkConfig.getIgnoredPublicIp( ) );
+    }
+  }
+
+  private static void putString( final Hasher hasher, @Nullable final String value ) {
+    hasher.putString( Strings.nullToEmpty( value ), StandardCharsets.UTF_8 );
+    hasher.putChar( '\0' );
+  }
+
+  private static final class PartitionState {
+    private final AtomicLong sequence = new AtomicLong( 0 );
+    private final AtomicLong lastFullSync = new AtomicLong( 0 );
+    private final ConcurrentMap<String,Long> applied = Maps.newConcurrentMap( );
+
+    private Sync begin( final long now, final long fullSyncIntervalMillis ) {
+      final long last = lastFullSync.get( );
+      final boolean full = fullSyncIntervalMillis <= 0 ||
+          ( now - last ) >= fullSyncIntervalMillis && lastFullSync.compareAndSet( last, now );
+      return new Sync( this, sequence.incrementAndGet( ), full, now );
+    }
+  }
+
+  static final class Sync {
+    private final PartitionState state;
+    private final long sequence;
+    private final boolean full;
+    private final long timestamp;
+
+    private Sync( final PartitionState state, final long sequence, final boolean full, final long timestamp ) {
+      this.state = state;
+      this.sequence = sequence;
+      this.full = full;
+      this.timestamp = timestamp;
+    }
+
+    long getSequence( ) {
+      return sequence;
+    }
+
+    boolean isFull( ) {
+      return full;
+    }
+
+    /**
+     * Check if the report must be reconciled with local state.
+     */
+    boolean isChanged( final VmInfo vmInfo, @Nullable final VmStateView view ) {
+      return full ||
+          !isSettled( view, timestamp ) ||
+          MigrationState.defaultValueOf( vmInfo.getMigrationStateName( ) ).isMigrating( ) ||
+          !Long.valueOf( fingerprint( vmInfo, view ) ).equals( state.applied.get( vmInfo.getInstanceId( ) ) );
+    }
+
+    /**
+     * Record that the report was reconciled with the given local state.
+     */
+    void applied( final VmInfo vmInfo, @Nullable final VmStateView view ) {
+      state.applied.put( vmInfo.getInstanceId( ), fingerprint( vmInfo, view ) );
+    }
+
+    /**
+     * Discard tracking for instances that are no longer reported.
+     */
+    void retain( final Set<String> reportedInstanceIds ) {
+      state.applied.keySet( ).retainAll( reportedInstanceIds );
+    }
+  }
+}
@@ -35,7 +35,9 @@ import com.eucalyptus.entities.TransactionResource;
 import com.eucalyptus.auth.principal.OwnerFullName;
 import com.eucalyptus.util.RestrictedTypes;
 import com.eucalyptus.compute.common.internal.vm.VmInstance;
+import com.eucalyptus.vm.VmInstanceUsage;
 import com.google.common.base.Function;
+import com.google.common.base.Optional;
 import net.sf.json.JSONException;
 import org.hibernate.Criteria;
 import org.hibernate.criterion.Example;
@@ -95,6 +97,10 @@ public class DiskTotalSizeQuotaKey extends QuotaKey {
     }
 
     private long measureFromPersistentInstances( final OwnerFullName ownerFullName ) {
+      final Optional<VmInstanceUsage.Usage> usage = VmInstanceUsage.usage( ownerFullName );
+      if ( usage.isPresent( ) ) {
+        return usage.get( ).getDisk( );
+      }
       long numDisks = 0L;
       try ( TransactionResource tx = Entities.transactionFor( VmInstance.class ) ){
         Criteria criteria = Entities.createCriteria(VmInstance.class)
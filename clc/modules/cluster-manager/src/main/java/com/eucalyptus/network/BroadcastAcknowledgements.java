@@ -0,0 +1,55 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.network;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import com.eucalyptus.util.Pair;
+import com.google.common.collect.Maps;
+
+/**
+ * Network information broadcasts acknowledged by each partition.
+ *
+ * A partition that acknowledged a broadcast is only sent it again once the
+ * interval has elapsed, or once the acknowledgement is reset because the
+ * partition's cluster changed state.
+ */
+class BroadcastAcknowledgements {
+  private final ConcurrentMap<String,Pair<Long,Long>> acknowledgedBroadcastMap = Maps.newConcurrentMap( );
+
+  void acknowledge( final String partition, final long sequence, final long time ) {
+    acknowledgedBroadcastMap.put( partition, Pair.pair( sequence, time ) );
+  }
+
+  void reset( final String partition ) {
+    acknowledgedBroadcastMap.remove( partition );
+  }
+
+  void retain( final Set<String> partitions ) {
+    acknowledgedBroadcastMap.keySet( ).retainAll( partitions );
+  }
+
+  boolean isAcknowledged( final String partition, final long sequence, final long time, final long intervalMillis ) {
+    final Pair<Long,Long> acknowledged = acknowledgedBroadcastMap.get( partition );
+    return acknowledged != null &&
+        acknowledged.getLeft( ) == sequence &&
+        acknowledged.getRight( ) + intervalMillis > time;
+  }
+}
@@ -149,6 +149,8 @@ public class NetworkGroups extends com.eucalyptus.compute.common.internal.networ
   public static String        NETWORK_CONFIGURATION = "";
   @ConfigurableField( description = "Minimum interval between broadcasts of network information (seconds)." )
   public static Integer       MIN_BROADCAST_INTERVAL = 5;
+  @ConfigurableField( description = "Maximum interval between broadcasts of unchanged network information to a cluster (seconds)." )
+  public static Integer       MAX_BROADCAST_INTERVAL = 60;
 
   public static class NetworkRangeConfiguration {
     private Integer minNetworkTag   = GLOBAL_MIN_NETWORK_TAG;
@@ -93,9 +93,9 @@ import org.hibernate.criterion.Restrictions;
 import javax.annotation.Nullable;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
@@ -129,32 +129,39 @@ public class NetworkInfoBroadcaster {
   private static final AtomicReference<LastBroadcastInfo> lastBroadcastInformation = new AtomicReference<>( );
   private static final AtomicReference<Pair<Long,String>> lastAppliedNetworkInformation = new AtomicReference<>( );
   private static final ConcurrentMap<String,Long> activeBroadcastMap = Maps.newConcurrentMap( );
+  private static final BroadcastAcknowledgements acknowledgements = new BroadcastAcknowledgements( );
+  private static final AtomicLong broadcastSequence = new AtomicLong( 0L );
+  private static final AtomicReference<JAXBContext> jaxbContext = new AtomicReference<>( );
+  private static final long CACHE_MAX_AGE_SECONDS = 60;
   private static final EntityCache<VmInstance,NetworkInfoBroadcasts.VmInstanceNetworkView> instanceCache = new EntityCache<>(
       VmInstance.named(null),
       Restrictions.not( VmInstance.criterion( TORNDOWN.array( ) ) ),
       Sets.newHashSet( "networkGroups" ),
       Sets.newHashSet( "bootRecord.machineImage", "bootRecord.vmType" ),
-      TypeMappers.lookup( VmInstance.class, VmInstanceNetworkView.class )  );
+      TypeMappers.lookup( VmInstance.class, VmInstanceNetworkView.class ),
+      CACHE_MAX_AGE_SECONDS,
+      TimeUnit.SECONDS );
   private static final EntityCache<NetworkGroup,NetworkGroupNetworkView> securityGroupCache =
-      new EntityCache<>( NetworkGroup.withNaturalId( null ), TypeMappers.lookup( NetworkGroup.class, NetworkGroupNetworkView.class )  );
+      new EntityCache<>( NetworkGroup.withNaturalId( null ), TypeMappers.lookup( NetworkGroup.class, NetworkGroupNetworkView.class ), CACHE_MAX_AGE_SECONDS, TimeUnit.SECONDS );
   private static final EntityCache<Vpc,VpcNetworkView> vpcCache =
-      new EntityCache<>( Vpc.exampleWithOwner( null ), TypeMappers.lookup( Vpc.class, VpcNetworkView.class )  );
+      new EntityCache<>( Vpc.exampleWithOwner( null ), TypeMappers.lookup( Vpc.class, VpcNetworkView.class ), CACHE_MAX_AGE_SECONDS, TimeUnit.SECONDS );
   private static final EntityCache<Subnet,SubnetNetworkView> subnetCache =
-      new EntityCache<>( Subnet.exampleWithOwner( null ), TypeMappers.lookup( Subnet.class, SubnetNetworkView.class )  );
+      new EntityCache<>( Subnet.exampleWithOwner( null ), TypeMappers.lookup( Subnet.class, SubnetNetworkView.class ), CACHE_MAX_AGE_SECONDS, TimeUnit.SECONDS );
   private static final EntityCache<DhcpOptionSet,DhcpOptionSetNetworkView> dhcpOptionsCache =
-      new EntityCache<>( DhcpOptionSet.exampleWithOwner( null ), TypeMappers.lookup( DhcpOptionSet.class, DhcpOptionSetNetworkView.class )  );
+      new EntityCache<>( DhcpOptionSet.exampleWithOwner( null ), TypeMappers.lookup( DhcpOptionSet.class, DhcpOptionSetNetworkView.class ), CACHE_MAX_AGE_SECONDS, TimeUnit.SECONDS );
   private static final EntityCache<NetworkAcl,NetworkAclNetworkView> networkAclCache =
-      new EntityCache<>( NetworkAcl.exampleWithOwner( null ), TypeMappers.lookup( NetworkAcl.class, NetworkAclNetworkView.class )  );
+      new EntityCache<>( NetworkAcl.exampleWithOwner( null ), TypeMappers.lookup( NetworkAcl.class, NetworkAclNetworkView.class ), CACHE_MAX_AGE_SECONDS, TimeUnit.SECONDS );
   private static final EntityCache<RouteTable,RouteTableNetworkView> routeTableCache =
-      new EntityCache<>( RouteTable.exampleWithOwner( null ), TypeMappers.lookup( RouteTable.class, RouteTableNetworkView.class )  );
+      new EntityCache<>( RouteTable.exampleWithOwner( null ), TypeMappers.lookup( RouteTable.class, RouteTableNetworkView.class ), CACHE_MAX_AGE_SECONDS, TimeUnit.SECONDS );
   private static final EntityCache<InternetGateway,InternetGatewayNetworkView> internetGatewayCache =
-      new EntityCache<>( InternetGateway.exampleWithOwner( null ), TypeMappers.lookup( InternetGateway.class, InternetGatewayNetworkView.class )  );
+      new EntityCache<>( InternetGateway.exampleWithOwner( null ), TypeMappers.lookup( InternetGateway.class, InternetGatewayNetworkView.class ), CACHE_MAX_AGE_SECONDS, TimeUnit.SECONDS );
   private static final EntityCache<NetworkInterface,NetworkInterfaceNetworkView> networkInterfaceCache =
-      new EntityCache<>( NetworkInterface.exampleWithOwner( null ), TypeMappers.lookup( NetworkInterface.class, NetworkInterfaceNetworkView.class )  );
+      new EntityCache<>( NetworkInterface.exampleWithOwner( null ), TypeMappers.lookup( NetworkInterface.class, NetworkInterfaceNetworkView.class ), CACHE_MAX_AGE_SECONDS, TimeUnit.SECONDS );
   private static final EntityCache<NatGateway,NatGatewayNetworkView> natGatewayCache =
-      new EntityCache<>( NatGateway.exampleWithOwner( null ), TypeMappers.lookup( NatGateway.class, NatGatewayNetworkView.class )  );
+      new EntityCache<>( NatGateway.exampleWithOwner( null ), TypeMappers.lookup( NatGateway.class, NatGatewayNetworkView.class ), CACHE_MAX_AGE_SECONDS, TimeUnit.SECONDS );
 
   private static final class LastBroadcastInfo {
+    private final long sequence;
     private final int version;
     private final String appliedVersion;
     private final NetworkInfo networkInfo;
@@ -162,12 +169,14 @@ public class NetworkInfoBroadcaster {
     private final long lastConvergedTimestamp;
 
     public LastBroadcastInfo(
+        final long sequence,
         final int version,
         final String appliedVersion,
         final NetworkInfo networkInfo,
         final String encodedNetworkInfo,
         final long lastConvergedTimestamp
     ) {
+      this.sequence = sequence;
       this.version = version;
       this.appliedVersion = appliedVersion;
       this.networkInfo = networkInfo;
@@ -269,9 +278,11 @@ public class NetworkInfoBroadcaster {
       final LastBroadcastInfo lastBroadcast = lastBroadcastInformation.get( );
       final Pair<Long,String> appliedVersion = lastAppliedNetworkInformation.get( );
       final String encodedNetworkInfo;
+      final long sequence;
       if ( lastBroadcast != null && lastBroadcast.version == sourceFingerprint &&
           ( appliedVersion == null || appliedVersion.getRight( ).equals( lastBroadcast.appliedVersion ) ) ) {
         encodedNetworkInfo = lastBroadcast.encodedNetworkInfo;
+        sequence = lastBroadcast.sequence;
         clearDirtyPublicAddresses( lastBroadcast.networkInfo );
       } else {
         final int networkInfoFingerprint;
@@ -310,24 +321,27 @@ public class NetworkInfoBroadcaster {
           info.setAppliedVersion( appliedVersion.getRight( ) );
         }
 
-        final JAXBContext jc = JAXBContext.newInstance( "com.eucalyptus.cluster" );
-        final StringWriter writer = new StringWriter( 8192 );
-        jc.createMarshaller().marshal( info, writer );
+        final ByteArrayOutputStream out = new ByteArrayOutputStream( lastBroadcast == null ?
+            8192 :
+            Math.max( 8192, lastBroadcast.encodedNetworkInfo.length( ) ) );
+        jaxbContext( ).createMarshaller( ).marshal( info, out );
 
-        final String networkInfo = writer.toString( );
+        final byte[] networkInfo = out.toByteArray( );
         if ( logger.isTraceEnabled( ) ) {
-          logger.trace( "Broadcasting network information:\n${networkInfo}" );
+          logger.trace( "Broadcasting network information:\n" + new String( networkInfo, StandardCharsets.UTF_8 ) );
         }
 
         final File newView = BaseDirectory.RUN.getChildFile( "global_network_info.xml.temp" );
         if ( newView.exists( ) && !newView.delete( ) ) {
           logger.warn( "Error deleting stale network view " + newView.getAbsolutePath( ) );
         }
-        com.google.common.io.Files.write( networkInfo, newView, Charsets.UTF_8 );
+        Files.write( newView.toPath( ), networkInfo );
         Files.move( newView.toPath( ), BaseDirectory.RUN.getChildFile( "global_network_info.xml" ).toPath( ), StandardCopyOption.REPLACE_EXISTING );
 
-        encodedNetworkInfo = new String( B64.standard.enc( networkInfo.getBytes( Charsets.UTF_8 ) ), Charsets.UTF_8 );
+        encodedNetworkInfo = new String( B64.standard.enc( networkInfo ), Charsets.UTF_8 );
+        sequence = broadcastSequence.incrementAndGet( );
         lastBroadcastInformation.set( new LastBroadcastInfo(
+            sequence,
             networkInfoFingerprint,
             appliedVersion == null ? null : appliedVersion.getRight( ),
             info,
@@ -337,11 +351,25 @@ public class NetworkInfoBroadcaster {
       }
 
       final BroadcastNetworkInfoCallback callback = new BroadcastNetworkInfoCallback( encodedNetworkInfo );
+      final Set<String> partitions = Sets.newHashSet( );
       for ( final com.eucalyptus.cluster.Cluster cluster : clusters ) {
         final Long broadcastTime = System.currentTimeMillis( );
-        if ( null == activeBroadcastMap.putIfAbsent( cluster.getPartition( ), broadcastTime ) ) {
+        partitions.add( cluster.getPartition( ) );
+        if ( isAcknowledged( cluster.getPartition( ), sequence, broadcastTime ) ) {
+          logger.trace( "Skipping unchanged network information broadcast for partition " + cluster.getPartition( ) );
+        } else if ( null == activeBroadcastMap.putIfAbsent( cluster.getPartition( ), broadcastTime ) ) {
           try {
             AsyncRequests.newRequest( callback.newInstance( ) ).then( new UnconditionalCallback<BroadcastNetworkInfoResponseType>() {
+              @Override
+              public void fire( final BroadcastNetworkInfoResponseType response ) {
+                if ( response != null && !Boolean.FALSE.equals( response.get_return( ) ) ) {
+                  acknowledgements.acknowledge( cluster.getPartition( ), sequence, broadcastTime );
+                } else {
+                  acknowledgements.reset( cluster.getPartition( ) );
+                }
+                fire( );
+              }
+
               @Override
               public void fire( ) {
                 activeBroadcastMap.remove( cluster.getPartition( ), broadcastTime );
@@ -355,11 +383,41 @@ public class NetworkInfoBroadcaster {
           logger.warn( "Skipping network information broadcast for active partition " + cluster.getPartition( ) );
         }
       }
+      acknowledgements.retain( partitions );
     } catch ( IOException | JAXBException e ) {
       logger.error( "Error during network broadcast", e );
     }
   }
 
+  /**
+   * A partition that acknowledged the current broadcast is only sent it again
+   * once the maximum broadcast interval has elapsed, so a restarted cluster
+   * controller will resynchronize within that interval.
+   */
+  private static boolean isAcknowledged( final String partition, final long sequence, final long time ) {
+    return acknowledgements.isAcknowledged(
+        partition, sequence, time, TimeUnit.SECONDS.toMillis( NetworkGroups.MAX_BROADCAST_INTERVAL ) );
+  }
+
+  /**
+   * Send the current broadcast to the partition even if acknowledged, for
+   * use when the partition's cluster is registered or changes state.
+   */
+  public static void resetAcknowledgement( final String partition ) {
+    acknowledgements.reset( partition );
+  }
+
+  private static JAXBContext jaxbContext( ) throws JAXBException {
+    JAXBContext context = jaxbContext.get( );
+    if ( context == null ) {
+      context = JAXBContext.newInstance( "com.eucalyptus.cluster" );
+      if ( !jaxbContext.compareAndSet( null, context ) ) {
+        context = jaxbContext.get( );
+      }
+    }
+    return context;
+  }
+
   private static int fingerprint(
       final NetworkInfoSource source,
       final List<com.eucalyptus.cluster.Cluster> clusters,
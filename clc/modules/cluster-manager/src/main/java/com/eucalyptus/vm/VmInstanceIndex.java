@@ -0,0 +1,165 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.vm;
+
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
+import org.apache.log4j.Logger;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Projection;
+import org.hibernate.criterion.ProjectionList;
+import org.hibernate.criterion.Projections;
+import com.eucalyptus.compute.common.internal.vm.VmInstance;
+import com.eucalyptus.entities.EntityChanges;
+import com.eucalyptus.records.Logs;
+import com.google.common.collect.Lists;
+
+/**
+ * Base for in memory snapshots built from persistent instances.
+ *
+ * A snapshot is rebuilt off the request path when instances change (or
+ * periodically for changes made via other hosts). Until the first snapshot
+ * is built callers should use the database.
+ *
+ * @param <R> The record type for each instance
+ * @param <S> The snapshot type
+ */
+public abstract class VmInstanceIndex<R, S extends VmInstanceIndex.Snapshot> {
+
+  private static final Logger LOG = Logger.getLogger( VmInstanceIndex.class );
+
+  private final AtomicReference<S> snapshot = new AtomicReference<>( );
+  private final Semaphore reconcileSemaphore = new Semaphore( 1 );
+  private final String description;
+
+  protected VmInstanceIndex( final String description ) {
+    this.description = description;
+  }
+
+  /**
+   * Build a snapshot from the given records.
+   */
+  protected abstract S snapshotOf( Iterable<R> records, long started, long version );
+
+  /**
+   * Maximum age of a snapshot before it is rebuilt, in millis.
+   */
+  protected abstract long maxAgeMillis( );
+
+  protected abstract RecordProjection<R> projection( );
+
+  protected abstract Criterion criterion( );
+
+  @Nullable
+  protected final S current( ) {
+    return snapshot.get( );
+  }
+
+  protected boolean isStale( final long now, final long version ) {
+    final Snapshot current = snapshot.get( );
+    return current == null ||
+        current.version != version ||
+        ( now - current.started ) >= maxAgeMillis( );
+  }
+
+  /**
+   * Replace the snapshot with one built from the given records.
+   *
+   * @param records Records for all indexed instances
+   * @param started The time the records were read, in millis
+   * @param version The change version for instances when the records were read
+   */
+  protected void reconcile( final Iterable<R> records, final long started, final long version ) {
+    snapshot.set( snapshotOf( records, started, version ) );
+  }
+
+  protected void reset( ) {
+    snapshot.set( null );
+  }
+
+  /**
+   * Rebuild the snapshot from the database if stale.
+   *
+   * Does nothing if a rebuild is already in progress. The snapshot is reset
+   * if the rebuild fails.
+   *
+   * @param now The current time in millis
+   */
+  protected final void reconcile( final long now ) {
+    if ( !reconcileSemaphore.tryAcquire( ) ) {
+      return;
+    }
+    try {
+      final long version = EntityChanges.version( VmInstance.class );
+      if ( isStale( now, version ) ) {
+        reconcile( VmInstances.listWithProjection( projection( ), criterion( ) ), now, version );
+      }
+    } catch ( final Exception e ) {
+      LOG.error( "Error reconciling " + description + ": " + e.getMessage( ) );
+      Logs.extreme( ).error( e, e );
+      reset( );
+    } finally {
+      reconcileSemaphore.release( );
+    }
+  }
+
+  public static abstract class Snapshot {
+    private final long started;
+    private final long version;
+
+    protected Snapshot( final long started, final long version ) {
+      this.started = started;
+      this.version = version;
+    }
+  }
+
+  /**
+   * Projection of instance properties to a record per instance.
+   */
+  public static abstract class RecordProjection<R> implements VmInstances.InstanceProjection<R> {
+    private final Projection[] projections;
+
+    protected RecordProjection( final Projection... projections ) {
+      this.projections = projections;
+    }
+
+    protected abstract R record( Object[] values );
+
+    @Override
+    public Projection getProjection( ) {
+      final ProjectionList projectionList = Projections.projectionList( );
+      for ( final Projection projection : projections ) {
+        projectionList.add( projection );
+      }
+      return projectionList;
+    }
+
+    @Override
+    public List<R> results( final List<?> listing ) {
+      final List<R> records = Lists.newArrayListWithCapacity( listing.size( ) );
+      for ( final Object item : listing ) {
+        records.add( record( (Object[]) item ) );
+      }
+      return records;
+    }
+  }
+}
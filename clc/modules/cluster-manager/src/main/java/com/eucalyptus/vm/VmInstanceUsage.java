@@ -0,0 +1,345 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.vm;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import com.eucalyptus.auth.principal.AccountFullName;
+import com.eucalyptus.auth.principal.OwnerFullName;
+import com.eucalyptus.bootstrap.Bootstrap;
+import com.eucalyptus.component.Topology;
+import com.eucalyptus.component.id.Eucalyptus;
+import com.eucalyptus.compute.common.internal.vm.VmInstance;
+import com.eucalyptus.compute.common.internal.vm.VmInstance.VmState;
+import com.eucalyptus.compute.common.internal.vm.VmInstance.VmStateSet;
+import com.eucalyptus.compute.common.internal.vmtypes.VmType;
+import com.eucalyptus.event.ClockTick;
+import com.eucalyptus.event.EventListener;
+import com.eucalyptus.event.Listeners;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+
+/**
+ * In memory ledger of instance usage by account and user for quota checks.
+ *
+ * Instances created since the last snapshot are layered on top of the
+ * snapshot so that usage includes them before the next reconciliation.
+ *
+ * @see VmInstanceIndex
+ */
+public class VmInstanceUsage extends VmInstanceIndex<VmInstanceUsage.Record, VmInstanceUsage.Snapshot> {
+
+  private static final VmInstanceUsage ledger = new VmInstanceUsage( );
+
+  private final ConcurrentMap<String,Record> created = Maps.newConcurrentMap( );
+
+  VmInstanceUsage( ) {
+    super( "instance usage" );
+  }
+
+  /**
+   * Get usage for the given owner.
+   *
+   * @param ownerFullName The account or user
+   * @return The usage, absent if not yet available
+   */
+  @Nonnull
+  public static Optional<Usage> usage( @Nullable final OwnerFullName ownerFullName ) {
+    return ledger.lookup( ownerFullName );
+  }
+
+  /**
+   * Record a newly persisted instance.
+   *
+   * Must be called after the instance is committed.
+   *
+   * @param instance The created instance
+   */
+  public static void created( @Nonnull final VmInstance instance ) {
+    final VmType vmType = instance.getBootRecord( ).getVmType( );
+    ledger.created( new Record(
+        instance.getInstanceId( ),
+        instance.getOwnerAccountNumber( ),
+        instance.getOwnerUserId( ),
+        instance.getState( ),
+        vmType == null ? null : vmType.getCpu( ),
+        vmType == null ? null : vmType.getMemory( ),
+        vmType == null ? null : vmType.getDisk( ),
+        System.currentTimeMillis( ) ) );
+  }
+
+  void created( final Record record ) {
+    created.put( record.instanceId, record );
+  }
+
+  Optional<Usage> lookup( @Nullable final OwnerFullName ownerFullName ) {
+    final Snapshot current = current( );
+    if ( current == null || ownerFullName == null || ownerFullName.getAccountNumber( ) == null ) {
+      return Optional.absent( );
+    }
+    final boolean account = ownerFullName instanceof AccountFullName || ownerFullName.getUserId( ) == null;
+    final String key = account ?
+        ownerFullName.getAccountNumber( ) :
+        key( ownerFullName.getAccountNumber( ), ownerFullName.getUserId( ) );
+    Usage usage = current.usage( key );
+    for ( final Record record : created.values( ) ) {
+      if ( !current.instanceIds.contains( record.instanceId ) &&
+          ownerFullName.getAccountNumber( ).equals( record.accountNumber ) &&
+          ( account || ownerFullName.getUserId( ).equals( record.userId ) ) ) {
+        usage = usage.plus( record );
+      }
+    }
+    return Optional.of( usage );
+  }
+
+  @Override
+  protected Snapshot snapshotOf( final Iterable<Record> records, final long started, final long version ) {
+    return Snapshot.of( records, started, version );
+  }
+
+  @Override
+  protected long maxAgeMillis( ) {
+    return TimeUnit.SECONDS.toMillis( VmInstances.VM_USAGE_RECONCILE_INTERVAL );
+  }
+
+  @Override
+  protected RecordProjection<Record> projection( ) {
+    return UsageRecordProjection.INSTANCE;
+  }
+
+  @Override
+  protected Criterion criterion( ) {
+    return Restrictions.not( VmInstance.criterion( VmStateSet.DONE.array( ) ) );
+  }
+
+  @Override
+  protected void reconcile( final Iterable<Record> records, final long started, final long version ) {
+    super.reconcile( records, started, version );
+    for ( final Record record : created.values( ) ) {
+      if ( record.timestamp < started ) {
+        created.remove( record.instanceId, record );
+      }
+    }
+  }
+
+  @Override
+  protected void reset( ) {
+    super.reset( );
+    created.clear( );
+  }
+
+  private static String key( final String accountNumber, final String userId ) {
+    return accountNumber + "/" + userId;
+  }
+
+  /**
+   * Instance usage totals.
+   */
+  public static final class Usage {
+    private static final Usage NONE = new Usage( 0, 0, 0, 0, 0 );
+
+    private final long instances;
+    private final long activeInstances;
+    private final long cpus;
+    private final long memory;
+    private final long disk;
+
+    Usage( final long instances, final long activeInstances, final long cpus, final long memory, final long disk ) {
+      this.instances = instances;
+      this.activeInstances = activeInstances;
+      this.cpus = cpus;
+      this.memory = memory;
+      this.disk = disk;
+    }
+
+    /**
+     * Instances that are not terminated.
+     */
+    public long getInstances( ) {
+      return instances;
+    }
+
+    /**
+     * Instances that are not stopped or terminated.
+     */
+    public long getActiveInstances( ) {
+      return activeInstances;
+    }
+
+    /**
+     * Cpus for active instances.
+     */
+    public long getCpus( ) {
+      return cpus;
+    }
+
+    /**
+     * Memory for active instances.
+     */
+    public long getMemory( ) {
+      return memory;
+    }
+
+    /**
+     * Disk for active instances.
+     */
+    public long getDisk( ) {
+      return disk;
+    }
+
+    Usage plus( final Record record ) {
+      if ( VmStateSet.DONE.contains( record.state ) ) {
+        return this;
+      } else if ( VmStateSet.TORNDOWN.contains( record.state ) ) {
+        return new Usage( instances + 1, activeInstances, cpus, memory, disk );
+      } else {
+        return new Usage(
+            instances + 1,
+            activeInstances + 1,
+            cpus + record.cpu,
+            memory + record.memory,
+            disk + record.disk );
+      }
+    }
+
+    @Override
+    public String toString( ) {
+      return "Usage{instances=" + instances + ", activeInstances=" + activeInstances +
+          ", cpus=" + cpus + ", memory=" + memory + ", disk=" + disk + "}";
+    }
+  }
+
+  static final class Record {
+    private final String instanceId;
+    private final String accountNumber;
+    private final String userId;
+    private final VmState state;
+    private final int cpu;
+    private final int memory;
+    private final int disk;
+    private final long timestamp;
+
+    Record(
+        final String instanceId,
+        final String accountNumber,
+        final String userId,
+        final VmState state,
+        final Integer cpu,
+        final Integer memory,
+        final Integer disk,
+        final long timestamp
+    ) {
+      this.instanceId = instanceId;
+      this.accountNumber = accountNumber;
+      this.userId = userId;
+      this.state = state;
+      this.cpu = cpu == null ? 0 : cpu;
+      this.memory = memory == null ? 0 : memory;
+      this.disk = disk == null ? 0 : disk;
+      this.timestamp = timestamp;
+    }
+  }
+
+  static final class Snapshot extends VmInstanceIndex.Snapshot {
+    private final Map<String,Usage> usage;
+    private final Set<String> instanceIds;
+
+    private Snapshot( final Map<String,Usage> usage, final Set<String> instanceIds, final long started, final long version ) {
+      super( started, version );
+      this.usage = usage;
+      this.instanceIds = instanceIds;
+    }
+
+    static Snapshot of( final Iterable<Record> records, final long started, final long version ) {
+      final Map<String,Usage> usage = Maps.newHashMap( );
+      final ImmutableSet.Builder<String> instanceIds = ImmutableSet.builder( );
+      for ( final Record record : records ) {
+        if ( record.accountNumber == null ) continue;
+        instanceIds.add( record.instanceId );
+        add( usage, record.accountNumber, record );
+        if ( record.userId != null ) {
+          add( usage, key( record.accountNumber, record.userId ), record );
+        }
+      }
+      return new Snapshot( ImmutableMap.copyOf( usage ), instanceIds.build( ), started, version );
+    }
+
+    private static void add( final Map<String,Usage> usage, final String key, final Record record ) {
+      final Usage current = usage.get( key );
+      usage.put( key, ( current == null ? Usage.NONE : current ).plus( record ) );
+    }
+
+    Usage usage( final String key ) {
+      final Usage keyUsage = usage.get( key );
+      return keyUsage == null ? Usage.NONE : keyUsage;
+    }
+  }
+
+  private static final class UsageRecordProjection extends RecordProjection<Record> {
+    private static final UsageRecordProjection INSTANCE = new UsageRecordProjection( );
+
+    private UsageRecordProjection( ) {
+      super(
+          VmInstance.instanceIdProjection( ),
+          Projections.property( "ownerAccountNumber" ),
+          Projections.property( "ownerUserId" ),
+          Projections.property( "state" ),
+          Projections.property( "bootRecord.vmType" ) );
+    }
+
+    @Override
+    protected Record record( final Object[] values ) {
+      final VmType vmType = (VmType) values[ 4 ];
+      return new Record(
+          (String) values[ 0 ],
+          (String) values[ 1 ],
+          (String) values[ 2 ],
+          (VmState) values[ 3 ],
+          vmType == null ? null : vmType.getCpu( ),
+          vmType == null ? null : vmType.getMemory( ),
+          vmType == null ? null : vmType.getDisk( ),
+          System.currentTimeMillis( ) );
+    }
+  }
+
+  public static class VmInstanceUsageEventListener implements EventListener<ClockTick> {
+    public static void register( ) {
+      Listeners.register( ClockTick.class, new VmInstanceUsageEventListener( ) );
+    }
+
+    @Override
+    public void fireEvent( final ClockTick event ) {
+      if ( Bootstrap.isOperational( ) && Topology.isEnabledLocally( Eucalyptus.class ) ) {
+        ledger.reconcile( System.currentTimeMillis( ) );
+      } else {
+        ledger.reset( );
+      }
+    }
+  }
+}
@@ -610,6 +610,14 @@ public class VmInstances extends com.eucalyptus.compute.common.internal.vm.VmIns
                       initial = "300" )
   public static Integer   VM_INITIAL_REPORT_TIMEOUT     = 300;
 
+  @ConfigurableField( description = "Amount of time (in seconds) between full reconciliations of instance state reported by clusters, unchanged reports are skipped in between (0 to always reconcile).",
+                      initial = "60" )
+  public static Integer   VM_STATE_FULL_SYNC_INTERVAL   = 60;
+
+  @ConfigurableField( description = "Maximum amount of time (in seconds) between reconciliations of in memory instance usage used for quotas.",
+                      initial = "60" )
+  public static Integer   VM_USAGE_RECONCILE_INTERVAL   = 60;
+
   @ConfigurableField( description = "Amount of time (in minutes) before a VM which is not reported by a cluster will fail a reachability test.",
       initial = "5" )
   public static Integer INSTANCE_REACHABILITY_TIMEOUT   = 5;
@@ -677,6 +685,10 @@ public class VmInstances extends com.eucalyptus.compute.common.internal.vm.VmIns
     }
 
     private long countPersistentInstances( final OwnerFullName ownerFullName ) {
+      final Optional<VmInstanceUsage.Usage> usage = VmInstanceUsage.usage( ownerFullName );
+      if ( usage.isPresent( ) ) {
+        return usage.get( ).getInstances( );
+      }
       try ( TransactionResource tx = Entities.transactionFor( VmInstance.class ) ){
         return Entities.count(
             VmInstance.named( ownerFullName, null ),
@@ -706,6 +718,10 @@ public class VmInstances extends com.eucalyptus.compute.common.internal.vm.VmIns
     }
 
     private long countPersistentInstances( final OwnerFullName ownerFullName ) {
+      final Optional<VmInstanceUsage.Usage> usage = VmInstanceUsage.usage( ownerFullName );
+      if ( usage.isPresent( ) ) {
+        return usage.get( ).getActiveInstances( );
+      }
       try ( TransactionResource tx = Entities.transactionFor( VmInstance.class ) ){
         return Entities.count(
           VmInstance.named( ownerFullName, null ),
@@ -1983,6 +1999,7 @@ public class VmInstances extends com.eucalyptus.compute.common.internal.vm.VmIns
             .build( token.getLaunchIndex( ) );
         Entities.flush( vmInst );
         db.commit( );
+        VmInstanceUsage.created( vmInst );
         token.setVmInstance( vmInst );
         return vmInst;
       } catch ( final ResourceAllocationException ex ) {
@@ -0,0 +1,239 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.vm.dns;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Projections;
+import com.eucalyptus.bootstrap.Bootstrap;
+import com.eucalyptus.bootstrap.Databases;
+import com.eucalyptus.compute.common.internal.vm.VmInstance;
+import com.eucalyptus.compute.common.internal.vm.VmInstance.VmStateSet;
+import com.eucalyptus.compute.common.internal.vm.VmNetworkConfig;
+import com.eucalyptus.event.ClockTick;
+import com.eucalyptus.event.EventListener;
+import com.eucalyptus.event.Listeners;
+import com.eucalyptus.vm.VmInstanceIndex;
+import com.eucalyptus.vm.dns.SplitHorizonResolver.VmDnsInfo;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * In memory index of pending and running instances by address for DNS.
+ *
+ * The index is only maintained while lookups are being made. A miss may be
+ * an instance created since the snapshot so callers should then look up
+ * instances directly.
+ *
+ * @see VmInstanceIndex
+ */
+public class InstanceDnsIndex extends VmInstanceIndex<InstanceDnsIndex.VmDnsRecord, InstanceDnsIndex.Snapshot> {
+
+  private static final long UNUSED_RESET_MILLIS = TimeUnit.MINUTES.toMillis( 5 );
+
+  private static final InstanceDnsIndex index = new InstanceDnsIndex( );
+
+  private final AtomicLong lastUsed = new AtomicLong( );
+
+  InstanceDnsIndex( ) {
+    super( "instances for DNS" );
+  }
+
+  /**
+   * Get the current snapshot.
+   *
+   * @return The snapshot or null if not available
+   */
+  @Nullable
+  static Snapshot snapshot( ) {
+    return index.use( System.currentTimeMillis( ) );
+  }
+
+  @Nullable
+  Snapshot use( final long now ) {
+    if ( maxAgeMillis( ) <= 0 ) {
+      return null;
+    }
+    if ( now - lastUsed.get( ) > 1_000 ) {
+      lastUsed.lazySet( now );
+    }
+    return current( );
+  }
+
+  boolean isUsed( final long now ) {
+    return maxAgeMillis( ) > 0 && ( now - lastUsed.get( ) ) < UNUSED_RESET_MILLIS;
+  }
+
+  @Override
+  protected Snapshot snapshotOf( final Iterable<VmDnsRecord> records, final long started, final long version ) {
+    return Snapshot.of( records, started, version );
+  }
+
+  @Override
+  protected long maxAgeMillis( ) {
+    return TimeUnit.SECONDS.toMillis( Objects.firstNonNull( SplitHorizonResolver.instance_index_max_age, 0 ) );
+  }
+
+  @Override
+  protected RecordProjection<VmDnsRecord> projection( ) {
+    return VmDnsRecordProjection.INSTANCE;
+  }
+
+  @Override
+  protected Criterion criterion( ) {
+    return VmInstance.criterion( VmStateSet.RUN.array( ) );
+  }
+
+  static final class Snapshot extends VmInstanceIndex.Snapshot {
+    private final Map<String,VmDnsInfo> byPrivateIp;
+    private final Map<String,VmDnsInfo> byPublicIp;
+
+    private Snapshot(
+        final Map<String,VmDnsInfo> byPrivateIp,
+        final Map<String,VmDnsInfo> byPublicIp,
+        final long started,
+        final long version
+    ) {
+      super( started, version );
+      this.byPrivateIp = byPrivateIp;
+      this.byPublicIp = byPublicIp;
+    }
+
+    static Snapshot of( final Iterable<VmDnsRecord> records, final long started, final long version ) {
+      final Map<String,VmDnsInfo> byPrivateIp = Maps.newHashMap( );
+      final Map<String,VmDnsInfo> byPublicIp = Maps.newHashMap( );
+      final Set<String> ambiguousPrivateIps = Sets.newHashSet( );
+      final Set<String> ambiguousPublicIps = Sets.newHashSet( );
+      for ( final VmDnsRecord record : records ) {
+        final VmDnsInfo info = record.toInfo( );
+        index( byPrivateIp, ambiguousPrivateIps, record.privateIp, info );
+        index( byPublicIp, ambiguousPublicIps, record.publicIp, info );
+      }
+      // addresses shared by instances (e.g. in different VPCs) do not identify an instance
+      byPrivateIp.keySet( ).removeAll( ambiguousPrivateIps );
+      byPublicIp.keySet( ).removeAll( ambiguousPublicIps );
+      return new Snapshot( ImmutableMap.copyOf( byPrivateIp ), ImmutableMap.copyOf( byPublicIp ), started, version );
+    }
+
+    private static void index(
+        final Map<String,VmDnsInfo> infoByIp,
+        final Set<String> ambiguousIps,
+        final String ip,
+        final VmDnsInfo info
+    ) {
+      if ( ip != null && !VmNetworkConfig.DEFAULT_IP.equals( ip ) && infoByIp.put( ip, info ) != null ) {
+        ambiguousIps.add( ip );
+      }
+    }
+
+    Optional<VmDnsInfo> lookupPrivate( final String ip ) {
+      return Optional.fromNullable( byPrivateIp.get( ip ) );
+    }
+
+    Optional<VmDnsInfo> lookupPublic( final String ip ) {
+      return Optional.fromNullable( byPublicIp.get( ip ) );
+    }
+  }
+
+  static final class VmDnsRecord {
+    private final String uuid;
+    private final String id;
+    private final Integer version;
+    private final String privateIp;
+    private final String publicIp;
+    private final String vpcId;
+
+    VmDnsRecord(
+        final String uuid,
+        final String id,
+        final Integer version,
+        final String privateIp,
+        final String publicIp,
+        final String vpcId
+    ) {
+      this.uuid = uuid;
+      this.id = id;
+      this.version = version;
+      this.privateIp = privateIp;
+      this.publicIp = publicIp;
+      this.vpcId = vpcId;
+    }
+
+    /**
+     * Info with public address as per VmInstance#hasPublicAddress
+     */
+    VmDnsInfo toInfo( ) {
+      final boolean hasPublicAddress = publicIp != null &&
+          !VmNetworkConfig.DEFAULT_IP.equals( publicIp ) &&
+          !publicIp.equals( privateIp );
+      return new VmDnsInfo( uuid, id, version, privateIp, hasPublicAddress ? publicIp : null, vpcId );
+    }
+  }
+
+  private static final class VmDnsRecordProjection extends RecordProjection<VmDnsRecord> {
+    private static final VmDnsRecordProjection INSTANCE = new VmDnsRecordProjection( );
+
+    private VmDnsRecordProjection( ) {
+      super(
+          VmInstance.instanceUuidProjection( ),
+          VmInstance.instanceIdProjection( ),
+          Projections.property( "version" ),
+          Projections.property( "networkConfig.privateAddress" ),
+          Projections.property( "networkConfig.publicAddress" ),
+          Projections.property( "bootRecord.vpcId" ) );
+    }
+
+    @Override
+    protected VmDnsRecord record( final Object[] values ) {
+      return new VmDnsRecord(
+          (String) values[ 0 ],
+          (String) values[ 1 ],
+          (Integer) values[ 2 ],
+          (String) values[ 3 ],
+          (String) values[ 4 ],
+          (String) values[ 5 ] );
+    }
+  }
+
+  public static class InstanceDnsIndexEventListener implements EventListener<ClockTick> {
+    public static void register( ) {
+      Listeners.register( ClockTick.class, new InstanceDnsIndexEventListener( ) );
+    }
+
+    @Override
+    public void fireEvent( final ClockTick event ) {
+      final long now = System.currentTimeMillis( );
+      if ( Bootstrap.isOperational( ) && index.isUsed( now ) ) {
+        if ( !Databases.isVolatile( ) ) {
+          index.reconcile( now );
+        }
+      } else {
+        index.reset( );
+      }
+    }
+  }
+}
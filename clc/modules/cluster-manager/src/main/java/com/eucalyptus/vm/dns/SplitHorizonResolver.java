@@ -144,6 +144,9 @@ public abstract class SplitHorizonResolver extends DnsResolver {
                                     + "Note: dns.enable must also be 'true'" )
   public static Boolean       enabled = Boolean.TRUE;
 
+  @ConfigurableField( description = "Maximum age in seconds of the in-memory instance index used for resolution, 0 to disable the index." )
+  public static Integer       instance_index_max_age = 60;
+
   private static final LoadingCache<VmDnsCacheKey, Optional<VmDnsInfo>> instanceCache = CacheBuilder.newBuilder( )
       .maximumSize( 25_000 )
       .refreshAfterWrite( 5, TimeUnit.SECONDS )
@@ -271,15 +274,29 @@ public abstract class SplitHorizonResolver extends DnsResolver {
   }
 
   private static Optional<VmDnsInfo> lookupAny( InetAddress ip ) {
-    return lookupPrivate( ip ).or( lookupPublic( ip ) );
+    final Optional<VmDnsInfo> privateInfo = lookupPrivate( ip );
+    return privateInfo.isPresent( ) ? privateInfo : lookupPublic( ip );
   }
 
   private static Optional<VmDnsInfo> lookupPrivate( InetAddress ip ) {
-    return instanceCache.getUnchecked( VmDnsCacheKey.forPrivateAddress( ip ) );
+    final InstanceDnsIndex.Snapshot index = InstanceDnsIndex.snapshot( );
+    final Optional<VmDnsInfo> indexed = index != null ?
+        index.lookupPrivate( ip.getHostAddress( ) ) :
+        Optional.<VmDnsInfo>absent( );
+    // the index may predate the instance, a miss is not authoritative
+    return indexed.isPresent( ) ?
+        indexed :
+        instanceCache.getUnchecked( VmDnsCacheKey.forPrivateAddress( ip ) );
   }
 
   private static Optional<VmDnsInfo> lookupPublic( InetAddress ip ) {
-    return instanceCache.getUnchecked( VmDnsCacheKey.forPublicAddress( ip ) );
+    final InstanceDnsIndex.Snapshot index = InstanceDnsIndex.snapshot( );
+    final Optional<VmDnsInfo> indexed = index != null ?
+        index.lookupPublic( ip.getHostAddress( ) ) :
+        Optional.<VmDnsInfo>absent( );
+    return indexed.isPresent( ) ?
+        indexed :
+        instanceCache.getUnchecked( VmDnsCacheKey.forPublicAddress( ip ) );
   }
 
   @Override
@@ -0,0 +1,168 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cluster
+
+import com.eucalyptus.compute.common.internal.util.NotEnoughResourcesException
+import com.eucalyptus.compute.common.internal.vmtypes.VmType
+import org.junit.Test
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+
+import static org.junit.Assert.*
+
+/**
+ *
+ */
+class ResourceStateTest {
+
+  private static final VmType small = VmType.create( 'm1.small', 1, 5, 256, 1 )
+  private static final VmType large = VmType.create( 'm1.large', 2, 10, 512, 1 )
+  private static final VmType highCpu = VmType.create( 'c1.xlarge', 4, 10, 256, 1 )
+  private static final VmType twin = VmType.create( 'm1.twin', 1, 5, 256, 1 )
+
+  @Test
+  void testSlots( ) {
+    assertEquals( 'same type', 1, ResourceState.slots( small, small ) )
+    assertEquals( 'small in large', 1, ResourceState.slots( small, large ) )
+    assertEquals( 'large in small', 2, ResourceState.slots( large, small ) )
+    assertEquals( 'high cpu in large', 2, ResourceState.slots( highCpu, large ) )
+    assertEquals( 'large in high cpu', 2, ResourceState.slots( large, highCpu ) )
+  }
+
+  @Test
+  void testReserve( ) {
+    ResourceState state = state( ( small.name ): 10, ( large.name ): 5, ( highCpu.name ): 2 )
+
+    assertEquals( 'reserved', 4, state.reserve( large, 1, 4 ) )
+    assertEquals( 'large available', 1, state.getAvailability( large.name ).available )
+    assertEquals( 'small available', 2, state.getAvailability( small.name ).available )
+    assertEquals( 'high cpu available', 0, state.getAvailability( highCpu.name ).available )
+
+    assertEquals( 'partial reservation', 1, state.reserve( large, 1, 4 ) )
+    try {
+      state.reserve( large, 1, 1 )
+      fail( 'Expected reservation failure' )
+    } catch ( NotEnoughResourcesException e ) {
+      // expected
+    }
+
+    state.unreserve( large, 1 )
+    assertEquals( 'large available after unreserve', 1, state.getAvailability( large.name ).available )
+    assertEquals( 'small available after unreserve', 2, state.getAvailability( small.name ).available )
+    assertEquals( 'high cpu available after unreserve', 2, state.getAvailability( highCpu.name ).available )
+
+    state.unreserve( large, 4 )
+    assertEquals( 'high cpu limited to max', 2, state.getAvailability( highCpu.name ).available )
+  }
+
+  /**
+   * Concurrent reservations of different types sharing the same node slots
+   * must not reserve a slot more than once.
+   */
+  @Test
+  void testConcurrentMixedReservations( ) {
+    int threads = 16
+    int capacity = 50_000
+    ResourceState state = state( [ small, twin ], ( small.name ): capacity, ( twin.name ): capacity )
+    ExecutorService executor = Executors.newFixedThreadPool( threads )
+    try {
+      CountDownLatch start = new CountDownLatch( 1 )
+      List<Future<Integer>> results = ( 1..threads ).collect { int thread ->
+        VmType vmType = thread % 2 == 0 ? small : twin
+        executor.submit( {
+          start.await( )
+          int reserved = 0
+          try {
+            while ( true ) {
+              reserved += state.reserve( vmType, 1, 1 )
+            }
+          } catch ( NotEnoughResourcesException e ) {
+            // capacity exhausted
+          }
+          reserved
+        } as Callable<Integer> )
+      }
+      start.countDown( )
+      int reserved = results.sum { Future<Integer> result -> result.get( 5, TimeUnit.MINUTES ) } as int
+
+      assertEquals( 'reserved', capacity, reserved )
+      assertEquals( 'small available', 0, state.getAvailability( small.name ).available )
+      assertEquals( 'twin available', 0, state.getAvailability( twin.name ).available )
+    } finally {
+      executor.shutdownNow( )
+    }
+  }
+
+  /**
+   * Concurrent single instance reservations (as for RunInstances from
+   * autoscaling) must reserve exactly the available capacity.
+   */
+  @Test
+  void testConcurrentReservationThroughput( ) {
+    int threads = 16
+    int capacity = 200_000
+    ResourceState state = state( ( small.name ): capacity, ( large.name ): capacity, ( highCpu.name ): capacity )
+    ExecutorService executor = Executors.newFixedThreadPool( threads )
+    try {
+      CountDownLatch start = new CountDownLatch( 1 )
+      List<Future<Integer>> results = ( 1..threads ).collect { int thread ->
+        executor.submit( {
+          start.await( )
+          int reserved = 0
+          try {
+            while ( true ) {
+              reserved += state.reserve( small, 1, 1 )
+            }
+          } catch ( NotEnoughResourcesException e ) {
+            // capacity exhausted
+          }
+          reserved
+        } as Callable<Integer> )
+      }
+      start.countDown( )
+      int reserved = results.sum { Future<Integer> result -> result.get( 5, TimeUnit.MINUTES ) } as int
+
+      assertEquals( 'reserved', capacity, reserved )
+      assertEquals( 'small available', 0, state.getAvailability( small.name ).available )
+      assertEquals( 'large available', 0, state.getAvailability( large.name ).available )
+      assertEquals( 'high cpu available', 0, state.getAvailability( highCpu.name ).available )
+    } finally {
+      executor.shutdownNow( )
+    }
+  }
+
+  private static ResourceState state( Map<String,Integer> available ) {
+    state( [ small, large, highCpu ], available )
+  }
+
+  private static ResourceState state( List<VmType> vmTypes, Map<String,Integer> available ) {
+    ResourceState state = new ResourceState( 'cluster', vmTypes )
+    available.each { String name, Integer count ->
+      state.getAvailability( name ).setMax( count )
+      state.getAvailability( name ).setAvailable( count )
+    }
+    state
+  }
+}
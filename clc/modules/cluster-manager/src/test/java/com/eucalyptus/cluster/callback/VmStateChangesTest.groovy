@@ -0,0 +1,194 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cluster.callback
+
+import com.eucalyptus.cluster.callback.VmStateCallback.VmStateView
+import com.eucalyptus.compute.common.internal.vm.VmInstance
+import com.eucalyptus.compute.common.internal.vm.VmInstance.VmState
+import com.eucalyptus.compute.common.internal.vm.VmRuntimeState.ReachabilityStatus
+import edu.ucsb.eucalyptus.cloud.VmInfo
+import edu.ucsb.eucalyptus.msgs.AttachedVolume
+import org.junit.Test
+
+import static org.junit.Assert.*
+
+/**
+ *
+ */
+class VmStateChangesTest {
+
+  private static final long FULL_SYNC_INTERVAL = 60_000
+
+  @Test
+  void testUnchangedReportsSkipped( ) {
+    LocalClusterController cc = new LocalClusterController( )
+    cc.run( 'i-00000001' )
+    cc.run( 'i-00000002' )
+    Map<String,VmStateView> local = [
+        'i-00000001': view( 'i-00000001' ),
+        'i-00000002': view( 'i-00000002' ),
+    ]
+    VmStateChanges changes = new VmStateChanges( )
+
+    assertEquals( 'initial sync', [ 'i-00000001', 'i-00000002' ] as Set, reconcile( changes, cc, local, 1_000 ) )
+    assertEquals( 'unchanged sync', [ ] as Set, reconcile( changes, cc, local, 2_000 ) )
+
+    cc.attach( 'i-00000002', 'vol-00000001' )
+    assertEquals( 'changed report', [ 'i-00000002' ] as Set, reconcile( changes, cc, local, 3_000 ) )
+    assertEquals( 'unchanged after change', [ ] as Set, reconcile( changes, cc, local, 4_000 ) )
+
+    local[ 'i-00000001' ] = view( 'i-00000001', 1 )
+    assertEquals( 'changed local state', [ 'i-00000001' ] as Set, reconcile( changes, cc, local, 5_000 ) )
+  }
+
+  @Test
+  void testFullSync( ) {
+    LocalClusterController cc = new LocalClusterController( )
+    cc.run( 'i-00000001' )
+    Map<String,VmStateView> local = [ 'i-00000001': view( 'i-00000001' ) ]
+    VmStateChanges changes = new VmStateChanges( )
+
+    assertEquals( 'initial sync', [ 'i-00000001' ] as Set, reconcile( changes, cc, local, FULL_SYNC_INTERVAL ) )
+    assertEquals( 'unchanged sync', [ ] as Set, reconcile( changes, cc, local, FULL_SYNC_INTERVAL + 1_000 ) )
+    assertEquals( 'full sync', [ 'i-00000001' ] as Set, reconcile( changes, cc, local, 2 * FULL_SYNC_INTERVAL ) )
+  }
+
+  @Test
+  void testUnsettledAlwaysReconciled( ) {
+    LocalClusterController cc = new LocalClusterController( )
+    cc.run( 'i-00000001' )
+    cc.run( 'i-00000002' )
+    Map<String,VmStateView> local = [
+        'i-00000001': view( 'i-00000001', 0, VmState.PENDING ),
+        'i-00000002': view( 'i-00000002', 0, VmState.RUNNING, ReachabilityStatus.Failed ),
+    ]
+    VmStateChanges changes = new VmStateChanges( )
+
+    assertEquals( 'initial sync', [ 'i-00000001', 'i-00000002' ] as Set, reconcile( changes, cc, local, 1_000 ) )
+    assertEquals( 'unsettled sync', [ 'i-00000001', 'i-00000002' ] as Set, reconcile( changes, cc, local, 2_000 ) )
+  }
+
+  @Test
+  void testTerminatedReportsForgotten( ) {
+    LocalClusterController cc = new LocalClusterController( )
+    cc.run( 'i-00000001' )
+    Map<String,VmStateView> local = [ 'i-00000001': view( 'i-00000001' ) ]
+    VmStateChanges changes = new VmStateChanges( )
+
+    assertEquals( 'initial sync', [ 'i-00000001' ] as Set, reconcile( changes, cc, local, 1_000 ) )
+    cc.terminate( 'i-00000001' )
+    assertEquals( 'terminated sync', [ ] as Set, reconcile( changes, cc, local, 2_000 ) )
+    cc.run( 'i-00000001' )
+    assertEquals( 'reported again', [ 'i-00000001' ] as Set, reconcile( changes, cc, local, 3_000 ) )
+  }
+
+  @Test
+  void testSequence( ) {
+    VmStateChanges changes = new VmStateChanges( )
+    assertEquals( 'partition one sequence', 1, changes.begin( 'one', 1_000, FULL_SYNC_INTERVAL ).sequence )
+    assertEquals( 'partition one sequence', 2, changes.begin( 'one', 2_000, FULL_SYNC_INTERVAL ).sequence )
+    assertEquals( 'partition two sequence', 1, changes.begin( 'two', 2_000, FULL_SYNC_INTERVAL ).sequence )
+    assertTrue( 'always full', changes.begin( 'one', 3_000, 0 ).full )
+  }
+
+  /**
+   * Reconcile a poll of the cluster, returning the identifiers of reconciled instances.
+   */
+  private static Set<String> reconcile(
+      final VmStateChanges changes,
+      final LocalClusterController cc,
+      final Map<String,VmStateView> local,
+      final long now
+  ) {
+    VmStateChanges.Sync sync = changes.begin( 'PARTI00', now, FULL_SYNC_INTERVAL )
+    List<VmInfo> reported = cc.describe( )
+    Set<String> reconciled = [ ] as Set
+    reported.each { VmInfo vmInfo ->
+      if ( sync.isChanged( vmInfo, local[ vmInfo.instanceId ] ) ) {
+        reconciled << vmInfo.instanceId
+        sync.applied( vmInfo, local[ vmInfo.instanceId ] )
+      }
+    }
+    sync.retain( reported.collect{ VmInfo vmInfo -> vmInfo.instanceId } as Set )
+    reconciled
+  }
+
+  private static VmStateView view(
+      final String id,
+      final int version = 0,
+      final VmState state = VmState.RUNNING,
+      final ReachabilityStatus reachabilityStatus = ReachabilityStatus.Passed
+  ) {
+    new VmStateView(
+        id,
+        version,
+        'PARTI00',
+        'http://10.111.1.1:8775/axis2/services/EucalyptusNC',
+        state,
+        'poweredOn',
+        reachabilityStatus,
+        VmInstance.Reason.NORMAL,
+        [:],
+        [:],
+        0,
+        Long.MAX_VALUE,
+        false,
+        false
+    )
+  }
+
+  /**
+   * Local stand-in for a cluster controller, describes the instances it is running.
+   */
+  private static final class LocalClusterController {
+    private final Map<String,VmInfo> instances = new TreeMap<>( )
+
+    void run( final String instanceId ) {
+      instances[ instanceId ] = new VmInfo(
+          instanceId: instanceId,
+          stateName: 'Extant',
+          guestStateName: 'poweredOn',
+          serviceTag: 'http://10.111.1.1:8775/axis2/services/EucalyptusNC',
+          migrationStateName: 'none'
+      )
+    }
+
+    void attach( final String instanceId, final String volumeId ) {
+      instances[ instanceId ].volumes << new AttachedVolume( volumeId, instanceId, '/dev/sdf', 'sc://' + volumeId )
+    }
+
+    void terminate( final String instanceId ) {
+      instances.remove( instanceId )
+    }
+
+    List<VmInfo> describe( ) {
+      instances.values( ).collect{ VmInfo vmInfo ->
+        new VmInfo(
+            instanceId: vmInfo.instanceId,
+            stateName: vmInfo.stateName,
+            guestStateName: vmInfo.guestStateName,
+            serviceTag: vmInfo.serviceTag,
+            migrationStateName: vmInfo.migrationStateName,
+            volumes: new ArrayList<>( vmInfo.volumes )
+        )
+      }
+    }
+  }
+}
@@ -0,0 +1,62 @@
+/*************************************************************************
+ * Copyright 2009-2015 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.network
+
+import groovy.transform.CompileStatic
+import org.junit.Test
+
+import static org.junit.Assert.*
+
+/**
+ *
+ */
+@CompileStatic
+class BroadcastAcknowledgementsTest {
+
+  private static final long INTERVAL = 60_000L
+
+  @Test
+  void testSuppression( ) {
+    BroadcastAcknowledgements acknowledgements = new BroadcastAcknowledgements( )
+    assertFalse( "Unacknowledged", acknowledgements.isAcknowledged( 'zone-1', 1L, 1000L, INTERVAL ) )
+
+    acknowledgements.acknowledge( 'zone-1', 1L, 1000L )
+    assertTrue( "Acknowledged", acknowledgements.isAcknowledged( 'zone-1', 1L, 2000L, INTERVAL ) )
+    assertFalse( "New broadcast", acknowledgements.isAcknowledged( 'zone-1', 2L, 2000L, INTERVAL ) )
+    assertFalse( "Other partition", acknowledgements.isAcknowledged( 'zone-2', 1L, 2000L, INTERVAL ) )
+    assertFalse( "Interval elapsed", acknowledgements.isAcknowledged( 'zone-1', 1L, 1000L + INTERVAL, INTERVAL ) )
+  }
+
+  @Test
+  void testReset( ) {
+    BroadcastAcknowledgements acknowledgements = new BroadcastAcknowledgements( )
+    acknowledgements.acknowledge( 'zone-1', 1L, 1000L )
+    acknowledgements.acknowledge( 'zone-2', 1L, 1000L )
+
+    acknowledgements.reset( 'zone-1' )
+    assertFalse( "Reset partition", acknowledgements.isAcknowledged( 'zone-1', 1L, 2000L, INTERVAL ) )
+    assertTrue( "Other partition", acknowledgements.isAcknowledged( 'zone-2', 1L, 2000L, INTERVAL ) )
+
+    acknowledgements.acknowledge( 'zone-1', 1L, 2000L )
+    acknowledgements.retain( [ 'zone-1' ] as Set<String> )
+    assertTrue( "Retained partition", acknowledgements.isAcknowledged( 'zone-1', 1L, 3000L, INTERVAL ) )
+    assertFalse( "Removed partition", acknowledgements.isAcknowledged( 'zone-2', 1L, 3000L, INTERVAL ) )
+  }
+}
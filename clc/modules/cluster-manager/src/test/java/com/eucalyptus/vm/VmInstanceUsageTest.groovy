@@ -0,0 +1,113 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.vm
+
+import com.eucalyptus.auth.principal.AccountFullName
+import com.eucalyptus.auth.principal.OwnerFullName
+import com.eucalyptus.compute.common.internal.vm.VmInstance.VmState
+import com.eucalyptus.vm.VmInstanceUsage.Record
+import org.junit.Test
+
+import static org.junit.Assert.*
+
+/**
+ *
+ */
+class VmInstanceUsageTest {
+
+  private static final String ACCOUNT = '000000000001'
+
+  @Test
+  void testUnavailableBeforeReconcile( ) {
+    VmInstanceUsage usage = new VmInstanceUsage( )
+    assertFalse( 'usage before reconcile', usage.lookup( AccountFullName.getInstance( ACCOUNT ) ).isPresent( ) )
+    assertTrue( 'stale before reconcile', usage.isStale( 0, 0 ) )
+  }
+
+  @Test
+  void testAccountAndUserUsage( ) {
+    VmInstanceUsage usage = new VmInstanceUsage( )
+    usage.reconcile( [
+        record( 'i-00000001', 'user1', VmState.RUNNING, 1 ),
+        record( 'i-00000002', 'user1', VmState.PENDING, 2 ),
+        record( 'i-00000003', 'user2', VmState.STOPPED, 4 ),
+        record( 'i-00000004', 'user2', VmState.RUNNING, 8 ),
+        record( 'i-00000005', 'user2', VmState.TERMINATED, 16 ),
+    ], 1000, 1 )
+
+    VmInstanceUsage.Usage account = usage.lookup( AccountFullName.getInstance( ACCOUNT ) ).get( )
+    assertEquals( 'account instances', 4, account.instances )
+    assertEquals( 'account active instances', 3, account.activeInstances )
+    assertEquals( 'account cpus', 11, account.cpus )
+    assertEquals( 'account memory', 1100, account.memory )
+    assertEquals( 'account disk', 110, account.disk )
+
+    VmInstanceUsage.Usage user2 = usage.lookup( user( 'user2' ) ).get( )
+    assertEquals( 'user instances', 2, user2.instances )
+    assertEquals( 'user active instances', 1, user2.activeInstances )
+    assertEquals( 'user cpus', 8, user2.cpus )
+
+    VmInstanceUsage.Usage other = usage.lookup( AccountFullName.getInstance( '000000000002' ) ).get( )
+    assertEquals( 'other account instances', 0, other.instances )
+  }
+
+  @Test
+  void testCreatedUntilReconciled( ) {
+    VmInstanceUsage usage = new VmInstanceUsage( )
+    usage.reconcile( [ record( 'i-00000001', 'user1', VmState.RUNNING, 1 ) ], 1000, 1 )
+    usage.created( record( 'i-00000002', 'user1', VmState.PENDING, 2, 2000 ) )
+    assertEquals( 'instances with created', 2, usage.lookup( user( 'user1' ) ).get( ).instances )
+    assertEquals( 'cpus with created', 3, usage.lookup( AccountFullName.getInstance( ACCOUNT ) ).get( ).cpus )
+    assertEquals( 'other user instances', 0, usage.lookup( user( 'user2' ) ).get( ).instances )
+
+    // snapshot taken before the instance was created that includes it must not double count
+    usage.reconcile( [
+        record( 'i-00000001', 'user1', VmState.RUNNING, 1 ),
+        record( 'i-00000002', 'user1', VmState.PENDING, 2 ),
+    ], 1500, 2 )
+    assertEquals( 'instances not double counted', 2, usage.lookup( user( 'user1' ) ).get( ).instances )
+
+    // snapshot taken after the instance was created replaces it, even when terminated since
+    usage.reconcile( [ record( 'i-00000001', 'user1', VmState.RUNNING, 1 ) ], 2500, 3 )
+    assertEquals( 'instances after reconcile', 1, usage.lookup( user( 'user1' ) ).get( ).instances )
+  }
+
+  @Test
+  void testStale( ) {
+    VmInstanceUsage usage = new VmInstanceUsage( )
+    usage.reconcile( [ ], 1000, 1 )
+    assertFalse( 'stale when unchanged', usage.isStale( 2000, 1 ) )
+    assertTrue( 'stale when changed', usage.isStale( 2000, 2 ) )
+    assertTrue( 'stale after interval', usage.isStale( 61_000, 1 ) )
+    usage.reset( )
+    assertFalse( 'usage after reset', usage.lookup( AccountFullName.getInstance( ACCOUNT ) ).isPresent( ) )
+  }
+
+  private static Record record( String instanceId, String userId, VmState state, int cpu, long timestamp = 0 ) {
+    new Record( instanceId, ACCOUNT, userId, state, cpu, cpu * 100, cpu * 10, timestamp )
+  }
+
+  private static OwnerFullName user( String userId ) {
+    [
+        getAccountNumber: { ACCOUNT },
+        getUserId: { userId },
+    ] as OwnerFullName
+  }
+}
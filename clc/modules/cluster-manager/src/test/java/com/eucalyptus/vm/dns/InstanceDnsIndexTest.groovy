@@ -0,0 +1,94 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.vm.dns
+
+import com.eucalyptus.vm.dns.InstanceDnsIndex.VmDnsRecord
+import org.junit.Test
+
+import static org.junit.Assert.*
+
+/**
+ *
+ */
+class InstanceDnsIndexTest {
+
+  @Test
+  void testUnavailableBeforeReconcile( ) {
+    InstanceDnsIndex index = new InstanceDnsIndex( )
+    assertNull( 'snapshot before reconcile', index.use( 1000 ) )
+    assertTrue( 'used after lookup', index.isUsed( 2000 ) )
+    assertTrue( 'stale before reconcile', index.isStale( 2000, 0 ) )
+  }
+
+  @Test
+  void testLookupByAddress( ) {
+    InstanceDnsIndex index = new InstanceDnsIndex( )
+    index.reconcile( [
+        record( 'i-00000001', '10.0.0.1', '1.1.1.1' ),
+        record( 'i-00000002', '10.0.0.2', '10.0.0.2' ),
+        record( 'i-00000003', '10.0.0.3', '0.0.0.0' ),
+    ], 1000, 1 )
+    InstanceDnsIndex.Snapshot snapshot = index.use( 1000 )
+
+    assertEquals( 'private lookup', '1.1.1.1', snapshot.lookupPrivate( '10.0.0.1' ).get( ).publicIp )
+    assertEquals( 'public lookup', '10.0.0.1', snapshot.lookupPublic( '1.1.1.1' ).get( ).privateIp )
+    assertFalse( 'public lookup of private address', snapshot.lookupPublic( '10.0.0.1' ).isPresent( ) )
+
+    // public address same as private is indexed but not a public address of the instance
+    assertTrue( 'public lookup of same address', snapshot.lookupPublic( '10.0.0.2' ).isPresent( ) )
+    assertNull( 'same address public ip', snapshot.lookupPrivate( '10.0.0.2' ).get( ).publicIp )
+
+    assertFalse( 'default address', snapshot.lookupPublic( '0.0.0.0' ).isPresent( ) )
+    assertNull( 'default address public ip', snapshot.lookupPrivate( '10.0.0.3' ).get( ).publicIp )
+    assertFalse( 'unknown address', snapshot.lookupPrivate( '10.0.0.4' ).isPresent( ) )
+  }
+
+  @Test
+  void testAmbiguousAddress( ) {
+    InstanceDnsIndex index = new InstanceDnsIndex( )
+    index.reconcile( [
+        record( 'i-00000001', '10.0.0.1', '1.1.1.1', 'vpc-00000001' ),
+        record( 'i-00000002', '10.0.0.1', '1.1.1.2', 'vpc-00000002' ),
+    ], 1000, 1 )
+    InstanceDnsIndex.Snapshot snapshot = index.use( 1000 )
+
+    assertFalse( 'shared private address', snapshot.lookupPrivate( '10.0.0.1' ).isPresent( ) )
+    assertEquals( 'vpc by public address', 'vpc-00000002', snapshot.lookupPublic( '1.1.1.2' ).get( ).vpcId )
+  }
+
+  @Test
+  void testStaleness( ) {
+    long now = System.currentTimeMillis( )
+    InstanceDnsIndex index = new InstanceDnsIndex( )
+    index.reconcile( [ ], now, 1 )
+    assertFalse( 'stale when unchanged', index.isStale( now + 1000, 1 ) )
+    assertTrue( 'stale when changed', index.isStale( now + 1000, 2 ) )
+    assertTrue( 'stale when expired', index.isStale( now + SplitHorizonResolver.instance_index_max_age * 1000L, 1 ) )
+    assertFalse( 'unused', index.isUsed( now ) )
+    index.use( now )
+    assertTrue( 'used', index.isUsed( now + 1000 ) )
+    index.reset( )
+    assertNull( 'snapshot after reset', index.use( now + 2000 ) )
+  }
+
+  private static VmDnsRecord record( String id, String privateIp, String publicIp, String vpcId = null ) {
+    new VmDnsRecord( UUID.randomUUID( ).toString( ), id, 0, privateIp, publicIp, vpcId )
+  }
+}
@@ -108,6 +108,7 @@ import org.xbill.DNS.ResolverConfig;
 import com.google.common.base.Strings;
 
 import com.eucalyptus.configurable.*;
+import com.eucalyptus.dns.resolvers.RecursiveDnsResolver;
 import com.eucalyptus.util.Cidr;
 import com.eucalyptus.util.DNSProperties;
 import com.eucalyptus.util.Internets;
@@ -172,6 +173,7 @@ public class DNSControl {
 						System.setProperty("dns.server", newValueStr);
 					}
 					ResolverConfig.refresh();
+					RecursiveDnsResolver.flushCache();
 				} catch ( final Exception e ) {
 					throw new ConfigurablePropertyException( e.getMessage( ) );
 				}
@@ -193,6 +195,7 @@ public class DNSControl {
 						System.setProperty("dns.search", newValueStr);
 					}
 					ResolverConfig.refresh();
+					RecursiveDnsResolver.flushCache();
 				} catch ( final Exception e ) {
 					throw new ConfigurablePropertyException( e.getMessage( ) );
 				}
@@ -64,6 +64,9 @@ package com.eucalyptus.cloud.ws;
 
 import org.apache.log4j.Logger;
 
+import com.eucalyptus.component.id.Dns;
+import com.eucalyptus.system.Threads;
+
 import java.io.Closeable;
 import java.io.IOException;
 import java.net.InetAddress;
@@ -94,7 +97,9 @@ public class TCPListener extends Thread implements Closeable {
 				if(socket != null) {
 					LOG.trace("Listening on port: " + port);
 					TCPHandler handler = new TCPHandler((Socket)socket.accept());
-					handler.start();
+					Threads.lookup( Dns.class, TCPListener.class )
+							.limitTo( DNSControl.SERVER_POOL_MAX_THREADS )
+							.execute( handler );
 				} else {
 					LOG.error("Cannot start service. Invalid socket.");
 					return;
@@ -69,6 +69,7 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.log4j.Logger;
 import org.xbill.DNS.Cache;
@@ -93,6 +94,7 @@ import com.eucalyptus.util.dns.DomainNames;
 import com.eucalyptus.compute.common.internal.vm.VmInstance;
 import com.eucalyptus.vm.VmInstances;
 import com.eucalyptus.vm.dns.InstanceDomainNames;
+import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
@@ -119,7 +121,30 @@ public class RecursiveDnsResolver extends DnsResolver {
   private static Logger LOG = Logger.getLogger( RecursiveDnsResolver.class );
   @ConfigurableField( description = "Enable the recursive DNS resolver.  Note: dns.enable must also be 'true'" )
   public static Boolean enabled = Boolean.TRUE;
-  
+  @ConfigurableField( description = "Maximum time in seconds to cache recursive lookup results, 0 to disable caching." )
+  public static Integer cache_max_ttl = 300;
+
+  private static final AtomicReference<Cache> sharedCache = new AtomicReference<>( new Cache( ) );
+
+  /**
+   * Discard all cached results, e.g. on change of upstream name servers.
+   */
+  public static void flushCache( ) {
+    sharedCache.set( new Cache( ) );
+  }
+
+  private static Cache cache( ) {
+    final int maxTtl = Objects.firstNonNull( cache_max_ttl, 0 );
+    if ( maxTtl <= 0 ) {
+      return new Cache( );
+    } else {
+      final Cache cache = sharedCache.get( );
+      cache.setMaxCache( maxTtl );
+      cache.setMaxNCache( maxTtl );
+      return cache;
+    }
+  }
+
   private static List<Name> subdomainsForName( Name name ) {
     final List<Name> names = Lists.newArrayList( name );
     final String sub = parentDomainForName( name );
@@ -159,7 +184,7 @@ public class RecursiveDnsResolver extends DnsResolver {
       .recursive( )
       .refused();
     
-    final Cache cache = new Cache( );
+    final Cache cache = cache( );
     Lookup aLookup = new Lookup( name, type );
     aLookup.setCache( cache );
     Record[] found = aLookup.run( );
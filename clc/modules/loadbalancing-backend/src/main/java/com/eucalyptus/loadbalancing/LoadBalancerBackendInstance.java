@@ -78,7 +78,7 @@ import com.google.common.collect.Sets;
 @Entity
 @PersistenceContext( name = "eucalyptus_loadbalancing" )
 @Table( name = "metadata_backend_instance" )
-public class LoadBalancerBackendInstance extends UserMetadata<LoadBalancerBackendInstance.STATE> {
+public class LoadBalancerBackendInstance extends UserMetadata<LoadBalancerBackendInstance.STATE> implements Cloneable {
 	private static Logger    LOG     = Logger.getLogger( LoadBalancerBackendInstance.class );
 	@Transient
 	private static final long serialVersionUID = 1L;
@@ -258,6 +258,22 @@ public class LoadBalancerBackendInstance extends UserMetadata<LoadBalancerBacken
     public Date instanceStateLastUpdated(){
       return this.instanceUpdateTimestamp;
     }
+
+    /**
+     * Detached copy of this instance with the given state, for replacing cached copies.
+     */
+    public LoadBalancerBackendInstance copyWithState(final STATE state, final String reasonCode, final String description){
+    	try{
+    		final LoadBalancerBackendInstance copy = (LoadBalancerBackendInstance) super.clone();
+    		copy.setState(state);
+    		copy.setReasonCode(reasonCode);
+    		copy.setDescription(description);
+    		copy.updateInstanceStateTimestamp();
+    		return copy;
+    	}catch(final CloneNotSupportedException ex){
+    		throw Exceptions.toUndeclared(ex);
+    	}
+    }
     
 	@Override
 	public String getPartition() {
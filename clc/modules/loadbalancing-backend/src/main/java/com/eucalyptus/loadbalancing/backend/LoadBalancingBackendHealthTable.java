@@ -0,0 +1,191 @@
+/*************************************************************************
+ * Copyright 2009-2015 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.loadbalancing.backend;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
+
+import org.apache.log4j.Logger;
+
+import com.eucalyptus.bootstrap.Bootstrap;
+import com.eucalyptus.component.Topology;
+import com.eucalyptus.entities.Entities;
+import com.eucalyptus.entities.TransactionResource;
+import com.eucalyptus.event.ClockTick;
+import com.eucalyptus.event.EventListener;
+import com.eucalyptus.event.Listeners;
+import com.eucalyptus.loadbalancing.LoadBalancer;
+import com.eucalyptus.loadbalancing.LoadBalancerBackendInstance;
+import com.eucalyptus.loadbalancing.LoadBalancerBackendInstance.STATE;
+import com.eucalyptus.loadbalancing.common.LoadBalancingBackend;
+import com.google.common.base.Function;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * In-memory table of backend instance health reported by servo VMs.
+ *
+ * Reports replace the cached copies held for every servo of the ELB right away and are
+ * coalesced per (ELB, instance) until the next clock tick writes them to the database
+ * in batched transactions.
+ */
+public class LoadBalancingBackendHealthTable {
+  private static Logger LOG = Logger.getLogger( LoadBalancingBackendHealthTable.class );
+
+  static final int FLUSH_BATCH_SIZE = 100;
+
+  private static final LoadBalancingBackendHealthTable _instance = new LoadBalancingBackendHealthTable();
+  public static LoadBalancingBackendHealthTable getInstance() {
+    return _instance;
+  }
+
+  private final ConcurrentMap<String, HealthUpdate> pendingUpdates = Maps.newConcurrentMap();
+
+  LoadBalancingBackendHealthTable() { }
+
+  static final class HealthUpdate implements Function<LoadBalancerBackendInstance, LoadBalancerBackendInstance> {
+    private final LoadBalancer lb;
+    private final String instanceId;
+    private final STATE state;
+    private final String reasonCode;
+    private final String description;
+
+    private HealthUpdate(final LoadBalancer lb, final String instanceId, final STATE state) {
+      this.lb = lb;
+      this.instanceId = instanceId;
+      this.state = state;
+      if (STATE.OutOfService.equals(state)) {
+        this.reasonCode = "Instance";
+        this.description = "Instance has failed at least the UnhealthyThreshold number of health checks consecutively.";
+      } else {
+        this.reasonCode = "";
+        this.description = "";
+      }
+    }
+
+    LoadBalancer getLoadBalancer() {
+      return lb;
+    }
+
+    String getInstanceId() {
+      return instanceId;
+    }
+
+    STATE getState() {
+      return state;
+    }
+
+    private void applyTo(final LoadBalancerBackendInstance instance) {
+      instance.setState(this.state);
+      instance.setReasonCode(this.reasonCode);
+      instance.setDescription(this.description);
+      instance.updateInstanceStateTimestamp();
+    }
+
+    @Override
+    public LoadBalancerBackendInstance apply(@Nullable final LoadBalancerBackendInstance instance) {
+      return instance == null ? null : instance.copyWithState(this.state, this.reasonCode, this.description);
+    }
+  }
+
+  private static String key(final LoadBalancer lb) {
+    return lb.getOwnerAccountNumber() + ":" + lb.getDisplayName();
+  }
+
+  /**
+   * Record the health state of a backend instance as reported by a servo VM.
+   *
+   * A later report for the same instance replaces an earlier one not yet written.
+   */
+  public void update(final LoadBalancer lb, final String instanceId, final STATE state) {
+    final HealthUpdate update = new HealthUpdate(lb, instanceId, state);
+    pendingUpdates.put(key(lb) + ":" + instanceId, update);
+    updateCached(update);
+  }
+
+  void updateCached(final HealthUpdate update) {
+    LoadBalancingServoCache.getInstance().replaceBackendInstance(update.lb, update.instanceId, update);
+  }
+
+  /**
+   * Write pending updates to the database.
+   *
+   * Cached copies already hold the written states, caches of ELBs in a failed batch are
+   * reloaded to discard the unwritten states.
+   */
+  public void flush() {
+    final List<HealthUpdate> updates = Lists.newArrayList();
+    for (final String key : pendingUpdates.keySet()) {
+      final HealthUpdate update = pendingUpdates.remove(key);
+      if (update != null)
+        updates.add(update);
+    }
+
+    for (final List<HealthUpdate> batch : Iterables.partition(updates, FLUSH_BATCH_SIZE)) {
+      try {
+        write(batch);
+      } catch (final Exception ex) {
+        LOG.error("unable to update the state of loadbalancer backend instances", ex);
+        final Map<String, LoadBalancer> failed = Maps.newHashMap();
+        for (final HealthUpdate update : batch)
+          failed.put(key(update.lb), update.lb);
+        invalidate(failed.values());
+      }
+    }
+  }
+
+  void write(final List<HealthUpdate> batch) throws Exception {
+    try ( final TransactionResource db = Entities.transactionFor( LoadBalancerBackendInstance.class ) ) {
+      for (final HealthUpdate update : batch) {
+        try {
+          update.applyTo(Entities.uniqueResult(LoadBalancerBackendInstance.named(update.lb, update.instanceId)));
+        } catch (final NoSuchElementException ex) {
+          ; // deregistered since reported
+        }
+      }
+      db.commit();
+    }
+  }
+
+  void invalidate(final Collection<LoadBalancer> lbs) {
+    for (final LoadBalancer lb : lbs)
+      LoadBalancingServoCache.getInstance().invalidate(lb);
+  }
+
+  public static class BackendHealthFlusher implements EventListener<ClockTick> {
+    public static void register() {
+      Listeners.register(ClockTick.class, new BackendHealthFlusher());
+    }
+
+    @Override
+    public void fireEvent(final ClockTick event) {
+      if (!( Bootstrap.isFinished() &&
+          Topology.isEnabledLocally( LoadBalancingBackend.class ) ))
+        return;
+      LoadBalancingBackendHealthTable.getInstance().flush();
+    }
+  }
+}
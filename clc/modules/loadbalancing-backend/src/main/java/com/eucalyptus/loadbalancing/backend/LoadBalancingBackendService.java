@@ -37,7 +37,6 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.persistence.EntityNotFoundException;
 import javax.persistence.OptimisticLockException;
-import javax.persistence.RollbackException;
 
 import com.eucalyptus.loadbalancing.*;
 import org.apache.log4j.Logger;
@@ -532,10 +531,12 @@ public class LoadBalancingBackendService {
 	  
 	  /// INSTANCE HEALTH CHECK UPDATE
 	  if(instances!= null && instances.getMember()!=null && instances.getMember().size()>0){
-		  List<LoadBalancerBackendInstance> lbInstances = Lists.newArrayList();
+		  final Map<String, LoadBalancerBackendInstance> lbInstances = Maps.newHashMap();
 		  try{
-		    lbInstances=
-		      LoadBalancingServoCache.getInstance().getLoadBalancerBackendInstances(servoId);
+		    for(final LoadBalancerBackendInstance lbInstance :
+		      LoadBalancingServoCache.getInstance().getLoadBalancerBackendInstances(servoId)){
+		      lbInstances.put(lbInstance.getInstanceId(), lbInstance);
+		    }
 		  }catch(final Exception ex) {
 		    LOG.error("failed to retrieve loadbalancer's backend instances", ex);
 		  }
@@ -549,14 +550,7 @@ public class LoadBalancingBackendService {
 			  }
 			  instanceId = parts[0];
 			  final String state = parts[1];
-			  LoadBalancerBackendInstance found = null;
-			  for(final LoadBalancerBackendInstance lbInstance : lbInstances){
-				  if(instanceId.equals(lbInstance.getInstanceId())){
-					  found = lbInstance;
-					  break;
-				  }  
-			  }
-
+			  final LoadBalancerBackendInstance found = lbInstances.get(instanceId);
 			  if (found == null)
 			    continue;
 			  
@@ -576,30 +570,12 @@ public class LoadBalancingBackendService {
 			    outdated = true;
 			  
 			  if( stateChanged || outdated) {
-			    try ( final TransactionResource db = Entities.transactionFor( LoadBalancerBackendInstance.class ) ) {
-	          final LoadBalancerBackendInstance update = Entities.merge(found);
-	          update.setState(Enum.valueOf(LoadBalancerBackendInstance.STATE.class, state));
-			      if(state.equals(LoadBalancerBackendInstance.STATE.OutOfService.name())){
-			        update.setReasonCode("Instance");
-			        update.setDescription("Instance has failed at least the UnhealthyThreshold number of health checks consecutively.");
-			      }else{
-			        update.setReasonCode("");
-			        update.setDescription("");
-			      }
-			      update.updateInstanceStateTimestamp();
-			      db.commit();
-			      if (stateChanged) {
-			        LoadBalancingServoCache.getInstance().invalidate(lb);
-			      } else if (outdated) {
-			        // invalidating cache is too costly
-			        LoadBalancingServoCache.getInstance().replaceBackendInstance(servoId, found, update);
-			      }
-			    }catch(final RollbackException ex) {
-			      ;
-			    }catch(final NoSuchElementException ex){
-			      LOG.error("unable to find the loadbancer backend instance", ex);
-			    }catch(final Exception ex){
-			      LOG.error("unable to update the state of loadbalancer backend instance", ex);
+			    // cached copies are replaced, the database write is batched on the next clock tick
+			    try {
+			      LoadBalancingBackendHealthTable.getInstance().update(lb, instanceId,
+			          Enum.valueOf(LoadBalancerBackendInstance.STATE.class, state));
+			    }catch(final IllegalArgumentException ex){
+			      LOG.warn("unknown state reported for loadbalancer backend instance: "+ instance.getInstanceId());
 			    }
 			  }
 		  }
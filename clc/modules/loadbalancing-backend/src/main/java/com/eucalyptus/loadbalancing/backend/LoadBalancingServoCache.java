@@ -21,6 +21,7 @@ package com.eucalyptus.loadbalancing.backend;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
@@ -55,10 +56,14 @@ import com.eucalyptus.loadbalancing.LoadBalancerZone.LoadBalancerZoneEntityTrans
 import com.eucalyptus.loadbalancing.activities.LoadBalancerServoInstance;
 import com.eucalyptus.loadbalancing.activities.LoadBalancerServoInstance.LoadBalancerServoInstanceCoreView;
 import com.google.common.base.Function;
+import com.google.common.base.Objects;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.Collections2;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
@@ -82,10 +87,18 @@ public class LoadBalancingServoCache {
       cachedEntities =   CacheBuilder.newBuilder()
           .maximumSize(10000)
           .expireAfterWrite(getCacheDuration(), TimeUnit.MINUTES)
+          .removalListener(new RemovalListener<String, CachedEntities>() {
+            @Override
+            public void onRemoval(final RemovalNotification<String, CachedEntities> notification) {
+              unindex(notification.getKey(), notification.getValue());
+            }
+          })
           .build(new CacheLoader<String, CachedEntities> () {
             @Override
             public CachedEntities load(String instanceId) throws Exception {
-              return CachedEntities.loadEntities(instanceId);
+              final CachedEntities entities = CachedEntities.loadEntities(instanceId);
+              index(instanceId, entities);
+              return entities;
             }
           });
     }
@@ -95,6 +108,9 @@ public class LoadBalancingServoCache {
   private static LoadingCache<String, CachedEntities> cachedEntities = null;
   private static ConcurrentMap<String, Long> recordVersion =
       Maps.newConcurrentMap();
+  // cached entities of each servo keyed by ELB, so updates for an ELB need not scan the cache
+  private static final ConcurrentMap<String, ConcurrentMap<String, CachedEntities>> cachedEntitiesByLoadBalancer =
+      Maps.newConcurrentMap();
   
   @ConfigurableField( displayName = "cache_duration",
       description = "duration of cached data delivered to workers",
@@ -209,7 +225,7 @@ public class LoadBalancingServoCache {
     private LoadBalancerZone zone = null;
     private LoadBalancerServoInstance servo = null;
     private List<LoadBalancerListener> listeners = null;
-    private List<LoadBalancerBackendInstance> backendInstances = null;
+    private volatile List<LoadBalancerBackendInstance> backendInstances = null;
     private List<LoadBalancerPolicyDescription> policyDescriptions = null;
     private List<LoadBalancerBackendServerDescription> backendServerDescs = null;
     
@@ -236,6 +252,15 @@ public class LoadBalancingServoCache {
     private List<LoadBalancerBackendServerDescription> getBackendServerDescriptions(){
       return this.backendServerDescs;
     }
+    // backend instances are never modified in place, the list is replaced with updated copies
+    private synchronized void replaceBackendInstance(final String instanceId,
+        final Function<LoadBalancerBackendInstance, LoadBalancerBackendInstance> replacement){
+      final List<LoadBalancerBackendInstance> updated = Lists.newArrayListWithCapacity(this.backendInstances.size());
+      for (final LoadBalancerBackendInstance instance : this.backendInstances) {
+        updated.add(instanceId.equals(instance.getInstanceId()) ? replacement.apply(instance) : instance);
+      }
+      this.backendInstances = ImmutableList.copyOf(updated);
+    }
     private static CachedEntities loadEntities(final String servoInstanceId) throws Exception{
       recordVersion.putIfAbsent(servoInstanceId, 0L);
       final Long enteringVersion = recordVersion.get(servoInstanceId);
@@ -285,7 +310,7 @@ public class LoadBalancingServoCache {
       newEntities.zone = zone;
       newEntities.servo = instance;
       newEntities.listeners = listeners;
-      newEntities.backendInstances = backendInstances;
+      newEntities.backendInstances = ImmutableList.copyOf(backendInstances);
       newEntities.policyDescriptions = policyDescriptions;
       newEntities.backendServerDescs = backendServers;
       
@@ -371,12 +396,36 @@ public class LoadBalancingServoCache {
     }
   } 
 
-  public boolean replaceBackendInstance(final String servoInstanceId, final LoadBalancerBackendInstance oldInstance, 
-      final LoadBalancerBackendInstance newInstance) throws Exception {
-    final CachedEntities entities = cachedEntities.get(servoInstanceId);
-    final List<LoadBalancerBackendInstance> backendInstances =  entities.getBackendInstances();
-    if(backendInstances.remove(oldInstance))
-      return backendInstances.add(newInstance);
-    return false;
+  private static String key(final LoadBalancer lb) {
+    return lb.getOwnerAccountNumber() + ":" + lb.getDisplayName();
+  }
+
+  private static void index(final String servoInstanceId, final CachedEntities entities) {
+    final String key = key(entities.getLoadBalancer());
+    ConcurrentMap<String, CachedEntities> entitiesByServo = cachedEntitiesByLoadBalancer.get(key);
+    if (entitiesByServo == null) {
+      final ConcurrentMap<String, CachedEntities> created = Maps.newConcurrentMap();
+      entitiesByServo = Objects.firstNonNull(cachedEntitiesByLoadBalancer.putIfAbsent(key, created), created);
+    }
+    entitiesByServo.put(servoInstanceId, entities);
+  }
+
+  private static void unindex(final String servoInstanceId, final CachedEntities entities) {
+    if (servoInstanceId == null || entities == null || entities.getLoadBalancer() == null)
+      return;
+    final Map<String, CachedEntities> entitiesByServo = cachedEntitiesByLoadBalancer.get(key(entities.getLoadBalancer()));
+    if (entitiesByServo != null)
+      entitiesByServo.remove(servoInstanceId, entities);
+  }
+
+  // replace the cached copies of the backend instance held for each servo of the ELB; no entities are loaded
+  public void replaceBackendInstance(final LoadBalancer lb, final String instanceId,
+      final Function<LoadBalancerBackendInstance, LoadBalancerBackendInstance> replacement) {
+    final Map<String, CachedEntities> entitiesByServo = cachedEntitiesByLoadBalancer.get(key(lb));
+    if (entitiesByServo == null)
+      return;
+    for (final CachedEntities entities : entitiesByServo.values()) {
+      entities.replaceBackendInstance(instanceId, replacement);
+    }
   }
 }
@@ -0,0 +1,113 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.loadbalancing.backend
+
+import com.eucalyptus.loadbalancing.LoadBalancer
+import com.eucalyptus.loadbalancing.LoadBalancerBackendInstance.STATE
+import com.eucalyptus.loadbalancing.backend.LoadBalancingBackendHealthTable.HealthUpdate
+import org.junit.Test
+
+import static org.junit.Assert.*
+
+/**
+ *
+ */
+class LoadBalancingBackendHealthTableTest {
+
+  private final LoadBalancer lb1 = LoadBalancer.namedByAccountId( '000000000001', 'lb1' )
+  private final LoadBalancer lb2 = LoadBalancer.namedByAccountId( '000000000001', 'lb2' )
+
+  @Test
+  void testCoalescing( ) {
+    TestHealthTable table = new TestHealthTable( )
+    table.update( lb1, 'i-00000001', STATE.OutOfService )
+    table.update( lb1, 'i-00000001', STATE.InService )
+    table.update( lb1, 'i-00000002', STATE.InService )
+    assertEquals( 'cached updates', 3, table.cached.size( ) )
+
+    table.flush( )
+    assertEquals( 'batches', 1, table.written.size( ) )
+    Map<String,HealthUpdate> written = table.written[0].collectEntries { HealthUpdate update -> [ (update.instanceId): update ] }
+    assertEquals( 'coalesced updates', [ 'i-00000001', 'i-00000002' ] as Set, written.keySet( ) )
+    assertEquals( 'latest state', STATE.InService, written['i-00000001'].state )
+    assertTrue( 'not invalidated after write', table.invalidated.isEmpty( ) )
+
+    table.flush( )
+    assertEquals( 'batches after second flush', 1, table.written.size( ) )
+  }
+
+  @Test
+  void testBatchFlush( ) {
+    TestHealthTable table = new TestHealthTable( )
+    int count = LoadBalancingBackendHealthTable.FLUSH_BATCH_SIZE * 2 + 50
+    ( 1..count ).each { int index ->
+      table.update( lb1, String.format( 'i-%08x', index ), STATE.InService )
+    }
+
+    table.flush( )
+    assertEquals( 'batch sizes', [
+        LoadBalancingBackendHealthTable.FLUSH_BATCH_SIZE,
+        LoadBalancingBackendHealthTable.FLUSH_BATCH_SIZE,
+        50
+    ], table.written*.size( ) )
+    assertEquals( 'written instances', count, table.written.flatten( )*.instanceId.unique( ).size( ) )
+    assertTrue( 'not invalidated after write', table.invalidated.isEmpty( ) )
+  }
+
+  @Test
+  void testFailureInvalidation( ) {
+    TestHealthTable table = new TestHealthTable( failWrites: true )
+    table.update( lb1, 'i-00000001', STATE.InService )
+    table.update( lb1, 'i-00000002', STATE.InService )
+    table.update( lb2, 'i-00000003', STATE.OutOfService )
+
+    table.flush( )
+    assertEquals( 'invalidated after failure', [ 'lb1', 'lb2' ] as Set, table.invalidated*.displayName as Set )
+    assertEquals( 'invalidated once per load balancer', 2, table.invalidated.size( ) )
+
+    table.failWrites = false
+    table.invalidated.clear( )
+    table.flush( )
+    assertTrue( 'failed updates not retained', table.invalidated.isEmpty( ) )
+  }
+
+  private static class TestHealthTable extends LoadBalancingBackendHealthTable {
+    boolean failWrites = false
+    final List<HealthUpdate> cached = [ ]
+    final List<List<HealthUpdate>> written = [ ]
+    final List<LoadBalancer> invalidated = [ ]
+
+    @Override
+    void updateCached( final HealthUpdate update ) {
+      cached << update
+    }
+
+    @Override
+    void write( final List<HealthUpdate> batch ) throws Exception {
+      if ( failWrites ) throw new Exception( 'Test write failure' )
+      written << batch
+    }
+
+    @Override
+    void invalidate( final Collection<LoadBalancer> lbs ) {
+      invalidated.addAll( lbs )
+    }
+  }
+}
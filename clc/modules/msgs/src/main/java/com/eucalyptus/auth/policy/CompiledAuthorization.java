@@ -0,0 +1,164 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.auth.policy;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import com.eucalyptus.auth.principal.Authorization;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Evaluable form of an authorization with actions indexed by service prefix (vendor) and patterns
+ * compiled.
+ *
+ * <p>Compiled authorizations are cached by authorization identity, authorizations are interned and
+ * cached by policy so an authorization is compiled once while its policy is in use.</p>
+ */
+final class CompiledAuthorization {
+
+  private static final LoadingCache<Authorization,CompiledAuthorization> compiledCache = CacheBuilder
+      .newBuilder( )
+      .weakKeys( )
+      .build( new CacheLoader<Authorization,CompiledAuthorization>( ) {
+        @Override
+        public CompiledAuthorization load( @Nonnull final Authorization authorization ) {
+          return new CompiledAuthorization( authorization );
+        }
+      } );
+
+  private final ImmutableSet<String> exactActions;
+  private final ImmutableMap<String,ImmutableList<PolicyPattern>> vendorActionPatterns;
+  private final ImmutableList<PolicyPattern> anyVendorActionPatterns;
+  @Nullable
+  private final PolicyPattern typePattern;
+  @Nullable
+  private final ImmutableList<PolicyPattern> resourcePatterns;
+
+  private CompiledAuthorization( @Nonnull final Authorization authorization ) {
+    final Set<String> exactActions = Sets.newHashSet( );
+    final Map<String,List<PolicyPattern>> vendorActionPatterns = Maps.newHashMap( );
+    final List<PolicyPattern> anyVendorActionPatterns = Lists.newArrayList( );
+    for ( final String action : authorization.getActions( ) ) {
+      final PolicyPattern pattern = PolicyPattern.compile( action );
+      final String vendor = vendor( action );
+      if ( pattern.isLiteral( ) ) {
+        exactActions.add( action );
+      } else if ( vendor == null || !PolicyPattern.compile( vendor ).isLiteral( ) ) {
+        anyVendorActionPatterns.add( pattern );
+      } else {
+        List<PolicyPattern> patterns = vendorActionPatterns.get( vendor );
+        if ( patterns == null ) {
+          vendorActionPatterns.put( vendor, patterns = Lists.newArrayList( ) );
+        }
+        patterns.add( pattern );
+      }
+    }
+    final ImmutableMap.Builder<String,ImmutableList<PolicyPattern>> vendorActionPatternsBuilder = ImmutableMap.builder( );
+    for ( final Map.Entry<String,List<PolicyPattern>> entry : vendorActionPatterns.entrySet( ) ) {
+      vendorActionPatternsBuilder.put( entry.getKey( ), ImmutableList.copyOf( entry.getValue( ) ) );
+    }
+    this.exactActions = ImmutableSet.copyOf( exactActions );
+    this.vendorActionPatterns = vendorActionPatternsBuilder.build( );
+    this.anyVendorActionPatterns = ImmutableList.copyOf( anyVendorActionPatterns );
+    this.typePattern = authorization.getType( ) == null ? null : PolicyPattern.compile( authorization.getType( ) );
+    if ( authorization.getPolicyVariables( ).isEmpty( ) ) {
+      final ImmutableList.Builder<PolicyPattern> resourcePatternsBuilder = ImmutableList.builder( );
+      for ( final String resource : authorization.getResources( ) ) {
+        resourcePatternsBuilder.add( PolicyPattern.compile( resource ) );
+      }
+      this.resourcePatterns = resourcePatternsBuilder.build( );
+    } else {
+      this.resourcePatterns = null; // resources are compiled after variable substitution
+    }
+  }
+
+  @Nonnull
+  static CompiledAuthorization of( @Nonnull final Authorization authorization ) {
+    try {
+      return compiledCache.get( authorization );
+    } catch ( final ExecutionException e ) {
+      // not expected, compilation does not throw checked exceptions
+      return new CompiledAuthorization( authorization );
+    }
+  }
+
+  /**
+   * Does any action pattern match the given action.
+   *
+   * <p>Actions are matched as given, negation (NotAction) is not applied.</p>
+   *
+   * @param action The action
+   * @param vendor The vendor of the action, as returned by {@link #vendor(String)}
+   */
+  boolean matchesAction( @Nonnull final String action, @Nullable final String vendor ) {
+    if ( exactActions.contains( action ) ) {
+      return true;
+    }
+    if ( vendor != null ) {
+      final List<PolicyPattern> patterns = vendorActionPatterns.get( vendor );
+      if ( patterns != null && matchesAny( patterns, action ) ) {
+        return true;
+      }
+    }
+    return matchesAny( anyVendorActionPatterns, action );
+  }
+
+  boolean matchesType( @Nullable final String resourceType ) {
+    return typePattern != null && typePattern.matches( resourceType );
+  }
+
+  /**
+   * Are the resource patterns compiled, false if resources use policy variables.
+   */
+  boolean hasResourcePatterns( ) {
+    return resourcePatterns != null;
+  }
+
+  boolean matchesResource( @Nonnull final String resource ) {
+    return resourcePatterns != null && matchesAny( resourcePatterns, resource );
+  }
+
+  private static boolean matchesAny( final List<PolicyPattern> patterns, final String value ) {
+    for ( int i = 0; i < patterns.size( ); i++ ) {
+      if ( patterns.get( i ).matches( value ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Nullable
+  static String vendor( final String action ) {
+    final int index = action.indexOf( ':' );
+    return index < 0 ? null : action.substring( 0, index );
+  }
+}
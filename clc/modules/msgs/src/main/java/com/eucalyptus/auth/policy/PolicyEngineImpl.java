@@ -152,11 +152,10 @@ public class PolicyEngineImpl implements PolicyEngine {
   private static final Matcher PATTERN_MATCHER = new Matcher( ) {
     @Override
     public boolean match( String pattern, String instance ) {
-      pattern = PolicyUtils.toJavaPattern( pattern );
       if ( pattern == null ) {
         return false;
       }
-      return Pattern.matches( pattern, instance );
+      return PolicyPattern.of( pattern ).matches( instance );
     }
   };
   
@@ -417,10 +416,11 @@ public class PolicyEngineImpl implements PolicyEngine {
                                           @Nonnull  final ContractKeyEvaluator contractEval ) throws AuthException {
     Decision result = Decision.DEFAULT;
     final String region = PolicyEngineImpl.this.region.get( );
+    final String actionVendor = CompiledAuthorization.vendor( action );
     for ( Authorization auth : authorizations ) {
       if ( auth.getEffect( ) == EffectType.Limit ) continue;
 
-      if ( !matchActions( auth, action ) ) {
+      if ( !matchActions( auth, action, actionVendor ) ) {
         continue;
       }
       if ( !matchPrincipal( auth.getPrincipal(), principalType, principalName ) ) {
@@ -446,7 +446,11 @@ public class PolicyEngineImpl implements PolicyEngine {
   }
   
   private boolean matchActions( Authorization auth, String action ) throws AuthException {
-    return evaluateElement( matchOne( auth.getActions( ), action, PATTERN_MATCHER ), auth.isNotAction( ) );
+    return matchActions( auth, action, CompiledAuthorization.vendor( action ) );
+  }
+
+  private boolean matchActions( Authorization auth, String action, String actionVendor ) throws AuthException {
+    return evaluateElement( CompiledAuthorization.of( auth ).matchesAction( action, actionVendor ), auth.isNotAction( ) );
   }
 
   private boolean matchPrincipal( Principal principal, PrincipalType principalType, String principalName ) throws AuthException {
@@ -471,13 +475,15 @@ public class PolicyEngineImpl implements PolicyEngine {
       return auth.isNotResource( );
     } else if ( auth.getAccount() != null && resourceAccountNumber != null && !resolveAccount(auth.getAccount()).equals( resourceAccountNumber ) ) {
       return auth.isNotResource( );
-    } else if ( !matchOne( Collections.singleton( auth.getType( ) ), resourceType, PATTERN_MATCHER ) ) {
+    } else if ( !CompiledAuthorization.of( auth ).matchesType( resourceType ) ) {
       return auth.isNotResource( );
     } else  if ( PolicySpec.EC2_RESOURCE_ADDRESS.equals( auth.getType( ) ) ) {
       return evaluateElement( matchOne( auth.getResources( ), resource, ADDRESS_MATCHER ), auth.isNotResource( ) );
     } else if ( String.format("%s:%s", PolicySpec.VENDOR_IAM, PolicySpec.IAM_RESOURCE_SERVER_CERTIFICATE).equals ( auth.getType( ))){
       return evaluateElement( matchOne( auth.getResources( ), resource, SERVER_CERTIFICATE_MATCHER ), auth.isNotResource( ) );
-    }else {
+    } else if ( CompiledAuthorization.of( auth ).hasResourcePatterns( ) ) {
+      return evaluateElement( CompiledAuthorization.of( auth ).matchesResource( resource ), auth.isNotResource( ) );
+    } else {
       return evaluateElement( matchOne( auth.getPolicyVariables( ), auth.getResources( ), resource, PATTERN_MATCHER ), auth.isNotResource( ) );
     }
   }
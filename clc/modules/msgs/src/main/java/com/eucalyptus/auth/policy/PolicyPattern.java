@@ -0,0 +1,188 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.auth.policy;
+
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Pattern;
+import javax.annotation.Nonnull;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * An IAM policy pattern (action, resource or condition value with * and ?) compiled for matching.
+ *
+ * <p>Matching is equivalent to matching the regular expression from {@link PolicyUtils#toJavaPattern}
+ * but patterns without wildcards, with a single trailing wildcard or consisting only of a wildcard are
+ * matched without a regular expression and other patterns use a glob matcher. Wildcards do not match
+ * line terminators, values containing line terminators are matched using the regular expression.</p>
+ */
+public final class PolicyPattern {
+
+  private static final LoadingCache<String,PolicyPattern> patternCache = CacheBuilder
+      .<String,PolicyPattern>newBuilder( )
+      .maximumSize( 50_000 )
+      .build( new CacheLoader<String,PolicyPattern>( ) {
+        @Override
+        public PolicyPattern load( @Nonnull final String pattern ) {
+          return new PolicyPattern( pattern );
+        }
+      } );
+
+  private enum Kind {
+    ANY,     // *
+    EXACT,   // no wildcards
+    PREFIX,  // single trailing *
+    GLOB,    // any other
+  }
+
+  private final String pattern;
+  private final Kind kind;
+  private final String prefix;
+  private volatile Pattern regex;
+
+  private PolicyPattern( @Nonnull final String pattern ) {
+    this.pattern = pattern;
+    final int firstWildcard = firstWildcard( pattern );
+    if ( firstWildcard < 0 ) {
+      kind = Kind.EXACT;
+    } else if ( "*".equals( pattern ) ) {
+      kind = Kind.ANY;
+    } else if ( firstWildcard == pattern.length( ) - 1 && pattern.charAt( firstWildcard ) == '*' ) {
+      kind = Kind.PREFIX;
+    } else {
+      kind = Kind.GLOB;
+    }
+    this.prefix = kind == Kind.PREFIX ? pattern.substring( 0, firstWildcard ) : pattern;
+  }
+
+  /**
+   * Get the compiled form of the given pattern, compiled patterns are cached.
+   *
+   * @param pattern The IAM pattern
+   * @return The compiled pattern
+   */
+  @Nonnull
+  public static PolicyPattern of( @Nonnull final String pattern ) {
+    try {
+      return patternCache.get( pattern );
+    } catch ( final ExecutionException e ) {
+      // not expected, compilation does not throw checked exceptions
+      return new PolicyPattern( pattern );
+    }
+  }
+
+  /**
+   * Compile a pattern without caching, for patterns that are held by the caller.
+   */
+  @Nonnull
+  public static PolicyPattern compile( @Nonnull final String pattern ) {
+    return new PolicyPattern( pattern );
+  }
+
+  @Nonnull
+  public String getPattern( ) {
+    return pattern;
+  }
+
+  public boolean isLiteral( ) {
+    return kind == Kind.EXACT;
+  }
+
+  public boolean matches( final String value ) {
+    if ( value == null ) {
+      return false;
+    }
+    switch ( kind ) {
+      case EXACT:
+        return pattern.equals( value );
+      case ANY:
+        return !hasLineTerminator( value, 0 ) || regex( ).matcher( value ).matches( );
+      case PREFIX:
+        return value.startsWith( prefix ) &&
+            ( !hasLineTerminator( value, prefix.length( ) ) || regex( ).matcher( value ).matches( ) );
+      default:
+        return hasLineTerminator( value, 0 ) ?
+            regex( ).matcher( value ).matches( ) :
+            globMatches( pattern, value );
+    }
+  }
+
+  @Override
+  public String toString( ) {
+    return pattern;
+  }
+
+  private Pattern regex( ) {
+    Pattern compiled = regex;
+    if ( compiled == null ) {
+      compiled = regex = Pattern.compile( PolicyUtils.toJavaPattern( pattern ) );
+    }
+    return compiled;
+  }
+
+  private static int firstWildcard( final String pattern ) {
+    for ( int i = 0; i < pattern.length( ); i++ ) {
+      final char c = pattern.charAt( i );
+      if ( c == '*' || c == '?' ) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean hasLineTerminator( final String value, final int from ) {
+    for ( int i = from; i < value.length( ); i++ ) {
+      final char c = value.charAt( i );
+      if ( c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029' ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Glob match without backtracking beyond the last *, linear for patterns with a single *
+   */
+  private static boolean globMatches( final String pattern, final String value ) {
+    int p = 0;
+    int v = 0;
+    int starP = -1;
+    int starV = 0;
+    while ( v < value.length( ) ) {
+      if ( p < pattern.length( ) && ( pattern.charAt( p ) == '?' || ( pattern.charAt( p ) != '*' && pattern.charAt( p ) == value.charAt( v ) ) ) ) {
+        p++;
+        v++;
+      } else if ( p < pattern.length( ) && pattern.charAt( p ) == '*' ) {
+        starP = p++;
+        starV = v;
+      } else if ( starP >= 0 ) {
+        p = starP + 1;
+        v = ++starV;
+      } else {
+        return false;
+      }
+    }
+    while ( p < pattern.length( ) && pattern.charAt( p ) == '*' ) {
+      p++;
+    }
+    return p == pattern.length( );
+  }
+}
@@ -62,17 +62,15 @@
 
 package com.eucalyptus.auth.policy.condition;
 
-import java.util.regex.Pattern;
 import javax.annotation.Nullable;
-import com.eucalyptus.auth.policy.PolicyUtils;
+import com.eucalyptus.auth.policy.PolicyPattern;
 
 @PolicyCondition( { Conditions.STRINGNOTLIKE, Conditions.STRINGNOTLIKE_S } )
 public class StringNotLike implements StringConditionOp {
   
   @Override
   public boolean check( @Nullable String key, String value ) {
-    String pattern = PolicyUtils.toJavaPattern( value.toLowerCase() );
-    return key == null || !Pattern.matches( pattern, key );
+    return key == null || !PolicyPattern.of( value.toLowerCase() ).matches( key );
   }
   
 }
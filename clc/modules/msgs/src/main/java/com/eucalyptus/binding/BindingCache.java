@@ -78,6 +78,7 @@ import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.net.URI;
+import java.security.CodeSource;
 import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.Collections;
@@ -89,7 +90,12 @@ import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import javax.annotation.Nullable;
@@ -160,6 +166,9 @@ public class BindingCache {
     private static final String                 BINDING_CACHE_BINDING_PREFIX = "binding.";
     private static final String                 BINDING_CACHE_DIGEST_LIST    = "classcache.properties";
     private static final File                   CACHE_LIST                   = SubDirectory.CLASSCACHE.getChildFile( BINDING_CACHE_DIGEST_LIST );
+    private static final File                   CACHE_INDEX                  = SubDirectory.CLASSCACHE.getChildFile( "index" );
+    private static final BindingClassIndex      CLASS_INDEX                  = new BindingClassIndex( CACHE_INDEX );
+    private static final Integer                SCAN_THREADS                 = Integer.getInteger( "euca.binding.scan.threads", Runtime.getRuntime( ).availableProcessors( ) );
     private final Class<?>                      MSG_BASE_CLASS;
     private final Class<?>                      MSG_DATA_CLASS;
     private static final String                 FILE_PATTERN                 = System.getProperty( "euca.binding.pattern", ".*\\-binding.xml" );
@@ -192,13 +201,27 @@ public class BindingCache {
         return true;
       } else {
         LOG.info( "Binding class cache expired, rebuilding." );
-        DeleteRecursively.PREDICATE.apply( SubDirectory.CLASSCACHE.getFile( ) );
-        if ( !SubDirectory.CLASSCACHE.getFile( ).mkdirs( ) && !SubDirectory.CLASSCACHE.getFile( ).exists( ) ) {
-          LOG.error( "Error creating class cache directory: " + SubDirectory.CLASSCACHE.getFile( ).getAbsolutePath( ) );
-        }
+        clean( );
         return false;
       }
     }
+
+    /**
+     * Remove everything from the class cache except the per-jar class index.
+     */
+    private static void clean( ) {
+      final File[] files = SubDirectory.CLASSCACHE.getFile( ).listFiles( );
+      if ( files != null ) {
+        for ( final File file : files ) {
+          if ( !CACHE_INDEX.equals( file ) ) {
+            DeleteRecursively.PREDICATE.apply( file );
+          }
+        }
+      }
+      if ( !SubDirectory.CLASSCACHE.getFile( ).mkdirs( ) && !SubDirectory.CLASSCACHE.getFile( ).exists( ) ) {
+        LOG.error( "Error creating class cache directory: " + SubDirectory.CLASSCACHE.getFile( ).getAbsolutePath( ) );
+      }
+    }
     
     enum DeleteRecursively implements Predicate<File> {
       PREDICATE;
@@ -239,12 +262,27 @@ public class BindingCache {
           propOut.close( );
         }
       } catch ( IOException ex ) {
-        DeleteRecursively.PREDICATE.apply( SubDirectory.CLASSCACHE.getFile( ) );
-        if ( !SubDirectory.CLASSCACHE.getFile( ).mkdirs( ) && !SubDirectory.CLASSCACHE.getFile( ).exists( ) ) {
-          LOG.error( "Error creating class cache directory: " + SubDirectory.CLASSCACHE.getFile( ).getAbsolutePath( ) );
-        }
+        clean( );
         throw ex;
       }
+      CLASS_INDEX.prune( );
+    }
+
+    /**
+     * Digest of the jar with the message base classes, null if not loaded from a jar.
+     */
+    @Nullable
+    private String baseDigest( ) {
+      try {
+        final CodeSource source = MSG_BASE_CLASS.getProtectionDomain( ).getCodeSource( );
+        final File file = source == null ? null : new File( source.getLocation( ).toURI( ) );
+        return file != null && file.isFile( ) ?
+            BaseEncoding.base16( ).lowerCase( ).encode( Files.hash( file, Hashing.md5( ) ).asBytes( ) ) :
+            null;
+      } catch ( final Exception ex ) {
+        LOG.warn( "Binding cache: class index disabled, unable to digest message classes: " + ex.getMessage( ) );
+        return null;
+      }
     }
 
     enum FileProcessingMode {
@@ -259,8 +297,29 @@ public class BindingCache {
       Process,
     }
 
-    public void process( final FileProcessingMode mode, File f ) throws Exception {
+    /**
+     * Result of scanning a single jar or directory, merged into the binding state in classpath order.
+     */
+    static final class ScanResult {
+      private final File                 file;
+      private final String               digest;
+      private final List<String[]>       bindings = Lists.newArrayList( );
+      private final List<Class<?>>       classes  = Lists.newArrayList( );
+
+      ScanResult( final File file, @Nullable final String digest ) {
+        this.file = file;
+        this.digest = digest;
+      }
+
+      private void addBinding( final byte[] bindingBytes, final String bindingName, final String bindingFullPath ) {
+        final String digest = BaseEncoding.base16( ).lowerCase( ).encode( Hashing.md5( ).hashBytes( bindingBytes ).asBytes( ) );
+        this.bindings.add( new String[] { bindingName, bindingFullPath, digest } );
+      }
+    }
+
+    public ScanResult scan( final FileProcessingMode mode, File f, @Nullable final String baseDigest ) throws Exception {
       if ( f.isDirectory( ) ) {
+        final ScanResult result = new ScanResult( f, null );
         File[] files = f.listFiles( new FilenameFilter( ) {
           
           @Override
@@ -270,54 +329,97 @@ public class BindingCache {
         } );
         for ( File ff : files ) {
           byte[] bindingBytes = Files.toByteArray( ff );
-          this.addCurrentBinding( bindingBytes, ff.getName( ), "file:" + ff.getAbsolutePath( ) );
+          result.addBinding( bindingBytes, ff.getName( ), "file:" + ff.getAbsolutePath( ) );
         }
+        return result;
       } else {
         byte[] digestBytes = Files.hash( f, Hashing.md5() ).asBytes( );
         String digest = BaseEncoding.base16( ).lowerCase( ).encode( digestBytes );
-        CURRENT_PROPS.put( BINDING_CACHE_JAR_PREFIX + f.getName( ), digest );
+        final ScanResult result = new ScanResult( f, digest );
+        final String indexKey = baseDigest == null ? null : BindingClassIndex.key( digest, baseDigest );
+        final List<String> indexedClasses = FileProcessingMode.Process == mode && indexKey != null ?
+            CLASS_INDEX.read( indexKey ) :
+            null;
         final JarFile jar = new JarFile( f );
         final List<JarEntry> jarList = Collections.list( jar.entries( ) );
         final ClassLoader systemClassLoader = ClassLoader.getSystemClassLoader( );
-        for ( final JarEntry j : jarList ) {
-          try {
-            if ( j.getName( ).matches( FILE_PATTERN ) ) {
-              byte[] bindingBytes = ByteStreams.toByteArray( jar.getInputStream( j ) );
-              String bindingName = j.getName( );
-              String bindingFullPath = "jar:file:" + f.getAbsolutePath( ) + "!/" + bindingName;
-              this.addCurrentBinding( bindingBytes, bindingName, bindingFullPath );
-            } else if ( FileProcessingMode.Process == mode && j.getName( ).matches( ".*\\.class.{0,1}" ) ) {
-              final String classGuess = j.getName( ).replace( '/', '.' ).replaceAll( "\\.class.{0,1}", "" );
-              final Class candidate = systemClassLoader.loadClass( classGuess );
-              if ( MSG_BASE_CLASS.isAssignableFrom( candidate ) || MSG_DATA_CLASS.isAssignableFrom( candidate ) ) {
-                ByteSource classSupplier = Resources.asByteSource( ClassLoader.getSystemResource( j.getName( ) ) );
-                File destClassFile = SubDirectory.CLASSCACHE.getChildFile( j.getName( ) );
-                if ( !destClassFile.exists( ) ) {
-                  Files.createParentDirs( destClassFile );
-                  try ( final InputStream in = classSupplier.openBufferedStream( );
-                        final OutputStream out = new FileOutputStream( destClassFile ) ) {
-                    ByteStreams.copy( in, out );
-                  }
-                  Logs.extreme( ).debug( "Caching: " + j.getName( ) + " => " + destClassFile.getAbsolutePath( ) );
+        try {
+          for ( final JarEntry j : jarList ) {
+            try {
+              if ( j.getName( ).matches( FILE_PATTERN ) ) {
+                byte[] bindingBytes = ByteStreams.toByteArray( jar.getInputStream( j ) );
+                String bindingName = j.getName( );
+                String bindingFullPath = "jar:file:" + f.getAbsolutePath( ) + "!/" + bindingName;
+                result.addBinding( bindingBytes, bindingName, bindingFullPath );
+              } else if ( FileProcessingMode.Process == mode && indexedClasses == null && j.getName( ).matches( ".*\\.class.{0,1}" ) ) {
+                final String classGuess = j.getName( ).replace( '/', '.' ).replaceAll( "\\.class.{0,1}", "" );
+                final Class candidate = systemClassLoader.loadClass( classGuess );
+                if ( MSG_BASE_CLASS.isAssignableFrom( candidate ) || MSG_DATA_CLASS.isAssignableFrom( candidate ) ) {
+                  cacheClass( j.getName( ) );
+                  result.classes.add( candidate );
                 }
-                BINDING_CLASS_MAP.putIfAbsent( classGuess, candidate );
-                BINDING_CLASS_ELEMENT_MAP.put( candidate.getSimpleName( ), candidate );
               }
+            } catch ( RuntimeException ex ) {
+              LOG.error( ex, ex );
+              throw ex;
             }
-          } catch ( RuntimeException ex ) {
-            LOG.error( ex, ex );
-            jar.close( );
-            throw ex;
           }
+        } finally {
+          jar.close( );
         }
-        jar.close( );
+        if ( indexedClasses != null ) {
+          Logs.extreme( ).debug( "Binding cache: using class index for " + f.getName( ) + " from " + CLASS_INDEX.file( indexKey ).getAbsolutePath( ) );
+          for ( final String className : indexedClasses ) {
+            cacheClass( className.replace( '.', '/' ) + ".class" );
+            result.classes.add( systemClassLoader.loadClass( className ) );
+          }
+        } else if ( FileProcessingMode.Process == mode && indexKey != null ) {
+          final List<String> classNames = Lists.newArrayList( );
+          for ( final Class<?> candidate : result.classes ) {
+            classNames.add( candidate.getName( ) );
+          }
+          CLASS_INDEX.write( indexKey, classNames );
+        }
+        return result;
+      }
+    }
+
+    /**
+     * Copy the named class resource into the class cache, unless already present.
+     */
+    private static void cacheClass( final String classFileName ) throws IOException {
+      File destClassFile = SubDirectory.CLASSCACHE.getChildFile( classFileName );
+      if ( !destClassFile.exists( ) ) {
+        ByteSource classSupplier = Resources.asByteSource( ClassLoader.getSystemResource( classFileName ) );
+        File tempClassFile = new File( destClassFile.getPath( ) + "." + Thread.currentThread( ).getId( ) );
+        Files.createParentDirs( destClassFile );
+        try ( final InputStream in = classSupplier.openBufferedStream( );
+              final OutputStream out = new FileOutputStream( tempClassFile ) ) {
+          ByteStreams.copy( in, out );
+        }
+        if ( !tempClassFile.renameTo( destClassFile ) ) {
+          LOG.error( "Error caching class: " + destClassFile.getAbsolutePath( ) );
+        }
+        Logs.extreme( ).debug( "Caching: " + classFileName + " => " + destClassFile.getAbsolutePath( ) );
+      }
+    }
+
+    private void merge( final ScanResult result ) {
+      if ( result.digest != null ) {
+        CURRENT_PROPS.put( BINDING_CACHE_JAR_PREFIX + result.file.getName( ), result.digest );
+      }
+      for ( final String[] binding : result.bindings ) {
+        this.addCurrentBinding( binding[2], binding[0], binding[1] );
+      }
+      for ( final Class<?> candidate : result.classes ) {
+        BINDING_CLASS_MAP.putIfAbsent( candidate.getName( ), candidate );
+        BINDING_CLASS_ELEMENT_MAP.put( candidate.getSimpleName( ), candidate );
       }
     }
     
-    private void addCurrentBinding( byte[] bindingBytes, String bindingName, String bindingFullPath ) {
+    private void addCurrentBinding( String digest, String bindingName, String bindingFullPath ) {
       LOG.debug( "Binding cache: loading binding from: " + bindingFullPath );
       BINDING_LIST.add( URI.create( bindingFullPath ) );
-      String digest = BaseEncoding.base16( ).lowerCase( ).encode( Hashing.md5( ).hashBytes( bindingBytes ).asBytes( ) );
       String entryName = BINDING_CACHE_BINDING_PREFIX + bindingName;
       if ( !CURRENT_PROPS.containsKey( entryName ) ) {
         CURRENT_PROPS.put( entryName, digest );
@@ -379,14 +481,23 @@ public class BindingCache {
       }
     }
     
+    private static long logPhase( final String phase, final long start ) {
+      final long now = System.currentTimeMillis( );
+      LOG.info( "Binding cache: " + phase + " took " + ( now - start ) + "ms" );
+      return now;
+    }
+
     public static void compile( ) {
+      long phaseStart = System.currentTimeMillis( );
       LOG.info( "Binding cache: scanning message and binding files." );
       processFiles( FileProcessingMode.Scan );
+      phaseStart = logPhase( "scanning", phaseStart );
       if ( BindingFileSearch.INSTANCE.check( ) ) {
         LOG.info( "Binding cache: nothing to do." );
       } else {
         LOG.info( "Binding cache: processing message and binding files." );
         processFiles( FileProcessingMode.Process );
+        phaseStart = logPhase( "processing", phaseStart );
         LOG.info( "Binding cache: regenerating cache." );
         try {
           LOG.info( "Binding cache: generating internal bindings." );
@@ -401,11 +512,13 @@ public class BindingCache {
           byte[] digestBytes = Files.hash( gen.getOutFile( ), Hashing.md5() ).asBytes( );
           String digest = BaseEncoding.base16( ).lowerCase( ).encode( digestBytes );
           CURRENT_PROPS.put( BINDING_CACHE_BINDING_PREFIX + gen.getOutFile( ).getName( ), digest );
+          phaseStart = logPhase( "generating internal bindings", phaseStart );
           LOG.info( "Binding cache: populating cache from transitive closure of bindings." );
           // load *-binding.xml, populate cache w/ all referenced files
           BindingFileSearch.reset( Utility.getClassPaths( ) );
           Iterables.all( BindingFileSearch.BINDING_LIST, BindingFileSearch.INSTANCE );
           BindingFileSearch.reset( Utility.getClassPaths( ) );
+          phaseStart = logPhase( "populating cache", phaseStart );
           LOG.info( "Binding cache: loading and validating bindings." );
           Map<URI, BindingDefinition> bindingDefs = Maps.newTreeMap( );
 
@@ -416,6 +529,7 @@ public class BindingCache {
             bindingDefs.put( binding, def );
             def.print( );
           }
+          phaseStart = logPhase( "loading and validating bindings", phaseStart );
           LOG.info( "Binding cache: compiling bindings." );
           for ( Entry<URI, BindingDefinition> def : bindingDefs.entrySet( ) ) {
             try {
@@ -437,6 +551,7 @@ public class BindingCache {
           LOG.info( "Binding cache: kept " + lists[1].length + " files unchanged:" );
           LOG.info( "Binding cache: deleted " + lists[2].length + " files:" );
           BindingFileSearch.INSTANCE.store( );
+          logPhase( "compiling bindings", phaseStart );
           System.exit( 123 );//success! now we restart.
         } catch ( Exception ex ) {
           LOG.error( ex, ex );
@@ -446,29 +561,53 @@ public class BindingCache {
       }
     }
 
+    /**
+     * Scan service jars and classpath directories in parallel, merging results in classpath order.
+     */
     public static void processFiles( final FileProcessingMode mode ) {
       BindingFileSearch.CURRENT_PROPS.clear( );
+      CLASS_INDEX.clearUsed( );
+      final String baseDigest = BindingFileSearch.INSTANCE.baseDigest( );
+      final List<File> files = Lists.newArrayList( );
       final File libDir = new File( BaseDirectory.LIB.toString( ) );
       for ( final File f : libDir.listFiles( ) ) {
         if ( f.getName( ).startsWith( "eucalyptus" ) && f.getName( ).endsWith( ".jar" )
              && !f.getName( ).matches( ".*-ext-.*" ) ) {
-          EventRecord.here( ServiceJarDiscovery.class, EventType.BOOTSTRAP_INIT_SERVICE_JAR, f.getName( ) ).info( );
-          try {
-            BindingFileSearch.INSTANCE.process( mode, f );
-          } catch ( final Throwable e ) {
-            LOG.error( e.getMessage( ) );
-          }
+          files.add( f );
         }
       }
       for ( String pathName : ClassPath.getClassPath( ).split( File.pathSeparator ) ) {
         File pathFile = new File( pathName );
         if ( pathFile.isDirectory( ) ) {
+          files.add( pathFile );
+        }
+      }
+      final ExecutorService executor = Executors.newFixedThreadPool( Math.max( 1, SCAN_THREADS ) );
+      try {
+        final List<Future<ScanResult>> results = Lists.newArrayList( );
+        for ( final File f : files ) {
+          results.add( executor.submit( new Callable<ScanResult>( ) {
+            @Override
+            public ScanResult call( ) throws Exception {
+              if ( !f.isDirectory( ) ) {
+                EventRecord.here( ServiceJarDiscovery.class, EventType.BOOTSTRAP_INIT_SERVICE_JAR, f.getName( ) ).info( );
+              }
+              return BindingFileSearch.INSTANCE.scan( mode, f, baseDigest );
+            }
+          } ) );
+        }
+        for ( final Future<ScanResult> result : results ) {
           try {
-            BindingFileSearch.INSTANCE.process( mode, pathFile );
-          } catch ( final Throwable e ) {
-            LOG.error( e.getMessage( ) );
+            BindingFileSearch.INSTANCE.merge( result.get( ) );
+          } catch ( final ExecutionException e ) {
+            LOG.error( e.getCause( ).getMessage( ) );
+          } catch ( final InterruptedException e ) {
+            Thread.currentThread( ).interrupt( );
+            throw Exceptions.toUndeclared( e );
           }
         }
+      } finally {
+        executor.shutdownNow( );
       }
     }
     
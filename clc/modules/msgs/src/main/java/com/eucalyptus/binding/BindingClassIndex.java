@@ -0,0 +1,120 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.binding;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.apache.log4j.Logger;
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+
+/**
+ * Index of the message classes found in each jar.
+ *
+ * Whether a class is a message depends on its supertypes, so entries are
+ * keyed by the digest of the jar and the digest of the jar with the message
+ * base classes. The index survives cache rebuilds so that only new or
+ * modified jars need to have all their classes loaded.
+ */
+class BindingClassIndex {
+
+  private static final Logger LOG = Logger.getLogger( BindingClassIndex.class );
+
+  private static final String SUFFIX = ".classes";
+
+  private final File directory;
+  private final Set<String> used = Sets.newSetFromMap( Maps.<String,Boolean>newConcurrentMap( ) );
+
+  BindingClassIndex( final File directory ) {
+    this.directory = directory;
+  }
+
+  /**
+   * Key for the classes in a jar.
+   *
+   * @param digest The digest of the jar
+   * @param baseDigest The digest of the jar with the message base classes
+   * @return The key
+   */
+  static String key( final String digest, final String baseDigest ) {
+    return digest + "-" + baseDigest;
+  }
+
+  /**
+   * Read the class names for the given key.
+   *
+   * @return The class names or null if not indexed
+   */
+  @Nullable
+  List<String> read( final String key ) throws IOException {
+    final File indexFile = file( key );
+    if ( indexFile.isFile( ) ) {
+      used.add( key );
+      return Files.readLines( indexFile, Charsets.UTF_8 );
+    }
+    return null;
+  }
+
+  void write( final String key, final List<String> classNames ) throws IOException {
+    final File indexFile = file( key );
+    final File tempIndexFile = new File( directory, key + SUFFIX + ".tmp" );
+    Files.createParentDirs( tempIndexFile );
+    Files.write( Joiner.on( '\n' ).join( classNames ), tempIndexFile, Charsets.UTF_8 );
+    if ( tempIndexFile.renameTo( indexFile ) ) {
+      used.add( key );
+    } else {
+      LOG.error( "Error writing binding class index: " + indexFile.getAbsolutePath( ) );
+    }
+  }
+
+  File file( final String key ) {
+    return new File( directory, key + SUFFIX );
+  }
+
+  /**
+   * Forget which entries were used, call before scanning.
+   */
+  void clearUsed( ) {
+    used.clear( );
+  }
+
+  /**
+   * Remove entries not read or written since the last scan.
+   */
+  void prune( ) {
+    final File[] files = directory.listFiles( );
+    if ( files != null ) {
+      for ( final File file : files ) {
+        final String name = file.getName( );
+        final boolean current = name.endsWith( SUFFIX ) &&
+            used.contains( name.substring( 0, name.length( ) - SUFFIX.length( ) ) );
+        if ( !current && !file.delete( ) ) {
+          LOG.error( "Unable to delete file: " + file.getAbsolutePath( ) );
+        }
+      }
+    }
+  }
+}
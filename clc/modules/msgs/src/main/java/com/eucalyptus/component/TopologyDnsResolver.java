@@ -65,8 +65,6 @@ package com.eucalyptus.component;
 import static com.eucalyptus.util.dns.DnsResolvers.DnsRequest;
 
 import java.net.InetAddress;
-import java.net.InterfaceAddress;
-import java.net.NetworkInterface;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -90,6 +88,7 @@ import com.eucalyptus.util.dns.DnsResolvers.DnsResponse;
 import com.eucalyptus.util.dns.DnsResolvers.RequestType;
 import com.eucalyptus.util.dns.DomainNameRecords;
 import com.eucalyptus.util.dns.DomainNames;
+import com.eucalyptus.util.dns.NameserverResolver;
 import com.google.common.base.CharMatcher;
 import com.google.common.base.Function;
 import com.google.common.base.Functions;
@@ -358,29 +357,12 @@ public class TopologyDnsResolver extends DnsResolver {
     return this.getClass( ).getSimpleName( );
   }
 
-  @SuppressWarnings( "ConstantConditions" )
+  /**
+   * Map the host address to one on the listener network, using cached interface details.
+   */
   public static InetAddress maphost( final InetAddress listenerAddress,
                                      final InetAddress hostAddress ) {
-    InetAddress result = hostAddress;
-    try{
-      final NetworkInterface networkInterface = NetworkInterface.getByInetAddress(listenerAddress);
-      short prefix = networkInterface.getInterfaceAddresses().get(0).getNetworkPrefixLength();
-      for(final InterfaceAddress ifaddr : networkInterface.getInterfaceAddresses()){
-        if (listenerAddress.equals(ifaddr.getAddress())) {
-          prefix= ifaddr.getNetworkPrefixLength();
-          break;
-        }
-      }
-      final Cidr listenerCidr = Cidr.fromAddress(listenerAddress, prefix);
-      final Host host = Hosts.lookup(hostAddress);
-      if( host != null ) {
-        result = Iterables.tryFind(host.getHostAddresses(), listenerCidr).or(result);
-      }
-    }
-    catch(final Exception ex){
-      LOG.error("failed to map the host address: " + ex.getMessage());
-    }
-    return result;
+    return NameserverResolver.maphost( listenerAddress, hostAddress );
   }
 
   private static Map<Cidr,Cidr> parse( final Function<String,Cidr> cidrTransform,
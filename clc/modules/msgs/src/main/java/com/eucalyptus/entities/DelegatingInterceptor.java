@@ -64,14 +64,22 @@ package com.eucalyptus.entities;
 
 import java.io.Serializable;
 import java.util.Iterator;
+import java.util.Set;
 import org.hibernate.CallbackException;
 import org.hibernate.EntityMode;
 import org.hibernate.Interceptor;
 import org.hibernate.Transaction;
+import org.hibernate.collection.spi.PersistentCollection;
 import org.hibernate.type.Type;
+import com.google.common.collect.Sets;
 
+/**
+ * Session scoped interceptor, tracks changed entity classes for
+ * {@link EntityChanges}.
+ */
 public class DelegatingInterceptor implements Interceptor {
   private final Interceptor interceptor;
+  private final Set<Class<?>> changedClasses = Sets.newHashSet( );
   
   public DelegatingInterceptor( ) {
     this.interceptor = Interceptors.get( );
@@ -87,26 +95,32 @@ public class DelegatingInterceptor implements Interceptor {
   }
   
   public boolean onFlushDirty( Object entity, Serializable id, Object[] currentState, Object[] previousState, String[] propertyNames, Type[] types ) throws CallbackException {
+    changed( entity );
     return this.interceptor.onFlushDirty( entity, id, currentState, previousState, propertyNames, types );
   }
   
   public boolean onSave( Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types ) throws CallbackException {
+    changed( entity );
     return this.interceptor.onSave( entity, id, state, propertyNames, types );
   }
   
   public void onDelete( Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types ) throws CallbackException {
+    changed( entity );
     this.interceptor.onDelete( entity, id, state, propertyNames, types );
   }
   
   public void onCollectionRecreate( Object collection, Serializable key ) throws CallbackException {
+    collectionChanged( collection );
     this.interceptor.onCollectionRecreate( collection, key );
   }
   
   public void onCollectionRemove( Object collection, Serializable key ) throws CallbackException {
+    collectionChanged( collection );
     this.interceptor.onCollectionRemove( collection, key );
   }
   
   public void onCollectionUpdate( Object collection, Serializable key ) throws CallbackException {
+    collectionChanged( collection );
     this.interceptor.onCollectionUpdate( collection, key );
   }
   
@@ -147,11 +161,29 @@ public class DelegatingInterceptor implements Interceptor {
   }
   
   public void afterTransactionCompletion( Transaction tx ) {
+    try {
+      if ( !changedClasses.isEmpty( ) && tx.wasCommitted( ) ) {
+        EntityChanges.changed( changedClasses );
+      }
+    } finally {
+      changedClasses.clear( );
+    }
     this.interceptor.afterTransactionCompletion( tx );
   }
   
   public String onPrepareStatement( String sql ) {
     return this.interceptor.onPrepareStatement( sql );
   }
-  
+
+  private void changed( final Object entity ) {
+    if ( entity != null ) {
+      changedClasses.add( entity.getClass( ) );
+    }
+  }
+
+  private void collectionChanged( final Object collection ) {
+    if ( collection instanceof PersistentCollection ) {
+      changed( ( (PersistentCollection) collection ).getOwner( ) );
+    }
+  }
 }
@@ -1097,7 +1097,9 @@ public class Entities {
       for ( final Entry<String,?> entry : parameters.entrySet() ) {
         query.setParameter( entry.getKey(), entry.getValue() );
       }
-      return query.executeUpdate();
+      final int deleted = query.executeUpdate();
+      if ( deleted > 0 ) EntityChanges.changeOnCommit( deleteClass );
+      return deleted;
     } catch ( Exception e ) {
       LOG.error( deleteClass, e );
       throw Exceptions.toUndeclared( e );
@@ -3051,7 +3053,9 @@ public class Entities {
      * @return The count of entities deleted.
      */
     public int delete( ) {
-      return context.em.createQuery( context.delete ).executeUpdate( );
+      final int deleted = context.em.createQuery( context.delete ).executeUpdate( );
+      if ( deleted > 0 ) EntityChanges.changeOnCommit( context.entityClass );
+      return deleted;
     }
   }
 }
@@ -25,6 +25,7 @@ import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import org.hibernate.Criteria;
 import org.hibernate.FetchMode;
 import org.hibernate.criterion.Criterion;
@@ -41,7 +42,14 @@ import com.google.common.collect.Ordering;
 import com.google.common.collect.Sets;
 
 /**
+ * Cache of transformed entities, refreshed using entity versions.
  *
+ * <p>By default each get checks the versions of all matching entities. If
+ * a maximum age is configured the cached values are returned without
+ * checking when there are no changes for the entity class (see
+ * {@link EntityChanges}) and the values are not older than the maximum
+ * age. The maximum age bounds staleness for changes that are not tracked,
+ * such as changes made by other hosts.</p>
  */
 public class EntityCache<E extends AbstractPersistent, TE extends Comparable<TE>> implements Supplier<Iterable<TE>> {
 
@@ -51,7 +59,10 @@ public class EntityCache<E extends AbstractPersistent, TE extends Comparable<TE>
   private final Set<String> eagerAssociationPaths;
   private final Set<String> lazyAssociationPaths;
   private final Function<? super E,TE> transformFunction;
+  private final long maxAgeMillis;
   private final ConcurrentMap<Pair<String,Integer>,TE> cache = Maps.newConcurrentMap( );
+  private final Object refreshLock = new Object( );
+  private volatile Snapshot<TE> snapshot;
 
   /**
    * Create an entity cache for the given example.
@@ -69,6 +80,28 @@ public class EntityCache<E extends AbstractPersistent, TE extends Comparable<TE>
         transformFunction );
   }
 
+  /**
+   * Create a change notified entity cache for the given example.
+   *
+   * @param example The example object
+   * @param transformFunction Function to transform to immutable cache format
+   * @param maxAge The maximum age for cached values when there are no changes
+   * @param maxAgeUnit The unit for the maximum age
+   */
+  public EntityCache( final E example,
+                      final Function<? super E,TE> transformFunction,
+                      final long maxAge,
+                      final TimeUnit maxAgeUnit ) {
+    this(
+        example,
+        Restrictions.conjunction( ),
+        Collections.<String>emptySet( ),
+        Collections.<String>emptySet( ),
+        transformFunction,
+        maxAge,
+        maxAgeUnit );
+  }
+
   /**
    * Create an entity cache for the given example.
    *
@@ -83,11 +116,33 @@ public class EntityCache<E extends AbstractPersistent, TE extends Comparable<TE>
                       final Set<String> eagerAssociationPaths,
                       final Set<String> lazyAssociationPaths,
                       final Function<? super E,TE> transformFunction ) {
+    this( example, criterion, eagerAssociationPaths, lazyAssociationPaths, transformFunction, 0, TimeUnit.MILLISECONDS );
+  }
+
+  /**
+   * Create a change notified entity cache for the given example.
+   *
+   * @param example The example object
+   * @param criterion Additional criterion
+   * @param eagerAssociationPaths Paths to be eagerly loaded
+   * @param lazyAssociationPaths Paths to be lazily (or not) loaded
+   * @param transformFunction Function to transform to immutable cache format
+   * @param maxAge The maximum age for cached values when there are no changes, zero to always check versions
+   * @param maxAgeUnit The unit for the maximum age
+   */
+  public EntityCache( final E example,
+                      final Criterion criterion,
+                      final Set<String> eagerAssociationPaths,
+                      final Set<String> lazyAssociationPaths,
+                      final Function<? super E,TE> transformFunction,
+                      final long maxAge,
+                      final TimeUnit maxAgeUnit ) {
     this.example = example;
     this.criterion = criterion;
     this.eagerAssociationPaths = eagerAssociationPaths;
     this.lazyAssociationPaths = lazyAssociationPaths;
     this.transformFunction = transformFunction;
+    this.maxAgeMillis = maxAgeUnit.toMillis( maxAge );
   }
 
   @SuppressWarnings( "unchecked" )
@@ -106,11 +161,15 @@ public class EntityCache<E extends AbstractPersistent, TE extends Comparable<TE>
     }
   }
 
+  /**
+   * @return True if the cache was modified
+   */
   @SuppressWarnings( { "unchecked", "ConstantConditions" } )
-  private void refresh( ) {
+  private boolean refresh( ) {
     final Collection<Pair<String,Integer>> currentKeys = loadVersionMap( );
-    cache.keySet( ).retainAll( currentKeys );
+    boolean modified = cache.keySet( ).retainAll( currentKeys );
     currentKeys.removeAll( cache.keySet( ) );
+    modified |= !currentKeys.isEmpty( );
     for ( final List<Pair<String,Integer>> keyBatch : Iterables.partition( currentKeys, batchSize ) ) {
       try ( final TransactionResource db = Entities.readOnlyDistinctTransactionFor( example ) ) {
         final Criteria criteria =  Entities.createCriteria( example.getClass( ) )
@@ -126,18 +185,58 @@ public class EntityCache<E extends AbstractPersistent, TE extends Comparable<TE>
         }
       }
     }
+    return modified;
   }
 
+  /**
+   * Get the sorted cached values.
+   *
+   * @return The immutable values
+   */
   @Override
   public Iterable<TE> get( ) {
-    refresh( );
-    return Ordering.natural( ).sortedCopy( cache.values( ) );
+    final Snapshot<TE> current = snapshot;
+    if ( isValid( current ) ) {
+      return current.values;
+    }
+    synchronized ( refreshLock ) {
+      final Snapshot<TE> latest = snapshot;
+      if ( latest != current && isValid( latest ) ) {
+        return latest.values;
+      }
+      final long changeVersion = EntityChanges.version( example.getClass( ) );
+      final long timestamp = System.currentTimeMillis( );
+      final List<TE> values = refresh( ) || latest == null ?
+          Collections.unmodifiableList( Ordering.natural( ).sortedCopy( cache.values( ) ) ) :
+          latest.values;
+      snapshot = new Snapshot<>( changeVersion, timestamp, values );
+      return values;
+    }
+  }
+
+  private boolean isValid( final Snapshot<TE> snapshot ) {
+    return maxAgeMillis > 0 &&
+        snapshot != null &&
+        snapshot.changeVersion == EntityChanges.version( example.getClass( ) ) &&
+        ( System.currentTimeMillis( ) - snapshot.timestamp ) < maxAgeMillis;
   }
 
   private String getId( final E entity ) {
     return Objects.toString( Entities.resolvePrimaryKey( entity ) );
   }
 
+  private static final class Snapshot<TE> {
+    private final long changeVersion;
+    private final long timestamp;
+    private final List<TE> values;
+
+    private Snapshot( final long changeVersion, final long timestamp, final List<TE> values ) {
+      this.changeVersion = changeVersion;
+      this.timestamp = timestamp;
+      this.values = values;
+    }
+  }
+
   private enum ObjectArrayToStringIntPair implements Function<Object[],Pair<String,Integer>> {
     INSTANCE;
 
@@ -0,0 +1,103 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.entities;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Change counters for entity classes.
+ *
+ * <p>Counters are incremented after commit of a transaction that inserted,
+ * updated or deleted entities of a class (or subclass), so an unchanged
+ * counter value means there were no committed changes via this JVM.</p>
+ *
+ * <p>Changes made by other hosts, native SQL or HQL updates are not
+ * tracked.</p>
+ *
+ * @see DelegatingInterceptor
+ */
+public class EntityChanges {
+
+  private static final ConcurrentMap<Class<?>,AtomicLong> counters = Maps.newConcurrentMap( );
+
+  /**
+   * Get the current change counter for the given entity class.
+   *
+   * @param entityClass The entity class
+   * @return The counter value
+   */
+  public static long version( @Nonnull final Class<?> entityClass ) {
+    return counter( entityClass ).get( );
+  }
+
+  /**
+   * Record changes for entities of the given class when the current
+   * transaction commits.
+   *
+   * <p>Use this for bulk operations that are not seen by the interceptor.</p>
+   *
+   * @param entityClass The entity class
+   */
+  public static void changeOnCommit( @Nonnull final Class<?> entityClass ) {
+    Entities.registerSynchronization( entityClass, new Synchronization( ) {
+      @Override
+      public void beforeCompletion( ) { }
+
+      @Override
+      public void afterCompletion( final int status ) {
+        if ( status == Status.STATUS_COMMITTED ) {
+          changed( ImmutableSet.<Class<?>>of( entityClass ) );
+        }
+      }
+    } );
+  }
+
+  static void changed( final Set<Class<?>> entityClasses ) {
+    final Set<Class<?>> changedClasses = Sets.newHashSet( );
+    for ( final Class<?> entityClass : entityClasses ) {
+      for ( Class<?> current = entityClass; current != null && current != Object.class; current = current.getSuperclass( ) ) {
+        changedClasses.add( current );
+      }
+    }
+    for ( final Class<?> changedClass : changedClasses ) {
+      counter( changedClass ).incrementAndGet( );
+    }
+  }
+
+  private static AtomicLong counter( final Class<?> entityClass ) {
+    AtomicLong counter = counters.get( entityClass );
+    if ( counter == null ) {
+      final AtomicLong newCounter = new AtomicLong( );
+      counter = counters.putIfAbsent( entityClass, newCounter );
+      if ( counter == null ) {
+        counter = newCounter;
+      }
+    }
+    return counter;
+  }
+}
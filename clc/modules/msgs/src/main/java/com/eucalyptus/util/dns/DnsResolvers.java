@@ -106,6 +106,7 @@ public class DnsResolvers extends ServiceJarDiscovery {
                                     + "See 'euca-describe-properties dns'." )
   public static Boolean enabled = Boolean.TRUE;
   private static final ClassToInstanceMap<DnsResolver> resolvers = MutableClassToInstanceMap.create( );
+  private static volatile List<DnsResolver> orderedResolvers = Collections.emptyList( );
   
   public enum RequestType implements Predicate<Record> {
     A( 1 ),
@@ -444,8 +445,8 @@ public class DnsResolvers extends ServiceJarDiscovery {
   /**
    * Returns the list of resolvers which accept the name from the given source address.
    */
-  private static Iterable<DnsResolver> resolversFor( final DnsRequest request ) {
-    final List<DnsResolver> acceptingResolvers = Lists.newArrayList(Collections2.filter( resolvers.values( ), new Predicate<DnsResolver>( ) {
+  private static List<DnsResolver> resolversFor( final DnsRequest request ) {
+    return Lists.newArrayList( Iterables.filter( orderedResolvers, new Predicate<DnsResolver>( ) {
       @Override
       public boolean apply( final DnsResolver input ) {
         try {
@@ -454,13 +455,12 @@ public class DnsResolvers extends ServiceJarDiscovery {
           return false;
         }
       }
-    } ));
-    Collections.sort(acceptingResolvers, new OrderComparator( ) );
-    return acceptingResolvers;
+    } ) );
   }
   
   private static SetResponse lookupRecords( final Message response,
-                                            final DnsRequest request ) {
+                                            final DnsRequest request,
+                                            final List<DnsResolver> resolverList ) {
     final Record query = request.getQuery( );
     final InetAddress source = request.getRemoteAddress( );
     final Name name = query.getName( );
@@ -468,7 +468,7 @@ public class DnsResolvers extends ServiceJarDiscovery {
     response.getHeader( ).setFlag( Flags.RA );// always mark the response w/ the recursion available
 // bit
     LOG.debug( "DnsResolver: " + RequestType.typeOf( type ) + " " + name );
-    for ( final DnsResolver r : DnsResolvers.resolversFor( request ) ) {
+    for ( final DnsResolver r : resolverList ) {
       try {
         final DnsResponse reply = r.lookupRecords( request );
         if ( reply == null ) {
@@ -515,6 +515,9 @@ public class DnsResolvers extends ServiceJarDiscovery {
       try {
         final DnsResolver resolver = ( DnsResolver ) candidate.newInstance( );
         resolvers.putInstance( candidate, resolver );
+        final List<DnsResolver> ordered = Lists.newArrayList( resolvers.values( ) );
+        Collections.sort( ordered, new OrderComparator( ) );
+        orderedResolvers = ordered;
         return true;
       } catch ( final Exception ex ) {
         LOG.error( "Failed to create instance of DnsResolver: "
@@ -537,11 +540,11 @@ public class DnsResolvers extends ServiceJarDiscovery {
       if ( !enabled || !Bootstrap.isOperational( ) ) {
         return SetResponse.ofType( SetResponse.UNKNOWN );
       } else {
-        final Iterable<DnsResolver> resolverList = DnsResolvers.resolversFor( request );
-        if ( Iterables.isEmpty( resolverList ) ) {
+        final List<DnsResolver> resolverList = DnsResolvers.resolversFor( request );
+        if ( resolverList.isEmpty( ) ) {
           return SetResponse.ofType( SetResponse.NXDOMAIN );
         } else {
-          return DnsResolvers.lookupRecords( response, request );
+          return DnsResolvers.lookupRecords( response, request, resolverList );
         }
       }
     } catch ( final Exception ex ) {
@@ -0,0 +1,210 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.util.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram for non-negative long values with fixed memory.
+ *
+ * <p>Values below 64 are counted exactly, larger values are counted in
+ * buckets of 32 per power of two so the relative error of a percentile is
+ * below 3.2%. Count, sum, minimum and maximum are exact.</p>
+ *
+ * <p>Counts are striped by thread to reduce contention, recording does not
+ * allocate.</p>
+ */
+public class LogLinearHistogram {
+
+  private static final int SUB_BUCKET_BITS = 6;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT >> 1;
+  private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + ( 63 - SUB_BUCKET_BITS ) * SUB_BUCKET_HALF_COUNT;
+  private static final int STRIPES = Integer.highestOneBit( Math.max( 1, Math.min( 8, Runtime.getRuntime( ).availableProcessors( ) ) ) );
+
+  private final AtomicLongArray counts = new AtomicLongArray( STRIPES * BUCKET_COUNT );
+  private final LongAdder sum = new LongAdder( );
+  private final AtomicLong min = new AtomicLong( Long.MAX_VALUE );
+  private final AtomicLong max = new AtomicLong( Long.MIN_VALUE );
+  private long[] intervalCounts = new long[ BUCKET_COUNT ];
+  private long intervalSum = 0;
+
+  /**
+   * Record a value, negative values are ignored.
+   */
+  public void record( final long value ) {
+    if ( value < 0 ) return;
+    final int stripe = (int) ( Thread.currentThread( ).getId( ) & ( STRIPES - 1 ) );
+    counts.incrementAndGet( stripe * BUCKET_COUNT + index( value ) );
+    sum.add( value );
+    long current;
+    while ( value < ( current = min.get( ) ) && !min.compareAndSet( current, value ) );
+    while ( value > ( current = max.get( ) ) && !max.compareAndSet( current, value ) );
+  }
+
+  /**
+   * Snapshot of all values recorded since creation or reset.
+   */
+  public Snapshot snapshot( ) {
+    final long[] bucketCounts = new long[ BUCKET_COUNT ];
+    collect( bucketCounts );
+    return new Snapshot( bucketCounts, sum.sum( ), min.get( ), max.get( ) );
+  }
+
+  /**
+   * Snapshot of values recorded since the previous interval snapshot.
+   *
+   * <p>The minimum and maximum of an interval snapshot are approximated by
+   * the bucket bounds.</p>
+   */
+  public synchronized Snapshot intervalSnapshot( ) {
+    final long[] bucketCounts = new long[ BUCKET_COUNT ];
+    collect( bucketCounts );
+    final long currentSum = sum.sum( );
+    final long[] delta = new long[ BUCKET_COUNT ];
+    long lowest = Long.MAX_VALUE;
+    long highest = Long.MIN_VALUE;
+    for ( int i = 0; i < BUCKET_COUNT; i++ ) {
+      delta[ i ] = Math.max( 0, bucketCounts[ i ] - intervalCounts[ i ] );
+      if ( delta[ i ] > 0 ) {
+        lowest = Math.min( lowest, lowestValue( i ) );
+        highest = Math.max( highest, highestValue( i ) );
+      }
+    }
+    final Snapshot snapshot = new Snapshot( delta, currentSum - intervalSum, lowest, highest );
+    intervalCounts = bucketCounts;
+    intervalSum = currentSum;
+    return snapshot;
+  }
+
+  /**
+   * Reset the histogram, values recorded concurrently may be lost.
+   */
+  public synchronized void reset( ) {
+    for ( int i = 0; i < counts.length( ); i++ ) {
+      counts.set( i, 0 );
+    }
+    sum.reset( );
+    min.set( Long.MAX_VALUE );
+    max.set( Long.MIN_VALUE );
+    intervalCounts = new long[ BUCKET_COUNT ];
+    intervalSum = 0;
+  }
+
+  private void collect( final long[] bucketCounts ) {
+    for ( int stripe = 0; stripe < STRIPES; stripe++ ) {
+      final int offset = stripe * BUCKET_COUNT;
+      for ( int i = 0; i < BUCKET_COUNT; i++ ) {
+        bucketCounts[ i ] += counts.get( offset + i );
+      }
+    }
+  }
+
+  static int index( final long value ) {
+    if ( value < SUB_BUCKET_COUNT ) {
+      return (int) value;
+    }
+    final int exponent = 63 - Long.numberOfLeadingZeros( value );
+    final int shift = exponent - ( SUB_BUCKET_BITS - 1 );
+    final int mantissa = (int) ( value >>> shift );
+    return SUB_BUCKET_COUNT + ( exponent - SUB_BUCKET_BITS ) * SUB_BUCKET_HALF_COUNT + ( mantissa - SUB_BUCKET_HALF_COUNT );
+  }
+
+  static long lowestValue( final int index ) {
+    if ( index < SUB_BUCKET_COUNT ) {
+      return index;
+    }
+    final int offset = index - SUB_BUCKET_COUNT;
+    final int shift = offset / SUB_BUCKET_HALF_COUNT + 1;
+    final long mantissa = SUB_BUCKET_HALF_COUNT + offset % SUB_BUCKET_HALF_COUNT;
+    return mantissa << shift;
+  }
+
+  static long highestValue( final int index ) {
+    if ( index < SUB_BUCKET_COUNT ) {
+      return index;
+    }
+    final int offset = index - SUB_BUCKET_COUNT;
+    final int shift = offset / SUB_BUCKET_HALF_COUNT + 1;
+    return lowestValue( index ) + ( ( 1L << shift ) - 1 );
+  }
+
+  public static final class Snapshot {
+    private final long[] bucketCounts;
+    private final long count;
+    private final long sum;
+    private final long min;
+    private final long max;
+
+    private Snapshot( final long[] bucketCounts, final long sum, final long min, final long max ) {
+      long count = 0;
+      for ( final long bucketCount : bucketCounts ) {
+        count += bucketCount;
+      }
+      this.bucketCounts = bucketCounts;
+      this.count = count;
+      this.sum = sum;
+      this.min = count == 0 ? 0 : min;
+      this.max = count == 0 ? 0 : max;
+    }
+
+    public long getCount( ) {
+      return count;
+    }
+
+    public long getMin( ) {
+      return min;
+    }
+
+    public long getMax( ) {
+      return max;
+    }
+
+    /**
+     * Mean of the values, NaN if the sum exceeded Long.MAX_VALUE.
+     */
+    public double getMean( ) {
+      if ( count == 0 ) return 0.0;
+      if ( sum < 0 ) return Double.NaN;
+      return sum / (double) count;
+    }
+
+    /**
+     * Value at the given percentile using the nearest rank method.
+     *
+     * @param percentile The percentile, 0 to 100
+     * @return The highest value equivalent to the nearest rank value
+     */
+    public long getValueAtPercentile( final double percentile ) {
+      if ( count == 0 ) return 0;
+      final long rank = Math.max( 1, (long) Math.ceil( Math.min( 100.0, Math.max( 0.0, percentile ) ) / 100.0 * count ) );
+      long seen = 0;
+      for ( int i = 0; i < bucketCounts.length; i++ ) {
+        seen += bucketCounts[ i ];
+        if ( seen >= rank ) {
+          return Math.max( min, Math.min( max, highestValue( i ) ) );
+        }
+      }
+      return max;
+    }
+  }
+}
@@ -29,11 +29,12 @@ public enum MonitoredAction {
   CLUSTER_LIST_METRIC_MANAGER_CALL_PUT_METRIC_DATA("Cluster:Timing:ListMetricManager.callPutMetricData():time"),
   CLUSTER_TIMING("Cluster:Timing:time"),
   PUT_DATA_QUEUE_SIZE("PutMetricDataQueue:Timing:dataBatch.size"),
-  PUT_DATA_QUEUE_CONVERT("PutMetricDataQueue:Timing:dataBatch.convertToSimpleDataBatch():time"),
   PUT_DATA_QUEUE_AGGREGATE("PutMetricDataQueue:Timing:dataBatch.aggregate():time"),
   PUT_DATA_QUEUE_MERTIC_ADD_BATCH("PutMetricDataQueue:Timing:dataBatch.MetricManager.addMetricBatch():time"),
   PUT_DATA_QUEUE_MERTIC_QUEUE_ADDALL("PutMetricDataQueue:Timing:ListMetricQueue.addAll():time"),
   PUT_DATA_TIMING("PutMetricDataQueue:Timing:time"),
+  PUT_DATA_SHARD_FLUSH_SIZE("PutMetricDataQueue:Timing:shard.flush.size"),
+  PUT_DATA_QUEUE_REJECTED("PutMetricDataQueue:Timing:dataBatch.rejected.size"),
   LIST_METRIC_SIZE("ListMetricQueue:Timing:dataBatch.size"),
   LIST_METRIC_PRUNE("ListMetricQueue:Timing:dataBatch.pruneDuplicates:time"),
   LIST_METRIC_CONVERT("ListMetricQueue:Timing:convertToListMetrics:time"),
@@ -46,7 +47,9 @@ public enum MonitoredAction {
   EXPORT_VOLUME("Export Volume"),
   UNEXPORT_VOLUME("Unexport Volume"),
   DELETE_VOLUME("Delete Volume"),
-  DELETE_SNAPSHOT("Delete Snapshot");
+  DELETE_SNAPSHOT("Delete Snapshot"),
+  UPLOAD_SNAPSHOT("Upload Snapshot"),
+  UPLOAD_SNAPSHOT_THRUPUT("Upload Snapshot:KB/s");
   
   String name;
   private MonitoredAction(String name) {
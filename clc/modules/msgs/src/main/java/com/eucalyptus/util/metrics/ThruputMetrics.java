@@ -22,20 +22,31 @@ package com.eucalyptus.util.metrics;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.Callable;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.apache.log4j.Logger;
 
-import com.eucalyptus.component.id.Eucalyptus;
-import com.eucalyptus.system.Threads;
-import com.eucalyptus.util.LockResource;
-import com.google.common.collect.EvictingQueue;
-
-import org.apache.commons.collections.map.LRUMap;
+import com.eucalyptus.bootstrap.Bootstrap;
+import com.eucalyptus.bootstrap.Bootstrapper;
+import com.eucalyptus.bootstrap.Provides;
+import com.eucalyptus.bootstrap.RunDuring;
+import com.eucalyptus.empyrean.Empyrean;
+import com.eucalyptus.util.Mbeans;
 
+/**
+ * Throughput and timing metrics for monitored actions.
+ *
+ * <p>Data points are recorded on the calling thread without locking or
+ * allocation. Each action has a histogram of all recorded values and a
+ * window of the most recent values (see METRICS_COLLECTION_SIZE). Values
+ * can also be recorded with a tag, such as a partition of the work, to give
+ * a separate histogram per tag.</p>
+ */
 public class ThruputMetrics {
 
   public static class DataPoint {
@@ -43,7 +54,11 @@ public class ThruputMetrics {
     long value;
     
     public DataPoint(long value) {
-      this.collectionTimeMs = System.currentTimeMillis();
+      this(System.currentTimeMillis(), value);
+    }
+
+    DataPoint(long collectionTimeMs, long value) {
+      this.collectionTimeMs = collectionTimeMs;
       this.value = value;
     }
   }
@@ -70,41 +85,23 @@ public class ThruputMetrics {
   }
 
   private static final Logger LOG = Logger.getLogger(ThruputMetrics.class);
-  private static final Map<MonitoredAction, EvictingQueue<DataPoint>> data = new HashMap<MonitoredAction,EvictingQueue<DataPoint>>();
-  private static final ReentrantReadWriteLock storageLock = new ReentrantReadWriteLock();
+  private static final MonitoredAction[] actions = MonitoredAction.values();
+  private static final AtomicReferenceArray<RecentValues> recent = new AtomicReferenceArray<>(actions.length);
+  private static final AtomicReferenceArray<LogLinearHistogram> histograms = new AtomicReferenceArray<>(actions.length);
+  private static final AtomicReferenceArray<ConcurrentMap<String, LogLinearHistogram>> taggedHistograms =
+      new AtomicReferenceArray<>(actions.length);
+  private static final PartialOperations partialOperations = new PartialOperations(16384);
   private static SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy.MM.dd G 'at' HH:mm:ss z");
-  private static final LRUMap paritalOperations = new LRUMap(10000);
 
-  private static String operationKey(MonitoredAction action, String id, boolean start) {
-    StringBuilder sb = new StringBuilder(start ? "S":"E");
-    // to make shorter keys
-    sb.append(" A:").append(action.ordinal()).append(" ID:").append(id);
-    return sb.toString();
-  }
-  
   /**
    * Adds start time for monitored action that will be finished later.
    * If the same action was already recorded as ended due to asynchronous communication,
    * adds its execution time as a new data point.
    */
   public static void startOperation(final MonitoredAction action, final String id, final long startTime) {
-    Threads.enqueue(Eucalyptus.class, ThruputMetrics.class,
-      new Callable<Boolean>() {
-        @Override
-        public Boolean call() throws Exception {
-          String startKey = operationKey(action, id, true);
-          String endKey = operationKey(action, id, false);
-          Long endTime = (Long) paritalOperations.get(endKey);
-          if (endTime != null) {
-            paritalOperations.remove(endKey);
-            if (endTime - startTime > 0)
-              addDataPointNoThread(action, endTime - startTime);
-          } else {
-            paritalOperations.put(startKey, startTime);
-          }
-          return true;
-        }
-    });
+    final long endTime = partialOperations.startOrMatch(action, id, startTime);
+    if (endTime != PartialOperations.NONE && endTime - startTime > 0)
+      addDataPointNoCheck(action, endTime - startTime);
   }
 
   /**
@@ -112,35 +109,14 @@ public class ThruputMetrics {
    * time as a new data point.
    */
   public static void endOperation(final MonitoredAction action, final String id, final long endTime) {
-    Threads.enqueue(Eucalyptus.class, ThruputMetrics.class,
-      new Callable<Boolean>() {
-        @Override
-        public Boolean call() throws Exception {
-          String startKey = operationKey(action, id, true);
-          String endKey = operationKey(action, id, false);
-          Long startTime = (Long) paritalOperations.get(startKey);
-          if (startTime != null) {
-            paritalOperations.remove(startKey);
-            if (endTime - startTime > 0)
-              addDataPointNoThread(action, endTime - startTime);
-          } else {
-            paritalOperations.put(endKey, endTime);
-          }
-          return true;
-        }
-    });
+    final long startTime = partialOperations.endOrMatch(action, id, endTime);
+    if (startTime != PartialOperations.NONE && endTime - startTime > 0)
+      addDataPointNoCheck(action, endTime - startTime);
   }
 
-  private static void addDataPointNoThread(MonitoredAction action, long newDataPoint) {
-    try ( final LockResource lock = LockResource.lock(storageLock.writeLock()) ) {
-      if (data.containsKey(action)) {
-        data.get(action).add(new DataPoint(newDataPoint));
-      } else {
-        EvictingQueue<DataPoint> newQ = EvictingQueue.create(MetricsConfiguration.METRICS_COLLECTION_SIZE);
-        newQ.add(new DataPoint(newDataPoint));
-        data.put(action, newQ);
-      }
-    }
+  private static void addDataPointNoCheck(MonitoredAction action, long newDataPoint) {
+    histogram(action).record(newDataPoint);
+    recentValues(action).add(System.currentTimeMillis(), newDataPoint);
     
     if (LOG.isTraceEnabled()) {
       StringBuilder sb = new StringBuilder(action.name);
@@ -157,52 +133,73 @@ public class ThruputMetrics {
   public static void addDataPoint(final MonitoredAction action, final long newDataPoint) {
     if (newDataPoint < 0)
       return;
-    Threads.enqueue(Eucalyptus.class, ThruputMetrics.class,
-        new Callable<Boolean>() {
-          @Override
-          public Boolean call() throws Exception {
-            if (newDataPoint < 0)
-              throw new IllegalArgumentException();
-            addDataPointNoThread(action, newDataPoint);
-            return true;
-          }
-    });
+    addDataPointNoCheck(action, newDataPoint);
+  }
+
+  /**
+   * Adds new data point (non-negative long) for an action and tag. The value
+   * is also recorded for the action.
+   * Function ignores negative input values
+   */
+  public static void addDataPoint(final MonitoredAction action, final String tag, final long newDataPoint) {
+    if (newDataPoint < 0)
+      return;
+    addDataPointNoCheck(action, newDataPoint);
+    histogram(action, tag).record(newDataPoint);
   }
 
   /**
    * Returns all known data point for an action.
    */
   public static DataPoint[] getDataPoints(MonitoredAction action) {
-    try ( final LockResource lock = LockResource.lock(storageLock.readLock()) ) {
-      DataPoint[] ret;
-      if (data.containsKey(action)) {
-        ret = data.get(action).toArray(new DataPoint[0]);
-      } else {
-        ret = new DataPoint[0];
-      }
-      return ret;
-    }
+    final RecentValues values = recent.get(action.ordinal());
+    return values == null ? new DataPoint[0] : values.toArray();
+  }
+
+  /**
+   * Returns a snapshot of the histogram of all values for an action.
+   */
+  public static LogLinearHistogram.Snapshot getHistogram(MonitoredAction action) {
+    return histogram(action).snapshot();
+  }
+
+  /**
+   * Returns a snapshot of the histogram of all values for an action and tag.
+   */
+  public static LogLinearHistogram.Snapshot getHistogram(MonitoredAction action, String tag) {
+    return histogram(action, tag).snapshot();
+  }
+
+  /**
+   * Returns a snapshot of the histogram of values for an action recorded
+   * since the previous interval snapshot.
+   */
+  public static LogLinearHistogram.Snapshot getIntervalHistogram(MonitoredAction action) {
+    return histogram(action).intervalSnapshot();
   }
   
   /**
    * Clean data points for a giving action
    */
   public static void clearDatapoints(MonitoredAction action) {
-    try ( final LockResource lock = LockResource.lock(storageLock.writeLock()) ) {
-      if (data.containsKey(action))
-        data.get(action).clear();
-    }
+    final RecentValues values = recent.get(action.ordinal());
+    if (values != null)
+      values.clear();
+    final LogLinearHistogram histogram = histograms.get(action.ordinal());
+    if (histogram != null)
+      histogram.reset();
+    final ConcurrentMap<String, LogLinearHistogram> tagged = taggedHistograms.get(action.ordinal());
+    if (tagged != null)
+      for (final LogLinearHistogram taggedHistogram : tagged.values())
+        taggedHistogram.reset();
   }
 
   /**
    * Clean all data points
    */
   public static void clearAllDatapoints() {
-    try ( final LockResource lock = LockResource.lock(storageLock.writeLock()) ) {
-      for(MonitoredAction action : MonitoredAction.values()) {
-        if (data.containsKey(action))
-          data.get(action).clear();
-      }
+    for(MonitoredAction action : actions) {
+      clearDatapoints(action);
     }
   }
 
@@ -243,31 +240,376 @@ public class ThruputMetrics {
    */
   public static String getDataPoints(int count) {
     StringBuilder sb = new StringBuilder();
-    try ( final LockResource lock = LockResource.lock(storageLock.readLock()) ) {
-      for(MonitoredAction action : MonitoredAction.values()){
-        DataPoint[] dataPoints = getDataPoints(action);
-        if (dataPoints.length == 0)
-          continue;
-        sb.append(action.name).append("\n");
-        for(int i = dataPoints.length > count ? dataPoints.length - count : 0; i < dataPoints.length; i++)
-          sb.append(dateFormat.format( new Date(dataPoints[i].collectionTimeMs) )).append("\t")
-          .append(dataPoints[i].value).append("\n");
-      }
+    for(MonitoredAction action : actions){
+      DataPoint[] dataPoints = getDataPoints(action);
+      if (dataPoints.length == 0)
+        continue;
+      sb.append(action.name).append("\n");
+      for(int i = dataPoints.length > count ? dataPoints.length - count : 0; i < dataPoints.length; i++)
+        sb.append(dateFormat.format( new Date(dataPoints[i].collectionTimeMs) )).append("\t")
+        .append(dataPoints[i].value).append("\n");
     }
     return sb.toString();
   }
 
   public static void changeSize(int newSize) {
-    try ( final LockResource lock = LockResource.lock(storageLock.writeLock()) ) {
-      for(MonitoredAction action : MonitoredAction.values()){
-        if (data.containsKey(action)) {
-          EvictingQueue<DataPoint> newQ = EvictingQueue.create(newSize);
-          DataPoint[] values = data.get(action).toArray(new DataPoint[0]);
-          for(int i = values.length > newSize ? values.length - newSize : 0; i < values.length; i++)
-            newQ.add(values[i]);
-          data.put(action, newQ);
+    for(MonitoredAction action : actions){
+      final RecentValues values = recent.get(action.ordinal());
+      if (values != null) {
+        recent.set(action.ordinal(), values.resize(newSize));
+      }
+    }
+  }
+
+  private static LogLinearHistogram histogram(MonitoredAction action) {
+    LogLinearHistogram histogram = histograms.get(action.ordinal());
+    if (histogram == null) {
+      histograms.compareAndSet(action.ordinal(), null, new LogLinearHistogram());
+      histogram = histograms.get(action.ordinal());
+    }
+    return histogram;
+  }
+
+  private static LogLinearHistogram histogram(MonitoredAction action, String tag) {
+    ConcurrentMap<String, LogLinearHistogram> tagged = taggedHistograms.get(action.ordinal());
+    if (tagged == null) {
+      taggedHistograms.compareAndSet(action.ordinal(), null, new ConcurrentHashMap<String, LogLinearHistogram>());
+      tagged = taggedHistograms.get(action.ordinal());
+    }
+    LogLinearHistogram histogram = tagged.get(tag);
+    if (histogram == null) {
+      final LogLinearHistogram created = new LogLinearHistogram();
+      histogram = tagged.putIfAbsent(tag, created);
+      if (histogram == null) {
+        histogram = created;
+        Mbeans.register(new ActionMetrics(action, tag));
+      }
+    }
+    return histogram;
+  }
+
+  private static RecentValues recentValues(MonitoredAction action) {
+    RecentValues values = recent.get(action.ordinal());
+    if (values == null) {
+      recent.compareAndSet(action.ordinal(), null, new RecentValues(MetricsConfiguration.METRICS_COLLECTION_SIZE));
+      values = recent.get(action.ordinal());
+    }
+    return values;
+  }
+
+  /**
+   * Fixed size ring of the most recent values.
+   *
+   * <p>Each slot has a sequence that is written after the value so readers
+   * can skip slots that are being written or were overwritten.</p>
+   */
+  private static final class RecentValues {
+    private final int capacity;
+    private final AtomicLong next = new AtomicLong();
+    private final AtomicLongArray sequences;
+    private final AtomicLongArray times;
+    private final AtomicLongArray values;
+
+    RecentValues(final int capacity) {
+      this.capacity = capacity;
+      this.sequences = new AtomicLongArray(capacity);
+      this.times = new AtomicLongArray(capacity);
+      this.values = new AtomicLongArray(capacity);
+    }
+
+    void add(final long time, final long value) {
+      final long sequence = next.getAndIncrement();
+      final int slot = (int) (sequence % capacity);
+      sequences.set(slot, -1);
+      times.lazySet(slot, time);
+      values.lazySet(slot, value);
+      sequences.set(slot, sequence + 1);
+    }
+
+    DataPoint[] toArray() {
+      final long end = next.get();
+      final long start = Math.max(0, end - capacity);
+      final DataPoint[] dataPoints = new DataPoint[(int) (end - start)];
+      int count = 0;
+      for (long sequence = start; sequence < end; sequence++) {
+        final int slot = (int) (sequence % capacity);
+        if (sequences.get(slot) != sequence + 1)
+          continue;
+        final long time = times.get(slot);
+        final long value = values.get(slot);
+        if (sequences.get(slot) != sequence + 1)
+          continue;
+        dataPoints[count++] = new DataPoint(time, value);
+      }
+      return count == dataPoints.length ? dataPoints : Arrays.copyOf(dataPoints, count);
+    }
+
+    void clear() {
+      final long end = next.get();
+      for (int slot = 0; slot < capacity; slot++)
+        sequences.set(slot, 0);
+      next.compareAndSet(end, 0);
+    }
+
+    RecentValues resize(final int newSize) {
+      final RecentValues resized = new RecentValues(newSize);
+      final DataPoint[] dataPoints = toArray();
+      for(int i = dataPoints.length > newSize ? dataPoints.length - newSize : 0; i < dataPoints.length; i++)
+        resized.add(dataPoints[i].collectionTimeMs, dataPoints[i].value);
+      return resized;
+    }
+  }
+
+  /**
+   * Bounded map of operation start and end times keyed by a 64 bit hash of
+   * the action and identifier.
+   *
+   * <p>Entries are held in primitive open addressing tables, one per stripe,
+   * so no objects are allocated to record an operation. Start times are
+   * stored as is and end times are stored negated so a single value
+   * identifies the kind of time. When a stripe is over capacity the oldest
+   * quarter of its entries is removed.</p>
+   */
+  private static final class PartialOperations {
+    static final long NONE = Long.MIN_VALUE;
+    private static final int STRIPES = 16;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    PartialOperations(final int capacity) {
+      for (int i = 0; i < STRIPES; i++) {
+        stripes[i] = new Stripe(Math.max(1, capacity / STRIPES));
+      }
+    }
+
+    /**
+     * Remove and return the end time for the operation or store the start time.
+     */
+    long startOrMatch(final MonitoredAction action, final String id, final long startTime) {
+      final long key = key(action, id);
+      return stripe(key).matchOrPut(key, false, startTime);
+    }
+
+    /**
+     * Remove and return the start time for the operation or store the end time.
+     */
+    long endOrMatch(final MonitoredAction action, final String id, final long endTime) {
+      final long key = key(action, id);
+      return stripe(key).matchOrPut(key, true, endTime);
+    }
+
+    private Stripe stripe(final long key) {
+      return stripes[(int) (key >>> 60) & (STRIPES - 1)];
+    }
+
+    /**
+     * Linear probing table of keys and values, zero marks an empty slot.
+     */
+    private static final class Stripe {
+      private static final long EMPTY = 0;
+
+      private final int capacity;
+      private final int mask;
+      private long[] keys;
+      private long[] values;
+      private int size;
+
+      Stripe(final int capacity) {
+        final int tableSize = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        this.capacity = capacity;
+        this.mask = tableSize - 1;
+        this.keys = new long[tableSize];
+        this.values = new long[tableSize];
+      }
+
+      synchronized long matchOrPut(final long hash, final boolean end, final long time) {
+        final long key = hash == EMPTY ? 1 : hash;
+        final long value = end ? -time - 1 : time;
+        int slot = index(key);
+        while (keys[slot] != EMPTY) {
+          if (keys[slot] == key) {
+            final long existing = values[slot];
+            if ((existing < 0) != end) {
+              remove(slot);
+              return time(existing);
+            }
+            values[slot] = value;
+            return NONE;
+          }
+          slot = (slot + 1) & mask;
         }
+        if (size >= capacity) {
+          trim();
+          slot = index(key);
+          while (keys[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+          }
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        return NONE;
+      }
+
+      private int index(final long key) {
+        return (int) (key ^ (key >>> 32)) & mask;
+      }
+
+      /**
+       * Remove the entry in the slot, moving back later entries of the probe
+       * sequence so no tombstone is needed.
+       */
+      private void remove(final int slot) {
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (keys[next] != EMPTY) {
+          final int ideal = index(keys[next]);
+          if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+            keys[hole] = keys[next];
+            values[hole] = values[next];
+            hole = next;
+          }
+          next = (next + 1) & mask;
+        }
+        keys[hole] = EMPTY;
+        values[hole] = 0;
+        size--;
+      }
+
+      private void trim() {
+        final long[] times = new long[size];
+        int count = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+          if (keys[slot] != EMPTY) {
+            times[count++] = time(values[slot]);
+          }
+        }
+        if (count == 0) return;
+        Arrays.sort(times, 0, count);
+        final long oldest = times[count / 4];
+        final long[] oldKeys = keys;
+        final long[] oldValues = values;
+        keys = new long[oldKeys.length];
+        values = new long[oldValues.length];
+        size = 0;
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+          if (oldKeys[slot] != EMPTY && time(oldValues[slot]) > oldest) {
+            int target = index(oldKeys[slot]);
+            while (keys[target] != EMPTY) {
+              target = (target + 1) & mask;
+            }
+            keys[target] = oldKeys[slot];
+            values[target] = oldValues[slot];
+            size++;
+          }
+        }
+      }
+    }
+
+    private static long time(final long value) {
+      return value < 0 ? -value - 1 : value;
+    }
+
+    private static long key(final MonitoredAction action, final String id) {
+      // FNV-1a
+      long hash = 0xcbf29ce484222325L ^ action.ordinal();
+      hash *= 0x100000001b3L;
+      for (int i = 0; i < id.length(); i++) {
+        hash ^= id.charAt(i);
+        hash *= 0x100000001b3L;
+      }
+      return hash;
+    }
+  }
+
+  /**
+   * JMX view of the histogram for a monitored action, or for an action and
+   * tag.
+   */
+  public static class ActionMetrics {
+    private final MonitoredAction action;
+    private final String tag;
+
+    ActionMetrics(final MonitoredAction action) {
+      this(action, null);
+    }
+
+    ActionMetrics(final MonitoredAction action, final String tag) {
+      this.action = action;
+      this.tag = tag;
+    }
+
+    public String getName() {
+      return action.name();
+    }
+
+    public String getTag() {
+      return tag;
+    }
+
+    private LogLinearHistogram.Snapshot getHistogram() {
+      return tag == null ?
+          ThruputMetrics.getHistogram(action) :
+          ThruputMetrics.getHistogram(action, tag);
+    }
+
+    public long getCount() {
+      return getHistogram().getCount();
+    }
+
+    public long getMin() {
+      return getHistogram().getMin();
+    }
+
+    public long getMax() {
+      return getHistogram().getMax();
+    }
+
+    public double getMean() {
+      return getHistogram().getMean();
+    }
+
+    public long getMedian() {
+      return getHistogram().getValueAtPercentile(50);
+    }
+
+    public long getPercentile90() {
+      return getHistogram().getValueAtPercentile(90);
+    }
+
+    public long getPercentile99() {
+      return getHistogram().getValueAtPercentile(99);
+    }
+
+    public long getPercentile999() {
+      return getHistogram().getValueAtPercentile(99.9);
+    }
+
+    public void reset() {
+      if (tag == null)
+        clearDatapoints(action);
+      else
+        histogram(action, tag).reset();
+    }
+
+    @Override
+    public String toString() {
+      return tag == null ?
+          "Metrics for " + action :
+          "Metrics for " + action + " " + tag;
+    }
+  }
+
+  @Provides( Empyrean.class )
+  @RunDuring( Bootstrap.Stage.UnprivilegedConfiguration )
+  public static class ThruputMetricsBootstrapper extends Bootstrapper.Simple {
+
+    @Override
+    public boolean load( ) throws Exception {
+      for ( final MonitoredAction action : actions ) {
+        Mbeans.register( new ActionMetrics( action ) );
       }
+      return true;
     }
   }
 }
@@ -139,6 +139,71 @@ public abstract class FilteredPipeline implements HasName<FilteredPipeline>, Fil
   
   @Override
   public abstract boolean checkAccepts( HttpRequest message );
+
+  /**
+   * Static routing information for this pipeline.
+   *
+   * <p>Routing is used to select candidate pipelines for a request, it must
+   * describe conditions that are necessary for checkAccepts to succeed.</p>
+   *
+   * @return The routing or null if the pipeline must always be checked
+   */
+  @Nullable
+  public Routing getRouting( ) {
+    return null;
+  }
+
+  /**
+   * Necessary conditions for a request to be accepted by a pipeline.
+   *
+   * <p>A request is routed to a pipeline when its SOAPAction header presence
+   * matches and its URI either has no path (resolution by host) or matches
+   * one of the path prefixes or suffixes.</p>
+   */
+  public static final class Routing {
+    @Nullable private final Boolean soap;
+    private final Set<String> pathPrefixes;
+    private final Set<String> pathSuffixes;
+
+    private Routing( @Nullable final Boolean soap,
+                     final Set<String> pathPrefixes,
+                     final Set<String> pathSuffixes ) {
+      this.soap = soap;
+      this.pathPrefixes = ImmutableSet.copyOf( pathPrefixes );
+      this.pathSuffixes = ImmutableSet.copyOf( pathSuffixes );
+    }
+
+    /**
+     * Routing for requests with paths starting with any of the given prefixes.
+     *
+     * @param soap True if SOAPAction is required, false if not permitted, null for either
+     */
+    public static Routing prefix( @Nullable final Boolean soap, final Set<String> pathPrefixes ) {
+      return new Routing( soap, pathPrefixes, Collections.<String>emptySet( ) );
+    }
+
+    /**
+     * Routing for requests with paths ending with any of the given suffixes.
+     *
+     * @param soap True if SOAPAction is required, false if not permitted, null for either
+     */
+    public static Routing suffix( @Nullable final Boolean soap, final Set<String> pathSuffixes ) {
+      return new Routing( soap, Collections.<String>emptySet( ), pathSuffixes );
+    }
+
+    @Nullable
+    public Boolean getSoap( ) {
+      return soap;
+    }
+
+    public Set<String> getPathPrefixes( ) {
+      return pathPrefixes;
+    }
+
+    public Set<String> getPathSuffixes( ) {
+      return pathSuffixes;
+    }
+  }
   
   @Override
   public final int compareTo( final FilteredPipeline o ) {
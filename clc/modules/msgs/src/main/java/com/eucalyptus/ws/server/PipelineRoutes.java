@@ -0,0 +1,258 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.ws.server;
+
+import java.lang.reflect.Method;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+import org.apache.log4j.Logger;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import com.eucalyptus.component.ComponentId;
+import com.eucalyptus.component.ComponentIds;
+import com.eucalyptus.component.annotation.AwsServiceName;
+import com.eucalyptus.component.annotation.ComponentPart;
+import com.eucalyptus.component.annotation.PublicService;
+import com.eucalyptus.system.Ats;
+import com.eucalyptus.ws.protocol.SoapHandler;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
+
+/**
+ * Precompiled routing table for a fixed list of pipelines.
+ *
+ * <p>Candidate pipelines for a request are selected using path prefix and
+ * suffix lookups and the presence of a SOAPAction header. Candidates are
+ * confirmed via checkAccepts in the original pipeline order so the selected
+ * pipeline is the same as for a linear scan.</p>
+ */
+class PipelineRoutes {
+  private static final Logger LOG = Logger.getLogger( PipelineRoutes.class );
+
+  private final List<FilteredPipeline> pipelines;
+  private final BitSet unrouted;
+  private final BitSet routedSoap;
+  private final BitSet routedNonSoap;
+  private final Map<String,BitSet> byPrefix;
+  private final int[] prefixLengths;
+  private final Map<String,BitSet> bySuffix;
+  private final int[] suffixLengths;
+  private final List<HostRoute> hostRoutes;
+
+  PipelineRoutes( final Iterable<FilteredPipeline> pipelines ) {
+    this.pipelines = ImmutableList.copyOf( pipelines );
+    this.unrouted = new BitSet( );
+    this.routedSoap = new BitSet( );
+    this.routedNonSoap = new BitSet( );
+    this.byPrefix = Maps.newHashMap( );
+    this.bySuffix = Maps.newHashMap( );
+    final Set<Integer> prefixLengths = new TreeSet<>( );
+    final Set<Integer> suffixLengths = new TreeSet<>( );
+    final List<HostRoute> hostRoutes = Lists.newArrayList( );
+    for ( int i = 0; i < this.pipelines.size( ); i++ ) {
+      final FilteredPipeline pipeline = this.pipelines.get( i );
+      final FilteredPipeline.Routing routing = routing( pipeline );
+      if ( routing == null ) {
+        unrouted.set( i );
+      } else {
+        if ( !Boolean.FALSE.equals( routing.getSoap( ) ) ) routedSoap.set( i );
+        if ( !Boolean.TRUE.equals( routing.getSoap( ) ) ) routedNonSoap.set( i );
+        for ( final String prefix : routing.getPathPrefixes( ) ) {
+          index( byPrefix, prefix, i );
+          prefixLengths.add( prefix.length( ) );
+        }
+        for ( final String suffix : routing.getPathSuffixes( ) ) {
+          index( bySuffix, suffix, i );
+          suffixLengths.add( suffix.length( ) );
+        }
+      }
+      final HostRoute hostRoute = HostRoute.of( pipeline );
+      if ( hostRoute != null ) {
+        hostRoutes.add( hostRoute );
+      }
+    }
+    this.prefixLengths = Ints.toArray( prefixLengths );
+    this.suffixLengths = Ints.toArray( suffixLengths );
+    this.hostRoutes = ImmutableList.copyOf( hostRoutes );
+  }
+
+  /**
+   * Find the first pipeline accepting the request.
+   */
+  @Nullable
+  FilteredPipeline findAccepting( final HttpRequest request ) {
+    final String uri = request.getUri( );
+    final boolean soap = request.getHeaderNames( ).contains( "SOAPAction" );
+    final BitSet soapFilter = soap ? routedSoap : routedNonSoap;
+    final BitSet candidates = new BitSet( );
+    if ( uri != null ) {
+      final boolean noPath = uri.isEmpty( ) || uri.equals( "/" ) || uri.startsWith( "/?" );
+      if ( noPath ) {
+        candidates.or( soapFilter );
+      }
+      for ( final int length : prefixLengths ) {
+        if ( length > uri.length( ) ) break;
+        final BitSet matched = byPrefix.get( uri.substring( 0, length ) );
+        if ( matched != null ) candidates.or( matched );
+      }
+      for ( final int length : suffixLengths ) {
+        if ( length > uri.length( ) ) break;
+        final BitSet matched = bySuffix.get( uri.substring( uri.length( ) - length ) );
+        if ( matched != null ) candidates.or( matched );
+      }
+      candidates.and( soapFilter );
+    }
+    candidates.or( unrouted );
+    for ( int i = candidates.nextSetBit( 0 ); i >= 0; i = candidates.nextSetBit( i + 1 ) ) {
+      final FilteredPipeline pipeline = pipelines.get( i );
+      if ( pipeline.checkAccepts( request ) ) {
+        return pipeline;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Find the first public service pipeline that handles requests for the host.
+   */
+  @Nullable
+  FilteredPipeline findByHost( final HttpRequest request, final String host, final String dnsDomain ) {
+    final boolean soap = request.getHeaderNames( ).contains( "SOAPAction" );
+    for ( final HostRoute route : hostRoutes ) {
+      final Boolean handlesSoap = route.handlesSoap( );
+      if ( handlesSoap == null || handlesSoap != soap ) {
+        continue;
+      }
+      if ( route.matches( host, dnsDomain ) ) {
+        return route.pipeline;
+      }
+    }
+    return null;
+  }
+
+  private static void index( final Map<String,BitSet> map, final String key, final int index ) {
+    BitSet bits = map.get( key );
+    if ( bits == null ) {
+      map.put( key, bits = new BitSet( ) );
+    }
+    bits.set( index );
+  }
+
+  /**
+   * Routing for the pipeline, ignored if a subclass customizes checkAccepts.
+   */
+  @Nullable
+  private static FilteredPipeline.Routing routing( final FilteredPipeline pipeline ) {
+    try {
+      final Method routingMethod = pipeline.getClass( ).getMethod( "getRouting" );
+      final Method acceptsMethod = pipeline.getClass( ).getMethod( "checkAccepts", HttpRequest.class );
+      final Class<?> routingClass = routingMethod.getDeclaringClass( );
+      final Class<?> acceptsClass = acceptsMethod.getDeclaringClass( );
+      if ( routingClass != acceptsClass && routingClass.isAssignableFrom( acceptsClass ) ) {
+        return null;
+      }
+      return pipeline.getRouting( );
+    } catch ( final Exception e ) {
+      LOG.warn( "Error getting routing for pipeline " + pipeline.getName( ) + ": " + e.getMessage( ) );
+      return null;
+    }
+  }
+
+  private static final class HostRoute {
+    private final FilteredPipeline pipeline;
+    private final Boolean handlesSoap;
+    private final String componentName;
+    @Nullable private final Pattern awsHostPattern;
+    private volatile DomainPattern domainPattern;
+
+    private HostRoute( final FilteredPipeline pipeline,
+                       final Boolean handlesSoap,
+                       final String componentName,
+                       @Nullable final Pattern awsHostPattern ) {
+      this.pipeline = pipeline;
+      this.handlesSoap = handlesSoap;
+      this.componentName = componentName;
+      this.awsHostPattern = awsHostPattern;
+    }
+
+    @Nullable
+    static HostRoute of( final FilteredPipeline pipeline ) {
+      if ( !Ats.from( pipeline ).has( ComponentPart.class ) ) {
+        return null;
+      }
+      final Class<? extends ComponentId> compIdClass = Ats.from( pipeline ).get( ComponentPart.class ).value( );
+      if ( !Ats.from( compIdClass ).has( PublicService.class ) ) {
+        return null;
+      }
+      final ComponentId compId = ComponentIds.lookup( compIdClass );
+      final Pattern awsHostPattern = Ats.from( compIdClass ).has( AwsServiceName.class ) ?
+          Pattern.compile( "[\\w\\.-_]*" + compId.getAwsServiceName( ) + "(?:\\.[\\w\\-]+)?\\.amazonaws.com" ) :
+          null;
+      return new HostRoute( pipeline, handlesSoap( pipeline ), compId.name( ), awsHostPattern );
+    }
+
+    @Nullable
+    private static Boolean handlesSoap( final FilteredPipeline pipeline ) {
+      try {
+        return pipeline.addHandlers( Channels.pipeline( ) ).get( SoapHandler.class ) != null;
+      } catch ( final Exception e ) {
+        LOG.debug( "Error checking SOAP handling for pipeline " + pipeline.getName( ) + ": " + e.getMessage( ) );
+        return null;
+      }
+    }
+
+    @Nullable
+    Boolean handlesSoap( ) {
+      return handlesSoap != null ?
+          handlesSoap :
+          handlesSoap( pipeline ); // not cached, retry on each request
+    }
+
+    boolean matches( final String host, final String dnsDomain ) {
+      if ( awsHostPattern != null && awsHostPattern.matcher( host ).matches( ) ) {
+        return true; // ${service}.${region}.amazonaws.com
+      }
+      DomainPattern domainPattern = this.domainPattern;
+      if ( domainPattern == null || !domainPattern.dnsDomain.equals( dnsDomain ) ) {
+        this.domainPattern = domainPattern = new DomainPattern(
+            dnsDomain,
+            Pattern.compile( "[\\w\\.-_]*" + componentName + "\\." + dnsDomain ) );
+      }
+      return domainPattern.pattern.matcher( host ).matches( ); // ${service}.${system.dns.dnsdomain}
+    }
+  }
+
+  private static final class DomainPattern {
+    private final String dnsDomain;
+    private final Pattern pattern;
+
+    private DomainPattern( final String dnsDomain, final Pattern pattern ) {
+      this.dnsDomain = dnsDomain;
+      this.pattern = pattern;
+    }
+  }
+}
@@ -102,6 +102,7 @@ import com.eucalyptus.ws.protocol.BaseQueryBinding;
 import com.eucalyptus.ws.protocol.OperationParameter;
 import com.eucalyptus.ws.protocol.SoapHandler;
 import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import edu.ucsb.eucalyptus.cloud.entities.SystemConfiguration;
@@ -111,6 +112,8 @@ public class Pipelines {
   private static final Set<FilteredPipeline>                                     internalPipelines = Sets.newHashSet( );
   private static final Set<FilteredPipeline>                                     pipelines         = Sets.newHashSet( );
   private static final Map<Class<? extends ComponentId>, ChannelPipelineFactory> clientPipelines   = Maps.newHashMap( );
+  private static volatile PipelineRoutes                                         routes            = null;
+  private static volatile PipelineRoutes                                         internalRoutes    = null;
   private static final Supplier<String> subDomain = new Supplier<String>() {
 
     @Override
@@ -147,6 +150,11 @@ public class Pipelines {
   }
   
   private static FilteredPipeline findAccepting( final HttpRequest request ) {
+    final PipelineRoutes routes = Pipelines.routes;
+    final PipelineRoutes internalRoutes = Pipelines.internalRoutes;
+    if ( routes != null && internalRoutes != null ) {
+      return findRouted( request, routes, internalRoutes );
+    }
     final FilteredPipeline candidate = null;
     for ( final FilteredPipeline f : pipelines ) {
       if ( f.checkAccepts( request ) ) {
@@ -187,6 +195,27 @@ public class Pipelines {
     }
     return candidate;
   }
+
+  private static FilteredPipeline findRouted( final HttpRequest request,
+                                              final PipelineRoutes routes,
+                                              final PipelineRoutes internalRoutes ) {
+    FilteredPipeline candidate = routes.findAccepting( request );
+    if ( candidate == null ) {
+      final String hostHeader = request.getHeader( HttpHeaders.Names.HOST );
+      if ( hostHeader != null ) {
+        final String dnsDomain = subDomain.get( );
+        if ( hostHeader.contains( "amazonaws.com" ) || hostHeader.contains( dnsDomain ) ) {
+          final String host = hostHeader.indexOf( ':' ) > 0 ? hostHeader.substring( 0, hostHeader.indexOf( ':' ) ) : hostHeader;
+          LOG.debug( "Trying to intercept request for " + hostHeader );
+          candidate = routes.findByHost( request, host, dnsDomain );
+        }
+      }
+    }
+    if ( candidate == null ) {
+      candidate = internalRoutes.findAccepting( request );
+    }
+    return candidate;
+  }
   
   @Provides( Empyrean.class )
   @RunDuring( Bootstrap.Stage.UnprivilegedConfiguration )
@@ -198,6 +227,8 @@ public class Pipelines {
         Pipelines.internalPipelines.add( new InternalQueryPipeline( comp ) );
         Pipelines.internalPipelines.add( new InternalSoapPipeline( comp ) );
       }
+      Pipelines.routes = new PipelineRoutes( Pipelines.pipelines );
+      Pipelines.internalRoutes = new PipelineRoutes( Pipelines.internalPipelines );
       return true;
     }
     
@@ -262,6 +293,11 @@ public class Pipelines {
       return ( message.getUri( ).endsWith( this.servicePath ) || message.getUri( ).endsWith( this.internalServicePath ) )
              && message.getHeaderNames( ).contains( "SOAPAction" );
     }
+
+    @Override
+    public Routing getRouting( ) {
+      return Routing.suffix( true, ImmutableSet.of( this.servicePath, this.internalServicePath ) );
+    }
     
     @Override
     public String getName( ) {
@@ -347,6 +383,11 @@ public class Pipelines {
       }
       return false;
     }
+
+    @Override
+    public Routing getRouting( ) {
+      return Routing.prefix( null, ImmutableSet.of( this.servicePath, this.internalServicePath ) );
+    }
     
     @Override
     public String getName( ) {
@@ -0,0 +1,157 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.auth.policy
+
+import static org.junit.Assert.*
+import com.eucalyptus.auth.principal.Authorization
+import org.junit.Test
+import java.util.regex.Pattern
+
+class PolicyPatternTest {
+
+  @Test
+  void testBasicMatch( ) {
+    assertMatches "a", "a"
+    assertMatches "abc", "abc"
+    assertNotMatches "a", "b"
+    assertNotMatches "a", "aa"
+    assertNotMatches "", "a"
+  }
+
+  @Test
+  void testEscapedMatch( ) {
+    assertMatches "a-z", "a-z"
+    assertMatches "a/c", "a/c"
+    assertMatches "a?-", "ab-"
+    assertMatches "a^b", "a^b"
+    assertMatches "<>,./;:'\"\\|}{][+=_-)(&^%\$#@!~`", "<>,./;:'\"\\|}{][+=_-)(&^%\$#@!~`"
+    assertNotMatches ".", "\\a"
+  }
+
+  @Test
+  void testStarMatch( ) {
+    assertMatches "a*", "a"
+    assertMatches "*a", "a"
+    assertMatches "a*", "ab"
+    assertMatches "*a", "ba"
+    assertMatches "*a*", "bab"
+    assertMatches "*", ""
+    assertMatches "a*b*c", "aXbXbXc"
+    assertMatches "**", "ab"
+    assertNotMatches "a*", "b"
+    assertNotMatches "a*", "ba"
+    assertNotMatches "*a", "ab"
+    assertNotMatches "*a", "b"
+    assertNotMatches "*a*", "bbb"
+    assertNotMatches "a*b*c", "aXbXcX"
+  }
+
+  @Test
+  void testQuestionMatch( ) {
+    assertMatches "?", "a"
+    assertMatches "???", "aaa"
+    assertMatches "?b", "ab"
+    assertMatches "b?", "ba"
+    assertMatches "a?*", "ab"
+    assertNotMatches "??", "a"
+    assertNotMatches "a?*", "a"
+  }
+
+  @Test
+  void testLineTerminatorMatch( ) {
+    assertNotMatches "*", "a\nb"
+    assertNotMatches "a*", "a\nb"
+    assertNotMatches "a?b", "a\nb"
+    assertMatches "a\n*", "a\nb"
+  }
+
+  @Test
+  void testCachedPattern( ) {
+    assertSame PolicyPattern.of( "ec2:describe*" ), PolicyPattern.of( "ec2:describe*" )
+    assertTrue PolicyPattern.of( "ec2:describe*" ).matches( "ec2:describeinstances" )
+    assertFalse PolicyPattern.of( "ec2:describe*" ).matches( null )
+  }
+
+  @Test
+  void testActionIndex( ) {
+    CompiledAuthorization compiled = CompiledAuthorization.of( new PolicyAuthorization(
+        null,
+        Authorization.EffectType.Allow,
+        null,
+        [ ],
+        [ "ec2:runinstances", "ec2:describe*", "s3:get?bject", "iam:*", "*:listtags", "e?2:stopinstances" ] as Set<String>,
+        false,
+        [ ] as Set<String>
+    ) )
+
+    assertActionMatches compiled, "ec2:runinstances"
+    assertActionMatches compiled, "ec2:describeimages"
+    assertActionMatches compiled, "s3:getobject"
+    assertActionMatches compiled, "iam:createuser"
+    assertActionMatches compiled, "autoscaling:listtags"
+    assertActionMatches compiled, "ec2:stopinstances"
+    assertActionNotMatches compiled, "ec2:terminateinstances"
+    assertActionNotMatches compiled, "s3:putobject"
+    assertActionNotMatches compiled, "sts:assumerole"
+    assertActionNotMatches compiled, "runinstances"
+  }
+
+  @Test
+  void testAnyAction( ) {
+    CompiledAuthorization compiled = CompiledAuthorization.of( new PolicyAuthorization(
+        null,
+        Authorization.EffectType.Allow,
+        null,
+        [ ],
+        [ "*" ] as Set<String>,
+        false,
+        [ ] as Set<String>
+    ) )
+
+    assertActionMatches compiled, "ec2:runinstances"
+    assertActionMatches compiled, "runinstances"
+  }
+
+  void assertActionMatches( CompiledAuthorization compiled, String action ) {
+    assertTrue( action, compiled.matchesAction( action, CompiledAuthorization.vendor( action ) ) )
+  }
+
+  void assertActionNotMatches( CompiledAuthorization compiled, String action ) {
+    assertFalse( action, compiled.matchesAction( action, CompiledAuthorization.vendor( action ) ) )
+  }
+
+  void assertMatches( String pattern, String value ) {
+    assertTrue( pattern+"~="+value, matches( pattern, value ) )
+    assertTrue( pattern+"~="+value, regexMatches( pattern, value ) )
+  }
+
+  void assertNotMatches( String pattern, String value ) {
+    assertFalse( pattern+"!="+value, matches( pattern, value ) )
+    assertFalse( pattern+"!="+value, regexMatches( pattern, value ) )
+  }
+
+  boolean matches( String pattern, String value ) {
+    PolicyPattern.compile( pattern ).matches( value )
+  }
+
+  boolean regexMatches( String pattern, String value ) {
+    Pattern.matches( PolicyUtils.toJavaPattern( pattern ), value )
+  }
+}
@@ -0,0 +1,79 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.binding
+
+import com.google.common.io.Files
+import groovy.transform.CompileStatic
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+import static org.junit.Assert.*
+
+/**
+ *
+ */
+@CompileStatic
+class BindingClassIndexTest {
+
+  private File directory
+
+  @Before
+  void setUp( ) {
+    directory = Files.createTempDir( )
+  }
+
+  @After
+  void tearDown( ) {
+    directory.deleteDir( )
+  }
+
+  @Test
+  void testReuse( ) {
+    BindingClassIndex index = new BindingClassIndex( directory )
+    String key = BindingClassIndex.key( 'jar1', 'msgs1' )
+    assertNull( 'classes before write', index.read( key ) )
+    index.write( key, [ 'com.eucalyptus.A', 'com.eucalyptus.B' ] )
+
+    BindingClassIndex rebuilt = new BindingClassIndex( directory )
+    assertEquals( 'indexed classes', [ 'com.eucalyptus.A', 'com.eucalyptus.B' ], rebuilt.read( key ) )
+    assertNull( 'classes for modified base jar', rebuilt.read( BindingClassIndex.key( 'jar1', 'msgs2' ) ) )
+    assertNull( 'classes for modified jar', rebuilt.read( BindingClassIndex.key( 'jar2', 'msgs1' ) ) )
+  }
+
+  @Test
+  void testPrune( ) {
+    BindingClassIndex index = new BindingClassIndex( directory )
+    String unchanged = BindingClassIndex.key( 'jar1', 'msgs1' )
+    String removed = BindingClassIndex.key( 'jar2', 'msgs1' )
+    index.write( unchanged, [ 'com.eucalyptus.A' ] )
+    index.write( removed, [ 'com.eucalyptus.B' ] )
+    new File( directory, 'partial.classes.tmp' ).text = 'com.eucalyptus.C'
+
+    index.clearUsed( )
+    assertNotNull( 'unchanged classes', index.read( unchanged ) )
+    index.write( BindingClassIndex.key( 'jar3', 'msgs1' ), [ ] )
+    index.prune( )
+
+    assertEquals( 'index files after prune',
+        [ unchanged + '.classes', 'jar3-msgs1.classes' ] as Set,
+        directory.list( ).toList( ) as Set )
+  }
+}
@@ -0,0 +1,80 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.util.metrics;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LogLinearHistogramTest {
+
+  @Test
+  public void testBuckets() {
+    for (long value : new long[]{ 0, 1, 63, 64, 65, 127, 128, 1000, 123456789, Long.MAX_VALUE }) {
+      int index = LogLinearHistogram.index(value);
+      assertTrue("lower bound " + value, LogLinearHistogram.lowestValue(index) <= value);
+      assertTrue("upper bound " + value, LogLinearHistogram.highestValue(index) >= value);
+    }
+    assertEquals(63, LogLinearHistogram.highestValue(LogLinearHistogram.index(63)));
+    assertEquals(Long.MAX_VALUE, LogLinearHistogram.highestValue(LogLinearHistogram.index(Long.MAX_VALUE)));
+  }
+
+  @Test
+  public void testSnapshot() {
+    LogLinearHistogram histogram = new LogLinearHistogram();
+    for (int i = 1; i <= 50; i++)
+      histogram.record(i);
+    histogram.record(-1);
+    LogLinearHistogram.Snapshot snapshot = histogram.snapshot();
+    assertEquals(50, snapshot.getCount());
+    assertEquals(1, snapshot.getMin());
+    assertEquals(50, snapshot.getMax());
+    assertEquals(25.5, snapshot.getMean(), 0.01);
+    assertEquals(25, snapshot.getValueAtPercentile(50));
+    assertEquals(45, snapshot.getValueAtPercentile(90));
+    assertEquals(50, snapshot.getValueAtPercentile(100));
+  }
+
+  @Test
+  public void testPrecision() {
+    LogLinearHistogram histogram = new LogLinearHistogram();
+    for (int i = 1; i <= 100000; i++)
+      histogram.record(i);
+    LogLinearHistogram.Snapshot snapshot = histogram.snapshot();
+    assertEquals(99000, snapshot.getValueAtPercentile(99), 99000 * 0.032);
+    assertEquals(100000, snapshot.getMax());
+  }
+
+  @Test
+  public void testInterval() {
+    LogLinearHistogram histogram = new LogLinearHistogram();
+    histogram.record(10);
+    assertEquals(1, histogram.intervalSnapshot().getCount());
+    histogram.record(20);
+    histogram.record(30);
+    LogLinearHistogram.Snapshot interval = histogram.intervalSnapshot();
+    assertEquals(2, interval.getCount());
+    assertEquals(20, interval.getMin());
+    assertEquals(30, interval.getMax());
+    assertEquals(25.0, interval.getMean(), 0.01);
+    assertEquals(0, histogram.intervalSnapshot().getCount());
+    assertEquals(3, histogram.snapshot().getCount());
+  }
+}
@@ -21,7 +21,9 @@ package com.eucalyptus.util.metrics;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
 import org.junit.Test;
 
@@ -53,4 +55,42 @@ public class PartialMetricsTest {
     assertEquals(0, res.length);
   }
 
+  @Test
+  public void testConcurrentStartStop() throws Exception {
+    final int threads = 8;
+    final int operations = 1000;
+    final long start = System.currentTimeMillis();
+    final CountDownLatch ready = new CountDownLatch(1);
+    final List<Thread> workers = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      final boolean end = t % 2 == 1;
+      final int pair = t / 2;
+      final Thread worker = new Thread() {
+        @Override
+        public void run() {
+          try {
+            ready.await();
+          } catch (InterruptedException ex) {
+            return;
+          }
+          for (int i = 0; i < operations; i++) {
+            final String id = "vol-" + pair + "-" + i;
+            if (end) {
+              ThruputMetrics.endOperation(MonitoredAction.DELETE_VOLUME, id, start + 100);
+            } else {
+              ThruputMetrics.startOperation(MonitoredAction.DELETE_VOLUME, id, start);
+            }
+          }
+        }
+      };
+      worker.start();
+      workers.add(worker);
+    }
+    ready.countDown();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    assertEquals((threads / 2) * operations, ThruputMetrics.getHistogram(MonitoredAction.DELETE_VOLUME).getCount());
+  }
+
 }
@@ -107,6 +107,21 @@ class QueueThruputTest {
     assertEquals(6, res.thirdQuartile, 0.01);
   }
   
+  @Test
+  public void testTagged() {
+    ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_SHARD_FLUSH_SIZE, "shard0", 10);
+    ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_SHARD_FLUSH_SIZE, "shard1", 20);
+    ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_SHARD_FLUSH_SIZE, "shard1", 30);
+    ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_SHARD_FLUSH_SIZE, "shard1", -1);
+    assertEquals(1, ThruputMetrics.getHistogram(MonitoredAction.PUT_DATA_SHARD_FLUSH_SIZE, "shard0").getCount());
+    assertEquals(10, ThruputMetrics.getHistogram(MonitoredAction.PUT_DATA_SHARD_FLUSH_SIZE, "shard0").getMax());
+    assertEquals(2, ThruputMetrics.getHistogram(MonitoredAction.PUT_DATA_SHARD_FLUSH_SIZE, "shard1").getCount());
+    assertEquals(20, ThruputMetrics.getHistogram(MonitoredAction.PUT_DATA_SHARD_FLUSH_SIZE, "shard1").getMin());
+    assertEquals(3, ThruputMetrics.getHistogram(MonitoredAction.PUT_DATA_SHARD_FLUSH_SIZE).getCount());
+    ThruputMetrics.clearDatapoints(MonitoredAction.PUT_DATA_SHARD_FLUSH_SIZE);
+    assertEquals(0, ThruputMetrics.getHistogram(MonitoredAction.PUT_DATA_SHARD_FLUSH_SIZE, "shard1").getCount());
+  }
+
   @Test
   public void testNegative() {
     ThruputMetrics.addDataPoint(MonitoredAction.EXPORT_VOLUME, -1);
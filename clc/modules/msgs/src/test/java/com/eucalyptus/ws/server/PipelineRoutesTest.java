@@ -0,0 +1,134 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.ws.server;
+
+import static org.junit.Assert.*;
+import java.util.Arrays;
+import java.util.Set;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.handler.codec.http.DefaultHttpRequest;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.junit.Test;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Unit tests for pipeline routing
+ */
+public class PipelineRoutesTest {
+
+  @Test
+  public void testPrefixAndSuffixRouting( ) {
+    final TestPipeline query = new TestPipeline( "query", false, ImmutableSet.of( "/services/Test" ), null );
+    final TestPipeline soap = new TestPipeline( "soap", true, null, ImmutableSet.of( "/services/Test" ) );
+    final PipelineRoutes routes = new PipelineRoutes( Arrays.<FilteredPipeline>asList( query, soap ) );
+
+    assertSame( "query", query, routes.findAccepting( request( "/services/Test?Action=Foo", false ) ) );
+    assertSame( "soap", soap, routes.findAccepting( request( "/services/Test", true ) ) );
+    assertNull( "other", routes.findAccepting( request( "/services/Other", false ) ) );
+    assertEquals( "query checks", 1, query.checks );
+    assertEquals( "soap checks", 1, soap.checks );
+  }
+
+  @Test
+  public void testNoPathRouting( ) {
+    final TestPipeline query = new TestPipeline( "query", false, ImmutableSet.of( "/services/Test" ), null );
+    final TestPipeline soap = new TestPipeline( "soap", true, null, ImmutableSet.of( "/services/Test" ) );
+    query.acceptNoPath = true;
+    final PipelineRoutes routes = new PipelineRoutes( Arrays.<FilteredPipeline>asList( query, soap ) );
+
+    assertSame( "no path", query, routes.findAccepting( request( "/?Action=Foo", false ) ) );
+    assertEquals( "soap checks", 0, soap.checks );
+  }
+
+  @Test
+  public void testOrderPreserved( ) {
+    final TestPipeline first = new TestPipeline( "first", false, ImmutableSet.of( "/services/" ), null );
+    final TestPipeline second = new TestPipeline( "second", false, ImmutableSet.of( "/services/Test" ), null );
+    final PipelineRoutes routes = new PipelineRoutes( Arrays.<FilteredPipeline>asList( first, second ) );
+
+    assertSame( "first", first, routes.findAccepting( request( "/services/Test", false ) ) );
+  }
+
+  @Test
+  public void testCustomCheckAcceptsNotRouted( ) {
+    final TestPipeline custom = new TestPipeline( "custom", false, ImmutableSet.of( "/services/Test" ), null ) {
+      @Override
+      public boolean checkAccepts( final HttpRequest message ) {
+        checks++;
+        return message.getUri( ).startsWith( "/custom" );
+      }
+    };
+    final PipelineRoutes routes = new PipelineRoutes( Arrays.<FilteredPipeline>asList( custom ) );
+
+    assertSame( "custom", custom, routes.findAccepting( request( "/custom", false ) ) );
+  }
+
+  private static HttpRequest request( final String uri, final boolean soap ) {
+    final HttpRequest request = new DefaultHttpRequest( HttpVersion.HTTP_1_1, HttpMethod.POST, uri );
+    if ( soap ) {
+      request.setHeader( "SOAPAction", "" );
+    }
+    return request;
+  }
+
+  private static class TestPipeline extends FilteredPipeline {
+    private final String name;
+    private final boolean soap;
+    private final Set<String> prefixes;
+    private final Set<String> suffixes;
+    boolean acceptNoPath;
+    int checks;
+
+    TestPipeline( final String name, final boolean soap, final Set<String> prefixes, final Set<String> suffixes ) {
+      this.name = name;
+      this.soap = soap;
+      this.prefixes = prefixes;
+      this.suffixes = suffixes;
+    }
+
+    @Override
+    public String getName( ) {
+      return name;
+    }
+
+    @Override
+    public ChannelPipeline addHandlers( final ChannelPipeline pipeline ) {
+      return pipeline;
+    }
+
+    @Override
+    public boolean checkAccepts( final HttpRequest message ) {
+      checks++;
+      final String uri = message.getUri( );
+      final boolean noPath = uri.isEmpty( ) || uri.equals( "/" ) || uri.startsWith( "/?" );
+      boolean accepts = noPath && acceptNoPath;
+      if ( prefixes != null ) for ( final String prefix : prefixes ) accepts |= uri.startsWith( prefix );
+      if ( suffixes != null ) for ( final String suffix : suffixes ) accepts |= uri.endsWith( suffix );
+      return accepts && soap == message.getHeaderNames( ).contains( "SOAPAction" );
+    }
+
+    @Override
+    public Routing getRouting( ) {
+      return prefixes != null ? Routing.prefix( soap, prefixes ) : Routing.suffix( soap, suffixes );
+    }
+  }
+}
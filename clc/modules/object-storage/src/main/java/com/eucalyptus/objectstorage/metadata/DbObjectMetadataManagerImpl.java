@@ -34,6 +34,7 @@ import javax.persistence.EntityTransaction;
 import org.apache.log4j.Logger;
 import org.hibernate.Criteria;
 import org.hibernate.criterion.Example;
+import org.hibernate.criterion.LikeExpression;
 import org.hibernate.criterion.MatchMode;
 import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projections;
@@ -653,7 +654,7 @@ public class DbObjectMetadataManagerImpl implements ObjectMetadataManager {
       // Include zero since 'istruncated' is still valid
       if (maxEntries >= 0) {
         final int queryStrideSize = maxEntries + 1;
-        ObjectEntity searchObj = new ObjectEntity().withBucket(bucket).withState(ObjectState.extant);
+        final ObjectEntity searchObj = new ObjectEntity().withBucket(bucket).withState(ObjectState.extant);
 
         // Return latest version, so exclude delete markers as well.
         // This makes listVersion act like listObjects
@@ -662,50 +663,27 @@ public class DbObjectMetadataManagerImpl implements ObjectMetadataManager {
           searchObj.setIsDeleteMarker(false);
         }
 
-        Criteria objCriteria = Entities.createCriteria(ObjectEntity.class);
-        objCriteria.setReadOnly(true);
-        objCriteria.setFetchSize(queryStrideSize);
-        objCriteria.add(Example.create(searchObj));
-        objCriteria.addOrder(Order.asc("objectKey"));
-        objCriteria.addOrder(Order.desc("objectModifiedTimestamp"));
-        objCriteria.setMaxResults(queryStrideSize);
-
-        if (!Strings.isNullOrEmpty(fromKeyMarker)) {
-          if (!Strings.isNullOrEmpty(fromVersionId)) {
-            // Look for the key that matches the key-marker and version-id-marker
-            ObjectEntity searchObject = new ObjectEntity(bucket, fromKeyMarker, fromVersionId);
-            ObjectEntity matchingObject = null;
-            try {
-              matchingObject = Entities.uniqueResult(searchObject);
-              if (matchingObject == null || matchingObject.getObjectModifiedTimestamp() == null) {
-                throw new NoSuchKeyException(bucket.getBucketName() + "/" + fromKeyMarker + "?versionId=" + fromVersionId);
-              }
-            } catch (Exception e) {
-              LOG.warn("No matching object found for key-marker=" + fromKeyMarker + " and version-id-marker=" + fromVersionId);
+        Date fromVersionTimestamp = null;
+        if (!Strings.isNullOrEmpty(fromKeyMarker) && !Strings.isNullOrEmpty(fromVersionId)) {
+          // Look for the key that matches the key-marker and version-id-marker
+          ObjectEntity searchObject = new ObjectEntity(bucket, fromKeyMarker, fromVersionId);
+          ObjectEntity matchingObject = null;
+          try {
+            matchingObject = Entities.uniqueResult(searchObject);
+            if (matchingObject == null || matchingObject.getObjectModifiedTimestamp() == null) {
               throw new NoSuchKeyException(bucket.getBucketName() + "/" + fromKeyMarker + "?versionId=" + fromVersionId);
             }
-
-            // The result set should be exclusive of the key with the key-marker version-id-marker pair. Look for keys that chronologically
-            // follow the version-id-marker for the given key-marker and also the keys that follow the key-marker.
-            objCriteria.add(Restrictions.or(
-                Restrictions.and(Restrictions.eq("objectKey", fromKeyMarker),
-                    Restrictions.lt("objectModifiedTimestamp", matchingObject.getObjectModifiedTimestamp())),
-                Restrictions.gt("objectKey", fromKeyMarker)));
-          } else { // No version-id-marker, just set the criteria the key-marker
-            objCriteria.add(Restrictions.gt("objectKey", fromKeyMarker));
+          } catch (Exception e) {
+            LOG.warn("No matching object found for key-marker=" + fromKeyMarker + " and version-id-marker=" + fromVersionId);
+            throw new NoSuchKeyException(bucket.getBucketName() + "/" + fromKeyMarker + "?versionId=" + fromVersionId);
           }
-        } else {
-          // No criteria to be set
+          fromVersionTimestamp = matchingObject.getObjectModifiedTimestamp();
         }
 
-        if (!Strings.isNullOrEmpty(prefix)) {
-          objCriteria.add(Restrictions.like("objectKey", prefix, MatchMode.START));
-        } else {
+        if (Strings.isNullOrEmpty(prefix)) {
           prefix = "";
         }
 
-        objCriteria = getSearchByBucket(objCriteria, bucket);
-
         // Ensure not null.
         if (Strings.isNullOrEmpty(delimiter)) {
           delimiter = "";
@@ -713,20 +691,36 @@ public class DbObjectMetadataManagerImpl implements ObjectMetadataManager {
 
         List<ObjectEntity> objectInfos = null;
         int resultKeyCount = 0;
-        String[] parts = null;
-        String prefixString = null;
         boolean useDelimiter = !Strings.isNullOrEmpty(delimiter);
-        int pages = 0;
+
+        // Keyset cursor, the last examined record and the common prefix it belongs to (if any)
+        String cursorKey = null;
+        Date cursorTimestamp = null;
+        String cursorPrefix = null;
+        if (useDelimiter && !Strings.isNullOrEmpty(fromKeyMarker) && Strings.isNullOrEmpty(fromVersionId)
+            && fromKeyMarker.startsWith(prefix) && fromKeyMarker.indexOf(delimiter, prefix.length()) == fromKeyMarker.length() - delimiter.length()) {
+          // The marker is a common prefix, keys beneath it are not listed
+          cursorPrefix = fromKeyMarker;
+        }
 
         // Iterate over result sets of size maxkeys + 1 since
         // commonPrefixes collapse the list, we may examine many more
         // records than maxkeys + 1
         do {
-          parts = null;
-          prefixString = null;
-
-          // Skip ahead the next page of 'queryStrideSize' results.
-          objCriteria.setFirstResult(pages++ * queryStrideSize);
+          final Criteria objCriteria =
+              listVersionsCriteria(bucket, searchObj, prefix, fromKeyMarker, fromVersionTimestamp, queryStrideSize);
+          final String cursorPrefixSuccessor = cursorPrefix == null ? null : prefixSuccessor(cursorPrefix);
+          if (cursorPrefixSuccessor != null) {
+            // Seek past all keys beneath the common prefix rather than reading them
+            objCriteria.add(Restrictions.ge("objectKey", cursorPrefixSuccessor));
+          } else if (cursorKey != null) {
+            objCriteria.add(Restrictions.or(
+                Restrictions.and(Restrictions.eq("objectKey", cursorKey),
+                    cursorTimestamp == null ?
+                        Restrictions.isNotNull("objectModifiedTimestamp") :
+                        Restrictions.lt("objectModifiedTimestamp", cursorTimestamp)),
+                Restrictions.gt("objectKey", cursorKey)));
+          }
 
           objectInfos = (List<ObjectEntity>) objCriteria.list();
           if (objectInfos == null) {
@@ -734,16 +728,18 @@ public class DbObjectMetadataManagerImpl implements ObjectMetadataManager {
             break;
           }
 
+          String lastPrefixString = null;
           for (ObjectEntity objectRecord : objectInfos) {
+            cursorKey = objectRecord.getObjectKey();
+            cursorTimestamp = objectRecord.getObjectModifiedTimestamp();
+            lastPrefixString = null;
             if (useDelimiter) {
-              // Check if it will get aggregated as a commonprefix
-              // Split the substring with at least 2 matches as we need a result containing trailing strings. For instance
-              // if "x" is delimiter and key string is also "x", then this key should be included in common prefixes.
-              // "x".split("x") gives 0 strings which causes the subsequent logic to skip the key where as
-              // "x".split("x", 2) gives 2 empty strings which is what the logic expects
-              parts = objectRecord.getObjectKey().substring(prefix.length()).split(delimiter, 2);
-              if (parts.length > 1) {
-                prefixString = prefix + parts[0] + delimiter;
+              // Check if it will get aggregated as a commonprefix. If the delimiter is also the remainder of
+              // the key string, for instance "x" for key "x", then this key should be included in common prefixes.
+              final int delimiterIndex = objectRecord.getObjectKey().indexOf(delimiter, prefix.length());
+              if (delimiterIndex >= 0) {
+                final String prefixString = objectRecord.getObjectKey().substring(0, delimiterIndex + delimiter.length());
+                lastPrefixString = prefixString;
                 if (!prefixString.equals(fromKeyMarker) && !commonPrefixes.contains(prefixString)) {
                   if (resultKeyCount == maxEntries) {
                     // This is a new record, so we know
@@ -782,6 +778,9 @@ public class DbObjectMetadataManagerImpl implements ObjectMetadataManager {
           if (resultKeyCount <= maxEntries && objectInfos.size() <= maxEntries) {
             break;
           }
+
+          // Continue after the last record, or after the common prefix it belongs to
+          cursorPrefix = lastPrefixString;
         } while (resultKeyCount <= maxEntries);
 
         // Sort the prefixes from the hashtable and add to the reply
@@ -802,6 +801,78 @@ public class DbObjectMetadataManagerImpl implements ObjectMetadataManager {
     }
   }
 
+  /**
+   * Criteria for a page of a version listing, ordered by key and then newest version first.
+   */
+  private Criteria listVersionsCriteria(final Bucket bucket, final ObjectEntity searchObj, final String prefix, final String fromKeyMarker,
+      final Date fromVersionTimestamp, final int queryStrideSize) {
+    Criteria objCriteria = Entities.createCriteria(ObjectEntity.class);
+    objCriteria.setReadOnly(true);
+    objCriteria.setFetchSize(queryStrideSize);
+    objCriteria.add(Example.create(searchObj));
+    objCriteria.addOrder(Order.asc("objectKey"));
+    objCriteria.addOrder(Order.desc("objectModifiedTimestamp"));
+    objCriteria.setMaxResults(queryStrideSize);
+
+    if (!Strings.isNullOrEmpty(fromKeyMarker)) {
+      if (fromVersionTimestamp != null) {
+        // The result set should be exclusive of the key with the key-marker version-id-marker pair. Look for keys that chronologically
+        // follow the version-id-marker for the given key-marker and also the keys that follow the key-marker.
+        objCriteria.add(Restrictions.or(
+            Restrictions.and(Restrictions.eq("objectKey", fromKeyMarker),
+                Restrictions.lt("objectModifiedTimestamp", fromVersionTimestamp)),
+            Restrictions.gt("objectKey", fromKeyMarker)));
+      } else { // No version-id-marker, just set the criteria the key-marker
+        objCriteria.add(Restrictions.gt("objectKey", fromKeyMarker));
+      }
+    }
+
+    if (!prefix.isEmpty()) {
+      objCriteria.add(new PrefixLikeExpression("objectKey", prefix));
+    }
+
+    return getSearchByBucket(objCriteria, bucket);
+  }
+
+  /**
+   * The least string greater than every string with the given prefix.
+   *
+   * @return The successor, or null if there is none
+   */
+  static String prefixSuccessor(final String prefix) {
+    for (int i = prefix.length() - 1; i >= 0; i--) {
+      final char character = prefix.charAt(i);
+      if (character != Character.MAX_VALUE) {
+        return prefix.substring(0, i) + (char) (character + 1);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Like expression matching a literal prefix, wildcard characters in the prefix are escaped.
+   */
+  private static final class PrefixLikeExpression extends LikeExpression {
+    private static final long serialVersionUID = 1L;
+    private static final char ESCAPE = '!';
+
+    PrefixLikeExpression(final String propertyName, final String prefix) {
+      super(propertyName, escape(prefix) + "%", ESCAPE, false);
+    }
+
+    private static String escape(final String value) {
+      final StringBuilder escaped = new StringBuilder(value.length() + 8);
+      for (int i = 0; i < value.length(); i++) {
+        final char character = value.charAt(i);
+        if (character == ESCAPE || character == '%' || character == '_') {
+          escaped.append(ESCAPE);
+        }
+        escaped.append(character);
+      }
+      return escaped.toString();
+    }
+  }
+
   @Override
   public long countValid(Bucket bucket) throws Exception {
     try (TransactionResource trans = Entities.transactionFor(ObjectEntity.class)) {
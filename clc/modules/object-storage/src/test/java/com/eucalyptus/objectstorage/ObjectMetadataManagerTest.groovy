@@ -28,6 +28,7 @@ import com.eucalyptus.objectstorage.exceptions.IllegalResourceStateException
 import com.eucalyptus.objectstorage.exceptions.MetadataOperationFailureException
 import com.eucalyptus.objectstorage.exceptions.NoSuchEntityException
 import com.eucalyptus.objectstorage.metadata.BucketMetadataManager
+import com.eucalyptus.objectstorage.metadata.DbObjectMetadataManagerImpl
 import com.eucalyptus.objectstorage.metadata.ObjectMetadataManager
 import com.eucalyptus.objectstorage.util.ObjectStorageProperties
 import com.google.common.collect.Lists
@@ -285,6 +286,57 @@ public class ObjectMetadataManagerTest {
     assert(verifyListingOrder(listing))
   }
 
+  @Test
+  public void testListPaginatedDelimiterAcrossPages() {
+    UserPrincipal usr = Accounts.lookupPrincipalByUserId(UnitTestSupport.getUsersByAccountName(UnitTestSupport.getTestAccounts().first()).first())
+    Bucket bucket = TestUtils.createTestBucket(mgr, 'bucket')
+    (0..<10).each { d ->
+      TestUtils.createNObjects(objMgr, 5, bucket, "dir${d}/", 100, usr)
+    }
+    TestUtils.createNObjects(objMgr, 4, bucket, 'file', 100, usr)
+
+    def prefixes = []
+    def keys = []
+    String marker = null
+    int pages = 0
+    while (true) {
+      PaginatedResult<ObjectEntity> listing = objMgr.listPaginated(bucket, 3, null, '/', marker)
+      prefixes.addAll(listing.getCommonPrefixes())
+      keys.addAll(listing.getEntityList().collect { it.getObjectKey() })
+      pages++
+      if (!listing.getIsTruncated()) break
+      def last = listing.getLastEntry()
+      marker = last instanceof ObjectEntity ? ((ObjectEntity)last).getObjectKey() : (String)last
+    }
+
+    assert(prefixes == (0..<10).collect { "dir${it}/".toString() })
+    assert(keys == (0..<4).collect { "file${it}".toString() })
+    assert(pages == 5)
+  }
+
+  @Test
+  public void testListPaginatedLiteralPrefix() {
+    UserPrincipal usr = Accounts.lookupPrincipalByUserId(UnitTestSupport.getUsersByAccountName(UnitTestSupport.getTestAccounts().first()).first())
+    Bucket bucket = TestUtils.createTestBucket(mgr, 'bucket')
+    TestUtils.createNObjects(objMgr, 2, bucket, 'a_', 100, usr)
+    TestUtils.createNObjects(objMgr, 2, bucket, 'ab', 100, usr)
+    TestUtils.createNObjects(objMgr, 2, bucket, 'a.b', 100, usr)
+
+    PaginatedResult<ObjectEntity> listing = objMgr.listPaginated(bucket, 100, 'a_', null, null)
+    assert(listing.getEntityList().collect { it.getObjectKey() } == ['a_0', 'a_1'])
+
+    listing = objMgr.listPaginated(bucket, 100, null, '.', null)
+    assert(listing.getCommonPrefixes() == ['a.'])
+    assert(listing.getEntityList().size() == 4)
+  }
+
+  @Test
+  public void testPrefixSuccessor() {
+    assert(DbObjectMetadataManagerImpl.prefixSuccessor('dir/') == 'dir0')
+    assert(DbObjectMetadataManagerImpl.prefixSuccessor('a\uffff') == 'b')
+    assert(DbObjectMetadataManagerImpl.prefixSuccessor('\uffff') == null)
+  }
+
   private static boolean verifyListingOrder(PaginatedResult<ObjectEntity> listing) {
     ObjectEntity last = null;
     for(ObjectEntity e : listing.getEntityList()) {
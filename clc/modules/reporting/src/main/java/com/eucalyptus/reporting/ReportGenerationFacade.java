@@ -20,6 +20,7 @@
 package com.eucalyptus.reporting;
 
 import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import com.eucalyptus.reporting.units.Units;
@@ -61,7 +62,11 @@ public class ReportGenerationFacade {
       throw new ReportGenerationException( "Error generating report", e );
     }
 
-    return new String( reportOutput.toByteArray(), Charsets.UTF_8 );
+    try {
+      return reportOutput.toString( Charsets.UTF_8.name() ); // decode in place, no intermediate copy
+    } catch ( final UnsupportedEncodingException e ) {
+      throw new ReportGenerationException( "Error generating report", e );
+    }
   }
 
   public static class ReportGenerationException extends Exception {
@@ -63,12 +63,21 @@ package com.eucalyptus.reporting.art.generator;
 
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
 import org.apache.log4j.Logger;
+import org.hibernate.criterion.Restrictions;
 import com.eucalyptus.reporting.art.entity.*;
+import com.eucalyptus.reporting.art.generator.InstanceUsagePeriods.InstanceMetricDimensionKey;
 import com.eucalyptus.reporting.domain.*;
 import com.eucalyptus.reporting.event_store.ReportingInstanceCreateEvent;
+import com.eucalyptus.reporting.event_store.ReportingInstanceEventStore;
 import com.eucalyptus.reporting.event_store.ReportingInstanceUsageEvent;
+import com.eucalyptus.reporting.event_store.ReportingInstanceUsageRollup;
+import com.eucalyptus.util.Pair;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 public class InstanceArtGenerator extends AbstractArtGenerator {
@@ -92,6 +101,7 @@ public class InstanceArtGenerator extends AbstractArtGenerator {
   public static final String DIM_EXTERNAL = "external";
 
   private static final long USAGE_SEARCH_PERIOD = TimeUnit.DAYS.toMillis( 12 );
+  private static final long USAGE_ROLLUP_PERIOD = TimeUnit.HOURS.toMillis( 1 );
 
   @Override
   public ReportArtEntity generateReportArt( final ReportArtEntity report ) {
@@ -100,8 +110,252 @@ public class InstanceArtGenerator extends AbstractArtGenerator {
     /* Find all instance create events. These will be used to populate the ART tree with instances etc,
      * if there is usage for them within the report boundaries (determined below).
      */
+    final Map<String, ReportingInstanceCreateEvent> createEvents = getInstanceCreateEvents( report.getEndMs() );
+
+    /* Populate the ART tree with nodes and usage. Rollups are used for whole hours when
+     * available, usage events are then only scanned for the edges of the report.
+     */
+    final Map<String, InstanceUsageArtEntity> usageEntities = Maps.newHashMap();
+    final Map<String, Long> durations = Maps.newHashMap();
+    final long rollupBeginMs = rollupPeriodCeiling( report.getBeginMs() );
+    final long rollupEndMs = Math.min( rollupPeriodFloor( report.getEndMs() ), getInstanceUsageRollupEndMs() );
+    if ( rollupBeginMs < rollupEndMs ) {
+      addUsage( report, createEvents, usageEntities, durations, report.getBeginMs(), rollupBeginMs );
+      addRollupUsage( report, createEvents, usageEntities, durations, rollupBeginMs, rollupEndMs );
+      addUsage( report, createEvents, usageEntities, durations, rollupEndMs, report.getEndMs() );
+    } else {
+      addUsage( report, createEvents, usageEntities, durations, report.getBeginMs(), report.getEndMs() );
+    }
+    for ( final Map.Entry<String, Long> durationEntry : durations.entrySet() ) {
+      usageEntities.get( durationEntry.getKey() ).setDurationMs( durationEntry.getValue() );
+    }
+
+    /* Perform totals and summations
+       */
+    for ( final AvailabilityZoneArtEntity zone : report.getZones().values() ) {
+      final UsageTotalsArtEntity zoneUsage = zone.getUsageTotals();
+      for ( final AccountArtEntity account : zone.getAccounts().values() ) {
+        final UsageTotalsArtEntity accountUsage = account.getUsageTotals();
+        for ( final UserArtEntity user : account.getUsers().values() ) {
+          final UsageTotalsArtEntity userUsage = user.getUsageTotals();
+          for ( final InstanceArtEntity instance : user.getInstances().values() ) {
+            updateUsageTotals( userUsage, instance );
+            updateUsageTotals( accountUsage, instance );
+            updateUsageTotals( zoneUsage, instance );
+          }
+        }
+      }
+    }
+
+    return report;
+  }
+
+  /**
+   * Generate hourly usage rollups for a period.
+   *
+   * <p>Usage is attributed to each hour as it would be for a report covering
+   * the hour. Any existing rollups for the period are replaced.</p>
+   *
+   * @param beginMs The start of the period, on an hour boundary
+   * @param endMs The end of the period, on an hour boundary
+   */
+  public void generateUsageRollups( final long beginMs, final long endMs ) {
+    Preconditions.checkArgument( beginMs == rollupPeriodFloor( beginMs ), "Invalid begin for rollup: %s", beginMs );
+    Preconditions.checkArgument( endMs == rollupPeriodFloor( endMs ), "Invalid end for rollup: %s", endMs );
+    log.debug( "Generating usage rollups" );
+
+    final Map<String, ReportingInstanceCreateEvent> createEvents = getInstanceCreateEvents( endMs );
+    final Map<InstanceMetricDimensionKey, Map<Long, UsageRollup>> rollups = Maps.newHashMap();
+    foreachInstanceUsageEvent(
+        beginMs - USAGE_SEARCH_PERIOD,
+        endMs + USAGE_SEARCH_PERIOD,
+        new InstanceUsagePeriods( createEvents ) {
+          @Override
+          protected void period( final ReportingInstanceCreateEvent createEvent,
+                                 final ReportingInstanceUsageEvent event,
+                                 final long durationBeginMs,
+                                 final long periodBeginMs,
+                                 final long periodEndMs,
+                                 final double usage ) {
+            final InstanceMetricDimensionKey key =
+                new InstanceMetricDimensionKey( event.getUuid(), event.getMetric(), event.getDimension() );
+            for ( long hourMs = Math.max( beginMs, rollupPeriodFloor( periodBeginMs ) );
+                  hourMs < Math.min( endMs, periodEndMs );
+                  hourMs += USAGE_ROLLUP_PERIOD ) {
+              final long hourEndMs = hourMs + USAGE_ROLLUP_PERIOD;
+              final long coveredMs = overlap( hourMs, hourEndMs, periodBeginMs, periodEndMs );
+              if ( coveredMs > 0 ) {
+                Map<Long, UsageRollup> keyRollups = rollups.get( key );
+                if ( keyRollups == null ) {
+                  keyRollups = Maps.newTreeMap();
+                  rollups.put( key, keyRollups );
+                }
+                UsageRollup rollup = keyRollups.get( hourMs );
+                if ( rollup == null ) {
+                  rollup = new UsageRollup();
+                  keyRollups.put( hourMs, rollup );
+                }
+                rollup.add( fractionalUsage( hourMs, hourEndMs, periodBeginMs, periodEndMs, usage ), coveredMs );
+              }
+            }
+          }
+        } );
+
+    final List<ReportingInstanceUsageRollup> rollupList = Lists.newArrayList();
+    for ( final Map.Entry<InstanceMetricDimensionKey, Map<Long, UsageRollup>> keyEntry : rollups.entrySet() ) {
+      final InstanceMetricDimensionKey key = keyEntry.getKey();
+      for ( final Map.Entry<Long, UsageRollup> rollupEntry : keyEntry.getValue().entrySet() ) {
+        rollupList.add( new ReportingInstanceUsageRollup(
+            key.getInstanceUuid(),
+            key.getMetric(),
+            key.getDimension(),
+            rollupEntry.getKey(),
+            rollupEntry.getValue().value,
+            rollupEntry.getValue().durationMs ) );
+      }
+    }
+    storeInstanceUsageRollups( beginMs, endMs, rollupList );
+  }
+
+  /**
+   * Get the period of usage rollups affected by late usage events.
+   *
+   * <p>A usage event stored after the hour it is for was rolled up changes the
+   * usage for every hour from the previous event for the metric to the next.</p>
+   *
+   * @param storedAfterMs Usage events stored after this time are checked
+   * @param rollupEndMs The end of the period covered by rollups
+   * @return The period to roll up again, on hour boundaries, or null if none
+   */
+  @Nullable
+  public Pair<Long,Long> getLateUsageRollupPeriod( final long storedAfterMs, final long rollupEndMs ) {
+    final Map<InstanceMetricDimensionKey, LateUsage> lateUsage = Maps.newHashMap();
+    foreachInstanceUsageEventStoredAfter(
+        storedAfterMs,
+        rollupEndMs - USAGE_SEARCH_PERIOD,
+        rollupEndMs,
+        new Predicate<ReportingInstanceUsageEvent>() {
+          @Override
+          public boolean apply( final ReportingInstanceUsageEvent event ) {
+            final InstanceMetricDimensionKey key =
+                new InstanceMetricDimensionKey( event.getUuid(), event.getMetric(), event.getDimension() );
+            final LateUsage late = lateUsage.get( key );
+            if ( late == null ) {
+              lateUsage.put( key, new LateUsage( event.getTimestampMs() ) );
+            } else {
+              late.add( event.getTimestampMs() );
+            }
+            return true;
+          }
+        } );
+    if ( lateUsage.isEmpty() ) return null;
+
+    long lateBeginMs = Long.MAX_VALUE;
+    long lateEndMs = Long.MIN_VALUE;
+    for ( final LateUsage late : lateUsage.values() ) {
+      lateBeginMs = Math.min( lateBeginMs, late.firstMs );
+      lateEndMs = Math.max( lateEndMs, late.lastMs );
+    }
+
+    /* Find the events either side of the late events, without a previous event
+     * the usage is from instance creation or the start of the search period
+     */
+    final Map<String, ReportingInstanceCreateEvent> createEvents = getInstanceCreateEvents( rollupEndMs );
+    foreachInstanceUsageEvent(
+        lateBeginMs - USAGE_SEARCH_PERIOD,
+        lateEndMs + USAGE_SEARCH_PERIOD,
+        new Predicate<ReportingInstanceUsageEvent>() {
+          @Override
+          public boolean apply( final ReportingInstanceUsageEvent event ) {
+            final LateUsage late = lateUsage.get(
+                new InstanceMetricDimensionKey( event.getUuid(), event.getMetric(), event.getDimension() ) );
+            if ( late != null ) {
+              late.neighbour( event.getTimestampMs() );
+            }
+            return true;
+          }
+        } );
+    long beginMs = Long.MAX_VALUE;
+    long endMs = Long.MIN_VALUE;
+    for ( final Map.Entry<InstanceMetricDimensionKey, LateUsage> lateEntry : lateUsage.entrySet() ) {
+      final LateUsage late = lateEntry.getValue();
+      final ReportingInstanceCreateEvent createEvent = createEvents.get( lateEntry.getKey().getInstanceUuid() );
+      final long searchBeginMs = late.firstMs - USAGE_SEARCH_PERIOD;
+      beginMs = Math.min( beginMs, late.previousMs != null ?
+          late.previousMs :
+          createEvent == null ? searchBeginMs : Math.max( searchBeginMs, createEvent.getTimestampMs() ) );
+      endMs = Math.max( endMs, late.nextMs != null ? late.nextMs : late.lastMs );
+    }
+    beginMs = rollupPeriodFloor( beginMs );
+    endMs = Math.min( rollupEndMs, rollupPeriodCeiling( endMs ) );
+    return beginMs < endMs ? Pair.pair( beginMs, endMs ) : null;
+  }
+
+  /**
+   * Get the end of the period covered by usage rollups.
+   *
+   * @return The end time or zero if there are no rollups
+   */
+  public long getInstanceUsageRollupEndMs() {
+    final AtomicLong lastRollupMs = new AtomicLong( -1 );
+    foreachInstanceUsageRollup( 0, Long.MAX_VALUE, false, new Predicate<ReportingInstanceUsageRollup>() {
+      @Override
+      public boolean apply( final ReportingInstanceUsageRollup rollup ) {
+        lastRollupMs.set( rollup.getTimestampMs() );
+        return false;
+      }
+    } );
+    return lastRollupMs.get() < 0 ? 0 : lastRollupMs.get() + USAGE_ROLLUP_PERIOD;
+  }
+
+  /**
+   * Get the time the latest usage rollups were stored.
+   *
+   * @return The time or zero if there are no rollups
+   */
+  public long getInstanceUsageRollupStoredMs() {
+    final AtomicLong storedMs = new AtomicLong( );
+    foreachInstanceUsageRollup( 0, Long.MAX_VALUE, false, new Predicate<ReportingInstanceUsageRollup>() {
+      @Override
+      public boolean apply( final ReportingInstanceUsageRollup rollup ) {
+        if ( rollup.getCreationTimestamp() != null ) {
+          storedMs.set( rollup.getCreationTimestamp().getTime() );
+        }
+        return false;
+      }
+    } );
+    return storedMs.get();
+  }
+
+  /**
+   * Get the start of the first period for which there is usage.
+   *
+   * @return The start time or zero if there is no usage
+   */
+  public long getInstanceUsageBeginMs() {
+    final AtomicLong firstUsageMs = new AtomicLong( );
+    foreachInstanceUsageEvent( 0, Long.MAX_VALUE, new Predicate<ReportingInstanceUsageEvent>() {
+      @Override
+      public boolean apply( final ReportingInstanceUsageEvent event ) {
+        firstUsageMs.set( rollupPeriodFloor( event.getTimestampMs() ) );
+        return false;
+      }
+    } );
+    return firstUsageMs.get();
+  }
+
+  static long rollupPeriodFloor( final long timestampMs ) {
+    return timestampMs - ( timestampMs % USAGE_ROLLUP_PERIOD );
+  }
+
+  static long rollupPeriodCeiling( final long timestampMs ) {
+    final long floorMs = rollupPeriodFloor( timestampMs );
+    return floorMs == timestampMs ? floorMs : floorMs + USAGE_ROLLUP_PERIOD;
+  }
+
+  private Map<String, ReportingInstanceCreateEvent> getInstanceCreateEvents( final long endMs ) {
     final Map<String, ReportingInstanceCreateEvent> createEvents = Maps.newHashMap();
-    foreachInstanceCreateEvent( report.getEndMs(), new Predicate<ReportingInstanceCreateEvent>() {
+    foreachInstanceCreateEvent( endMs, new Predicate<ReportingInstanceCreateEvent>() {
       @Override
       public boolean apply( final ReportingInstanceCreateEvent createEvent ) {
         final ReportingInstanceCreateEvent prevEvent = createEvents.put( createEvent.getUuid(), createEvent );
@@ -111,118 +365,126 @@ public class InstanceArtGenerator extends AbstractArtGenerator {
         return true;
       }
     } );
+    return createEvents;
+  }
 
-    /* Scan through usage events in order, and populate the ART tree with nodes and usage.
-     */
-    final Map<InstanceMetricDimensionKey, MetricPrevData> prevDataMap = Maps.newHashMap();
-    final Map<String, InstanceUsageArtEntity> usageEntities = Maps.newHashMap();
+  /**
+   * Scan through usage events in order, and populate the ART tree with nodes and usage for the given period.
+   */
+  private void addUsage( final ReportArtEntity report,
+                         final Map<String, ReportingInstanceCreateEvent> createEvents,
+                         final Map<String, InstanceUsageArtEntity> usageEntities,
+                         final Map<String, Long> durations,
+                         final long beginMs,
+                         final long endMs ) {
+    if ( beginMs >= endMs ) return;
+    final Map<String, Long> periodDurations = Maps.newHashMap();
     foreachInstanceUsageEvent(
-        report.getBeginMs() - USAGE_SEARCH_PERIOD,
-        report.getEndMs() + USAGE_SEARCH_PERIOD,
-        new Predicate<ReportingInstanceUsageEvent>() {
+        beginMs - USAGE_SEARCH_PERIOD,
+        endMs + USAGE_SEARCH_PERIOD,
+        new InstanceUsagePeriods( createEvents ) {
           @Override
-          public boolean apply( final ReportingInstanceUsageEvent event ) {
-            final InstanceMetricDimensionKey key =
-                new InstanceMetricDimensionKey( event.getUuid(), event.getMetric(),
-                    event.getDimension() );
-            final long eventMs = event.getTimestampMs();
-            if ( event.getValue() == null ) return true;
-
-            if ( !usageEntities.containsKey( event.getUuid() ) ) {
-              usageEntities.put( event.getUuid(), new InstanceUsageArtEntity() );
-            }
-            final InstanceUsageArtEntity usageEntity = usageEntities.get( event.getUuid() );
-            final ReportingInstanceCreateEvent createEvent = createEvents.get( event.getUuid() );
-            if ( createEvent == null ) {
-              log.error( "Usage event without create event:" + event.getUuid() );
-              return true;
-            }
-
-            /* Populate the nodes in the tree for this usage, if the usage falls within report boundaries */
-            if ( eventMs >= report.getBeginMs() || eventMs <= report.getEndMs() ) {
-              if (!addParentNodes( report, createEvent, usageEntity )) {
-                return true;
-              }
-            }
+          protected boolean accept( final ReportingInstanceCreateEvent createEvent,
+                                    final ReportingInstanceUsageEvent event ) {
+            /* Populate the nodes in the tree for this usage */
+            return addParentNodes( report, createEvent, getUsageEntity( usageEntities, event.getUuid() ) );
+          }
 
-            /* Update the total usage in the usage art entity, for this uuid/metric/dimension combo.
-             * Metric values are cumulative, so we must subtract each from the last. For this reason,
-             * we must retain previous values of each uuid/metric/dim combo, the earliest and latest times
-             * for each combo (to update the duration), and the sequence numbers (to detect sensor resets)
+          @Override
+          protected void period( final ReportingInstanceCreateEvent createEvent,
+                                 final ReportingInstanceUsageEvent event,
+                                 final long durationBeginMs,
+                                 final long periodBeginMs,
+                                 final long periodEndMs,
+                                 final double usage ) {
+            /* Update the instance duration if necessary.
+             *
+             * Find the fraction of this period which falls within report boundaries. This is
+             * needed because period boundaries do not align with report boundaries.
              */
-            if ( !prevDataMap.containsKey( key ) ) {
-              /* No prior value. Use usage from instance creation to present
-               * Equivalent to inserting a zero-usage event at instance creation time
-               *
-               * Find the fraction of this period which falls within report boundaries. This is
-               * needed because period boundaries do not align with report boundaries.
-               */
-              usageEntity.setDurationMs( Math.max( usageEntity.getDurationMs(),
-                  overlap( report.getBeginMs(), report.getEndMs(), createEvent.getTimestampMs(), eventMs ) ) );
-              Double fractionalVal = fractionalUsage( report.getBeginMs(), report.getEndMs(),
-                  createEvent.getTimestampMs(), eventMs, event.getValue() );
-              addMetricValueToUsageEntity( usageEntity, event.getMetric(), event.getDimension(),
-                  fractionalVal );
-              log.debug( String.format( "new metric time:%d-%d report:%d-%d uuid:%s metric:%s dim:%s val:%f fraction:%f",
-                  createEvent.getTimestampMs(), eventMs, report.getBeginMs(), report.getEndMs(),
-                  event.getUuid(), event.getMetric(), event.getDimension(), event.getValue(), fractionalVal ) );
-              prevDataMap.put( key, new MetricPrevData( eventMs, eventMs, event.getValue(), event.getSequenceNum() ) );
-            } else {
-              /* Previous value exists */
-              final MetricPrevData prevData = prevDataMap.get( key );
-
-              /* We have a period (firstMs to now); update the instance duration if necessary */
-              usageEntity.setDurationMs( Math.max( usageEntity.getDurationMs(),
-                  overlap( report.getBeginMs(), report.getEndMs(), prevData.firstMs, eventMs ) ) );
-
-              if ( event.getSequenceNum() < prevData.lastSeq || event.getSequenceNum()==0 ) {
-                /* SENSOR RESET; we lost data; just take whatever amount greater than 0 */
-
-                /* Find the fraction of this period which falls within report boundaries. */
-                Double fractionalVal = fractionalUsage( report.getBeginMs(), report.getEndMs(),
-                    prevData.lastMs, eventMs, event.getValue() );
-                addMetricValueToUsageEntity( usageEntity, event.getMetric(), event.getDimension(),
-                    fractionalVal );
-                log.debug( String.format( "reset time:%d-%d report:%d-%d uuid:%s metric:%s dim:%s val:%f fraction:%f",
-                    prevData.lastMs, eventMs, report.getBeginMs(), report.getEndMs(), event.getUuid(), event.getMetric(),
-                    event.getDimension(), event.getValue(), fractionalVal ) );
-              } else {
-                /* Increase total by val minus lastVal */
-
-                /* Find the fraction of this period which falls within report boundaries. */
-                Double fractionalVal = fractionalUsage( report.getBeginMs(), report.getEndMs(),
-                    prevData.lastMs, eventMs, event.getValue() - prevData.lastVal );
-                addMetricValueToUsageEntity( usageEntity, event.getMetric(), event.getDimension(),
-                    fractionalVal );
-                log.debug( String.format( "event time:%d-%d report:%d-%d uuid:%s metric:%s dim:%s val:%f lastVal:%f fraction:%f",
-                    prevData.lastMs, eventMs, report.getBeginMs(), report.getEndMs(), event.getUuid(), event.getMetric(),
-                    event.getDimension(), event.getValue(), prevData.lastVal, fractionalVal ) );
-              }
-              prevDataMap.put( key, new MetricPrevData( prevData.firstMs, eventMs, event.getValue(), event.getSequenceNum() ) );
+            addDuration( periodDurations, event.getUuid(), overlap( beginMs, endMs, durationBeginMs, periodEndMs ) );
+            final Double fractionalVal = fractionalUsage( beginMs, endMs, periodBeginMs, periodEndMs, usage );
+            addMetricValueToUsageEntity( usageEntities.get( event.getUuid() ), event.getMetric(), event.getDimension(),
+                fractionalVal );
+            if ( log.isDebugEnabled() ) {
+              log.debug( String.format( "time:%d-%d report:%d-%d uuid:%s metric:%s dim:%s val:%f usage:%f fraction:%f",
+                  periodBeginMs, periodEndMs, beginMs, endMs, event.getUuid(), event.getMetric(),
+                  event.getDimension(), event.getValue(), usage, fractionalVal ) );
             }
-            return true;
           }
         } );
+    addDurations( durations, periodDurations );
+  }
 
-
-    /* Perform totals and summations
-       */
-    for ( final AvailabilityZoneArtEntity zone : report.getZones().values() ) {
-      final UsageTotalsArtEntity zoneUsage = zone.getUsageTotals();
-      for ( final AccountArtEntity account : zone.getAccounts().values() ) {
-        final UsageTotalsArtEntity accountUsage = account.getUsageTotals();
-        for ( final UserArtEntity user : account.getUsers().values() ) {
-          final UsageTotalsArtEntity userUsage = user.getUsageTotals();
-          for ( final InstanceArtEntity instance : user.getInstances().values() ) {
-            updateUsageTotals( userUsage, instance );
-            updateUsageTotals( accountUsage, instance );
-            updateUsageTotals( zoneUsage, instance );
+  /**
+   * Populate the ART tree with nodes and usage from rollups for the given period.
+   */
+  private void addRollupUsage( final ReportArtEntity report,
+                               final Map<String, ReportingInstanceCreateEvent> createEvents,
+                               final Map<String, InstanceUsageArtEntity> usageEntities,
+                               final Map<String, Long> durations,
+                               final long beginMs,
+                               final long endMs ) {
+    final Map<InstanceMetricDimensionKey, UsageRollup> totals = Maps.newHashMap();
+    foreachInstanceUsageRollup( beginMs, endMs, true, new Predicate<ReportingInstanceUsageRollup>() {
+      @Override
+      public boolean apply( final ReportingInstanceUsageRollup rollup ) {
+        final ReportingInstanceCreateEvent createEvent = createEvents.get( rollup.getUuid() );
+        if ( createEvent == null ) {
+          log.error( "Usage rollup without create event:" + rollup.getUuid() );
+          return true;
+        }
+        if ( addParentNodes( report, createEvent, getUsageEntity( usageEntities, rollup.getUuid() ) ) ) {
+          final InstanceMetricDimensionKey key =
+              new InstanceMetricDimensionKey( rollup.getUuid(), rollup.getMetric(), rollup.getDimension() );
+          UsageRollup total = totals.get( key );
+          if ( total == null ) {
+            total = new UsageRollup();
+            totals.put( key, total );
           }
+          total.add( rollup.getValue(), rollup.getDurationMs() );
         }
+        return true;
       }
+    } );
+
+    final Map<String, Long> periodDurations = Maps.newHashMap();
+    for ( final Map.Entry<InstanceMetricDimensionKey, UsageRollup> totalEntry : totals.entrySet() ) {
+      final InstanceMetricDimensionKey key = totalEntry.getKey();
+      addDuration( periodDurations, key.getInstanceUuid(), totalEntry.getValue().durationMs );
+      addMetricValueToUsageEntity( usageEntities.get( key.getInstanceUuid() ), key.getMetric(), key.getDimension(),
+          totalEntry.getValue().total() );
     }
+    addDurations( durations, periodDurations );
+  }
 
-    return report;
+  private static InstanceUsageArtEntity getUsageEntity( final Map<String, InstanceUsageArtEntity> usageEntities,
+                                                        final String uuid ) {
+    InstanceUsageArtEntity usageEntity = usageEntities.get( uuid );
+    if ( usageEntity == null ) {
+      usageEntity = new InstanceUsageArtEntity();
+      usageEntities.put( uuid, usageEntity );
+    }
+    return usageEntity;
+  }
+
+  /**
+   * Durations within a period are the maximum for any metric of the instance.
+   */
+  private static void addDuration( final Map<String, Long> durations, final String uuid, final long durationMs ) {
+    final Long currentMs = durations.get( uuid );
+    durations.put( uuid, currentMs == null ? durationMs : Math.max( currentMs, durationMs ) );
+  }
+
+  /**
+   * Durations for separate periods are summed.
+   */
+  private static void addDurations( final Map<String, Long> durations, final Map<String, Long> periodDurations ) {
+    for ( final Map.Entry<String, Long> durationEntry : periodDurations.entrySet() ) {
+      final Long currentMs = durations.get( durationEntry.getKey() );
+      durations.put( durationEntry.getKey(),
+          currentMs == null ? durationEntry.getValue() : currentMs + durationEntry.getValue() );
+    }
   }
 
   private boolean addParentNodes( final ReportArtEntity report,
@@ -310,83 +572,59 @@ public class InstanceArtGenerator extends AbstractArtGenerator {
     }
   }
 
-  private static class InstanceMetricDimensionKey {
-    private final String instanceUuid;
-    private final String metric;
-    private final String dimension;
-
-    public InstanceMetricDimensionKey( String instanceUuid, String metric, String dimension ) {
-      this.instanceUuid = instanceUuid;
-      this.metric = metric;
-      this.dimension = dimension;
-    }
-
-    @Override
-    public int hashCode() {
-      final int prime = 31;
-      int result = 1;
-      result = prime * result + ((dimension == null) ? 0 : dimension.hashCode());
-      result = prime * result + ((instanceUuid == null) ? 0 : instanceUuid.hashCode());
-      result = prime * result + ((metric == null) ? 0 : metric.hashCode());
-      return result;
+  /**
+   * Mutable usage total for a uuid/metric/dim combo.
+   */
+  private static class UsageRollup {
+    private double value;
+    private long durationMs;
+    private int count;
+
+    private void add( final double value, final long durationMs ) {
+      this.value += value;
+      this.durationMs += durationMs;
+      this.count++;
     }
 
-    @Override
-    public boolean equals( Object obj ) {
-      if ( this == obj ) return true;
-      if ( obj == null ) return false;
-      if ( getClass() != obj.getClass() ) return false;
-      InstanceMetricDimensionKey other = (InstanceMetricDimensionKey) obj;
-      if ( dimension == null ) {
-        if ( other.dimension != null ) return false;
-      } else if ( !dimension.equals( other.dimension ) ) return false;
-      if ( instanceUuid == null ) {
-        if ( other.instanceUuid != null ) return false;
-      } else if ( !instanceUuid.equals( other.instanceUuid ) ) return false;
-      if ( metric == null ) {
-        if ( other.metric != null ) return false;
-      } else if ( !metric.equals( other.metric ) ) return false;
-      return true;
+    /**
+     * The total without the floating point error from summing fractional
+     * usage, so it truncates as the equivalent usage from events would.
+     */
+    private double total() {
+      final double whole = Math.rint( value );
+      return Math.abs( value - whole ) <= 4 * count * Math.ulp( value ) ? whole : value;
     }
-
   }
 
   /**
-   * Immutable record of prior data for a uuid/metric/dim combo. This is replaced rather than updated.
+   * Late usage events for a uuid/metric/dim combo and the events either side.
    */
-  private static class MetricPrevData {
-    private final long firstMs;
-    private final double lastVal;
-    private final long lastMs;
-    private final long lastSeq;
-
-    private MetricPrevData( long firstMs, long lastMs, double lastVal, long lastSeq ) {
-      this.firstMs = firstMs;
-      this.lastMs = lastMs;
-      this.lastVal = lastVal;
-      this.lastSeq = lastSeq;
+  private static class LateUsage {
+    private long firstMs;
+    private long lastMs;
+    private Long previousMs;
+    private Long nextMs;
+
+    private LateUsage( final long timestampMs ) {
+      this.firstMs = timestampMs;
+      this.lastMs = timestampMs;
     }
-  }
 
-  /**
-   * Find the overlapping portion of two time periods
-   */
-  private static long overlap( long repBegin, long repEnd, long perBegin, long perEnd ) {
-    if ( perEnd <= repBegin || perBegin >= repEnd ) {
-      return 0l;
-    } else {
-      return Math.min( repEnd, perEnd ) - Math.max( repBegin, perBegin );
+    private void add( final long timestampMs ) {
+      firstMs = Math.min( firstMs, timestampMs );
+      lastMs = Math.max( lastMs, timestampMs );
     }
-  }
 
-  /**
-   * Return the fraction of usage which occurs within both the report boundaries and the period boundaries.
-   */
-  private static Double fractionalUsage( long repBegin, long repEnd, long perBegin, long perEnd, Double usage ) {
-    if ( usage == null ) return null;
-    double duration = (double) (perEnd - perBegin);
-    double overlapping = (double) overlap( repBegin, repEnd, perBegin, perEnd );
-    return usage * (overlapping / duration);
+    /**
+     * Events must be in timestamp order
+     */
+    private void neighbour( final long timestampMs ) {
+      if ( timestampMs < firstMs ) {
+        previousMs = timestampMs;
+      } else if ( timestampMs > lastMs && nextMs == null ) {
+        nextMs = timestampMs;
+      }
+    }
   }
 
   protected void foreachInstanceUsageEvent( long startInclusive, long endExclusive,
@@ -394,9 +632,29 @@ public class InstanceArtGenerator extends AbstractArtGenerator {
     foreach( ReportingInstanceUsageEvent.class, between( startInclusive, endExclusive ), true, callback );
   }
 
+  protected void foreachInstanceUsageEventStoredAfter( long storedAfterMs, long startInclusive, long endExclusive,
+                                                      Predicate<? super ReportingInstanceUsageEvent> callback ) {
+    foreach( ReportingInstanceUsageEvent.class,
+        Restrictions.conjunction()
+            .add( between( startInclusive, endExclusive ) )
+            .add( Restrictions.gt( "creationTimestamp", new Date( storedAfterMs ) ) ),
+        true,
+        callback );
+  }
+
   protected void foreachInstanceCreateEvent( long endExclusive,
                                              Predicate<? super ReportingInstanceCreateEvent> callback ) {
     foreach( ReportingInstanceCreateEvent.class, before( endExclusive ), true, callback );
   }
 
+  protected void foreachInstanceUsageRollup( long startInclusive, long endExclusive, boolean ascending,
+                                             Predicate<? super ReportingInstanceUsageRollup> callback ) {
+    foreach( ReportingInstanceUsageRollup.class, between( startInclusive, endExclusive ), ascending, callback );
+  }
+
+  protected void storeInstanceUsageRollups( long beginMs, long endMs,
+                                            List<ReportingInstanceUsageRollup> rollups ) {
+    ReportingInstanceEventStore.getInstance().replaceUsageRollups( beginMs, endMs, rollups );
+  }
+
 }
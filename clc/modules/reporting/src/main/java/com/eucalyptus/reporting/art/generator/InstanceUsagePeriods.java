@@ -0,0 +1,191 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.reporting.art.generator;
+
+import java.util.Map;
+import org.apache.log4j.Logger;
+import com.eucalyptus.reporting.event_store.ReportingInstanceCreateEvent;
+import com.eucalyptus.reporting.event_store.ReportingInstanceUsageEvent;
+import com.google.common.base.Objects;
+import com.google.common.base.Predicate;
+import com.google.common.collect.Maps;
+
+/**
+ * Converts cumulative instance usage metrics into usage periods.
+ *
+ * <p>Metric values are cumulative, so each value is subtracted from the
+ * last for the same uuid/metric/dimension combo. Usage events must be
+ * supplied in timestamp order.</p>
+ */
+abstract class InstanceUsagePeriods implements Predicate<ReportingInstanceUsageEvent> {
+  private static final Logger log = Logger.getLogger( InstanceUsagePeriods.class );
+
+  private final Map<String, ReportingInstanceCreateEvent> createEvents;
+  private final Map<InstanceMetricDimensionKey, MetricPrevData> prevDataMap = Maps.newHashMap();
+
+  InstanceUsagePeriods( final Map<String, ReportingInstanceCreateEvent> createEvents ) {
+    this.createEvents = createEvents;
+  }
+
+  @Override
+  public boolean apply( final ReportingInstanceUsageEvent event ) {
+    if ( event.getValue() == null ) return true;
+
+    final ReportingInstanceCreateEvent createEvent = createEvents.get( event.getUuid() );
+    if ( createEvent == null ) {
+      log.error( "Usage event without create event:" + event.getUuid() );
+      return true;
+    }
+
+    if ( !accept( createEvent, event ) ) {
+      return true;
+    }
+
+    /* We must retain previous values of each uuid/metric/dim combo, the earliest and latest times
+     * for each combo (to update the duration), and the sequence numbers (to detect sensor resets)
+     */
+    final InstanceMetricDimensionKey key =
+        new InstanceMetricDimensionKey( event.getUuid(), event.getMetric(), event.getDimension() );
+    final long eventMs = event.getTimestampMs();
+    final MetricPrevData prevData = prevDataMap.get( key );
+    if ( prevData == null ) {
+      /* No prior value. Use usage from instance creation to present
+       * Equivalent to inserting a zero-usage event at instance creation time
+       */
+      period( createEvent, event, createEvent.getTimestampMs(), createEvent.getTimestampMs(), eventMs, event.getValue() );
+      prevDataMap.put( key, new MetricPrevData( eventMs, eventMs, event.getValue(), event.getSequenceNum() ) );
+    } else {
+      if ( event.getSequenceNum() < prevData.lastSeq || event.getSequenceNum()==0 ) {
+        /* SENSOR RESET; we lost data; just take whatever amount greater than 0 */
+        period( createEvent, event, prevData.firstMs, prevData.lastMs, eventMs, event.getValue() );
+      } else {
+        /* Increase total by val minus lastVal */
+        period( createEvent, event, prevData.firstMs, prevData.lastMs, eventMs, event.getValue() - prevData.lastVal );
+      }
+      prevDataMap.put( key, new MetricPrevData( prevData.firstMs, eventMs, event.getValue(), event.getSequenceNum() ) );
+    }
+    return true;
+  }
+
+  /**
+   * Check if usage for the event should be included.
+   *
+   * @return false to skip the event
+   */
+  protected boolean accept( final ReportingInstanceCreateEvent createEvent,
+                            final ReportingInstanceUsageEvent event ) {
+    return true;
+  }
+
+  /**
+   * Handle usage for a period.
+   *
+   * @param createEvent The instance create event
+   * @param event The usage event that ends the period
+   * @param durationBeginMs The start of the instance duration for the metric
+   * @param beginMs The start of the period
+   * @param endMs The end of the period
+   * @param usage The usage over the period
+   */
+  protected abstract void period( ReportingInstanceCreateEvent createEvent,
+                                  ReportingInstanceUsageEvent event,
+                                  long durationBeginMs,
+                                  long beginMs,
+                                  long endMs,
+                                  double usage );
+
+  /**
+   * Find the overlapping portion of two time periods
+   */
+  static long overlap( long repBegin, long repEnd, long perBegin, long perEnd ) {
+    if ( perEnd <= repBegin || perBegin >= repEnd ) {
+      return 0l;
+    } else {
+      return Math.min( repEnd, perEnd ) - Math.max( repBegin, perBegin );
+    }
+  }
+
+  /**
+   * Return the fraction of usage which occurs within both the report boundaries and the period boundaries.
+   */
+  static Double fractionalUsage( long repBegin, long repEnd, long perBegin, long perEnd, Double usage ) {
+    if ( usage == null ) return null;
+    double duration = (double) (perEnd - perBegin);
+    double overlapping = (double) overlap( repBegin, repEnd, perBegin, perEnd );
+    return usage * (overlapping / duration);
+  }
+
+  static final class InstanceMetricDimensionKey {
+    private final String instanceUuid;
+    private final String metric;
+    private final String dimension;
+
+    InstanceMetricDimensionKey( String instanceUuid, String metric, String dimension ) {
+      this.instanceUuid = instanceUuid;
+      this.metric = metric;
+      this.dimension = dimension;
+    }
+
+    String getInstanceUuid() {
+      return instanceUuid;
+    }
+
+    String getMetric() {
+      return metric;
+    }
+
+    String getDimension() {
+      return dimension;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode( instanceUuid, metric, dimension );
+    }
+
+    @Override
+    public boolean equals( Object obj ) {
+      if ( this == obj ) return true;
+      if ( obj == null ) return false;
+      if ( getClass() != obj.getClass() ) return false;
+      InstanceMetricDimensionKey other = (InstanceMetricDimensionKey) obj;
+      return Objects.equal( instanceUuid, other.instanceUuid ) &&
+          Objects.equal( metric, other.metric ) &&
+          Objects.equal( dimension, other.dimension );
+    }
+  }
+
+  /**
+   * Immutable record of prior data for a uuid/metric/dim combo. This is replaced rather than updated.
+   */
+  private static class MetricPrevData {
+    private final long firstMs;
+    private final double lastVal;
+    private final long lastMs;
+    private final long lastSeq;
+
+    private MetricPrevData( long firstMs, long lastMs, double lastVal, long lastSeq ) {
+      this.firstMs = firstMs;
+      this.lastMs = lastMs;
+      this.lastVal = lastVal;
+      this.lastSeq = lastSeq;
+    }
+  }
+}
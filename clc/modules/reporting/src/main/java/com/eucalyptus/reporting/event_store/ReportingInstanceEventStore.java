@@ -22,8 +22,12 @@ package com.eucalyptus.reporting.event_store;
 import java.util.*;
 
 import javax.annotation.Nonnull;
+import javax.persistence.EntityTransaction;
 
+import com.eucalyptus.entities.Entities;
+import com.eucalyptus.util.Exceptions;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
 
 import java.util.concurrent.TimeUnit;
 
@@ -79,6 +83,48 @@ public class ReportingInstanceEventStore extends EventStoreSupport {
     		dimension, value, timestamp ) );
   }
 
-  
+  /**
+   * Replace all usage rollups for the given period.
+   *
+   * @param beginMs The start of the period (inclusive)
+   * @param endMs The end of the period (exclusive)
+   * @param rollups The rollups for the period
+   */
+  public void replaceUsageRollups( final long beginMs,
+                                   final long endMs,
+                                   @Nonnull final Iterable<ReportingInstanceUsageRollup> rollups ) {
+    Preconditions.checkNotNull( rollups, "Rollups are required" );
+
+    final EntityTransaction db = Entities.get( ReportingInstanceUsageRollup.class );
+    try {
+      Entities.deleteAllMatching( ReportingInstanceUsageRollup.class,
+          "where timestampMs >= :beginMs and timestampMs < :endMs",
+          ImmutableMap.of( "beginMs", beginMs, "endMs", endMs ) );
+      for ( final ReportingInstanceUsageRollup rollup : rollups ) {
+        Entities.persist( rollup );
+      }
+      db.commit();
+    } catch ( final Exception e ) {
+      db.rollback();
+      throw Exceptions.toUndeclared(e);
+    }
+  }
+
+  /**
+   * Delete all usage rollups.
+   *
+   * <p>Rollups must be deleted when usage events are imported or deleted so
+   * they are regenerated.</p>
+   */
+  public void deleteUsageRollups() {
+    final EntityTransaction db = Entities.get( ReportingInstanceUsageRollup.class );
+    try {
+      Entities.deleteAll( ReportingInstanceUsageRollup.class );
+      db.commit();
+    } catch ( final Exception e ) {
+      db.rollback();
+      throw Exceptions.toUndeclared(e);
+    }
+  }
 
 }
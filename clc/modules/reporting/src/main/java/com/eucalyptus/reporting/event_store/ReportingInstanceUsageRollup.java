@@ -0,0 +1,125 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.reporting.event_store;
+
+import static org.hamcrest.Matchers.notNullValue;
+import static com.eucalyptus.util.Parameters.checkParam;
+
+import java.util.Collections;
+import java.util.Set;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Table;
+
+import com.eucalyptus.component.annotation.RemotablePersistence;
+
+/**
+ * Hourly rollup of instance usage for a metric and dimension.
+ *
+ * <p>Rollups are derived from usage events and are not exported. The
+ * timestamp is the start of the hour.</p>
+ */
+@Entity
+@PersistenceContext(name="eucalyptus_reporting_backend")
+@RemotablePersistence
+@Table(name="reporting_instance_usage_rollups")
+public class ReportingInstanceUsageRollup extends ReportingEventSupport {
+  private static final long serialVersionUID = 1L;
+
+  @Column(name="uuid", nullable=false)
+  private String uuid;
+  @Column(name="metric", nullable=false)
+  private String metric;
+  @Column(name="dimension", nullable=false)
+  private String dimension;
+  @Column(name="value", nullable=false)
+  private Double value;
+  @Column(name="duration_ms", nullable=false)
+  private Long durationMs;
+
+  protected ReportingInstanceUsageRollup() {
+  }
+
+  /**
+   * Rollups should be stored using the ReportingInstanceEventStore class.
+   */
+  public ReportingInstanceUsageRollup( final String uuid,
+                                       final String metric,
+                                       final String dimension,
+                                       final Long hourMs,
+                                       final Double value,
+                                       final Long durationMs ) {
+    checkParam( uuid, notNullValue() );
+    checkParam( metric, notNullValue() );
+    checkParam( dimension, notNullValue() );
+    checkParam( hourMs, notNullValue() );
+    checkParam( value, notNullValue() );
+    checkParam( durationMs, notNullValue() );
+    this.uuid = uuid;
+    this.metric = metric;
+    this.dimension = dimension;
+    this.timestampMs = hourMs;
+    this.value = value;
+    this.durationMs = durationMs;
+  }
+
+  @Override
+  public Set<EventDependency> getDependencies() {
+    return Collections.emptySet();
+  }
+
+  public String getUuid() {
+    return uuid;
+  }
+
+  public String getMetric() {
+    return metric;
+  }
+
+  public String getDimension() {
+    return dimension;
+  }
+
+  /**
+   * The usage attributed to the hour.
+   */
+  public Double getValue() {
+    return value;
+  }
+
+  /**
+   * The time within the hour covered by usage for the metric.
+   */
+  public Long getDurationMs() {
+    return durationMs;
+  }
+
+  @Override
+  public String toString() {
+    return "ReportingInstanceUsageRollup [uuid=" + uuid
+        + ", metric=" + metric
+        + ", dimension=" + dimension
+        + ", value=" + value
+        + ", durationMs=" + durationMs
+        + ", timestamp=" + timestampMs + "]";
+  }
+}
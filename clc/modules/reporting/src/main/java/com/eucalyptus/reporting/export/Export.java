@@ -35,6 +35,7 @@ import org.hibernate.CacheMode;
 import org.hibernate.Criteria;
 import org.hibernate.criterion.Conjunction;
 import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Restrictions;
 import com.eucalyptus.entities.Entities;
 import com.eucalyptus.reporting.domain.ReportingAccount;
@@ -56,6 +57,7 @@ public class Export {
   private static final Logger log = Logger.getLogger( Export.class );
 
   private static final String CREATION_TIMESTAMP = "creationTimestamp";
+  private static final String ID = "id";
 
   public static ReportingExport export( final Date startDate,
                                         final Date endDate,
@@ -154,7 +156,8 @@ public class Export {
       final boolean includeDependencies ) {
     return new Iterator<ReportingEventSupport>() {
       private static final int batchSize = 5000;
-      private int offset = 0;
+      private String lastId = null;
+      private boolean exhausted = false;
       private final LinkedList<ReportingEventSupport> data = Lists.newLinkedList();
 
       @Override
@@ -175,23 +178,35 @@ public class Export {
       }
 
       private void ensureData() {
-        if ( data.isEmpty() ) {
+        while ( data.isEmpty() && !exhausted ) {
           readNextBatch();
         }
       }
 
+      /**
+       * Read the next batch keyed on the last identifier seen, so each batch
+       * is an index range rather than an ever increasing offset.
+       */
       private void readNextBatch() {
         final EntityTransaction transaction = Entities.get( eventClass );
         try {
-          addToExportList(
-              data,
-              dependencies,
-              includeDependencies,
-              criteriaFor(eventClass, criterion).setFirstResult( offset ).setMaxResults( batchSize ).list() );
+          final Conjunction batchCriterion = Restrictions.conjunction( ).add( criterion );
+          if ( lastId != null ) {
+            batchCriterion.add( Restrictions.gt( ID, lastId ) );
+          }
+          final List entities = criteriaFor( eventClass, batchCriterion )
+              .addOrder( Order.asc( ID ) )
+              .setMaxResults( batchSize )
+              .list();
+          exhausted = entities.size() < batchSize;
+          if ( !entities.isEmpty() ) {
+            lastId = ( (ReportingEventSupport) entities.get( entities.size() - 1 ) ).getId();
+          }
+          addToExportList( data, dependencies, includeDependencies, entities );
         } catch ( Exception e) {
           log.error(e, e);
+          exhausted = true;
         } finally {
-          offset += batchSize;
           transaction.rollback();
         }
       }
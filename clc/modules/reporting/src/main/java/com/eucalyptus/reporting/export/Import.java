@@ -38,6 +38,7 @@ import com.eucalyptus.entities.Entities;
 import com.eucalyptus.reporting.domain.ReportingAccount;
 import com.eucalyptus.reporting.domain.ReportingUser;
 import com.eucalyptus.reporting.event_store.ReportingEventSupport;
+import com.eucalyptus.reporting.event_store.ReportingInstanceEventStore;
 import com.google.common.base.Function;
 import com.google.common.base.Strings;
 import com.google.common.base.Supplier;
@@ -75,7 +76,9 @@ public class Import {
 
   public static ImportResult importData( final InputStream in,
                                         final Runnable preImportCallback ) throws Exception {
-    return new Import().doImport( in, preImportCallback );
+    final ImportResult result = new Import().doImport( in, preImportCallback );
+    ReportingInstanceEventStore.getInstance().deleteUsageRollups();
+    return result;
   }
 
   protected void resetStats() {
@@ -177,6 +180,7 @@ public class Import {
     for ( final Class<?> reportingClass : entityClasses ) {
       deleted += deleteAll( reportingClass, createdTimestamp );
     }
+    ReportingInstanceEventStore.getInstance().deleteUsageRollups();
     return deleted;
   }
 
@@ -0,0 +1,152 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.reporting.modules.instance;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.eucalyptus.bootstrap.Bootstrap;
+import com.eucalyptus.bootstrap.Hosts;
+import com.eucalyptus.component.id.Reporting;
+import com.eucalyptus.configurable.ConfigurableClass;
+import com.eucalyptus.configurable.ConfigurableField;
+import com.eucalyptus.event.ClockTick;
+import com.eucalyptus.event.EventListener;
+import com.eucalyptus.event.Listeners;
+import com.eucalyptus.reporting.art.generator.InstanceArtGenerator;
+import com.eucalyptus.reporting.service.ReportingService;
+import com.eucalyptus.system.Threads;
+import com.eucalyptus.util.Pair;
+
+/**
+ * Rolls up instance usage events into hourly usage for report generation.
+ */
+@ConfigurableClass(root = "reporting", description = "Parameters controlling reporting")
+public class InstanceUsageRollupEventListener implements EventListener<ClockTick> {
+  private static final Logger log = Logger.getLogger( InstanceUsageRollupEventListener.class );
+
+  @ConfigurableField(initial = "60", description = "How long (in minutes) after the end of an hour before instance usage for the hour is rolled up")
+  public static long USAGE_ROLLUP_DELAY_MINS = 60;
+
+  private static final long MAX_ROLLUP_PERIOD = TimeUnit.DAYS.toMillis( 1 );
+
+  private static final AtomicBoolean busy = new AtomicBoolean( false );
+
+  private static final AtomicLong rolledUpMs = new AtomicLong( );
+
+  /**
+   * Usage events stored after this time are checked for late usage. Rollups
+   * are stored after the events for the hour, the margin allows for clock skew
+   * between hosts and for events being stored during a roll up.
+   */
+  private static final AtomicLong checkedMs = new AtomicLong( );
+
+  private static final long CHECK_MARGIN = TimeUnit.MINUTES.toMillis( 1 );
+
+  public static void register() {
+    Listeners.register( ClockTick.class, new InstanceUsageRollupEventListener() );
+  }
+
+  @Override
+  public void fireEvent( final ClockTick event ) {
+    if ( ReportingService.DATA_COLLECTION_ENABLED &&
+        Bootstrap.isFinished() &&
+        Hosts.isCoordinator() &&
+        busy.compareAndSet( false, true ) ) {
+      try {
+        Threads.lookup( Reporting.class, InstanceUsageRollupEventListener.class ).submit( new Callable<Void>() {
+          @Override
+          public Void call() {
+            try {
+              rollup();
+            } catch ( final Exception e ) {
+              log.error( "Error rolling up instance usage", e );
+            } finally {
+              busy.set( false );
+            }
+            return null;
+          }
+        } );
+      } catch ( final RuntimeException e ) {
+        busy.set( false );
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Roll up the next period that is not yet rolled up, if ready.
+   *
+   * <p>Before each further period is rolled up, any hours with usage events
+   * stored since they were rolled up are rolled up again.</p>
+   */
+  private static void rollup() {
+    final InstanceArtGenerator generator = new InstanceArtGenerator();
+    final long startedMs = System.currentTimeMillis();
+    final long readyMs = hourFloor( startedMs - TimeUnit.MINUTES.toMillis( USAGE_ROLLUP_DELAY_MINS ) );
+    final long rollupEndMs = generator.getInstanceUsageRollupEndMs();
+    long beginMs = rollupEndMs;
+    if ( beginMs == 0 ) {
+      // no rollups, start from the first usage
+      rolledUpMs.set( 0 );
+      beginMs = generator.getInstanceUsageBeginMs();
+      if ( beginMs == 0 ) return;
+    } else {
+      // skip any trailing hours without usage
+      beginMs = Math.max( beginMs, rolledUpMs.get() );
+    }
+    if ( beginMs < readyMs ) {
+      if ( rollupEndMs > 0 ) {
+        if ( checkedMs.get() == 0 ) {
+          checkedMs.set( generator.getInstanceUsageRollupStoredMs() );
+        }
+        rollupLate( generator, checkedMs.get() - CHECK_MARGIN, rollupEndMs );
+      }
+      final long endMs = Math.min( readyMs, beginMs + MAX_ROLLUP_PERIOD );
+      log.debug( "Rolling up instance usage for " + beginMs + "-" + endMs );
+      generator.generateUsageRollups( beginMs, endMs );
+      rolledUpMs.set( endMs );
+      checkedMs.set( startedMs );
+    }
+  }
+
+  /**
+   * Roll up again any hours affected by usage events stored after the given time.
+   */
+  private static void rollupLate( final InstanceArtGenerator generator,
+                                  final long storedAfterMs,
+                                  final long rollupEndMs ) {
+    final Pair<Long,Long> latePeriod = generator.getLateUsageRollupPeriod( storedAfterMs, rollupEndMs );
+    if ( latePeriod != null ) {
+      log.info( "Rolling up instance usage with late events for " + latePeriod.getLeft() + "-" + latePeriod.getRight() );
+      for ( long beginMs = latePeriod.getLeft(); beginMs < latePeriod.getRight(); beginMs += MAX_ROLLUP_PERIOD ) {
+        generator.generateUsageRollups( beginMs, Math.min( latePeriod.getRight(), beginMs + MAX_ROLLUP_PERIOD ) );
+      }
+    }
+  }
+
+  private static long hourFloor( final long timestampMs ) {
+    return timestampMs - ( timestampMs % TimeUnit.HOURS.toMillis( 1 ) );
+  }
+}
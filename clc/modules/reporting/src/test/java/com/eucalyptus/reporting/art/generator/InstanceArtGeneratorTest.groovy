@@ -23,6 +23,7 @@ import static org.junit.Assert.*
 import org.junit.Test
 import com.eucalyptus.reporting.event_store.ReportingInstanceCreateEvent
 import com.eucalyptus.reporting.event_store.ReportingInstanceUsageEvent
+import com.eucalyptus.reporting.event_store.ReportingInstanceUsageRollup
 import com.eucalyptus.reporting.domain.ReportingUser
 import com.eucalyptus.reporting.domain.ReportingAccount
 import java.text.SimpleDateFormat
@@ -37,6 +38,7 @@ import com.eucalyptus.reporting.art.entity.InstanceArtEntity
 import com.eucalyptus.reporting.art.entity.InstanceUsageArtEntity
 import com.eucalyptus.reporting.art.entity.UsageTotalsArtEntity
 import com.google.common.base.Predicate
+import com.eucalyptus.util.Pair
 
 /**
  *
@@ -172,6 +174,121 @@ class InstanceArtGeneratorTest {
     assertArt( art, 1, 0.5  )
   }
 
+  @Test
+  void testRollupBasicGeneration(){
+    InstanceArtGenerator generator = testGeneratorWith( basicUsageInReportPeriod() )
+    generator.generateUsageRollups( millis("2012-09-01T00:00:00"), millis("2012-09-02T00:00:00") )
+    assertEquals( "Rollup end", millis("2012-09-01T12:00:00"), generator.getInstanceUsageRollupEndMs() )
+    ReportArtEntity art = generator.generateReportArt( new ReportArtEntity( millis("2012-09-01T00:00:00"), millis("2012-09-01T12:00:00") ) )
+    assertArt( art )
+  }
+
+  @Test
+  void testRollupInterpolatedUsageReportPeriod(){
+    InstanceArtGenerator generator = testGeneratorWith( interpolatedUsageWithDates( "2012-08-31T12:00:00", "2012-09-02T00:00:00", 3 ) )
+    generator.generateUsageRollups( millis("2012-08-31T00:00:00"), millis("2012-09-01T00:00:00") )
+    generator.generateUsageRollups( millis("2012-09-01T00:00:00"), millis("2012-09-02T00:00:00") )
+    ReportArtEntity art = generator.generateReportArt( new ReportArtEntity( millis("2012-09-01T00:00:00"), millis("2012-09-01T12:00:00") ) )
+    assertArt( art )
+  }
+
+  @Test
+  void testRollupSequenceResetsInReport() {
+    InstanceArtGenerator generator = testGeneratorWith( sequenceResetUsage() )
+    generator.generateUsageRollups( millis("2012-08-31T00:00:00"), millis("2012-09-02T00:00:00") )
+    ReportArtEntity art = generator.generateReportArt( new ReportArtEntity( millis("2012-09-01T00:00:00"), millis("2012-09-01T12:00:00") ) )
+    assertArt( art  )
+  }
+
+  @Test
+  void testRollupCreatedInReport() {
+    InstanceArtGenerator generator = testGeneratorWith( createdInReportUsage(), "2012-09-01T06:00:00" )
+    generator.generateUsageRollups( millis("2012-09-01T00:00:00"), millis("2012-09-02T00:00:00") )
+    ReportArtEntity art = generator.generateReportArt( new ReportArtEntity( millis("2012-09-01T00:00:00"), millis("2012-09-01T12:00:00") ) )
+    assertArt( art, 1, 0.5  )
+  }
+
+  @Test
+  void testRollupPartialReportPeriod() {
+    InstanceArtGenerator generator = testGeneratorWith( basicUsageInReportPeriod() )
+    generator.generateUsageRollups( millis("2012-09-01T00:00:00"), millis("2012-09-01T06:00:00") )
+    ReportArtEntity art = generator.generateReportArt( new ReportArtEntity( millis("2012-09-01T00:00:00"), millis("2012-09-01T12:00:00") ) )
+    assertArt( art )
+  }
+
+  @Test
+  void testRollupReportEdges() {
+    InstanceArtGenerator generator = testGeneratorWith( interpolatedUsageWithDates( "2012-08-31T18:00:00", "2012-09-01T18:00:00", 2 ) )
+    generator.generateUsageRollups( millis("2012-08-31T00:00:00"), millis("2012-09-02T00:00:00") )
+    ReportArtEntity art = generator.generateReportArt( new ReportArtEntity( millis("2012-09-01T00:00:00"), millis("2012-09-01T12:00:00") ) )
+    assertArt( art )
+
+    // usage for partial hours is from usage events so may differ due to rounding
+    ReportArtEntity edgeArt = generator.generateReportArt( new ReportArtEntity( millis("2012-08-31T23:50:00"), millis("2012-09-01T11:50:00") ) )
+    InstanceUsageArtEntity usage = edgeArt.getZones().get(ZONE1).getUsageTotals().getInstanceTotals()
+    assertEquals( "Edge duration", ms(12), usage.getDurationMs() )
+    assertEquals( "Edge usage net in", mb(100), usage.getNetTotalInBytes(), 2 )
+    assertEquals( "Edge usage cpu ms", ms(6), usage.getCpuUtilizationMs(), 2 )
+    assertEquals( "Edge usage disk read ops", 50000, usage.getDiskReadOps(), 2 )
+  }
+
+  @Test
+  void testRollupSparseUsage() {
+    // previous usage is more than a day before the report
+    InstanceArtGenerator generator = testGeneratorWith( interpolatedUsageWithDates( "2012-08-25T00:00:00", "2012-09-01T12:00:00", 15 ) )
+    ReportArtEntity eventArt = generator.generateReportArt( new ReportArtEntity( millis("2012-09-01T00:30:00"), millis("2012-09-01T11:30:00") ) )
+    generator.generateUsageRollups( millis("2012-08-31T00:00:00"), millis("2012-09-02T00:00:00") )
+    ReportArtEntity art = generator.generateReportArt( new ReportArtEntity( millis("2012-09-01T00:00:00"), millis("2012-09-01T12:00:00") ) )
+    assertArt( art )
+
+    ReportArtEntity edgeArt = generator.generateReportArt( new ReportArtEntity( millis("2012-09-01T00:30:00"), millis("2012-09-01T11:30:00") ) )
+    [ eventArt, edgeArt ].each { ReportArtEntity reportArt ->
+      InstanceUsageArtEntity usage = reportArt.getZones().get(ZONE1).getUsageTotals().getInstanceTotals()
+      assertEquals( "Edge duration", ms(11), usage.getDurationMs() )
+      assertEquals( "Edge usage net in", mb(1500) * 11d / 180, usage.getNetTotalInBytes(), 2 )
+      assertEquals( "Edge usage cpu ms", ms(90) * 11d / 180, usage.getCpuUtilizationMs(), 2 )
+      assertEquals( "Edge usage disk read ops", 750000 * 11d / 180, usage.getDiskReadOps(), 2 )
+    }
+  }
+
+  @Test
+  void testRollupLateUsage() {
+    List<ReportingInstanceUsageEvent> usage = basicUsageInReportPeriod()
+    InstanceArtGenerator generator = testGeneratorWith( usage )
+    generator.generateUsageRollups( millis("2012-09-01T00:00:00"), millis("2012-09-02T00:00:00") )
+    assertNull( "No late usage", generator.getLateUsageRollupPeriod( millis("2012-09-01T13:00:00"), millis("2012-09-01T12:00:00") ) )
+
+    // all usage is in the first half of the report, but stored after rollup
+    List<ReportingInstanceUsageEvent> lateUsage = []
+    addUsage( lateUsage, INSTANCE1, "2012-09-01T06:00:00", 1, [
+        "NetworkIn" : mbd(100),
+        "NetworkOut" : mbd(200),
+        "NetworkInExternal" : mbd(100),
+        "NetworkOutExternal" : mbd(200),
+        "CPUUtilization": msd(6),
+    ], [ "vda": [
+        "DiskReadOps": 50000,
+        "DiskWriteOps": 20000,
+        "DiskReadBytes": mbd(2000),
+        "DiskWriteBytes": mbd(1000),
+        "VolumeTotalReadTime": 8000,
+        "VolumeTotalWriteTime": 4000,
+    ] ] )
+    lateUsage.each { ReportingInstanceUsageEvent event -> stored( event, "2012-09-01T14:00:00" ) }
+    usage.addAll( lateUsage )
+    usage.sort{ event -> event.getTimestampMs() }
+
+    Pair<Long,Long> latePeriod = generator.getLateUsageRollupPeriod( millis("2012-09-01T13:00:00"), millis("2012-09-01T12:00:00") )
+    assertNotNull( "Late usage", latePeriod )
+    assertEquals( "Late usage begin", millis("2012-09-01T00:00:00"), latePeriod.getLeft() )
+    assertEquals( "Late usage end", millis("2012-09-01T12:00:00"), latePeriod.getRight() )
+    assertNull( "Late usage checked", generator.getLateUsageRollupPeriod( millis("2012-09-01T14:00:00"), millis("2012-09-01T12:00:00") ) )
+
+    generator.generateUsageRollups( latePeriod.getLeft(), latePeriod.getRight() )
+    ReportArtEntity art = generator.generateReportArt( new ReportArtEntity( millis("2012-09-01T00:00:00"), millis("2012-09-01T06:00:00") ) )
+    assertArt( art, 1, 0.5 )
+  }
+
   @SuppressWarnings("GroovyAccessibility")
   private ReportingInstanceCreateEvent instanceCreate(
       String instanceId,
@@ -194,6 +311,11 @@ class InstanceArtGeneratorTest {
     new ReportingInstanceUsageEvent( uuid(instanceId), metric, sequenceNum, dimension, value, millis(timestamp) )
   }
 
+  @SuppressWarnings("GroovyAccessibility")
+  private void stored( ReportingInstanceUsageEvent event, String timestamp ) {
+    event.initialize( null, new Date( millis(timestamp) ) )
+  }
+
   @SuppressWarnings("GroovyAccessibility")
   private ReportingUser user( String id, String accountId ) {
     new ReportingUser( id, accountId, name(id) )
@@ -781,6 +903,7 @@ class InstanceArtGeneratorTest {
                                                   List<ReportingInstanceUsageEvent> usage ) {
     List<ReportingInstanceCreateEvent> instanceCreateList = create.sort{ event -> event.getTimestampMs() }
     List<ReportingInstanceUsageEvent> instanceUsageList = usage.sort{ event -> event.getTimestampMs() }
+    List<ReportingInstanceUsageRollup> instanceUsageRollupList = []
     new InstanceArtGenerator() {
 
       @Override
@@ -792,6 +915,17 @@ class InstanceArtGeneratorTest {
         }.every { event -> callback.apply( event ) }
       }
 
+      @Override
+      protected void foreachInstanceUsageEventStoredAfter( final long storedAfterMs,
+                                                           final long startInclusive,
+                                                           final long endExclusive,
+                                                           final Predicate<? super ReportingInstanceUsageEvent> callback ) {
+        instanceUsageList.findAll{ event ->
+          startInclusive <= event.getTimestampMs() && event.getTimestampMs() < endExclusive &&
+              event.getCreationTimestamp() != null && event.getCreationTimestamp().getTime() > storedAfterMs
+        }.every { event -> callback.apply( event ) }
+      }
+
       @Override
       protected void foreachInstanceCreateEvent( final long endExclusive,
                                                  final Predicate<? super ReportingInstanceCreateEvent> callback ) {
@@ -799,6 +933,27 @@ class InstanceArtGeneratorTest {
           event.getTimestampMs() < endExclusive }.every { event -> callback.apply( event ) }
       }
 
+      @Override
+      protected void foreachInstanceUsageRollup( final long startInclusive,
+                                                 final long endExclusive,
+                                                 final boolean ascending,
+                                                 final Predicate<? super ReportingInstanceUsageRollup> callback ) {
+        List<ReportingInstanceUsageRollup> rollups = instanceUsageRollupList.findAll{ rollup ->
+          startInclusive <= rollup.getTimestampMs() && rollup.getTimestampMs() < endExclusive
+        }.sort{ rollup -> rollup.getTimestampMs() }
+        ( ascending ? rollups : rollups.reverse() ).every { rollup -> callback.apply( rollup ) }
+      }
+
+      @Override
+      protected void storeInstanceUsageRollups( final long beginMs,
+                                                final long endMs,
+                                                final List<ReportingInstanceUsageRollup> rollups ) {
+        instanceUsageRollupList.removeAll{ rollup ->
+          beginMs <= rollup.getTimestampMs() && rollup.getTimestampMs() < endMs
+        }
+        instanceUsageRollupList.addAll( rollups )
+      }
+
       @Override
       protected ReportingUser getUserById(String userId) {
         return user( userId, userToAccount[userId] )
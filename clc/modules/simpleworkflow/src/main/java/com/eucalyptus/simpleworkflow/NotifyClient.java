@@ -28,12 +28,16 @@ import com.eucalyptus.ws.WebServicesException;
 import com.google.common.base.Throwables;
 import org.apache.log4j.Logger;
 import com.eucalyptus.auth.principal.AccountFullName;
+import com.eucalyptus.component.ServiceConfiguration;
 import com.eucalyptus.component.Topology;
+import com.eucalyptus.simpleworkflow.common.SimpleWorkflow;
 import com.eucalyptus.simpleworkflow.stateful.NotifyResponseType;
 import com.eucalyptus.simpleworkflow.stateful.NotifyType;
 import com.eucalyptus.simpleworkflow.stateful.PollForNotificationResponseType;
 import com.eucalyptus.simpleworkflow.stateful.PollForNotificationType;
+import com.eucalyptus.simpleworkflow.stateful.PolledNotificationService;
 import com.eucalyptus.simpleworkflow.stateful.PolledNotifications;
+import com.eucalyptus.system.Threads;
 import com.eucalyptus.util.Consumer;
 import com.eucalyptus.util.Consumers;
 import com.eucalyptus.util.async.AsyncRequests;
@@ -48,6 +52,8 @@ public class NotifyClient {
 
   private static final Logger logger = Logger.getLogger( NotifyClient.class );
 
+  private static final int POLL_RESPONSE_THREADS = 64;
+
   public static final class NotifyTaskList {
     private final String accountNumber;
     private final String domain;
@@ -145,8 +151,11 @@ public class NotifyClient {
     final Consumer<Boolean> consumer = Consumers.once( resultConsumer );
     final PollForNotificationType poll = new PollForNotificationType( );
     poll.setChannel( taskList.getChannelName( ) );
-    final ListenableFuture<PollForNotificationResponseType> dispatchFuture =
-        AsyncRequests.dispatch( Topology.lookup( PolledNotifications.class ), poll );
+    final ServiceConfiguration configuration = Topology.lookup( PolledNotifications.class );
+    // a local poll is completed by the notification, so no dispatch thread waits out the poll
+    final ListenableFuture<PollForNotificationResponseType> dispatchFuture = configuration.isVmLocal( ) ?
+        PolledNotificationService.poll( poll.getChannel( ) ) :
+        AsyncRequests.<PollForNotificationType,PollForNotificationResponseType>dispatch( configuration, poll );
     dispatchFuture.addListener( new Runnable( ) {
       @Override
       public void run( ) {
@@ -163,7 +172,7 @@ public class NotifyClient {
           consumer.accept( false );
         }
       }
-    } );
+    }, Threads.lookup( SimpleWorkflow.class, NotifyClient.class ).limitTo( POLL_RESPONSE_THREADS ) );
   }
 
   private static void handleExecutionExceptionForPolling(ExecutionException e, PollForNotificationType poll) {
@@ -33,6 +33,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import org.apache.log4j.Logger;
@@ -52,6 +53,7 @@ import com.eucalyptus.entities.Entities;
 import com.eucalyptus.entities.PersistenceExceptions;
 import com.eucalyptus.simpleworkflow.common.SimpleWorkflowMetadatas;
 import com.eucalyptus.simpleworkflow.common.model.*;
+import com.eucalyptus.simpleworkflow.tokens.PageToken;
 import com.eucalyptus.simpleworkflow.tokens.TaskToken;
 import com.eucalyptus.simpleworkflow.tokens.TaskTokenException;
 import com.eucalyptus.simpleworkflow.tokens.TaskTokenManager;
@@ -73,7 +75,6 @@ import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
-import com.google.common.collect.Collections2;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -89,6 +90,9 @@ public class SimpleWorkflowService {
 
   private static final Logger logger = Logger.getLogger( SimpleWorkflowService.class );
 
+  private static final int MAX_HISTORY_PAGE_SIZE = 1000;
+  private static final long PAGE_TOKEN_EXPIRY_MILLIS = TimeUnit.MINUTES.toMillis( 5 );
+
   private final Domains domains;
   private final ActivityTasks activityTasks;
   private final ActivityTypes activityTypes;
@@ -1203,6 +1207,46 @@ public class SimpleWorkflowService {
     final Predicate<? super WorkflowExecution> accessible =
         SimpleWorkflowMetadatas.filteringFor( WorkflowExecution.class ).byPrivileges( ).buildPredicate( );
 
+    if ( request.getNextPageToken( ) != null ) {
+      final PageToken pageToken = decryptPageToken( accountFullName, request.getNextPageToken( ) );
+      final DecisionTask decisionTask;
+      try {
+        decisionTask = workflowExecutions.lookupByExample(
+            WorkflowExecution.exampleWithName( accountFullName, pageToken.getRunId( ) ),
+            accountFullName,
+            pageToken.getRunId( ),
+            accessible,
+            new Function<WorkflowExecution, DecisionTask>( ) {
+              @Override
+              public DecisionTask apply( final WorkflowExecution workflowExecution ) {
+                final History history = historyPage(
+                    workflowExecution,
+                    pageToken,
+                    pageToken.getMaxEventId( ),
+                    pageToken.isReverseOrder( ),
+                    request.getMaximumPageSize( ) );
+                return new DecisionTask( )
+                    .withWorkflowExecution( new com.eucalyptus.simpleworkflow.common.model.WorkflowExecution( )
+                        .withWorkflowId( workflowExecution.getWorkflowId( ) )
+                        .withRunId( workflowExecution.getDisplayName( ) ) )
+                    .withWorkflowType( new com.eucalyptus.simpleworkflow.common.model.WorkflowType( )
+                        .withName( workflowExecution.getWorkflowType( ).getDisplayName( ) )
+                        .withVersion( workflowExecution.getWorkflowType( ).getWorkflowVersion( ) ) )
+                    .withStartedEventId( pageToken.getMaxEventId( ) )
+                    .withEvents( history.getEvents( ) )
+                    .withNextPageToken( history.getNextPageToken( ) );
+              }
+            } );
+      } catch ( SwfMetadataNotFoundException e ) {
+        throw new SimpleWorkflowClientException(
+            "UnknownResourceFault",
+            "Unknown execution, runId = " + pageToken.getRunId( ) );
+      } catch ( Exception e ) {
+        throw handleException( e );
+      }
+      return request.reply( decisionTask );
+    }
+
     final String domain = request.getDomain( );
     final String taskList = request.getTaskList( ).getName( );
     final Callable<DecisionTask> taskCallable = new Callable<DecisionTask>() {
@@ -1231,14 +1275,10 @@ public class SimpleWorkflowService {
                   @Override
                   public DecisionTask apply( final WorkflowExecution workflowExecution ) {
                     if ( workflowExecution.getDecisionStatus( ) == Pending ) {
-                      final List<WorkflowHistoryEvent> events = workflowExecution.getWorkflowHistory();
-                      final List<WorkflowHistoryEvent> reverseEvents = Lists.reverse( events );
-                      final WorkflowHistoryEvent scheduled = Iterables.find(
-                          reverseEvents,
-                          CollectionUtils.propertyPredicate( "DecisionTaskScheduled", EVENT_TYPE ) );
-                      final Optional<WorkflowHistoryEvent> previousStarted = Iterables.tryFind(
-                          reverseEvents,
-                          CollectionUtils.propertyPredicate( "DecisionTaskStarted", EVENT_TYPE ) );
+                      final WorkflowHistoryEvent scheduled =
+                          WorkflowHistoryEvent.findLatest( workflowExecution, "DecisionTaskScheduled" ).get( );
+                      final Optional<WorkflowHistoryEvent> previousStarted =
+                          WorkflowHistoryEvent.findLatest( workflowExecution, "DecisionTaskStarted" );
                       workflowExecution.setDecisionStatus( Active );
                       workflowExecution.setDecisionTimestamp( new Date( ) );
                       final WorkflowHistoryEvent started = WorkflowHistoryEvent.create(
@@ -1247,6 +1287,13 @@ public class SimpleWorkflowService {
                               .withIdentity( request.getIdentity() )
                               .withScheduledEventId( scheduled.getEventId() ) );
                       workflowExecution.addHistoryEvent( started );
+                      Entities.flush( started );
+                      final History history = historyPage(
+                          workflowExecution,
+                          null,
+                          started.getEventId( ),
+                          MoreObjects.firstNonNull( request.isReverseOrder( ), Boolean.FALSE ),
+                          request.getMaximumPageSize( ) );
                       return new DecisionTask( )
                           .withWorkflowExecution( new com.eucalyptus.simpleworkflow.common.model.WorkflowExecution( )
                               .withWorkflowId( workflowExecution.getWorkflowId( ) )
@@ -1264,10 +1311,8 @@ public class SimpleWorkflowService {
                               System.currentTimeMillis( ) ) ) )  //TODO:STEVE: token expiry date
                           .withStartedEventId( started.getEventId() )
                           .withPreviousStartedEventId( previousStarted.transform( WorkflowExecutions.WorkflowHistoryEventLongFunctions.EVENT_ID ).or( 0L ) )
-                          .withEvents( Collections2.transform(
-                              MoreObjects.firstNonNull( request.isReverseOrder( ), Boolean.FALSE ) ? reverseEvents : events,
-                              TypeMappers.lookup( WorkflowHistoryEvent.class, HistoryEvent.class )
-                          ) );
+                          .withEvents( history.getEvents( ) )
+                          .withNextPageToken( history.getNextPageToken( ) );
                     }
                     return null;
                   }
@@ -1333,18 +1378,14 @@ public class SimpleWorkflowService {
                 notificationTypeListPairs.clear( );
 
                 // verify token is valid
-                final List<WorkflowHistoryEvent> events = workflowExecution.getWorkflowHistory();
-                final List<WorkflowHistoryEvent> reverseEvents = Lists.reverse( events );
-                final WorkflowHistoryEvent started = Iterables.find(
-                    reverseEvents,
-                    CollectionUtils.propertyPredicate( "DecisionTaskStarted", EVENT_TYPE ) );
-                if ( !started.getEventId( ).equals( token.getStartedEventId( ) ) ) {
+                final Optional<WorkflowHistoryEvent> started =
+                    WorkflowHistoryEvent.findLatest( workflowExecution, "DecisionTaskStarted" );
+                if ( !started.isPresent( ) || !started.get( ).getEventId( ).equals( token.getStartedEventId( ) ) ) {
                   throw upClient( "ValidationError", "Bad token" );
                 }
-                final WorkflowHistoryEvent scheduled = Iterables.find(
-                    reverseEvents,
-                    CollectionUtils.propertyPredicate( "DecisionTaskScheduled", EVENT_TYPE ) );
-                if ( scheduled.getEventId( ) < started.getEventId() ) {
+                final WorkflowHistoryEvent scheduled =
+                    WorkflowHistoryEvent.findLatest( workflowExecution, "DecisionTaskScheduled" ).get( );
+                if ( scheduled.getEventId( ) < started.get( ).getEventId( ) ) {
                   workflowExecution.setDecisionStatus( Idle );
                   workflowExecution.setDecisionTimestamp( new Date( ) );
                 } else {
@@ -2096,6 +2137,13 @@ public class SimpleWorkflowService {
     final Predicate<? super WorkflowExecution> accessible =
         SimpleWorkflowMetadatas.filteringFor( WorkflowExecution.class ).byPrivileges( ).buildPredicate( );
 
+    final PageToken pageToken = request.getNextPageToken( ) == null ?
+        null :
+        decryptPageToken( accountFullName, request.getNextPageToken( ) );
+    if ( pageToken != null && !pageToken.getRunId( ).equals( request.getExecution( ).getRunId( ) ) ) {
+      throw new SimpleWorkflowClientException( "InvalidParameterValue", "Invalid page token." );
+    }
+
     final History history;
     try {
       history = workflowExecutions.lookupByExample(
@@ -2106,13 +2154,19 @@ public class SimpleWorkflowService {
           new Function<WorkflowExecution, History>() {
             @Override
             public History apply( final WorkflowExecution workflowExecution ) {
-              final List<WorkflowHistoryEvent> events = workflowExecution.getWorkflowHistory();
-              final List<WorkflowHistoryEvent> reverseEvents = Lists.reverse( events );
-              return new History( )
-                  .withEvents( Collections2.transform(
-                      MoreObjects.firstNonNull( request.isReverseOrder( ), Boolean.FALSE ) ? reverseEvents : events,
-                      TypeMappers.lookup( WorkflowHistoryEvent.class, HistoryEvent.class )
-                  ) );
+              return pageToken == null ?
+                  historyPage(
+                      workflowExecution,
+                      null,
+                      (long) workflowExecution.getWorkflowHistory( ).size( ),
+                      MoreObjects.firstNonNull( request.isReverseOrder( ), Boolean.FALSE ),
+                      request.getMaximumPageSize( ) ) :
+                  historyPage(
+                      workflowExecution,
+                      pageToken,
+                      pageToken.getMaxEventId( ),
+                      pageToken.isReverseOrder( ),
+                      request.getMaximumPageSize( ) );
             }
           }
       );
@@ -2127,6 +2181,87 @@ public class SimpleWorkflowService {
     return request.reply( history );
   }
 
+  /**
+   * Build a page of history, the next page token is included when there are further events.
+   */
+  private History historyPage( final WorkflowExecution workflowExecution,
+                               @Nullable final PageToken pageToken,
+                               final long maxEventId,
+                               final boolean reverseOrder,
+                               @Nullable final Integer maximumPageSize ) {
+    final HistoryEventPage page = historyEventPage(
+        new HistoryEventLister( ) {
+          @Override
+          public List<WorkflowHistoryEvent> list( @Nullable final Long afterEventOrder,
+                                                  final long maxEventOrder,
+                                                  final boolean reverseOrder,
+                                                  final int pageSize ) {
+            return WorkflowHistoryEvent.listPage( workflowExecution, afterEventOrder, maxEventOrder, reverseOrder, pageSize );
+          }
+        },
+        pageToken == null ? null : pageToken.getLastEventId( ),
+        maxEventId,
+        reverseOrder,
+        maximumPageSize );
+    String nextPageToken = null;
+    if ( page.hasMore( ) ) {
+      final long now = System.currentTimeMillis( );
+      nextPageToken = taskTokenManager.encryptPageToken( new PageToken(
+          workflowExecution.getOwnerAccountNumber( ),
+          workflowExecution.getDomainUuid( ),
+          workflowExecution.getDisplayName( ),
+          Iterables.getLast( page.getEvents( ) ).getEventId( ),
+          maxEventId,
+          reverseOrder,
+          now,
+          now + PAGE_TOKEN_EXPIRY_MILLIS ) );
+    }
+    return new History( )
+        .withEvents( Lists.newArrayList( Iterables.transform(
+            page.getEvents( ),
+            TypeMappers.lookup( WorkflowHistoryEvent.class, HistoryEvent.class ) ) ) )
+        .withNextPageToken( nextPageToken );
+  }
+
+  /**
+   * List the events for a page of history.
+   *
+   * @param lastEventId Identifier of the last event of the previous page, null for the first page
+   * @param maxEventId Identifier of the latest event to include
+   */
+  static HistoryEventPage historyEventPage( final HistoryEventLister lister,
+                                           @Nullable final Long lastEventId,
+                                           final long maxEventId,
+                                           final boolean reverseOrder,
+                                           @Nullable final Integer maximumPageSize ) {
+    final int pageSize = maximumPageSize == null || maximumPageSize < 1 || maximumPageSize > MAX_HISTORY_PAGE_SIZE ?
+        MAX_HISTORY_PAGE_SIZE :
+        maximumPageSize;
+    // event order is the zero based event identifier, an extra event is requested to detect a further page
+    final List<WorkflowHistoryEvent> events = lister.list(
+        lastEventId == null ? null : lastEventId - 1,
+        maxEventId - 1,
+        reverseOrder,
+        pageSize + 1 );
+    return events.size( ) > pageSize ?
+        new HistoryEventPage( events.subList( 0, pageSize ), true ) :
+        new HistoryEventPage( events, false );
+  }
+
+  private PageToken decryptPageToken( final AccountFullName accountFullName,
+                                      final String nextPageToken ) throws SimpleWorkflowException {
+    final PageToken pageToken;
+    try {
+      pageToken = taskTokenManager.decryptPageToken( accountFullName.getAccountNumber( ), nextPageToken );
+    } catch ( TaskTokenException e ) {
+      throw new SimpleWorkflowClientException( "InvalidParameterValue", "Invalid page token." );
+    }
+    if ( pageToken.getExpires( ) < System.currentTimeMillis( ) ) {
+      throw new SimpleWorkflowClientException( "InvalidParameterValue", "Expired page token." );
+    }
+    return pageToken;
+  }
+
   private <T extends AbstractPersistent & RestrictedType> T allocate(
       final Supplier<T> allocator,
       final Class<T> type,
@@ -2348,6 +2483,31 @@ public class SimpleWorkflowService {
     }
   }
 
+  interface HistoryEventLister {
+    List<WorkflowHistoryEvent> list( @Nullable Long afterEventOrder,
+                                     long maxEventOrder,
+                                     boolean reverseOrder,
+                                     int pageSize );
+  }
+
+  static final class HistoryEventPage {
+    private final List<WorkflowHistoryEvent> events;
+    private final boolean more;
+
+    HistoryEventPage( final List<WorkflowHistoryEvent> events, final boolean more ) {
+      this.events = events;
+      this.more = more;
+    }
+
+    List<WorkflowHistoryEvent> getEvents( ) {
+      return events;
+    }
+
+    boolean hasMore( ) {
+      return more;
+    }
+  }
+
   private static final class ScheduleActivityTaskException extends Exception {
     private static final long serialVersionUID = 1L;
 
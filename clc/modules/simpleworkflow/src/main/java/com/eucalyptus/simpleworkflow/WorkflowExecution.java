@@ -45,6 +45,8 @@ import javax.persistence.PreUpdate;
 import javax.persistence.Table;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
+import org.hibernate.annotations.LazyCollection;
+import org.hibernate.annotations.LazyCollectionOption;
 import org.hibernate.annotations.Type;
 import com.eucalyptus.component.ComponentIds;
 import com.eucalyptus.entities.UserMetadata;
@@ -179,6 +181,7 @@ public class WorkflowExecution extends UserMetadata<WorkflowExecution.ExecutionS
 
   @OneToMany( fetch = FetchType.LAZY, cascade = { CascadeType.PERSIST, CascadeType.REMOVE }, orphanRemoval = true, mappedBy = "workflowExecution" )
   @OrderBy( "eventOrder" )
+  @LazyCollection( LazyCollectionOption.EXTRA ) // size and add do not load the history
   private List<WorkflowHistoryEvent> workflowHistory;
 
   @OneToMany( fetch = FetchType.LAZY, cascade = { CascadeType.REMOVE }, orphanRemoval = true, mappedBy = "workflowExecution" )
@@ -19,6 +19,9 @@
  ************************************************************************/
 package com.eucalyptus.simpleworkflow;
 
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Index;
@@ -27,12 +30,19 @@ import javax.persistence.Lob;
 import javax.persistence.ManyToOne;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Table;
+import org.hibernate.Criteria;
 import org.hibernate.annotations.Type;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Restrictions;
 import com.eucalyptus.entities.AbstractPersistent;
+import com.eucalyptus.entities.Entities;
 import com.eucalyptus.simpleworkflow.common.model.WorkflowEventAttributes;
 import com.eucalyptus.util.Exceptions;
 import com.eucalyptus.util.Strings;
 import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
 
 /**
  *
@@ -40,11 +50,15 @@ import com.google.common.base.Objects;
 @Entity
 @PersistenceContext( name = "eucalyptus_simpleworkflow" )
 @Table( name = "swf_workflow_history_event", indexes = {
-    @Index( name = "swf_workflow_history_event_execution_id_idx", columnList = "workflow_execution_id" )
+    @Index( name = "swf_workflow_history_event_execution_id_idx", columnList = "workflow_execution_id" ),
+    @Index( name = "swf_workflow_history_event_execution_order_idx", columnList = "workflow_execution_id, event_order" )
 } )
 public class WorkflowHistoryEvent extends AbstractPersistent {
   private static final long serialVersionUID = 1L;
 
+  private static final ConcurrentMap<String,Class<? extends WorkflowEventAttributes>> attributesClassesByEventType =
+      Maps.newConcurrentMap( );
+
   @ManyToOne
   @JoinColumn( name = "workflow_execution_id", nullable = false, updatable = false )
   private WorkflowExecution workflowExecution;
@@ -73,19 +87,67 @@ public class WorkflowHistoryEvent extends AbstractPersistent {
     return workflowHistoryEvent;
   }
 
-  @SuppressWarnings( "unchecked" )
   public WorkflowEventAttributes toAttributes( ) {
     try {
-      return SwfJsonUtils.readObject(
-          getEventAttributes(),
-          (Class<? extends WorkflowEventAttributes>)
-              Class.forName( WorkflowEventAttributes.class.getPackage( ).getName( ) +
-                  "." + getEventType( ) + "EventAttributes" ) );
+      return SwfJsonUtils.readObject( getEventAttributes( ), attributesClass( getEventType( ) ) );
     } catch ( Exception e ) {
       throw Exceptions.toUndeclared( e );
     }
   }
 
+  /**
+   * List a page of the execution history, positioned by event order.
+   *
+   * Must be called in a transaction.
+   *
+   * @param afterEventOrder Order of the last event of the previous page, null for the first page
+   * @param maxEventOrder Order of the latest event to include
+   */
+  @SuppressWarnings( "unchecked" )
+  public static List<WorkflowHistoryEvent> listPage( final WorkflowExecution execution,
+                                                     @Nullable final Long afterEventOrder,
+                                                     final long maxEventOrder,
+                                                     final boolean reverseOrder,
+                                                     final int pageSize ) {
+    final Criteria criteria = Entities.createCriteria( WorkflowHistoryEvent.class )
+        .add( Restrictions.eq( "workflowExecution", execution ) )
+        .add( Restrictions.le( "eventOrder", maxEventOrder ) )
+        .addOrder( reverseOrder ? Order.desc( "eventOrder" ) : Order.asc( "eventOrder" ) )
+        .setMaxResults( pageSize );
+    if ( afterEventOrder != null ) {
+      criteria.add( reverseOrder ?
+          Restrictions.lt( "eventOrder", afterEventOrder ) :
+          Restrictions.gt( "eventOrder", afterEventOrder ) );
+    }
+    return (List<WorkflowHistoryEvent>) criteria.list( );
+  }
+
+  /**
+   * Find the latest event of the given type for the execution.
+   *
+   * Must be called in a transaction.
+   */
+  @SuppressWarnings( "unchecked" )
+  public static Optional<WorkflowHistoryEvent> findLatest( final WorkflowExecution execution,
+                                                           final String eventType ) {
+    return Optional.fromNullable( Iterables.getFirst( (List<WorkflowHistoryEvent>) Entities.createCriteria( WorkflowHistoryEvent.class )
+        .add( Restrictions.eq( "workflowExecution", execution ) )
+        .add( Restrictions.eq( "eventType", eventType ) )
+        .addOrder( Order.desc( "eventOrder" ) )
+        .setMaxResults( 1 )
+        .list( ), null ) );
+  }
+
+  private static Class<? extends WorkflowEventAttributes> attributesClass( final String eventType ) throws ClassNotFoundException {
+    Class<? extends WorkflowEventAttributes> attributesClass = attributesClassesByEventType.get( eventType );
+    if ( attributesClass == null ) {
+      attributesClass = Class.forName( WorkflowEventAttributes.class.getPackage( ).getName( ) +
+          "." + eventType + "EventAttributes" ).asSubclass( WorkflowEventAttributes.class );
+      attributesClassesByEventType.put( eventType, attributesClass );
+    }
+    return attributesClass;
+  }
+
   public Long getEventId( ) {
     return Objects.firstNonNull( getEventOrder( ), 0L ) + 1L;
   }
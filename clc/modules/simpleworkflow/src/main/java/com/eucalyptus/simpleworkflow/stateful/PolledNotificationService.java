@@ -41,6 +41,7 @@ import com.eucalyptus.event.Listeners;
 import com.eucalyptus.util.EucalyptusCloudException;
 import com.eucalyptus.util.async.CheckedListenableFuture;
 import com.eucalyptus.util.async.Futures;
+import com.eucalyptus.util.concurrent.ListenableFuture;
 import com.google.common.base.Objects;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
@@ -91,6 +92,19 @@ public class PolledNotificationService {
     }
   }
 
+  /**
+   * Poll for a notification on a channel from within this VM.
+   *
+   * <p>The returned future is completed when the channel is notified or when
+   * the poll expires, no thread is held while the poll is outstanding.</p>
+   */
+  public static ListenableFuture<PollForNotificationResponseType> poll( final String channel ) {
+    final Poller poller = new Poller( channel );
+    addPoller( channel, poller );
+    checkNotify( channel );
+    return poller.getFuture( );
+  }
+
   private static void checkNotify( final String channel ) {
     final PendingNotification pendingNotification = pendingNotificationsByChannel.remove( channel );
     if ( pendingNotification != null && !pendingNotification.isExpired( System.currentTimeMillis( ) ) ) {
@@ -100,7 +114,7 @@ public class PolledNotificationService {
     }
   }
 
-  private static boolean notifyPollers( final String channel, final String details ) {
+  static boolean notifyPollers( final String channel, final String details ) {
     return getPollers( channel ).notifyPollers( details );
   }
 
@@ -297,6 +311,16 @@ public class PolledNotificationService {
     private final String correlationId;
     private final CheckedListenableFuture<PollForNotificationResponseType> future;
 
+    /**
+     * Poller for a request from within this VM, the future is always set with the response.
+     */
+    private Poller( final String channel ) {
+      this.timestamp = System.currentTimeMillis( );
+      this.channel = channel;
+      this.correlationId = null;
+      this.future = Futures.newGenericeFuture( );
+    }
+
     private Poller( final String channel,
                     final String correlationId ) {
       this.timestamp = System.currentTimeMillis( );
@@ -324,7 +348,7 @@ public class PolledNotificationService {
       return correlationId;
     }
 
-    public Future<PollForNotificationResponseType> getFuture() {
+    public CheckedListenableFuture<PollForNotificationResponseType> getFuture() {
       return future;
     }
 
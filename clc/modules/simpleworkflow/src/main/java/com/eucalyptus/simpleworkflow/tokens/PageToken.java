@@ -0,0 +1,97 @@
+/*************************************************************************
+ * Copyright 2009-2014 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.simpleworkflow.tokens;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Position in the history of a workflow execution for paged retrieval.
+ */
+public class PageToken {
+  private final String accountNumber;
+  private final String domainUuid;
+  private final String runId;
+  private final Long lastEventId;
+  private final Long maxEventId;
+  private final boolean reverseOrder;
+  private final Long created;
+  private final Long expires;
+
+  public PageToken( final String accountNumber,
+                    final String domainUuid,
+                    final String runId,
+                    final Long lastEventId,
+                    final Long maxEventId,
+                    final boolean reverseOrder,
+                    final Long created,
+                    final Long expires ) {
+    Preconditions.checkNotNull( accountNumber, "accountNumber is required" );
+    Preconditions.checkNotNull( domainUuid, "domainUuid is required" );
+    Preconditions.checkNotNull( runId, "runId is required" );
+    Preconditions.checkNotNull( lastEventId, "lastEventId is required" );
+    Preconditions.checkNotNull( maxEventId, "maxEventId is required" );
+    this.accountNumber = accountNumber;
+    this.domainUuid = domainUuid;
+    this.runId = runId;
+    this.lastEventId = lastEventId;
+    this.maxEventId = maxEventId;
+    this.reverseOrder = reverseOrder;
+    this.created = created;
+    this.expires = expires;
+  }
+
+  public String getAccountNumber() {
+    return accountNumber;
+  }
+
+  public String getDomainUuid() {
+    return domainUuid;
+  }
+
+  public String getRunId() {
+    return runId;
+  }
+
+  /**
+   * Identifier of the last event returned in the previous page.
+   */
+  public Long getLastEventId() {
+    return lastEventId;
+  }
+
+  /**
+   * Identifier of the latest event included in the history.
+   */
+  public Long getMaxEventId() {
+    return maxEventId;
+  }
+
+  public boolean isReverseOrder() {
+    return reverseOrder;
+  }
+
+  public Long getCreated() {
+    return created;
+  }
+
+  public Long getExpires() {
+    return expires;
+  }
+}
@@ -53,6 +53,7 @@ import com.google.common.primitives.Longs;
  */
 @ComponentNamed
 public class TaskTokenManager {
+  private static final byte[] TOKEN_PREFIX = new byte[]{ 'e', 'u', 's', 'w', 0, 1 };
   private static final Supplier<SecureRandom> randomSupplier = Crypto.getSecureRandomSupplier();
   private static final Supplier<String> securityTokenPasswordSupplier = Suppliers.memoize(
       new Supplier<String>( ) {
@@ -79,6 +80,23 @@ public class TaskTokenManager {
     }
   }
 
+  @Nonnull
+  public String encryptPageToken( @Nonnull final PageToken pageToken ) {
+    final EncryptedPageToken encryptedToken = new EncryptedPageToken( pageToken );
+    return encryptedToken.encrypt( getEncryptionKey( pageToken.getAccountNumber() ) );
+  }
+
+  @Nonnull
+  public PageToken decryptPageToken( final String accountNumber,
+                                     final String pageToken ) throws TaskTokenException {
+    if ( pageToken == null ) throw new TaskTokenException( "Missing page token" );
+    try {
+      return EncryptedPageToken.decrypt( getEncryptionKey( accountNumber ), pageToken ).getPageToken( );
+    } catch ( GeneralSecurityException e ) {
+      throw new TaskTokenException( "Error decrypting page token", e );
+    }
+  }
+
   protected String getTokenPassword() {
     return securityTokenPasswordSupplier.get( );
   }
@@ -91,8 +109,6 @@ public class TaskTokenManager {
   }
 
   private static final class EncryptedTaskToken {
-    private static final byte[] TOKEN_PREFIX = new byte[]{ 'e', 'u', 's', 'w', 0, 1 };
-
     private final TaskToken taskToken;
 
     private EncryptedTaskToken( final TaskToken taskToken ) {
@@ -121,40 +137,13 @@ public class TaskTokenManager {
     }
 
     private String encrypt( final SecretKey key ) {
-      try {
-        final Cipher cipher = Ciphers.AES_GCM.get();
-        final byte[] iv = new byte[32];
-        randomSupplier.get().nextBytes(iv);
-        cipher.init( Cipher.ENCRYPT_MODE, key, new IvParameterSpec( iv ), randomSupplier.get( ) );
-        final ByteArrayOutputStream out = new ByteArrayOutputStream();
-        out.write( TOKEN_PREFIX );
-        out.write( iv );
-        out.write( cipher.doFinal(toBytes()) );
-        return B64.standard.encString( out.toByteArray() );
-      } catch ( GeneralSecurityException | IOException e ) {
-        throw Exceptions.toUndeclared( e );
-      }
+      return encryptToken( key, toBytes( ) );
     }
 
     private static EncryptedTaskToken decrypt( final SecretKey key,
                                                final String taskToken ) throws GeneralSecurityException {
       try {
-        final Cipher cipher = Ciphers.AES_GCM.get();
-        final byte[] taskTokenBytes = B64.standard.dec(taskToken);
-        if ( taskTokenBytes.length < 64 + TOKEN_PREFIX.length ||
-            !Arrays.equals( TOKEN_PREFIX, Arrays.copyOf( taskTokenBytes, TOKEN_PREFIX.length ) ) ) {
-          throw new GeneralSecurityException("Invalid token format");
-        }
-
-        cipher.init(
-            Cipher.DECRYPT_MODE,
-            key,
-            new IvParameterSpec( taskTokenBytes, TOKEN_PREFIX.length, 32 ),
-            randomSupplier.get( )
-        );
-        final int offset = TOKEN_PREFIX.length + 32;
-        final TaskTokenInput in = new TaskTokenInput(
-            cipher.doFinal( taskTokenBytes, offset, taskTokenBytes.length-offset ) );
+        final TaskTokenInput in = decryptToken( key, taskToken );
         if ( in.readInt() != 1 ) throw new GeneralSecurityException("Invalid token format");
         final String accountNumber = in.readString();
         final String domainUuid = in.readString();
@@ -171,6 +160,95 @@ public class TaskTokenManager {
     }
   }
 
+  private static final class EncryptedPageToken {
+    private final PageToken pageToken;
+
+    private EncryptedPageToken( final PageToken pageToken ) {
+      this.pageToken = pageToken;
+    }
+
+    public PageToken getPageToken( ) {
+      return pageToken;
+    }
+
+    private byte[] toBytes( ) {
+      try {
+        final TaskTokenOutput out = new TaskTokenOutput();
+        out.writeInt( 2 ); // format identifier
+        out.writeString( pageToken.getAccountNumber() );
+        out.writeString( pageToken.getDomainUuid() );
+        out.writeString( pageToken.getRunId() );
+        out.writeLong( pageToken.getLastEventId() );
+        out.writeLong( pageToken.getMaxEventId() );
+        out.writeInt( pageToken.isReverseOrder() ? 1 : 0 );
+        out.writeLong( pageToken.getCreated() );
+        out.writeLong( pageToken.getExpires() );
+        return out.toByteArray( );
+      } catch (IOException e) {
+        throw Exceptions.toUndeclared( e );
+      }
+    }
+
+    private String encrypt( final SecretKey key ) {
+      return encryptToken( key, toBytes( ) );
+    }
+
+    private static EncryptedPageToken decrypt( final SecretKey key,
+                                               final String pageToken ) throws GeneralSecurityException {
+      try {
+        final TaskTokenInput in = decryptToken( key, pageToken );
+        if ( in.readInt() != 2 ) throw new GeneralSecurityException("Invalid token format");
+        final String accountNumber = in.readString();
+        final String domainUuid = in.readString();
+        final String runId = in.readString();
+        final long lastEventId = in.readLong();
+        final long maxEventId = in.readLong();
+        final boolean reverseOrder = in.readInt() == 1;
+        final long created = in.readLong();
+        final long expires = in.readLong();
+        return new EncryptedPageToken(
+            new PageToken( accountNumber, domainUuid, runId, lastEventId, maxEventId, reverseOrder, created, expires ) );
+      } catch (IOException e) {
+        throw Exceptions.toUndeclared( e );
+      }
+    }
+  }
+
+  private static String encryptToken( final SecretKey key, final byte[] tokenBytes ) {
+    try {
+      final Cipher cipher = Ciphers.AES_GCM.get();
+      final byte[] iv = new byte[32];
+      randomSupplier.get().nextBytes(iv);
+      cipher.init( Cipher.ENCRYPT_MODE, key, new IvParameterSpec( iv ), randomSupplier.get( ) );
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      out.write( TOKEN_PREFIX );
+      out.write( iv );
+      out.write( cipher.doFinal( tokenBytes ) );
+      return B64.standard.encString( out.toByteArray() );
+    } catch ( GeneralSecurityException | IOException e ) {
+      throw Exceptions.toUndeclared( e );
+    }
+  }
+
+  private static TaskTokenInput decryptToken( final SecretKey key,
+                                              final String token ) throws GeneralSecurityException {
+    final Cipher cipher = Ciphers.AES_GCM.get();
+    final byte[] tokenBytes = B64.standard.dec(token);
+    if ( tokenBytes.length < 64 + TOKEN_PREFIX.length ||
+        !Arrays.equals( TOKEN_PREFIX, Arrays.copyOf( tokenBytes, TOKEN_PREFIX.length ) ) ) {
+      throw new GeneralSecurityException("Invalid token format");
+    }
+
+    cipher.init(
+        Cipher.DECRYPT_MODE,
+        key,
+        new IvParameterSpec( tokenBytes, TOKEN_PREFIX.length, 32 ),
+        randomSupplier.get( )
+    );
+    final int offset = TOKEN_PREFIX.length + 32;
+    return new TaskTokenInput( cipher.doFinal( tokenBytes, offset, tokenBytes.length-offset ) );
+  }
+
   private static final class TaskTokenOutput {
     private final ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
     private final Deflater deflater = new Deflater( Deflater.BEST_COMPRESSION );
@@ -0,0 +1,127 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.simpleworkflow
+
+import com.eucalyptus.simpleworkflow.SimpleWorkflowService.HistoryEventLister
+import com.eucalyptus.simpleworkflow.SimpleWorkflowService.HistoryEventPage
+import org.junit.Test
+import static org.junit.Assert.*
+
+import javax.annotation.Nullable
+
+/**
+ *
+ */
+class SimpleWorkflowServiceHistoryPageTest {
+
+  @Test
+  void testFirstPage( ) {
+    HistoryEventPage page = SimpleWorkflowService.historyEventPage( lister( 10 ), null, 10, false, 4 )
+    assertEquals( 'event ids', [ 1L, 2L, 3L, 4L ], page.events*.eventId )
+    assertTrue( 'more', page.hasMore( ) )
+  }
+
+  @Test
+  void testNextPage( ) {
+    HistoryEventPage page = SimpleWorkflowService.historyEventPage( lister( 10 ), 4, 10, false, 4 )
+    assertEquals( 'event ids', [ 5L, 6L, 7L, 8L ], page.events*.eventId )
+    assertTrue( 'more', page.hasMore( ) )
+  }
+
+  @Test
+  void testLastPage( ) {
+    HistoryEventPage page = SimpleWorkflowService.historyEventPage( lister( 10 ), 8, 10, false, 4 )
+    assertEquals( 'event ids', [ 9L, 10L ], page.events*.eventId )
+    assertFalse( 'more', page.hasMore( ) )
+  }
+
+  @Test
+  void testExactLastPage( ) {
+    HistoryEventPage page = SimpleWorkflowService.historyEventPage( lister( 8 ), 4, 8, false, 4 )
+    assertEquals( 'event ids', [ 5L, 6L, 7L, 8L ], page.events*.eventId )
+    assertFalse( 'more', page.hasMore( ) )
+  }
+
+  @Test
+  void testMaxEventIdBound( ) {
+    HistoryEventPage page = SimpleWorkflowService.historyEventPage( lister( 10 ), null, 3, false, 4 )
+    assertEquals( 'event ids', [ 1L, 2L, 3L ], page.events*.eventId )
+    assertFalse( 'more', page.hasMore( ) )
+  }
+
+  @Test
+  void testReverseOrder( ) {
+    HistoryEventPage first = SimpleWorkflowService.historyEventPage( lister( 10 ), null, 10, true, 4 )
+    assertEquals( 'first event ids', [ 10L, 9L, 8L, 7L ], first.events*.eventId )
+    assertTrue( 'first more', first.hasMore( ) )
+
+    HistoryEventPage second = SimpleWorkflowService.historyEventPage( lister( 10 ), 7, 10, true, 4 )
+    assertEquals( 'second event ids', [ 6L, 5L, 4L, 3L ], second.events*.eventId )
+    assertTrue( 'second more', second.hasMore( ) )
+
+    HistoryEventPage last = SimpleWorkflowService.historyEventPage( lister( 10 ), 3, 10, true, 4 )
+    assertEquals( 'last event ids', [ 2L, 1L ], last.events*.eventId )
+    assertFalse( 'last more', last.hasMore( ) )
+  }
+
+  @Test
+  void testReverseOrderMaxEventIdBound( ) {
+    HistoryEventPage page = SimpleWorkflowService.historyEventPage( lister( 10 ), null, 6, true, 4 )
+    assertEquals( 'event ids', [ 6L, 5L, 4L, 3L ], page.events*.eventId )
+    assertTrue( 'more', page.hasMore( ) )
+  }
+
+  @Test
+  void testPageSizeBound( ) {
+    List<Integer> requestedSizes = [ ]
+    HistoryEventLister lister = lister( 1500, requestedSizes )
+    assertEquals( 'default page size', 1000, SimpleWorkflowService.historyEventPage( lister, null, 1500, false, null ).events.size( ) )
+    assertEquals( 'maximum page size', 1000, SimpleWorkflowService.historyEventPage( lister, null, 1500, false, 5000 ).events.size( ) )
+    assertEquals( 'invalid page size', 1000, SimpleWorkflowService.historyEventPage( lister, null, 1500, false, 0 ).events.size( ) )
+    assertEquals( 'requested page size', 7, SimpleWorkflowService.historyEventPage( lister, null, 1500, false, 7 ).events.size( ) )
+    assertEquals( 'listed sizes', [ 1001, 1001, 1001, 8 ], requestedSizes )
+  }
+
+  /**
+   * Lister with the listPage semantics for events with orders 0 to count-1
+   */
+  private static HistoryEventLister lister( final int count, final List<Integer> requestedSizes = [ ] ) {
+    final List<WorkflowHistoryEvent> events = ( 0..<count ).collect{ Integer order ->
+      WorkflowHistoryEvent event = new WorkflowHistoryEvent( )
+      event.setEventOrder( order as Long )
+      event
+    }
+    new HistoryEventLister( ) {
+      @Override
+      List<WorkflowHistoryEvent> list( @Nullable final Long afterEventOrder,
+                                       final long maxEventOrder,
+                                       final boolean reverseOrder,
+                                       final int pageSize ) {
+        requestedSizes << pageSize
+        List<WorkflowHistoryEvent> ordered = reverseOrder ? events.reverse( ) : events
+        ordered.findAll{ WorkflowHistoryEvent event ->
+          event.eventOrder <= maxEventOrder &&
+              ( afterEventOrder == null ||
+                  ( reverseOrder ? event.eventOrder < afterEventOrder : event.eventOrder > afterEventOrder ) )
+        }.take( pageSize )
+      }
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*************************************************************************
+ * Copyright 2009-2015 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.simpleworkflow.stateful
+
+import com.eucalyptus.util.concurrent.ListenableFuture
+import groovy.transform.CompileStatic
+import org.junit.Test
+
+import java.util.concurrent.TimeUnit
+
+import static org.junit.Assert.*
+
+/**
+ *
+ */
+@CompileStatic
+class PolledNotificationServiceTest {
+
+  @Test
+  void testManyLocalPollers( ) {
+    int channels = 50
+    int pollersPerChannel = 100
+    int threadsBefore = Thread.activeCount( )
+    Map<String,List<ListenableFuture<PollForNotificationResponseType>>> futuresByChannel = [:]
+    ( 0..<channels ).each { int channelIndex ->
+      String channel = "test-many-local-pollers-${channelIndex}".toString( )
+      futuresByChannel.put( channel, ( 0..<pollersPerChannel ).collect {
+        PolledNotificationService.poll( channel )
+      } )
+    }
+
+    assertTrue( "Pollers hold threads", Thread.activeCount( ) - threadsBefore < 10 )
+    futuresByChannel.values( ).flatten( ).each { Object future ->
+      assertFalse( "Poll completed before notification", ((ListenableFuture) future).isDone( ) )
+    }
+
+    List<String> notifiedChannels = futuresByChannel.keySet( ).toList( ).subList( 0, channels.intdiv( 2 ) )
+    notifiedChannels.each { String channel ->
+      assertTrue( "Pollers notified for ${channel}", PolledNotificationService.notifyPollers( channel, channel ) )
+    }
+
+    futuresByChannel.each { String channel, List<ListenableFuture<PollForNotificationResponseType>> futures ->
+      futures.each { ListenableFuture<PollForNotificationResponseType> future ->
+        if ( notifiedChannels.contains( channel ) ) {
+          assertTrue( "Poll completed on notification", future.isDone( ) )
+          PollForNotificationResponseType response = future.get( 0, TimeUnit.SECONDS )
+          assertTrue( "Notified", response.notified )
+          assertEquals( "Details", channel, response.details )
+        } else {
+          assertFalse( "Poll completed without notification", future.isDone( ) )
+        }
+      }
+    }
+
+    PolledNotificationService.evacuate( )
+
+    futuresByChannel.values( ).flatten( ).each { Object future ->
+      assertTrue( "Poll completed on expiry", ((ListenableFuture) future).isDone( ) )
+    }
+    futuresByChannel.findAll{ String channel, Object futures -> !notifiedChannels.contains( channel ) }.values( ).flatten( ).each { Object future ->
+      PollForNotificationResponseType response = (PollForNotificationResponseType) ((ListenableFuture) future).get( 0, TimeUnit.SECONDS )
+      assertFalse( "Notified", response.notified )
+    }
+  }
+}
@@ -84,4 +84,41 @@ class TaskTokenManagerTest {
     assertEquals( "Expires Timestamp", token.expires, result.expires )
   }
 
+  @Test
+  void testPageTokenRoundTrip( ) {
+    TaskTokenManager manager = new TaskTokenManager( ) {
+      @Override
+      protected String getTokenPassword( ) {
+        'Open Sesame'
+      }
+    }
+
+    String accountNumber = '123456789012'
+    String domainUuid = UUID.randomUUID( ).toString( )
+    String runId = UUID.randomUUID( ).toString( )
+    Long created = System.currentTimeMillis( )
+    Long expires = System.currentTimeMillis( ) + TimeUnit.MINUTES.toMillis( 5 )
+    Long lastEventId = 1000
+    Long maxEventId = 4321
+    PageToken token = new PageToken( accountNumber, domainUuid, runId, lastEventId, maxEventId, true, created, expires )
+
+    String encryptedToken = manager.encryptPageToken( token )
+    PageToken result = manager.decryptPageToken( accountNumber, encryptedToken )
+    assertEquals( "Account number", token.accountNumber, result.accountNumber )
+    assertEquals( "Domain UUID", token.domainUuid, result.domainUuid )
+    assertEquals( "Run ID", token.runId, result.runId )
+    assertEquals( "Last Event ID", token.lastEventId, result.lastEventId )
+    assertEquals( "Max Event ID", token.maxEventId, result.maxEventId )
+    assertEquals( "Reverse Order", token.reverseOrder, result.reverseOrder )
+    assertEquals( "Created Timestamp", token.created, result.created )
+    assertEquals( "Expires Timestamp", token.expires, result.expires )
+
+    try {
+      manager.decryptTaskToken( accountNumber, encryptedToken )
+      fail( "Page token accepted as task token" )
+    } catch ( TaskTokenException e ) {
+      // expected
+    }
+  }
+
 }
@@ -72,8 +72,19 @@ import edu.ucsb.eucalyptus.constants.IsData;
 
 public class ChunkedDataFile extends ChunkedFile implements IsData {
   private static Logger LOG = Logger.getLogger(ChunkedDataFile.class);
+  private final RandomAccessFile file;
 
   public ChunkedDataFile(RandomAccessFile file, long offset, long length, int chunkSize) throws IOException {
     super(file, offset, length, chunkSize);
+    this.file = file;
+  }
+
+  /**
+   * Get a file region for the remaining content for zero-copy transfer.
+   *
+   * The region shares the underlying file, so this chunked input must not be read after the region is written.
+   */
+  public DataFileRegion toFileRegion() {
+    return new DataFileRegion(file, getCurrentOffset(), getEndOffset() - getCurrentOffset());
   }
 }
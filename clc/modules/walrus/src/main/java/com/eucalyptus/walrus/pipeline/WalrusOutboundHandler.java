@@ -78,9 +78,12 @@ import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
 import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.jboss.netty.handler.ssl.SslHandler;
 import org.jboss.netty.handler.stream.ChunkedInput;
 
 import com.eucalyptus.http.MappingHttpResponse;
+import com.eucalyptus.storage.common.ChunkedDataFile;
+import com.eucalyptus.storage.common.DataFileRegion;
 import com.eucalyptus.storage.common.DateFormatter;
 import com.eucalyptus.storage.msgs.s3.MetaDataEntry;
 import com.eucalyptus.walrus.exceptions.HeadExceptionInterface;
@@ -232,13 +235,26 @@ public class WalrusOutboundHandler extends MessageStackHandler {
       Channels.write(ctx, writeFuture, httpResponse);
       List<ChunkedInput> dataStreams = response.getDataInputStream();
       if (dataStreams != null) {
+        // Uncompressed file data can be transferred directly from the file to the socket unless encrypted
+        final boolean zeroCopy = ctx.getPipeline().get(SslHandler.class) == null;
         for (final ChunkedInput dataStream : dataStreams) {
-          channel.write(dataStream).addListener(new ChannelFutureListener() {
-            @Override
-            public void operationComplete(ChannelFuture future) throws Exception {
-              dataStream.close();
-            }
-          });
+          if (zeroCopy && dataStream instanceof ChunkedDataFile) {
+            final DataFileRegion region = ((ChunkedDataFile) dataStream).toFileRegion();
+            channel.write(region).addListener(new ChannelFutureListener() {
+              @Override
+              public void operationComplete(ChannelFuture future) throws Exception {
+                region.releaseExternalResources();
+                dataStream.close();
+              }
+            });
+          } else {
+            channel.write(dataStream).addListener(new ChannelFutureListener() {
+              @Override
+              public void operationComplete(ChannelFuture future) throws Exception {
+                dataStream.close();
+              }
+            });
+          }
         }
       } else {
         writeFuture.addListener(ChannelFutureListener.CLOSE);
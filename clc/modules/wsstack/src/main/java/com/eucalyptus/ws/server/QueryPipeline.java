@@ -126,6 +126,12 @@ public abstract class QueryPipeline extends FilteredPipeline {
       return false;
     }
   }
+
+  @Override
+  public Routing getRouting( ) {
+    return Routing.prefix( false, servicePathPrefixes );
+  }
+
   @Override
   public String getName( ) {
     return name;
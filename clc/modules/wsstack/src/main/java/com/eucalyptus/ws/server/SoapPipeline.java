@@ -83,6 +83,11 @@ public abstract class SoapPipeline extends FilteredPipeline {
                 ( noPath && resolvesByHost( message.getHeader( HttpHeaders.Names.HOST ) ) ) );
   }
 
+  @Override
+  public Routing getRouting( ) {
+    return Routing.suffix( true, servicePaths );
+  }
+
   @Override
   public String getName( ) {
     return name;